@@ -5,20 +5,25 @@ interface ConnectExceptionData {
   validationErrorData?: ValidationErrorData[];
 }
 
+const createConnectException =
+  (errorJson: ConnectExceptionData): VaadinConnectError => {
+    if (errorJson.validationErrorData) {
+      return new VaadinConnectValidationError(
+        errorJson.message,
+        errorJson.validationErrorData,
+        errorJson.type
+      );
+    } else {
+      return new VaadinConnectError(
+        errorJson.message,
+        errorJson.type,
+        errorJson.detail
+      );
+    }
+  };
+
 const throwConnectException = (errorJson: ConnectExceptionData) => {
-  if (errorJson.validationErrorData) {
-    throw new VaadinConnectValidationError(
-      errorJson.message,
-      errorJson.validationErrorData,
-      errorJson.type
-    );
-  } else {
-    throw new VaadinConnectError(
-      errorJson.message,
-      errorJson.type,
-      errorJson.detail
-    );
-  }
+  throw createConnectException(errorJson);
 };
 
 /**
@@ -50,6 +55,367 @@ const assertResponseIsOk = async(response: Response): Promise<void> => {
   }
 };
 
+/**
+ * The default codec, that sends the params and reads the responses as JSON.
+ * @ignore
+ */
+const jsonCodec: ConnectCodec = {
+  contentType: 'application/json',
+  encode: (value: any) => JSON.stringify(value),
+  decode: (body: ArrayBuffer) => JSON.parse(new TextDecoder().decode(body))
+};
+
+/**
+ * Decodes the response body with the codec given, unless the response is
+ * JSON, for instance, when the server does not support the codec format.
+ * @ignore
+ */
+const decodeBody = (codec: ConnectCodec, contentType: string | null,
+                    body: ArrayBuffer): any => {
+  const isJson = contentType !== null
+    && contentType.startsWith(jsonCodec.contentType);
+  return (isJson ? jsonCodec : codec).decode(body);
+};
+
+/**
+ * Makes a HTTP request to the `${endpoint}/${service}/${method}` URL through
+ * the middlewares of the client, and processes the response given with the
+ * response handler, unless the response is not ok.
+ * @param client the connect client instance
+ * @param codec encodes the params and sets the `Content-Type` request header
+ * @param accept the `Accept` request header value
+ * @param handleResponse processes the successful response
+ * @param ifNoneMatch the `If-None-Match` request header value, when set,
+ * the `304 Not Modified` response is processed as a successful one
+ * @ignore
+ */
+const invokeService = async(
+  client: ConnectClient,
+  service: string,
+  method: string,
+  params: any,
+  options: CallOptions,
+  codec: ConnectCodec,
+  accept: string,
+  handleResponse: (response: Response) => Promise<any>,
+  ifNoneMatch?: string
+): Promise<any> => {
+  options = Object.assign({requireCredentials: true}, options);
+  if (options.requireCredentials) {
+    await client.login();
+  }
+
+  const accessToken = privates.get(client).tokens.accessToken;
+  const headers: Record<string, string> = {
+    'Accept': accept,
+    'Content-Type': codec.contentType
+  };
+  if (accessToken) {
+    // tslint:disable-next-line:no-string-literal
+    headers['Authorization'] = `Bearer ${accessToken.token}`;
+  }
+  if (ifNoneMatch) {
+    headers['If-None-Match'] = ifNoneMatch;
+  }
+
+  // Construct a Request instance from arguments, the batch request has
+  // no method in the URL
+  const request = new Request(
+    method ? `${client.endpoint}/${service}/${method}`
+      : `${client.endpoint}/${service}`,
+    {
+      method: 'POST',
+      headers,
+      body: params !== undefined ? codec.encode(params) : undefined
+    }
+  );
+
+  // The middleware `context`, includes the call arguments and the request
+  // constructed from them
+  const initialContext: MiddlewareContext = {
+    service,
+    method,
+    params,
+    options,
+    request
+  };
+
+  // The internal middleware to assert and parse the response. The internal
+  // response handling should come last after the other middlewares are done
+  // with processing the response. That is why this middleware is first
+  // in the final middlewares array.
+  const responseHandlerMiddleware: Middleware =
+    async(
+      context: MiddlewareContext,
+      next: MiddlewareNext
+    ): Promise<Response> => {
+      const response = await next(context);
+      if (!(ifNoneMatch && response.status === 304)) {
+        await assertResponseIsOk(response);
+      }
+      return handleResponse(response);
+    };
+
+  // The actual fetch call itself is expressed as a middleware
+  // chain item for our convenience. Always having an ending of the chain
+  // this way makes the folding down below more concise.
+  const fetchNext: MiddlewareNext =
+    async(context: MiddlewareContext): Promise<Response> => {
+      return await fetch(context.request);
+    };
+
+  // Assemble the final middlewares array from internal
+  // and external middlewares
+  const middlewares = [responseHandlerMiddleware].concat(client.middlewares);
+
+  // Fold the final middlewares array into a single function
+  const chain = middlewares.reduceRight(
+    (next: MiddlewareNext, middleware: Middleware) => {
+      // Compose and return the new chain step, that takes the context and
+      // invokes the current middleware with the context and the further chain
+      // as the next argument
+      return (context => middleware(context, next)) as MiddlewareNext;
+    },
+    // Initialize reduceRight the accumulator with `fetchNext`
+    fetchNext
+  );
+
+  // Invoke all the folded async middlewares and return
+  return await chain(initialContext);
+};
+
+/**
+ * The last response body of a call, sent with an `ETag` header.
+ * @ignore
+ */
+interface StoredResponse {
+  eTag: string;
+  contentType: string | null;
+  body: ArrayBuffer;
+}
+
+/**
+ * The maximum number of the stored response bodies per client.
+ * @ignore
+ */
+const maxStoredResponses = 100;
+
+/**
+ * Makes a call that sends the `ETag` of the last response of the same call,
+ * if the response had one, in the `If-None-Match` header, and parses
+ * the stored body again, when the `304 Not Modified` response is received.
+ * The bodies are stored per service, method and params, and the least
+ * recently stored ones are dropped, when the limit is exceeded.
+ * The params are sent and the response is read with the client codec.
+ * @param client the connect client instance
+ * @ignore
+ */
+const invokeConditionally = async(
+  client: ConnectClient,
+  service: string,
+  method: string,
+  params: any,
+  options: CallOptions
+): Promise<any> => {
+  const responses: Map<string, StoredResponse> =
+    privates.get(client).responses;
+  const key = `${service}/${method}:${JSON.stringify(params)}`;
+  const stored = responses.get(key);
+  const codec = client.codec;
+  return await invokeService(client, service, method, params, options,
+    codec, codec.contentType, async response => {
+      if (stored && response.status === 304) {
+        return decodeBody(codec, stored.contentType, stored.body);
+      }
+      const body = await response.arrayBuffer();
+      const contentType = response.headers.get('Content-Type');
+      const eTag = response.headers.get('ETag');
+      responses.delete(key);
+      if (eTag) {
+        responses.set(key, {eTag, contentType, body});
+        if (responses.size > maxStoredResponses) {
+          responses.delete(responses.keys().next().value);
+        }
+      }
+      return decodeBody(codec, contentType, body);
+    }, stored && stored.eTag);
+};
+
+/**
+ * A call waiting to be sent in a batch request.
+ * @ignore
+ */
+interface BatchCall {
+  service: string;
+  method: string;
+  params?: any;
+  options: CallOptions;
+  resolve: (result: any) => void;
+  reject: (error: Error) => void;
+}
+
+/**
+ * The result of a call in the batch response.
+ * @ignore
+ */
+interface BatchCallResult {
+  status: number;
+  result?: any;
+  error?: ConnectExceptionData;
+}
+
+/** @ignore */
+const batchService = '_batch';
+
+/**
+ * Queues the call to be sent with the other calls made in the same microtask.
+ * The batch request is sent in a microtask scheduled by the first call.
+ * @param client the connect client instance
+ * @ignore
+ */
+const queueBatchCall = (
+  client: ConnectClient,
+  service: string,
+  method: string,
+  params: any,
+  options: CallOptions
+): Promise<any> => {
+  return new Promise((resolve, reject) => {
+    const _private = privates.get(client);
+    if (!_private.batchCalls) {
+      _private.batchCalls = [];
+      Promise.resolve().then(() => sendBatchCalls(client));
+    }
+    _private.batchCalls.push({service, method, params, options, resolve,
+      reject});
+  });
+};
+
+/**
+ * Sends the queued calls to the `${endpoint}/_batch` URL, and settles
+ * each call with its result in the batch response. A single queued call is
+ * sent as a regular call.
+ * @param client the connect client instance
+ * @ignore
+ */
+const sendBatchCalls = async(client: ConnectClient): Promise<void> => {
+  const _private = privates.get(client);
+  const calls: BatchCall[] = _private.batchCalls;
+  _private.batchCalls = undefined;
+
+  if (calls.length === 1) {
+    const call = calls[0];
+    invokeConditionally(client, call.service, call.method, call.params,
+      call.options).then(call.resolve, call.reject);
+    return;
+  }
+
+  let results: BatchCallResult[] = [];
+  try {
+    const requireCredentials = calls.some(
+      call => call.options.requireCredentials !== false);
+    results = await invokeService(client, batchService, '',
+      calls.map(({service, method, params}) => ({service, method, params})),
+      {requireCredentials}, jsonCodec, 'application/json',
+      response => response.json());
+  } catch (error) {
+    calls.forEach(call => call.reject(error));
+    return;
+  }
+
+  calls.forEach((call, index) => {
+    const callResult = Array.isArray(results) ? results[index] : undefined;
+    if (callResult && callResult.status === 200) {
+      call.resolve(callResult.result);
+    } else if (callResult && callResult.error) {
+      call.reject(createConnectException(callResult.error));
+    } else {
+      call.reject(new VaadinConnectError(
+        'expected a result of the call in the batch response'));
+    }
+  });
+};
+
+/**
+ * A server-sent event, with the data lines joined.
+ * @ignore
+ */
+interface ServerSentEvent {
+  type: string;
+  data: string;
+}
+
+/**
+ * Parses a single server-sent event from the event lines.
+ * @param text The event lines, without the blank line that ends the event.
+ * @ignore
+ */
+const parseServerSentEvent = (text: string): ServerSentEvent => {
+  let type = 'message';
+  const data: string[] = [];
+  for (const line of text.split('\n')) {
+    const colonIndex = line.indexOf(':');
+    const field = colonIndex < 0 ? line : line.slice(0, colonIndex);
+    let value = colonIndex < 0 ? '' : line.slice(colonIndex + 1);
+    if (value.startsWith(' ')) {
+      value = value.slice(1);
+    }
+    if (field === 'event') {
+      type = value;
+    } else if (field === 'data') {
+      data.push(value);
+    }
+  }
+  return {type, data: data.join('\n')};
+};
+
+/**
+ * Reads the server-sent events from the response body, and yields
+ * the parsed JSON data of each element event.
+ * Throws the exception sent with an `error` event, or a
+ * `VaadinConnectError` if the stream ends without a `complete` event.
+ * @param response The response to read the events from.
+ * @ignore
+ */
+async function* readServerSentEvents(
+  response: Response
+): AsyncIterableIterator<any> {
+  if (!response.body) {
+    throw new VaadinConnectError('expected a streaming response body');
+  }
+  const reader = response.body.getReader();
+  const decoder = new TextDecoder();
+  let buffer = '';
+  try {
+    while (true) {
+      const {done, value} = await reader.read();
+      if (done) {
+        throw new VaadinConnectError(
+          'the stream ended before the completion event'
+        );
+      }
+      buffer += decoder.decode(value, {stream: true});
+      let eventEnd = buffer.indexOf('\n\n');
+      while (eventEnd >= 0) {
+        const event = parseServerSentEvent(buffer.slice(0, eventEnd));
+        buffer = buffer.slice(eventEnd + 2);
+        if (event.type === 'complete') {
+          return;
+        } else if (event.type === 'error') {
+          throwConnectException(JSON.parse(event.data));
+        } else if (event.data.length > 0) {
+          yield JSON.parse(event.data);
+        }
+        eventEnd = buffer.indexOf('\n\n');
+      }
+    }
+  } finally {
+    // Stops the server stream, if the iteration is ended early, and
+    // ignores the cancellation failure of the stream that is already closed
+    reader.cancel().catch(() => undefined);
+  }
+}
+
 /**
  * Authenticate a Vaadin Connect client
  * @param client the connect client instance
@@ -329,6 +695,11 @@ export interface ConnectClientOptions {
    */
   tokenEndpoint?: string;
 
+  /**
+   * The `revokeEndpoint` property value.
+   */
+  revokeEndpoint?: string;
+
   /**
    * The `credentials` property value.
    */
@@ -338,6 +709,40 @@ export interface ConnectClientOptions {
    * The `middlewares` property value.
    */
   middlewares?: Middleware[];
+
+  /**
+   * The `batch` property value.
+   */
+  batch?: boolean;
+
+  /**
+   * The `codec` property value.
+   */
+  codec?: ConnectCodec;
+}
+
+/**
+ * Encodes the params and decodes the responses of the calls in a format,
+ * for instance, in a binary format supported by the server, like CBOR.
+ */
+export interface ConnectCodec {
+  /**
+   * The media type of the format, sent in the `Content-Type` and the `Accept`
+   * request headers.
+   */
+  contentType: string;
+
+  /**
+   * Encodes the call params into the request body.
+   * @param value The params object.
+   */
+  encode(value: any): BodyInit;
+
+  /**
+   * Decodes the response body.
+   * @param body The response body.
+   */
+  decode(body: ArrayBuffer): any;
 }
 
 export interface CallOptions {
@@ -364,6 +769,9 @@ export interface MiddlewareContext {
 
   /**
    * Optional object with method call arguments.
+   *
+   * For a batch request, the service is `_batch`, the method is empty,
+   * and the params is the array of the `{service, method, params}` calls.
    */
   params?: any;
 
@@ -434,6 +842,10 @@ export type Middleware = (context: MiddlewareContext, next: MiddlewareNext) =>
  *
  * The default token endpoint is '/oauth/token'.
  *
+ * The `logout()` method revokes the access token on the server through
+ * the `revokeEndpoint` constructor option, which is '/oauth/revoke'
+ * by default.
+ *
  * By default, the client requires authorization for calls, therefore
  * the `credentials` callback is called before a non-authorized client
  * is about to make a call. You can omit the authorization requirement using
@@ -445,6 +857,43 @@ export type Middleware = (context: MiddlewareContext, next: MiddlewareNext) =>
  *   requireCredentials: false
  * });
  * ```
+ *
+ * ### Batching
+ *
+ * With the `batch: true` constructor option, the calls made in the same
+ * microtask are sent to the backend together, in one request:
+ *
+ * ```js
+ * const client = new ConnectClient({batch: true});
+ * const [first, second] = await Promise.all([
+ *   client.call('MyVaadinService', 'myMethod'),
+ *   client.call('MyVaadinService', 'myOtherMethod')
+ * ]);
+ * ```
+ *
+ * ### Codecs
+ *
+ * With the `codec` constructor option, the calls are sent in other format
+ * than JSON, for instance, in CBOR, with an encoder library of choice:
+ *
+ * ```js
+ * const client = new ConnectClient({
+ *   codec: {
+ *     contentType: 'application/cbor',
+ *     encode: value => cbor.encode(value),
+ *     decode: body => cbor.decode(new Uint8Array(body))
+ *   }
+ * });
+ * ```
+ *
+ * ### Conditional requests
+ *
+ * When the response of a call has an `ETag` header, which is the case for
+ * the idempotent service methods, the client keeps the last response body of
+ * the call with the same service, method and params, and sends the `ETag` in
+ * the `If-None-Match` header of the next such call. If the server responds
+ * with `304 Not Modified`, the kept body is returned, so polling a method
+ * does not download the same response again.
  */
 export class ConnectClient {
   /**
@@ -457,6 +906,11 @@ export class ConnectClient {
    */
   tokenEndpoint: string = '/oauth/token';
 
+  /**
+   * The Vaadin Connect endpoint that revokes the access token on logout.
+   */
+  revokeEndpoint: string = '/oauth/revoke';
+
   /**
    * Called when the client needs a username/password pair to authorize through
    * the token endpoint. When undefined or returns a falsy value,
@@ -470,6 +924,21 @@ export class ConnectClient {
    */
   middlewares: Middleware[] = [];
 
+  /**
+   * When true, the calls made in the same microtask are sent together,
+   * in one request to the `${endpoint}/_batch` URL. Each call still
+   * resolves or rejects on its own. The streaming calls are not batched.
+   */
+  batch: boolean = false;
+
+  /**
+   * Encodes the params and decodes the responses of the calls. JSON is used
+   * by default. The responses are decoded as JSON, when the server responds
+   * with JSON anyway, as well as the errors. The batch requests and
+   * the streaming calls always use JSON.
+   */
+  codec: ConnectCodec = jsonCodec;
+
   /**
    * @param options Constructor options.
    */
@@ -482,6 +951,10 @@ export class ConnectClient {
       this.tokenEndpoint = options.tokenEndpoint;
     }
 
+    if (options.revokeEndpoint) {
+      this.revokeEndpoint = options.revokeEndpoint;
+    }
+
     if (options.credentials) {
       this.credentials = options.credentials;
     }
@@ -490,8 +963,17 @@ export class ConnectClient {
       this.middlewares = options.middlewares;
     }
 
+    if (options.batch) {
+      this.batch = options.batch;
+    }
+
+    if (options.codec) {
+      this.codec = options.codec;
+    }
+
     privates.set(this, {
       controller: new AbortController(),
+      responses: new Map(),
       tokens: new AuthTokens().restore()
     });
   }
@@ -502,13 +984,31 @@ export class ConnectClient {
    *
    * After calling `logout()`, any new service call will ask for
    * user credentials.
+   *
+   * The access token is also revoked with a request to the
+   * {@link ConnectClient#revokeEndpoint} URL, so that the server rejects it
+   * even if it has been copied. The local state is cleared whether the
+   * request succeeds or not.
    */
   async logout() {
     const _private = privates.get(this);
+    const accessToken = _private.tokens.accessToken;
     _private.controller.abort();
     // controller signed as aborted cannot be reused
     _private.controller = new AbortController();
     _private.tokens = new AuthTokens().save();
+    _private.responses.clear();
+
+    if (accessToken && accessToken.isValid()) {
+      try {
+        await fetch(this.revokeEndpoint, {
+          method: 'POST',
+          headers: {'Authorization': `Bearer ${accessToken.token}`}
+        });
+      } catch (error) {
+        // The token expires anyway, there is nothing else to clean up
+      }
+    }
   }
 
   /**
@@ -524,6 +1024,10 @@ export class ConnectClient {
    * optionally supplying the provided params as a JSON request body,
    * and asynchronously returns the parsed JSON response data.
    *
+   * If the last response of the same call had an `ETag` header, it is sent
+   * in the `If-None-Match` header, and the last response data is returned
+   * again, when the server responds with `304 Not Modified`.
+   *
    * @param service Service class name.
    * @param method Method name to call in the service class.
    * @param params Optional object to be send in JSON request body.
@@ -542,81 +1046,44 @@ export class ConnectClient {
       );
     }
 
-    options = Object.assign({requireCredentials: true}, options);
-    if (options.requireCredentials) {
-      await this.login();
+    if (this.batch) {
+      return await queueBatchCall(this, service, method, params, options);
     }
+    return await invokeConditionally(this, service, method, params, options);
+  }
 
-    const accessToken = privates.get(this).tokens.accessToken;
-    const headers: Record<string, string> = {
-      'Accept': 'application/json',
-      'Content-Type': 'application/json'
-    };
-    if (accessToken) {
-      // tslint:disable-next-line:no-string-literal
-      headers['Authorization'] = `Bearer ${accessToken.token}`;
+  /**
+   * Makes a JSON HTTP request to the `${endpoint}/${service}/${method}` URL
+   * of a service method that streams its results, optionally supplying
+   * the provided params as a JSON request body, and asynchronously iterates
+   * the parsed JSON elements of the response, as they are received.
+   *
+   * The elements are sent by the server as server-sent events.
+   * Ending the iteration early, for instance, with `break` in
+   * a `for await` loop, cancels the stream on the server side.
+   *
+   * @param service Service class name.
+   * @param method Method name to call in the service class.
+   * @param params Optional object to be send in JSON request body.
+   * @param options Optional client options for this call.
+   * @returns {} Async iterator of the decoded JSON response elements.
+   */
+  async *stream(
+    service: string,
+    method: string,
+    params?: any,
+    options: CallOptions = {}
+  ): AsyncIterableIterator<any> {
+    if (arguments.length < 2) {
+      throw new TypeError(
+        `2 arguments required, but got only ${arguments.length}`
+      );
     }
 
-    // Construct a Request instance from arguments
-    const request = new Request(
-      `${this.endpoint}/${service}/${method}`,
-      {
-        method: 'POST',
-        headers,
-        body: params !== undefined ? JSON.stringify(params) : undefined
-      }
-    );
-
-    // The middleware `context`, includes the call arguments and the request
-    // constructed from them
-    const initialContext: MiddlewareContext = {
-      service,
-      method,
-      params,
-      options,
-      request
-    };
-
-    // The internal middleware to assert and parse the response. The internal
-    // response handling should come last after the other middlewares are done
-    // with processing the response. That is why this middleware is first
-    // in the final middlewares array.
-    const responseHandlerMiddleware: Middleware =
-      async(
-        context: MiddlewareContext,
-        next: MiddlewareNext
-      ): Promise<Response> => {
-        const response = await next(context);
-        await assertResponseIsOk(response);
-        return response.json();
-      };
-
-    // The actual fetch call itself is expressed as a middleware
-    // chain item for our convenience. Always having an ending of the chain
-    // this way makes the folding down below more concise.
-    const fetchNext: MiddlewareNext =
-      async(context: MiddlewareContext): Promise<Response> => {
-        return await fetch(context.request);
-      };
-
-    // Assemble the final middlewares array from internal
-    // and external middlewares
-    const middlewares = [responseHandlerMiddleware].concat(this.middlewares);
-
-    // Fold the final middlewares array into a single function
-    const chain = middlewares.reduceRight(
-      (next: MiddlewareNext, middleware: Middleware) => {
-        // Compose and return the new chain step, that takes the context and
-        // invokes the current middleware with the context and the further chain
-        // as the next argument
-        return (context => middleware(context, next)) as MiddlewareNext;
-      },
-      // Initialize reduceRight the accumulator with `fetchNext`
-      fetchNext
-    );
-
-    // Invoke all the folded async middlewares and return
-    return await chain(initialContext);
+    const response: Response = await invokeService(this, service, method,
+      params, options, jsonCodec, 'text/event-stream',
+      async streamResponse => streamResponse);
+    yield* readServerSentEvents(response);
   }
 
   /**
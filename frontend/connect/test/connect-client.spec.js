@@ -5,7 +5,7 @@ const {sinon} = intern.getPlugin('sinon');
 
 import {ConnectClient, VaadinConnectError, VaadinConnectValidationError} from '../connect-client.js';
 
-/* global btoa localStorage setTimeout URLSearchParams Request Response */
+/* global btoa localStorage setTimeout URLSearchParams Request Response TextEncoder */
 describe('ConnectClient', () => {
 
   function generateOAuthJson() {
@@ -52,6 +52,11 @@ describe('ConnectClient', () => {
       expect(client).to.have.property('tokenEndpoint', '/foo');
     });
 
+    it('should support revokeEndpoint', () => {
+      const client = new ConnectClient({revokeEndpoint: '/foo'});
+      expect(client).to.have.property('revokeEndpoint', '/foo');
+    });
+
     it('should support middlewares', () => {
       const client = new ConnectClient({middlewares: [myMiddleware]});
       expect(client).to.have.property('middlewares')
@@ -358,6 +363,407 @@ describe('ConnectClient', () => {
     });
   });
 
+  describe('stream method', () => {
+    afterEach(() => fetchMock.restore());
+
+    let client;
+    beforeEach(() => client = new ConnectClient());
+
+    function respondWithChunks(...chunks) {
+      const reader = {
+        read: sinon.spy(async() => chunks.length > 0
+          ? {done: false, value: new TextEncoder().encode(chunks.shift())}
+          : {done: true}),
+        cancel: sinon.spy(async() => undefined)
+      };
+      client.middlewares = [async() => ({ok: true, body: {getReader: () => reader}})];
+      return reader;
+    }
+
+    async function readAll(iterator) {
+      const elements = [];
+      let result = await iterator.next();
+      while (!result.done) {
+        elements.push(result.value);
+        result = await iterator.next();
+      }
+      return elements;
+    }
+
+    it('should require 2 arguments', async() => {
+      try {
+        await client.stream('FooService').next();
+      } catch (err) {
+        expect(err).to.be.instanceOf(TypeError)
+          .and.have.property('message').that.has.string('2 arguments required');
+      }
+    });
+
+    it('should not fetch before iteration', () => {
+      client.stream('FooService', 'fooMethod');
+
+      expect(fetchMock.calls()).to.have.lengthOf(0);
+    });
+
+    it('should request event stream', async() => {
+      respondWithChunks('event: complete\ndata:\n\n');
+      let request;
+      client.middlewares.unshift(async(context, next) => {
+        request = context.request;
+        return next(context);
+      });
+
+      await client.stream('FooService', 'fooMethod', {fooParam: 'foo'}).next();
+
+      expect(request.url).to.equal('/connect/FooService/fooMethod');
+      expect(request.method).to.equal('POST');
+      expect(request.headers.get('Accept')).to.equal('text/event-stream');
+      expect(request.headers.get('Content-Type')).to.equal('application/json');
+    });
+
+    it('should yield parsed data events until completion', async() => {
+      respondWithChunks(
+        'data: {"foo": 1}\n\ndata: "b',
+        'ar"\n\n',
+        'event: complete\ndata:\n\n'
+      );
+
+      const elements = await readAll(client.stream('FooService', 'fooMethod'));
+
+      expect(elements).to.deep.equal([{foo: 1}, 'bar']);
+    });
+
+    it('should throw the exception of the error event', async() => {
+      respondWithChunks(
+        'data: 1\n\n',
+        'event: error\ndata: {"message": "Oops", "type": "java.lang.IllegalStateException"}\n\n'
+      );
+
+      const iterator = client.stream('FooService', 'fooMethod');
+      expect(await iterator.next()).to.deep.equal({done: false, value: 1});
+      try {
+        await iterator.next();
+        throw new Error('should have thrown');
+      } catch (err) {
+        expect(err).to.be.instanceOf(VaadinConnectError)
+          .and.have.property('message').that.has.string('Oops');
+        expect(err).to.have.property('type').that.equals('java.lang.IllegalStateException');
+      }
+    });
+
+    it('should throw when stream ends without completion', async() => {
+      respondWithChunks('data: 1\n\n');
+
+      try {
+        await readAll(client.stream('FooService', 'fooMethod'));
+        throw new Error('should have thrown');
+      } catch (err) {
+        expect(err).to.be.instanceOf(VaadinConnectError)
+          .and.have.property('message').that.has.string('completion event');
+      }
+    });
+
+    it('should reject if response is not ok', async() => {
+      fetchMock.post('/connect/FooService/notFound', 404);
+      try {
+        await client.stream('FooService', 'notFound').next();
+        throw new Error('should have thrown');
+      } catch (err) {
+        expect(err).to.be.instanceOf(VaadinConnectError)
+          .and.have.property('message').that.has.string('404 Not Found');
+      }
+    });
+
+    it('should cancel the stream when iteration is returned early', async() => {
+      const reader = respondWithChunks('data: 1\n\ndata: 2\n\n');
+
+      const iterator = client.stream('FooService', 'fooMethod');
+      await iterator.next();
+      await iterator.return();
+
+      expect(reader.cancel).to.be.calledOnce;
+    });
+  });
+
+  describe('batch calls', () => {
+    afterEach(() => fetchMock.restore());
+
+    let client;
+    beforeEach(() => client = new ConnectClient({batch: true}));
+
+    it('should not batch by default', () => {
+      expect(new ConnectClient()).to.have.property('batch', false);
+    });
+
+    it('should send calls of the same microtask in one request', async() => {
+      fetchMock.post('/connect/_batch', [
+        {status: 200, result: 'foo'},
+        {status: 200, result: {bar: 1}}
+      ]);
+
+      const results = await Promise.all([
+        client.call('FooService', 'fooMethod', {fooParam: 'foo'}),
+        client.call('BarService', 'barMethod')
+      ]);
+
+      expect(results).to.deep.equal(['foo', {bar: 1}]);
+      expect(fetchMock.calls()).to.have.lengthOf(1);
+      expect(JSON.parse(fetchMock.lastOptions().body)).to.deep.equal([
+        {service: 'FooService', method: 'fooMethod', params: {fooParam: 'foo'}},
+        {service: 'BarService', method: 'barMethod'}
+      ]);
+    });
+
+    it('should send a single call as a regular call', async() => {
+      fetchMock.post('/connect/FooService/fooMethod', {fooData: 'foo'});
+
+      const result = await client.call('FooService', 'fooMethod');
+
+      expect(result).to.deep.equal({fooData: 'foo'});
+      expect(fetchMock.lastUrl()).to.equal('/connect/FooService/fooMethod');
+    });
+
+    it('should send calls of different microtasks separately', async() => {
+      fetchMock.post('/connect/FooService/fooMethod', {fooData: 'foo'});
+
+      await client.call('FooService', 'fooMethod');
+      await client.call('FooService', 'fooMethod');
+
+      expect(fetchMock.calls()).to.have.lengthOf(2);
+    });
+
+    it('should reject only the failed calls', async() => {
+      fetchMock.post('/connect/_batch', [
+        {status: 400, error: {message: 'Invalid call', type: 'FooException'}},
+        {status: 200, result: 'bar'}
+      ]);
+
+      const failedCall = client.call('FooService', 'fooMethod');
+      const successfulCall = client.call('BarService', 'barMethod');
+
+      try {
+        await failedCall;
+        throw new Error('should have thrown');
+      } catch (err) {
+        expect(err).to.be.instanceOf(VaadinConnectError)
+          .and.have.property('type', 'FooException');
+      }
+      expect(await successfulCall).to.equal('bar');
+    });
+
+    it('should reject with validation errors of a call', async() => {
+      fetchMock.post('/connect/_batch', [
+        {status: 200, result: 'foo'},
+        {status: 400, error: {message: 'Validation error',
+          validationErrorData: [{message: 'Invalid', parameterName: 'bar'}]}}
+      ]);
+
+      const calls = [
+        client.call('FooService', 'fooMethod'),
+        client.call('BarService', 'barMethod')
+      ];
+
+      try {
+        await calls[1];
+        throw new Error('should have thrown');
+      } catch (err) {
+        expect(err).to.be.instanceOf(VaadinConnectValidationError)
+          .and.have.property('validationErrorData').that.has.lengthOf(1);
+      }
+      expect(await calls[0]).to.equal('foo');
+    });
+
+    it('should reject all calls if batch request fails', async() => {
+      fetchMock.post('/connect/_batch', 500);
+
+      const calls = [
+        client.call('FooService', 'fooMethod'),
+        client.call('BarService', 'barMethod')
+      ];
+
+      const errors = await Promise.all(calls.map(call => call.then(
+        () => Promise.reject(new Error('should have thrown')),
+        err => err
+      )));
+      errors.forEach(err => expect(err).to.be.instanceOf(VaadinConnectError)
+        .and.have.property('message').that.has.string('500'));
+    });
+
+    it('should pass batch request through middlewares', async() => {
+      fetchMock.post('/connect/_batch', [
+        {status: 200, result: 'foo'},
+        {status: 200, result: 'bar'}
+      ]);
+      const middleware = sinon.spy(async(context, next) => {
+        expect(context.service).to.equal('_batch');
+        expect(context.params).to.have.lengthOf(2);
+        return next(context);
+      });
+      client.middlewares = [middleware];
+
+      await Promise.all([
+        client.call('FooService', 'fooMethod'),
+        client.call('BarService', 'barMethod')
+      ]);
+
+      expect(middleware).to.be.calledOnce;
+    });
+  });
+
+  describe('conditional requests', () => {
+    afterEach(() => fetchMock.restore());
+
+    let client;
+    let responses;
+    beforeEach(() => {
+      client = new ConnectClient();
+      responses = [];
+      fetchMock.post('/connect/FooService/fooMethod', () => responses.shift());
+    });
+
+    const getIfNoneMatch = () =>
+      fetchMock.lastCall().request.headers.get('If-None-Match');
+
+    it('should send ETag of the last response of the same call', async() => {
+      responses.push({body: {fooData: 'foo'}, headers: {ETag: '"foo"'}},
+        {body: {fooData: 'foo'}, headers: {ETag: '"foo"'}});
+
+      await client.call('FooService', 'fooMethod', {fooParam: 'foo'});
+      expect(getIfNoneMatch()).to.be.null;
+      await client.call('FooService', 'fooMethod', {fooParam: 'foo'});
+      expect(getIfNoneMatch()).to.equal('"foo"');
+    });
+
+    it('should not send ETag of a call with other params', async() => {
+      responses.push({body: {fooData: 'foo'}, headers: {ETag: '"foo"'}},
+        {body: {fooData: 'bar'}});
+
+      await client.call('FooService', 'fooMethod', {fooParam: 'foo'});
+      await client.call('FooService', 'fooMethod', {fooParam: 'bar'});
+
+      expect(getIfNoneMatch()).to.be.null;
+    });
+
+    it('should resolve to the last response data on 304', async() => {
+      responses.push({body: {fooData: 'foo'}, headers: {ETag: '"foo"'}},
+        {status: 304, headers: {ETag: '"foo"'}});
+
+      const first = await client.call('FooService', 'fooMethod');
+      const second = await client.call('FooService', 'fooMethod');
+
+      expect(second).to.deep.equal({fooData: 'foo'});
+      expect(second).not.to.equal(first);
+    });
+
+    it('should not send ETag after response without it', async() => {
+      responses.push({body: {fooData: 'foo'}, headers: {ETag: '"foo"'}},
+        {body: {fooData: 'bar'}}, {body: {fooData: 'bar'}});
+
+      await client.call('FooService', 'fooMethod');
+      await client.call('FooService', 'fooMethod');
+      await client.call('FooService', 'fooMethod');
+
+      expect(getIfNoneMatch()).to.be.null;
+    });
+
+    it('should reject on 304 without the last response', async() => {
+      responses.push({status: 304});
+
+      try {
+        await client.call('FooService', 'fooMethod');
+      } catch (err) {
+        expect(err).to.be.instanceOf(VaadinConnectError);
+        return;
+      }
+      expect.fail('should reject');
+    });
+
+    it('should forget the last responses on logout', async() => {
+      responses.push({body: {fooData: 'foo'}, headers: {ETag: '"foo"'}},
+        {body: {fooData: 'foo'}, headers: {ETag: '"foo"'}});
+
+      await client.call('FooService', 'fooMethod', undefined,
+        {requireCredentials: false});
+      await client.logout();
+      await client.call('FooService', 'fooMethod', undefined,
+        {requireCredentials: false});
+
+      expect(getIfNoneMatch()).to.be.null;
+    });
+  });
+
+  describe('codec', () => {
+    afterEach(() => fetchMock.restore());
+
+    // A codec that reverses the JSON text, to tell it apart from JSON
+    const reversed = text => text.split('').reverse().join('');
+    const reversingCodec = {
+      contentType: 'application/x-reversed',
+      encode: value => reversed(JSON.stringify(value)),
+      decode: body => JSON.parse(reversed(new TextDecoder().decode(body)))
+    };
+
+    let client;
+    beforeEach(() => client = new ConnectClient({codec: reversingCodec}));
+
+    it('should use JSON codec by default', () => {
+      expect(new ConnectClient().codec.contentType)
+        .to.equal('application/json');
+    });
+
+    it('should encode params with codec', async() => {
+      fetchMock.post('/connect/FooService/fooMethod', {
+        body: reversed('"foo"'),
+        headers: {'Content-Type': 'application/x-reversed'}
+      });
+
+      await client.call('FooService', 'fooMethod', {fooParam: 'foo'});
+
+      const request = fetchMock.lastCall().request;
+      expect(request.headers.get('Content-Type'))
+        .to.equal('application/x-reversed');
+      expect(request.headers.get('Accept')).to.equal('application/x-reversed');
+      expect(await request.text())
+        .to.equal(reversed('{"fooParam":"foo"}'));
+    });
+
+    it('should decode response with codec', async() => {
+      fetchMock.post('/connect/FooService/fooMethod', {
+        body: reversed('{"fooData":"foo"}'),
+        headers: {'Content-Type': 'application/x-reversed'}
+      });
+
+      const data = await client.call('FooService', 'fooMethod');
+
+      expect(data).to.deep.equal({fooData: 'foo'});
+    });
+
+    it('should decode JSON response as JSON', async() => {
+      fetchMock.post('/connect/FooService/fooMethod', {fooData: 'foo'});
+
+      const data = await client.call('FooService', 'fooMethod');
+
+      expect(data).to.deep.equal({fooData: 'foo'});
+    });
+
+    it('should send batch requests as JSON', async() => {
+      client.batch = true;
+      fetchMock.post('/connect/_batch', [
+        {status: 200, result: 'foo'},
+        {status: 200, result: 'bar'}
+      ]);
+
+      const results = await Promise.all([
+        client.call('FooService', 'fooMethod'),
+        client.call('BarService', 'barMethod')
+      ]);
+
+      expect(results).to.deep.equal(['foo', 'bar']);
+      expect(fetchMock.lastCall().request.headers.get('Content-Type'))
+        .to.equal('application/json');
+    });
+  });
+
   describe('login method', () => {
     let client;
 
@@ -441,6 +847,13 @@ describe('ConnectClient', () => {
     });
   });
 
+  describe('revokeEndpoint', () => {
+    it('should have default revokeEndpoint', () => {
+      expect(new ConnectClient())
+        .to.have.property('revokeEndpoint', '/oauth/revoke');
+    });
+  });
+
   describe('credentials', () => {
     let client;
     const vaadinEndpoint = '/connect/FooService/fooMethod';
@@ -808,6 +1221,7 @@ describe('ConnectClient', () => {
         describe('logout', () => {
           it('should remove tokens on logout', async() => {
             fetchMock.post(client.tokenEndpoint, generateOAuthJson);
+            fetchMock.post(client.revokeEndpoint, 204);
 
             await client.call('FooService', 'fooMethod');
             expect(await localStorage.getItem('vaadin.connect.refreshToken')).to.be.ok;
@@ -815,10 +1229,43 @@ describe('ConnectClient', () => {
             await client.logout();
             expect(await localStorage.getItem('vaadin.connect.refreshToken')).not.to.be.ok;
 
-            expect(fetchMock.calls().length).to.be.equal(2);
+            expect(fetchMock.calls().length).to.be.equal(3);
+
+            await client.call('FooService', 'fooMethod');
+            expect(fetchMock.calls().length).to.be.equal(5);
+          });
+
+          it('should revoke access token on logout', async() => {
+            const response = generateOAuthJson();
+            fetchMock.post(client.tokenEndpoint, response);
+            fetchMock.post(client.revokeEndpoint, 204);
 
             await client.call('FooService', 'fooMethod');
-            expect(fetchMock.calls().length).to.be.equal(4);
+            await client.logout();
+
+            const [url, {method, headers}] = fetchMock.lastCall(client.revokeEndpoint);
+            expect(method).to.equal('POST');
+            expect(url).to.equal('/oauth/revoke');
+            expect(headers).to.deep.equal({
+              'Authorization': `Bearer ${response.access_token}`
+            });
+          });
+
+          it('should remove tokens when revocation fails', async() => {
+            fetchMock.post(client.tokenEndpoint, generateOAuthJson);
+            fetchMock.post(client.revokeEndpoint, {throws: new TypeError('Failed to fetch')});
+
+            await client.call('FooService', 'fooMethod');
+            await client.logout();
+
+            expect(await localStorage.getItem('vaadin.connect.refreshToken')).not.to.be.ok;
+            expect(client.token).to.be.undefined;
+          });
+
+          it('should not revoke on logout without access token', async() => {
+            fetchMock.post(client.revokeEndpoint, 204);
+            await client.logout();
+            expect(fetchMock.called(client.revokeEndpoint)).to.be.false;
           });
 
           it('should abort pending token request on logout', async() => {
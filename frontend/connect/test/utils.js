@@ -15,6 +15,11 @@ if (intern.environment === 'node') {
     global.AbortController = require('abort-controller').AbortController;
   }
 
+  if (!global.TextDecoder) {
+    const {TextDecoder, TextEncoder} = require('util');
+    Object.assign(global, {TextDecoder, TextEncoder});
+  }
+
   if (!global.btoa) {
     /* global Buffer */
     global.btoa = str => Buffer.from(str).toString('base64');
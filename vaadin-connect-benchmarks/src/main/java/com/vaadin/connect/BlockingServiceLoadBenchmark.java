@@ -0,0 +1,174 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+
+import com.vaadin.connect.auth.AnonymousAllowed;
+
+/**
+ * Measures the throughput of 1000 concurrent calls to a service method that
+ * blocks for 50 ms, for instance, waiting for a database, with the service
+ * methods invoked in the request threads of the servlet container
+ * ({@code platform}), and in virtual threads ({@code virtual}). The result is
+ * reported in calls per second.
+ * <p>
+ * The application is started with the same Vaadin Connect auto-configuration as
+ * the demo application, and the default embedded Tomcat with 200 request
+ * threads. The anonymous access is used, so that no OAuth tokens are needed.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BlockingServiceLoadBenchmark {
+  private static final int CONCURRENT_CALLS = 1000;
+  private static final long BLOCKING_MILLIS = 50;
+
+  /**
+   * The service which method is called in the benchmark.
+   */
+  @VaadinService
+  public static class BlockingService {
+    @AnonymousAllowed
+    public String block() throws InterruptedException {
+      Thread.sleep(BLOCKING_MILLIS);
+      return "done";
+    }
+  }
+
+  /**
+   * The application to call the service of. The controller is imported
+   * explicitly, since the auto-configuration entries of the Spring Boot jars
+   * replace the Vaadin Connect one when merged into the benchmarks jar.
+   */
+  @Configuration
+  @EnableAutoConfiguration
+  @Import(VaadinConnectController.class)
+  public static class BenchmarkApplication
+      extends WebSecurityConfigurerAdapter {
+    @Bean
+    public BlockingService blockingService() {
+      return new BlockingService();
+    }
+
+    @Override
+    protected void configure(HttpSecurity http) throws Exception {
+      http.csrf().disable().authorizeRequests().anyRequest().permitAll();
+    }
+  }
+
+  @Param({ "platform", "virtual" })
+  public String executor;
+
+  private ConfigurableApplicationContext application;
+  private ExecutorService clients;
+  private URL serviceUrl;
+
+  @Setup
+  public void setUp() throws MalformedURLException {
+    application = new SpringApplicationBuilder(BenchmarkApplication.class)
+        .properties("server.port=0", "spring.main.banner-mode=off",
+            "vaadin.connect.executor=" + executor)
+        .run();
+    int port = ((WebServerApplicationContext) application).getWebServer()
+        .getPort();
+    serviceUrl = new URL(
+        "http://localhost:" + port + "/connect/BlockingService/block");
+    clients = Executors.newFixedThreadPool(CONCURRENT_CALLS);
+  }
+
+  @TearDown
+  public void tearDown() {
+    clients.shutdownNow();
+    application.close();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(CONCURRENT_CALLS)
+  public int concurrentBlockingCalls() throws Exception {
+    List<Future<Integer>> calls = new ArrayList<>(CONCURRENT_CALLS);
+    for (int i = 0; i < CONCURRENT_CALLS; i++) {
+      calls.add(clients.submit(this::callService));
+    }
+    int successfulCalls = 0;
+    for (Future<Integer> call : calls) {
+      if (call.get() == HttpURLConnection.HTTP_OK) {
+        successfulCalls++;
+      }
+    }
+    if (successfulCalls != CONCURRENT_CALLS) {
+      throw new IllegalStateException(String.format(
+          "Only %d of %d calls succeeded", successfulCalls, CONCURRENT_CALLS));
+    }
+    return successfulCalls;
+  }
+
+  private int callService() throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) serviceUrl
+        .openConnection();
+    connection.setRequestMethod("POST");
+    connection.setRequestProperty("Accept", "application/json");
+    connection.setRequestProperty("Content-Type", "application/json");
+    connection.setDoOutput(true);
+    connection.getOutputStream().close();
+    int status = connection.getResponseCode();
+    try (InputStream body = status < HttpURLConnection.HTTP_BAD_REQUEST
+        ? connection.getInputStream()
+        : connection.getErrorStream()) {
+      byte[] buffer = new byte[1024];
+      while (body != null && body.read(buffer) >= 0) {
+        // Read the whole body, so that the connection can be reused
+      }
+    }
+    return status;
+  }
+}
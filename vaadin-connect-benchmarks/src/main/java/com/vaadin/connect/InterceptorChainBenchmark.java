@@ -0,0 +1,80 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the overhead of the {@link VaadinServiceInterceptor} chain around a
+ * service method invocation with 0, 1 and 5 interceptors that proceed with the
+ * invocation, the way the controller invokes the methods.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InterceptorChainBenchmark {
+
+  /**
+   * The service which method is invoked in the benchmark.
+   */
+  public static class BenchmarkService {
+    public int oneParameter(int number) {
+      return number;
+    }
+  }
+
+  @Param({ "0", "1", "5" })
+  public int interceptorCount;
+
+  private final BenchmarkService service = new BenchmarkService();
+  private final Object[] arguments = { 1 };
+  private VaadinServiceMethod serviceMethod;
+  private VaadinServiceInterceptor[] interceptors;
+
+  @Setup
+  public void setUp() throws NoSuchMethodException {
+    serviceMethod = new VaadinServiceMethod(
+        BenchmarkService.class.getMethod("oneParameter", int.class));
+    interceptors = new VaadinServiceInterceptor[interceptorCount];
+    for (int i = 0; i < interceptorCount; i++) {
+      interceptors[i] = VaadinServiceInvocation::proceed;
+    }
+  }
+
+  @Benchmark
+  public Object invoke() throws Exception {
+    if (interceptors.length == 0) {
+      return serviceMethod.invoke(service, arguments);
+    }
+    return VaadinServiceInterceptorChain.create(interceptors,
+        "BenchmarkService", serviceMethod, service, arguments).invoke();
+  }
+}
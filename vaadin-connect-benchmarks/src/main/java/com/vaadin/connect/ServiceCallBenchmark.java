@@ -0,0 +1,327 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Negative;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.Positive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.vaadin.connect.auth.AnonymousAllowed;
+import com.vaadin.connect.auth.VaadinConnectAccessChecker;
+
+/**
+ * Measures the throughput of the service method calls served by
+ * {@link VaadinConnectController#serveVaadinService} end to end: the access
+ * check, reading and validating the parameters, invoking the method and writing
+ * its result, for a method without parameters, a method with a primitive
+ * parameter, a method with a nested validated bean parameter, and methods that
+ * receive and return collections of 1 MB and 10 MB of JSON.
+ * <p>
+ * The controller is called directly with mock servlet requests and responses,
+ * so that neither the servlet container nor the network are measured. The calls
+ * are anonymous, checked by the default access checker. The {@link #main}
+ * method runs the benchmark with the GC profiler, so that the allocation per
+ * call, which includes the request and response mocks, is reported by each run.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServiceCallBenchmark {
+  private static final String SERVICE_NAME = "BenchmarkService";
+
+  /**
+   * The bean with nested constraints, the same as the
+   * {@code DemoVaadinService.ComplexRequest} of the demo application.
+   */
+  public static class ComplexRequest {
+    @NotBlank
+    private final String name;
+    @Positive
+    private final int count;
+    @Valid
+    private final NestedClass nestedClass;
+
+    public ComplexRequest(@JsonProperty("name") String name,
+        @JsonProperty("count") int count,
+        @JsonProperty("nestedClass") NestedClass nestedClass) {
+      this.name = name;
+      this.count = count;
+      this.nestedClass = nestedClass;
+    }
+  }
+
+  /**
+   * The nested bean of the {@link ComplexRequest}.
+   */
+  public static class NestedClass {
+    @Negative
+    private final int nestedValue;
+
+    public NestedClass(@JsonProperty("nestedValue") int nestedValue) {
+      this.nestedValue = nestedValue;
+    }
+  }
+
+  /**
+   * The element of the collections sent and returned in the benchmark.
+   */
+  public static class Item {
+    private String name;
+    private int quantity;
+    private double price;
+
+    public Item() {
+      // Used by Jackson
+    }
+
+    public Item(String name, int quantity, double price) {
+      this.name = name;
+      this.quantity = quantity;
+      this.price = price;
+    }
+  }
+
+  /**
+   * The service which methods are called in the benchmark.
+   */
+  @VaadinService
+  @AnonymousAllowed
+  public static class BenchmarkService {
+    private final List<Item> items;
+
+    public BenchmarkService(List<Item> items) {
+      this.items = items;
+    }
+
+    public boolean isOk() {
+      return true;
+    }
+
+    public int addOne(int number) {
+      return number + 1;
+    }
+
+    public String complexRequest(ComplexRequest request) {
+      return request.name;
+    }
+
+    public int countItems(List<Item> items) {
+      return items.size();
+    }
+
+    public List<Item> getItems(int count) {
+      return items.subList(0, count);
+    }
+  }
+
+  /**
+   * The collection payload of 1 MB or 10 MB of JSON, only created for the
+   * benchmarks that send or return it.
+   */
+  @State(Scope.Benchmark)
+  public static class Payload {
+    @Param({ "1", "10" })
+    public int megabytes;
+
+    private byte[] itemsBody;
+    private byte[] countBody;
+
+    @Setup
+    public void setUp(ServiceCallBenchmark benchmark) throws IOException {
+      List<Item> items = createItems(megabytes * 1024 * 1024);
+      ByteArrayOutputStream body = new ByteArrayOutputStream();
+      try (JsonGenerator generator = createMapper().getFactory()
+          .createGenerator(body)) {
+        generator.writeStartObject();
+        generator.writeFieldName("items");
+        generator.writeObject(items);
+        generator.writeEndObject();
+      }
+      itemsBody = body.toByteArray();
+      countBody = String.format("{\"count\": %d}", items.size())
+          .getBytes(StandardCharsets.UTF_8);
+
+      benchmark.checkCall("countItems", itemsBody);
+      benchmark.checkCall("getItems", countBody);
+    }
+  }
+
+  private static final byte[] NO_PARAMETERS_BODY = "{}"
+      .getBytes(StandardCharsets.UTF_8);
+  private static final byte[] PRIMITIVE_BODY = "{\"number\": 41}"
+      .getBytes(StandardCharsets.UTF_8);
+  private static final byte[] COMPLEX_REQUEST_BODY = ("{\"request\": "
+      + "{\"name\": \"benchmark\", \"count\": 3, \"nestedClass\": {\"nestedValue\": -1}}}")
+          .getBytes(StandardCharsets.UTF_8);
+
+  private GenericApplicationContext context;
+  private VaadinConnectController controller;
+
+  /**
+   * Runs the benchmark with the GC profiler, applying the JMH command line
+   * options given.
+   *
+   * @param args
+   *          the JMH command line options
+   * @throws CommandLineOptionException
+   *           if the options are invalid
+   * @throws RunnerException
+   *           if the benchmark fails
+   */
+  public static void main(String[] args)
+      throws CommandLineOptionException, RunnerException {
+    new Runner(new OptionsBuilder().parent(new CommandLineOptions(args))
+        .include(ServiceCallBenchmark.class.getName())
+        .addProfiler(GCProfiler.class).build()).run();
+  }
+
+  @Setup
+  public void setUp() throws IOException {
+    SecurityContextHolder.setStrategyName(SecurityContextHolder.MODE_GLOBAL);
+    SecurityContextHolder.getContext().setAuthentication(
+        new AnonymousAuthenticationToken("benchmark", "anonymousUser",
+            AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS")));
+
+    BenchmarkService service = new BenchmarkService(
+        Collections.unmodifiableList(createItems(10 * 1024 * 1024)));
+    context = new GenericApplicationContext();
+    context.registerBean(BenchmarkService.class, () -> service);
+    context.refresh();
+    controller = new VaadinConnectController(createMapper(),
+        new VaadinConnectAccessChecker(), new VaadinServiceNameChecker(),
+        context);
+
+    checkCall("isOk", NO_PARAMETERS_BODY);
+    checkCall("addOne", PRIMITIVE_BODY);
+    checkCall("complexRequest", COMPLEX_REQUEST_BODY);
+  }
+
+  @TearDown
+  public void tearDown() {
+    context.close();
+    SecurityContextHolder.clearContext();
+    SecurityContextHolder
+        .setStrategyName(SecurityContextHolder.MODE_THREADLOCAL);
+  }
+
+  @Benchmark
+  public MockHttpServletResponse noParameters() throws IOException {
+    return call("isOk", NO_PARAMETERS_BODY);
+  }
+
+  @Benchmark
+  public MockHttpServletResponse primitiveParameter() throws IOException {
+    return call("addOne", PRIMITIVE_BODY);
+  }
+
+  @Benchmark
+  public MockHttpServletResponse validatedBeanParameter() throws IOException {
+    return call("complexRequest", COMPLEX_REQUEST_BODY);
+  }
+
+  @Benchmark
+  public MockHttpServletResponse receiveCollection(Payload payload)
+      throws IOException {
+    return call("countItems", payload.itemsBody);
+  }
+
+  @Benchmark
+  public MockHttpServletResponse returnCollection(Payload payload)
+      throws IOException {
+    return call("getItems", payload.countBody);
+  }
+
+  private MockHttpServletResponse call(String methodName, byte[] body)
+      throws IOException {
+    MockHttpServletRequest request = new MockHttpServletRequest("POST",
+        "/connect/" + SERVICE_NAME + "/" + methodName);
+    request.setContentType("application/json");
+    request.setContent(body);
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    controller.serveVaadinService(SERVICE_NAME, methodName, request, response);
+    return response;
+  }
+
+  private void checkCall(String methodName, byte[] body) throws IOException {
+    MockHttpServletResponse response = call(methodName, body);
+    if (response.getStatus() != 200) {
+      throw new IllegalStateException(
+          String.format("Service method '%s' call failed with status %d: %s",
+              methodName, response.getStatus(), response.getContentAsString()));
+    }
+  }
+
+  private static ObjectMapper createMapper() {
+    return new ObjectMapper().setVisibility(PropertyAccessor.ALL,
+        JsonAutoDetect.Visibility.ANY);
+  }
+
+  /**
+   * Creates the items which JSON takes about the number of the bytes given.
+   */
+  private static List<Item> createItems(int bytes) {
+    // An item is about 60 bytes of JSON, for instance:
+    // {"name":"item-123456","quantity":56,"price":123.25},
+    int count = bytes / 60;
+    List<Item> items = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      items.add(new Item("item-" + i, i % 100, i / 4.0));
+    }
+    return items;
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the reflective {@link Method#invoke(Object, Object...)} call with
+ * the precompiled invoker of {@link VaadinServiceMethod} for service methods
+ * with 0, 1 and 8 parameters.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServiceMethodInvocationBenchmark {
+
+  /**
+   * The service which methods are invoked in the benchmark.
+   */
+  public static class BenchmarkService {
+    public int noParameters() {
+      return 42;
+    }
+
+    public int oneParameter(int number) {
+      return number;
+    }
+
+    public int eightParameters(int number, long longNumber, double fraction,
+        boolean flag, String text, Integer boxedNumber, char character,
+        Object object) {
+      return number + text.length();
+    }
+  }
+
+  @Param({ "0", "1", "8" })
+  public int parameterCount;
+
+  private final BenchmarkService service = new BenchmarkService();
+  private Method method;
+  private VaadinServiceMethod serviceMethod;
+  private Object[] arguments;
+
+  @Setup
+  public void setUp() throws NoSuchMethodException {
+    switch (parameterCount) {
+    case 0:
+      method = BenchmarkService.class.getMethod("noParameters");
+      arguments = new Object[0];
+      break;
+    case 1:
+      method = BenchmarkService.class.getMethod("oneParameter", int.class);
+      arguments = new Object[] { 1 };
+      break;
+    case 8:
+      method = BenchmarkService.class.getMethod("eightParameters", int.class,
+          long.class, double.class, boolean.class, String.class,
+          Integer.class, char.class, Object.class);
+      arguments = new Object[] { 1, 2L, 3.0, true, "text", 4, 'c',
+          new Object() };
+      break;
+    default:
+      throw new IllegalStateException(
+          "Unsupported parameter count: " + parameterCount);
+    }
+    serviceMethod = new VaadinServiceMethod(method);
+  }
+
+  @Benchmark
+  public Object reflectiveInvoke() throws Exception {
+    return method.invoke(service, arguments);
+  }
+
+  @Benchmark
+  public Object precompiledInvoke() throws Exception {
+    return serviceMethod.invoke(service, arguments);
+  }
+}
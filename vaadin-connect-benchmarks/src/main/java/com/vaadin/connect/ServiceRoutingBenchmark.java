@@ -0,0 +1,101 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares looking up the service method of a call by lower casing the names
+ * and looking them up in the nested maps, as it was done before, with the
+ * {@link VaadinServiceRoutes} routing table, for 500 services with 20 methods
+ * each. The names of the calls are in a different case than the registered
+ * ones, as they are in the requests of the generated clients.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServiceRoutingBenchmark {
+  private static final int SERVICE_COUNT = 500;
+  private static final int METHOD_COUNT = 20;
+  private static final int CALL_COUNT = 1024;
+
+  private final Map<String, Map<String, Object>> services = new HashMap<>();
+  private VaadinServiceRoutes<Object> routes;
+  private final String[] serviceNames = new String[CALL_COUNT];
+  private final String[] methodNames = new String[CALL_COUNT];
+  private int call;
+
+  @Setup
+  public void setUp() {
+    for (int service = 0; service < SERVICE_COUNT; service++) {
+      Map<String, Object> methods = new HashMap<>();
+      for (int method = 0; method < METHOD_COUNT; method++) {
+        methods.put(("findItemsBy" + method).toLowerCase(Locale.ENGLISH),
+            new Object());
+      }
+      services.put(("Service" + service + "Data").toLowerCase(Locale.ENGLISH),
+          methods);
+    }
+    routes = new VaadinServiceRoutes<>(services);
+
+    for (int i = 0; i < CALL_COUNT; i++) {
+      serviceNames[i] = "Service" + (i * 7919 % SERVICE_COUNT) + "Data";
+      methodNames[i] = "findItemsBy" + (i % METHOD_COUNT);
+    }
+  }
+
+  @Benchmark
+  public Object lowerCaseMapLookup() {
+    int index = nextCall();
+    Map<String, Object> methods = services
+        .get(serviceNames[index].toLowerCase(Locale.ENGLISH));
+    if (methods == null) {
+      return null;
+    }
+    return Optional
+        .ofNullable(methods.get(methodNames[index].toLowerCase(Locale.ENGLISH)))
+        .orElse(null);
+  }
+
+  @Benchmark
+  public Object routingTableLookup() {
+    int index = nextCall();
+    return routes.get(serviceNames[index], methodNames[index]);
+  }
+
+  private int nextCall() {
+    call = (call + 1) & (CALL_COUNT - 1);
+    return call;
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect;
+
+import javax.validation.Valid;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares validating the parameters and the return value of a service method
+ * call with the validator on each call, with validating them according to the
+ * precomputed {@link VaadinServiceValidationPlan}, for a method without
+ * constraints and for a method with constrained parameters and return value.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidationPlanBenchmark {
+
+  /**
+   * A bean without constraints.
+   */
+  public static class Item {
+    public String name;
+    public int quantity;
+  }
+
+  /**
+   * A bean with constraints.
+   */
+  public static class ValidatedItem {
+    @NotNull
+    public String name;
+    @Min(1)
+    public int quantity;
+  }
+
+  /**
+   * The service which methods are validated in the benchmark.
+   */
+  public static class BenchmarkService {
+    public Item unconstrained(String text, Item item, int count) {
+      return item;
+    }
+
+    @NotNull
+    @Valid
+    public ValidatedItem constrained(@NotNull String text,
+        @Valid ValidatedItem item, @Min(0) int count) {
+      return item;
+    }
+  }
+
+  @Param({ "unconstrained", "constrained" })
+  public String methodName;
+
+  private final BenchmarkService service = new BenchmarkService();
+  private final Validator validator = Validation.buildDefaultValidatorFactory()
+      .getValidator();
+  private Method method;
+  private VaadinServiceValidationPlan plan;
+  private Object[] arguments;
+  private Object returnValue;
+
+  @Setup
+  public void setUp() {
+    Object item;
+    if ("unconstrained".equals(methodName)) {
+      Item unconstrainedItem = new Item();
+      unconstrainedItem.name = "item";
+      unconstrainedItem.quantity = 2;
+      item = unconstrainedItem;
+    } else {
+      ValidatedItem validatedItem = new ValidatedItem();
+      validatedItem.name = "item";
+      validatedItem.quantity = 2;
+      item = validatedItem;
+    }
+    for (Method serviceMethod : BenchmarkService.class.getMethods()) {
+      if (serviceMethod.getName().equals(methodName)) {
+        method = serviceMethod;
+      }
+    }
+    arguments = new Object[] { "text", item, 3 };
+    returnValue = item;
+    plan = VaadinServiceValidationPlan.create(validator,
+        VaadinServiceValidationPlan.createConstrainedTypes(validator),
+        BenchmarkService.class, method);
+  }
+
+  @Benchmark
+  public void validateEachCall(Blackhole blackhole) {
+    for (Object argument : arguments) {
+      blackhole.consume(validator.validate(argument));
+    }
+    blackhole.consume(validator.forExecutables().validateParameters(service,
+        method, arguments));
+    blackhole.consume(validator.forExecutables().validateReturnValue(service,
+        method, returnValue));
+  }
+
+  @Benchmark
+  public void validateWithPlan(Blackhole blackhole) {
+    for (int i = 0; i < arguments.length; i++) {
+      if (plan.validatesBean(i, arguments[i])) {
+        blackhole.consume(validator.validate(arguments[i]));
+      }
+    }
+    if (plan.validatesParameters()) {
+      blackhole.consume(validator.forExecutables().validateParameters(service,
+          method, arguments));
+    }
+    if (plan.validatesReturnValue(
+        VaadinServiceValidationPlan.VALIDATE_ALL_RETURN_VALUES)) {
+      blackhole.consume(validator.forExecutables().validateReturnValue(service,
+          method, returnValue));
+    }
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+
+/**
+ * Compares the time to encode and decode a numeric time series of 100 and 10000
+ * points in the formats the service methods can be called with: JSON, CBOR and
+ * Smile. The formats are created the same way the controller creates them, from
+ * the same mapper. The sizes of the encoded payloads are listed in the README
+ * of the benchmarks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WireFormatBenchmark {
+
+  /**
+   * A point of the time series sent in the benchmark.
+   */
+  public static class DataPoint {
+    public long timestamp;
+    public double value;
+    public int quality;
+  }
+
+  @Param({ "json", "cbor", "smile" })
+  public String format;
+
+  @Param({ "100", "10000" })
+  public int pointCount;
+
+  private List<DataPoint> points;
+  private ObjectWriter writer;
+  private ObjectReader reader;
+  private byte[] encoded;
+
+  @Setup
+  public void setUp() throws IOException {
+    ObjectMapper mapper = new ObjectMapper();
+    VaadinServiceWireFormat wireFormat = getWireFormat(mapper);
+    TypeReference<List<DataPoint>> type = new TypeReference<List<DataPoint>>() {
+    };
+    writer = mapper.writerFor(type).with(wireFormat.getFactory());
+    reader = mapper.readerFor(type).with(wireFormat.getFactory());
+
+    Random random = new Random(42);
+    long timestamp = 1546300800000L;
+    points = new ArrayList<>(pointCount);
+    for (int i = 0; i < pointCount; i++) {
+      DataPoint point = new DataPoint();
+      point.timestamp = timestamp + i * 1000L;
+      point.value = random.nextGaussian() * 100;
+      point.quality = random.nextInt(4);
+      points.add(point);
+    }
+    encoded = writer.writeValueAsBytes(points);
+  }
+
+  private VaadinServiceWireFormat getWireFormat(ObjectMapper mapper) {
+    String contentType;
+    switch (format) {
+    case "json":
+      contentType = MediaType.APPLICATION_JSON_UTF8_VALUE;
+      break;
+    case "cbor":
+      contentType = VaadinConnectController.APPLICATION_CBOR;
+      break;
+    case "smile":
+      contentType = VaadinConnectController.APPLICATION_SMILE;
+      break;
+    default:
+      throw new IllegalStateException("Unsupported format: " + format);
+    }
+    return VaadinServiceWireFormat.createFormats(mapper).stream()
+        .filter(wireFormat -> wireFormat.getContentType().equals(contentType))
+        .findFirst().orElseThrow(() -> new IllegalStateException(
+            "The format library is not on the classpath: " + format));
+  }
+
+  @Benchmark
+  public byte[] encode() throws IOException {
+    return writer.writeValueAsBytes(points);
+  }
+
+  @Benchmark
+  public List<DataPoint> decode() throws IOException {
+    return reader.readValue(encoded);
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect.auth;
+
+import javax.annotation.security.DenyAll;
+import javax.annotation.security.RolesAllowed;
+
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.OAuth2Request;
+
+/**
+ * Compares checking the access to a service method by looking up its security
+ * annotations on each call, as it was done before, with checking it against the
+ * access policy the {@link VaadinConnectAccessChecker} computes once per
+ * method, for a user with 1 and 50 granted authorities.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccessCheckerBenchmark {
+  private static final int ROLE_COUNT = 10;
+
+  /**
+   * The service which method access is checked in the benchmark.
+   */
+  public static class BenchmarkService {
+    @RolesAllowed({ "ROLE_0", "ROLE_1", "ROLE_2", "ROLE_3", "ROLE_4", "ROLE_5",
+        "ROLE_6", "ROLE_7", "ROLE_8", "ROLE_9" })
+    public void rolesAllowed() {
+    }
+  }
+
+  @Param({ "1", "50" })
+  public int authorityCount;
+
+  private final VaadinConnectAccessChecker accessChecker = new VaadinConnectAccessChecker();
+  private Method method;
+
+  @Setup
+  public void setUp() throws NoSuchMethodException {
+    method = BenchmarkService.class.getMethod("rolesAllowed");
+
+    List<GrantedAuthority> authorities = new ArrayList<>();
+    for (int i = 0; i < authorityCount; i++) {
+      authorities.add(new SimpleGrantedAuthority("ROLE_" + (i % ROLE_COUNT)));
+    }
+    OAuth2Request request = new OAuth2Request(Collections.emptyMap(),
+        "benchmark", authorities, true, Collections.singleton("read"), null,
+        null, null, null);
+    SecurityContextHolder.setStrategyName(SecurityContextHolder.MODE_GLOBAL);
+    SecurityContextHolder.getContext()
+        .setAuthentication(new OAuth2Authentication(request,
+            new UsernamePasswordAuthenticationToken("user", null,
+                authorities)));
+
+    if (accessChecker.check(method) != null
+        || annotationLookupCheck(method) != null) {
+      throw new IllegalStateException("Access is expected to be granted");
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    SecurityContextHolder.clearContext();
+    SecurityContextHolder.setStrategyName(null);
+  }
+
+  @Benchmark
+  public String annotationLookup() {
+    return annotationLookupCheck(method);
+  }
+
+  @Benchmark
+  public String accessPolicy() {
+    return accessChecker.check(method);
+  }
+
+  private String annotationLookupCheck(Method method) {
+    Authentication auth = SecurityContextHolder.getContext()
+        .getAuthentication();
+    AnnotatedElement entity = accessChecker.getSecurityTarget(method);
+    List<String> requestedAuthorities = auth.getAuthorities().stream()
+        .map(GrantedAuthority::getAuthority).collect(Collectors.toList());
+    if (entity.isAnnotationPresent(DenyAll.class)
+        || (!entity.isAnnotationPresent(AnonymousAllowed.class)
+            && !roleAllowed(entity.getAnnotation(RolesAllowed.class),
+                requestedAuthorities))) {
+      return "Unauthorized access to vaadin service";
+    }
+    return null;
+  }
+
+  private boolean roleAllowed(RolesAllowed rolesAllowed,
+      List<String> requestedAuthorities) {
+    if (rolesAllowed == null) {
+      return true;
+    }
+    Set<String> allowedRoles = new HashSet<>(
+        Arrays.asList(rolesAllowed.value()));
+    return allowedRoles.containsAll(requestedAuthorities);
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect.auth.server;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the revocation check that the {@link VaadinConnectTokenStore} makes
+ * in each request, for a token that is not revoked, which the Bloom filter
+ * rejects, and for a revoked one, which is confirmed from the exact set, with
+ * 100 and 10000 revoked tokens.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenRevocationBenchmark {
+  private static final int TOKEN_COUNT = 1024;
+
+  @Param({ "100", "10000" })
+  public int revokedCount;
+
+  private VaadinConnectTokenRevocationList revocationList;
+  private final String[] validTokenIds = new String[TOKEN_COUNT];
+  private final String[] revokedTokenIds = new String[TOKEN_COUNT];
+  private int index;
+
+  @Setup
+  public void setUp() {
+    revocationList = new VaadinConnectTokenRevocationList(10000,
+        new InProcessTokenRevocationReplicator());
+    long expiration = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+    for (int i = 0; i < revokedCount; i++) {
+      String tokenId = UUID.randomUUID().toString();
+      revocationList.revoke(tokenId, expiration);
+      revokedTokenIds[i % TOKEN_COUNT] = tokenId;
+    }
+    for (int i = 0; i < TOKEN_COUNT; i++) {
+      validTokenIds[i] = UUID.randomUUID().toString();
+      if (revokedTokenIds[i] == null) {
+        revokedTokenIds[i] = revokedTokenIds[i % revokedCount];
+      }
+    }
+  }
+
+  @Benchmark
+  public boolean validToken() {
+    index = (index + 1) & (TOKEN_COUNT - 1);
+    return revocationList.isRevoked(validTokenIds[index]);
+  }
+
+  @Benchmark
+  public boolean revokedToken() {
+    index = (index + 1) & (TOKEN_COUNT - 1);
+    return revocationList.isRevoked(revokedTokenIds[index]);
+  }
+}
@@ -31,15 +31,19 @@ import java.util.stream.Collectors;
 import org.apache.maven.artifact.DependencyResolutionRequiredException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 
+import com.vaadin.connect.VaadinServiceIndex;
 import com.vaadin.connect.plugin.generator.OpenApiSpecGenerator;
 
 /**
  * Generates the OpenAPI specification file based on the application contents.
  * Uses the {@link VaadinConnectMojoBase#applicationProperties} to read the data
  * needed for the generation and generates the file into the *
- * {@link VaadinConnectMojoBase#openApiJsonFile} path.
+ * {@link VaadinConnectMojoBase#openApiJsonFile} path. Also generates the index
+ * of the services into the {@link #serviceIndexFile} path, which the
+ * application uses to find its services without scanning for them.
  *
  * @see <a href="https://github.com/OAI/OpenAPI-Specification">OpenAPI
  *      specification</a>
@@ -47,6 +51,10 @@ import com.vaadin.connect.plugin.generator.OpenApiSpecGenerator;
 @Mojo(name = "generate-openapi-spec", defaultPhase = LifecyclePhase.COMPILE, requiresDependencyResolution = ResolutionScope.COMPILE_PLUS_RUNTIME)
 public class OpenApiSpecGeneratorMojo extends VaadinConnectMojoBase {
 
+  @Parameter(defaultValue = "${project.build.outputDirectory}/"
+      + VaadinServiceIndex.RESOURCE_NAME, required = true)
+  private File serviceIndexFile;
+
   @Override
   public void execute() {
     try {
@@ -55,9 +63,11 @@ public class OpenApiSpecGeneratorMojo extends VaadinConnectMojoBase {
       URL[] urlsForClassLoader = getUrls();
       try (
           URLClassLoader classLoader = new URLClassLoader(urlsForClassLoader)) {
-        new OpenApiSpecGenerator(readApplicationProperties())
-            .generateOpenApiSpec(sourcesPaths, classLoader,
-                openApiJsonFile.toPath());
+        OpenApiSpecGenerator generator = new OpenApiSpecGenerator(
+            readApplicationProperties());
+        generator.generateOpenApiSpec(sourcesPaths, classLoader,
+            openApiJsonFile.toPath());
+        generator.generateServiceIndex(classLoader, serviceIndexFile.toPath());
       }
     } catch (DependencyResolutionRequiredException e) {
       throw new IllegalStateException(
@@ -36,7 +36,9 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.CompletionStage;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.github.javaparser.ParseResult;
@@ -103,6 +105,9 @@ import com.vaadin.connect.auth.AnonymousAllowed;
  */
 public class OpenApiObjectGenerator {
   public static final String EXTENSION_VAADIN_CONNECT_PARAMETERS_DESCRIPTION = "x-vaadin-parameters-description";
+  public static final String MEDIA_TYPE_NDJSON = "application/x-ndjson";
+  public static final String MEDIA_TYPE_EVENT_STREAM = "text/event-stream";
+  private static final String PUBLISHER_CLASS_NAME = "org.reactivestreams.Publisher";
 
   private static final String VAADIN_CONNECT_OAUTH2_SECURITY_SCHEME = "vaadin-connect-oauth2";
   private static final String VAADIN_CONNECT_OAUTH2_TOKEN_URL = "/oauth/token";
@@ -114,6 +119,7 @@ public class OpenApiObjectGenerator {
   private Map<String, ClassOrInterfaceDeclaration> nonServiceMap;
   private Map<String, PathItem> pathItems;
   private Set<String> generatedSchema;
+  private Set<String> serviceClassNames;
   private OpenAPI openApiModel;
   private final VaadinServiceNameChecker serviceNameChecker = new VaadinServiceNameChecker();
   private ClassLoader typeResolverClassLoader;
@@ -170,6 +176,19 @@ public class OpenApiObjectGenerator {
     return openApiModel;
   }
 
+  /**
+   * Gets the binary names of the service classes found while generating the
+   * Open API, generates it if necessary.
+   *
+   * @return the names of the service classes, sorted
+   */
+  public Set<String> getServiceClassNames() {
+    if (openApiModel == null) {
+      init();
+    }
+    return Collections.unmodifiableSet(serviceClassNames);
+  }
+
   OpenAPI generateOpenApi() {
     init();
     return openApiModel;
@@ -185,6 +204,7 @@ public class OpenApiObjectGenerator {
     pathItems = new TreeMap<>();
     usedTypes = new HashMap<>();
     generatedSchema = new HashSet<>();
+    serviceClassNames = new TreeSet<>();
     servicesJavadoc = new HashMap<>();
     schemaResolver = new SchemaResolver();
     ParserConfiguration parserConfiguration = createParserConfiguration();
@@ -293,6 +313,7 @@ public class OpenApiObjectGenerator {
       nonServiceMap.put(classDeclaration.resolve().getQualifiedName(),
           classDeclaration);
     } else {
+      serviceClassNames.add(getFullyQualifiedName(classDeclaration.resolve()));
       classDeclaration.getJavadoc().ifPresent(
           javadoc -> servicesJavadoc.put(classDeclaration.getNameAsString(),
               javadoc.getDescription().toText()));
@@ -543,9 +564,14 @@ public class OpenApiObjectGenerator {
         }
       }
     });
-    if (!methodDeclaration.getType().isVoidType()) {
+    if (!isVoidReturnType(methodDeclaration.getType())) {
       MediaType mediaItem = createReturnMediaType(methodDeclaration);
-      successfulContent.addMediaType("application/json", mediaItem);
+      if (getStreamElementType(methodDeclaration.getType()).isPresent()) {
+        successfulContent.addMediaType(MEDIA_TYPE_NDJSON, mediaItem);
+        successfulContent.addMediaType(MEDIA_TYPE_EVENT_STREAM, mediaItem);
+      } else {
+        successfulContent.addMediaType("application/json", mediaItem);
+      }
       successfulResponse.content(successfulContent);
     }
     return successfulResponse;
@@ -554,8 +580,17 @@ public class OpenApiObjectGenerator {
   private MediaType createReturnMediaType(MethodDeclaration methodDeclaration) {
     MediaType mediaItem = new MediaType();
     Type methodReturnType = methodDeclaration.getType();
-    Schema schema = parseTypeToSchema(methodReturnType, "");
-    if (methodDeclaration.isAnnotationPresent(NotNull.class)) {
+    Optional<ResolvedType> streamElementType = getStreamElementType(
+        methodReturnType);
+    Optional<ResolvedType> responseType = streamElementType.isPresent()
+        ? streamElementType
+        : getAsyncResultType(methodReturnType);
+    Schema schema = responseType.isPresent()
+        ? parseResolvedTypeToSchema(responseType.get(), methodReturnType)
+        : parseTypeToSchema(methodReturnType, "");
+    // Reactive streams do not allow null elements
+    if (methodDeclaration.isAnnotationPresent(NotNull.class)
+        || streamElementType.isPresent()) {
       schema.setNullable(false);
     }
     usedTypes.putAll(collectUsedTypesFromSchema(schema));
@@ -563,6 +598,61 @@ public class OpenApiObjectGenerator {
     return mediaItem;
   }
 
+  private boolean isVoidReturnType(Type methodReturnType) {
+    return methodReturnType.isVoidType() || getAsyncResultType(methodReturnType)
+        .filter(ResolvedType::isReferenceType)
+        .map(type -> type.asReferenceType().getQualifiedName())
+        .filter(Void.class.getName()::equals).isPresent();
+  }
+
+  /**
+   * Gets the type of the value that an asynchronous service method responds
+   * with: the type argument of the {@link CompletionStage} that the method
+   * returns.
+   *
+   * @param methodReturnType
+   *          the return type of the service method
+   * @return the type argument of the {@link CompletionStage}, or an empty
+   *         optional, if the method does not return a {@link CompletionStage}
+   */
+  private Optional<ResolvedType> getAsyncResultType(Type methodReturnType) {
+    return getTypeArgument(methodReturnType, CompletionStage.class.getName());
+  }
+
+  /**
+   * Gets the type of the elements that a streaming service method responds
+   * with: the type argument of the reactive streams publisher that the method
+   * returns.
+   *
+   * @param methodReturnType
+   *          the return type of the service method
+   * @return the type argument of the publisher, or an empty optional, if the
+   *         method does not return a publisher
+   */
+  private Optional<ResolvedType> getStreamElementType(Type methodReturnType) {
+    return getTypeArgument(methodReturnType, PUBLISHER_CLASS_NAME);
+  }
+
+  private Optional<ResolvedType> getTypeArgument(Type methodReturnType,
+      String containerTypeName) {
+    if (!methodReturnType.isClassOrInterfaceType()) {
+      return Optional.empty();
+    }
+    ResolvedReferenceType resolvedType;
+    try {
+      resolvedType = methodReturnType.resolve().asReferenceType();
+    } catch (Exception e) {
+      return Optional.empty();
+    }
+    return Stream
+        .concat(Stream.of(resolvedType),
+            resolvedType.getAllAncestors().stream())
+        .filter(type -> containerTypeName.equals(type.getQualifiedName()))
+        .findFirst().map(ResolvedReferenceType::getTypeParametersMap)
+        .filter(typeParameters -> !typeParameters.isEmpty())
+        .map(typeParameters -> typeParameters.get(0).b);
+  }
+
   private RequestBody createRequestBody(MethodDeclaration methodDeclaration) {
     Map<String, String> paramsDescription = new HashMap<>();
     methodDeclaration.getJavadoc().ifPresent(javadoc -> {
@@ -630,6 +720,18 @@ public class OpenApiObjectGenerator {
     return schemaResolver.parseResolvedTypeToSchema(resolvedType);
   }
 
+  private Schema parseResolvedTypeToSchema(ResolvedType resolvedType,
+      Type javaType) {
+    try {
+      return parseResolvedTypeToSchema(resolvedType);
+    } catch (Exception e) {
+      getLogger().info(String.format(
+          "Can't resolve type '%s' for creating custom OpenAPI Schema. Using the default ObjectSchema instead.",
+          javaType.asString()), e);
+    }
+    return new ObjectSchema();
+  }
+
   @SuppressWarnings("squid:S1872")
   private List<Schema> parseReferencedTypeAsSchema(
       ResolvedReferenceType resolvedType) {
@@ -740,7 +842,8 @@ public class OpenApiObjectGenerator {
 
   private Class<?> getClassFromReflection(ResolvedReferenceType resolvedType)
       throws ClassNotFoundException {
-    String fullyQualifiedName = getFullyQualifiedName(resolvedType);
+    String fullyQualifiedName = getFullyQualifiedName(
+        resolvedType.getTypeDeclaration());
     if (typeResolverClassLoader != null) {
       return Class.forName(fullyQualifiedName, true, typeResolverClassLoader);
     } else {
@@ -758,15 +861,13 @@ public class OpenApiObjectGenerator {
    * {@see Related discussion about FullyQualifiedName and CanonicalName:
    * https://github.com/javaparser/javaparser/issues/1480}
    * 
-   * @param resolvedReferenceType
-   *          the type to get fully qualified name
+   * @param typeDeclaration
+   *          the type declaration to get fully qualified name
    * @return fully qualified name
    *
    */
   private String getFullyQualifiedName(
-      ResolvedReferenceType resolvedReferenceType) {
-    ResolvedReferenceTypeDeclaration typeDeclaration = resolvedReferenceType
-        .getTypeDeclaration();
+      ResolvedReferenceTypeDeclaration typeDeclaration) {
     String packageName = typeDeclaration.getPackageName();
     String canonicalName = typeDeclaration.getQualifiedName();
     if (StringUtils.isBlank(packageName)) {
@@ -16,8 +16,13 @@
 
 package com.vaadin.connect.plugin.generator;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import io.swagger.v3.core.util.Json;
 import io.swagger.v3.oas.models.OpenAPI;
@@ -26,6 +31,8 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.vaadin.connect.VaadinServiceIndex;
+
 import static com.vaadin.connect.plugin.generator.GeneratorUtils.DEFAULT_ENDPOINT;
 import static com.vaadin.connect.plugin.generator.GeneratorUtils.ENDPOINT;
 
@@ -97,6 +104,48 @@ public class OpenApiSpecGenerator {
     generateOpenApiSpec(sourcesPaths, specOutputFile);
   }
 
+  /**
+   * Generates the index of the services found by the previous
+   * {@link #generateOpenApiSpec(Collection, ClassLoader, Path)} call, so that
+   * the application does not need to scan for them when it starts. If a service
+   * class cannot be loaded, no index is written and any previously generated
+   * index is removed, so that the application falls back to scanning.
+   *
+   * @param classLoader
+   *          the ClassLoader which is able to load the service classes
+   * @param indexOutputFile
+   *          the target file to write the index to
+   * @see VaadinServiceIndex
+   */
+  public void generateServiceIndex(ClassLoader classLoader,
+      Path indexOutputFile) {
+    List<Class<?>> serviceClasses = new ArrayList<>();
+    for (String className : generator.getServiceClassNames()) {
+      try {
+        serviceClasses.add(Class.forName(className, false, classLoader));
+      } catch (ClassNotFoundException | LinkageError e) {
+        log.warn(
+            "Can't load the service class '{}', skipping the service index generation",
+            className, e);
+        deleteFile(indexOutputFile);
+        return;
+      }
+    }
+
+    log.info("Writing service index to {}", indexOutputFile);
+    GeneratorUtils.writeToFile(indexOutputFile,
+        VaadinServiceIndex.create(serviceClasses));
+  }
+
+  private void deleteFile(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      throw new UncheckedIOException(
+          String.format("Failed to delete the stale file '%s'", file), e);
+    }
+  }
+
   private OpenApiConfiguration extractOpenApiConfiguration(
       PropertiesConfiguration applicationProperties) {
     String endpoint = applicationProperties.getString(ENDPOINT,
@@ -23,10 +23,12 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import com.github.javaparser.resolution.declarations.ResolvedTypeParameterDeclaration;
 import com.github.javaparser.resolution.types.ResolvedPrimitiveType;
@@ -151,7 +153,8 @@ class SchemaResolver {
   }
 
   private boolean isCollectionType(ResolvedType type) {
-    return !type.isPrimitive() && isTypeOf(type, Collection.class);
+    return !type.isPrimitive() && isTypeOf(type, Collection.class,
+        Iterable.class, Stream.class, Iterator.class);
   }
 
   private boolean isMapType(ResolvedType type) {
@@ -15,18 +15,31 @@
  */
 package com.vaadin.connect.plugin.generator;
 
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+
 import org.apache.commons.configuration2.PropertiesConfiguration;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.commons.lang3.StringUtils;
 
 /**
  * This class generates token-signing-key and writes it back to the application
- * properties file.
+ * properties file. When an asymmetric token signing algorithm is configured, it
+ * generates the RSA or the elliptic curve key pair instead.
  */
 public class TokenSigningKeyGenerator {
 
   private static final int TOKEN_SIGNING_KEY_LENGTH = 6;
+  private static final int RSA_KEY_SIZE = 2048;
+  private static final String GENERATED_COMMENT = "\nThe token signing key is generated automatically by vaadin-connect-maven-plugin."
+      + "\nIt's highly recommended to use your own key in production.";
   static final String VAADIN_CONNECT_AUTH_TOKEN_SIGNING_KEY = "vaadin.connect.auth.token-signing-key";
+  static final String VAADIN_CONNECT_AUTH_TOKEN_SIGNING_ALGORITHM = "vaadin.connect.auth.token-signing-algorithm";
+  static final String VAADIN_CONNECT_AUTH_TOKEN_SIGNING_PRIVATE_KEY = "vaadin.connect.auth.token-signing-private-key";
+  static final String VAADIN_CONNECT_AUTH_TOKEN_SIGNING_PUBLIC_KEY = "vaadin.connect.auth.token-signing-public-key";
 
   private TokenSigningKeyGenerator() {
     // no implementation
@@ -34,8 +47,11 @@ public class TokenSigningKeyGenerator {
 
   /**
    * Generate a random token signing key and write it back to the giving
-   * properties configuration object if the key doesn't exist.
-   * 
+   * properties configuration object if the key doesn't exist. If the
+   * {@code RS256}, {@code ES256}, {@code ES384} or {@code ES512} token signing
+   * algorithm is configured, generate the key pair of the algorithm instead, if
+   * the private key doesn't exist.
+   *
    * @param propertiesConfiguration
    *          the properties configuration object which contains information of
    *          the application.properties
@@ -43,25 +59,88 @@ public class TokenSigningKeyGenerator {
    */
   public static PropertiesConfiguration generateTokenSigningKey(
       PropertiesConfiguration propertiesConfiguration) {
+    String algorithm = propertiesConfiguration
+        .getString(VAADIN_CONNECT_AUTH_TOKEN_SIGNING_ALGORITHM);
+    if (StringUtils.isNotBlank(algorithm)
+        && !"HS256".equals(algorithm.trim())) {
+      return generateTokenSigningKeyPair(propertiesConfiguration,
+          algorithm.trim());
+    }
     String tokenSigningKey = propertiesConfiguration
         .getString(VAADIN_CONNECT_AUTH_TOKEN_SIGNING_KEY);
     if (StringUtils.isNotBlank(tokenSigningKey)) {
       return propertiesConfiguration;
     }
-    String oldComment = StringUtils.defaultIfBlank(propertiesConfiguration
-        .getLayout().getComment(VAADIN_CONNECT_AUTH_TOKEN_SIGNING_KEY), "");
-    String comment = StringUtils.appendIfMissing(oldComment,
-        "\nThe token signing key is generated automatically by vaadin-connect-maven-plugin."
-            + "\nIt's highly recommended to use your own key in production.");
-    propertiesConfiguration.getLayout()
-        .setComment(VAADIN_CONNECT_AUTH_TOKEN_SIGNING_KEY, comment);
-    propertiesConfiguration.getLayout()
-        .setSeparator(VAADIN_CONNECT_AUTH_TOKEN_SIGNING_KEY, "=");
-
     String randomTokenSigningKey = RandomStringUtils
         .randomAlphanumeric(TOKEN_SIGNING_KEY_LENGTH);
-    propertiesConfiguration.setProperty(VAADIN_CONNECT_AUTH_TOKEN_SIGNING_KEY,
-        randomTokenSigningKey);
+    setGeneratedProperty(propertiesConfiguration,
+        VAADIN_CONNECT_AUTH_TOKEN_SIGNING_KEY, randomTokenSigningKey);
+    return propertiesConfiguration;
+  }
+
+  private static PropertiesConfiguration generateTokenSigningKeyPair(
+      PropertiesConfiguration propertiesConfiguration, String algorithm) {
+    String privateKey = propertiesConfiguration
+        .getString(VAADIN_CONNECT_AUTH_TOKEN_SIGNING_PRIVATE_KEY);
+    if (StringUtils.isNotBlank(privateKey)) {
+      return propertiesConfiguration;
+    }
+    KeyPair keyPair = generateKeyPair(algorithm);
+    setGeneratedProperty(propertiesConfiguration,
+        VAADIN_CONNECT_AUTH_TOKEN_SIGNING_PRIVATE_KEY,
+        Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded()));
+    setGeneratedProperty(propertiesConfiguration,
+        VAADIN_CONNECT_AUTH_TOKEN_SIGNING_PUBLIC_KEY,
+        Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()));
     return propertiesConfiguration;
   }
+
+  private static KeyPair generateKeyPair(String algorithm) {
+    try {
+      KeyPairGenerator generator;
+      switch (algorithm) {
+      case "RS256":
+        generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(RSA_KEY_SIZE);
+        break;
+      case "ES256":
+        generator = getEllipticCurveGenerator("secp256r1");
+        break;
+      case "ES384":
+        generator = getEllipticCurveGenerator("secp384r1");
+        break;
+      case "ES512":
+        generator = getEllipticCurveGenerator("secp521r1");
+        break;
+      default:
+        throw new IllegalStateException(String.format(
+            "Unsupported token signing algorithm '%s', the supported ones are "
+                + "HS256, RS256, ES256, ES384 and ES512",
+            algorithm));
+      }
+      return generator.generateKeyPair();
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException(String.format(
+          "Failed to generate the key pair of the '%s' token signing algorithm",
+          algorithm), e);
+    }
+  }
+
+  private static KeyPairGenerator getEllipticCurveGenerator(String curve)
+      throws GeneralSecurityException {
+    KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+    generator.initialize(new ECGenParameterSpec(curve));
+    return generator;
+  }
+
+  private static void setGeneratedProperty(
+      PropertiesConfiguration propertiesConfiguration, String key,
+      String value) {
+    String oldComment = StringUtils.defaultIfBlank(
+        propertiesConfiguration.getLayout().getComment(key), "");
+    String comment = StringUtils.appendIfMissing(oldComment, GENERATED_COMMENT);
+    propertiesConfiguration.getLayout().setComment(key, comment);
+    propertiesConfiguration.getLayout().setSeparator(key, "=");
+    propertiesConfiguration.setProperty(key, value);
+  }
 }
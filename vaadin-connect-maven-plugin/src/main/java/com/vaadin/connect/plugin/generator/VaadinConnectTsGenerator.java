@@ -25,6 +25,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -57,6 +58,7 @@ import io.swagger.v3.oas.models.media.MapSchema;
 import io.swagger.v3.oas.models.media.MediaType;
 import io.swagger.v3.oas.models.media.Schema;
 import io.swagger.v3.oas.models.parameters.RequestBody;
+import io.swagger.v3.oas.models.responses.ApiResponse;
 import io.swagger.v3.oas.models.tags.Tag;
 import io.swagger.v3.parser.core.models.AuthorizationValue;
 import io.swagger.v3.parser.core.models.ParseOptions;
@@ -88,6 +90,7 @@ public class VaadinConnectTsGenerator extends AbstractTypeScriptClientCodegen {
   private static final String EXTENSION_VAADIN_CONNECT_SHOW_TSDOC = "x-vaadin-connect-show-tsdoc";
   private static final String EXTENSION_VAADIN_CONNECT_METHOD_NAME = "x-vaadin-connect-method-name";
   private static final String EXTENSION_VAADIN_CONNECT_SERVICE_NAME = "x-vaadin-connect-service-name";
+  private static final String EXTENSION_VAADIN_CONNECT_STREAM = "x-vaadin-connect-stream";
   private static final String VAADIN_CONNECT_CLASS_DESCRIPTION = "vaadinConnectClassDescription";
   private static final String CLIENT_PATH_TEMPLATE_PROPERTY = "vaadinConnectDefaultClientPath";
   private static final Pattern PATH_REGEX = Pattern
@@ -448,10 +451,22 @@ public class VaadinConnectTsGenerator extends AbstractTypeScriptClientCodegen {
         .put(EXTENSION_VAADIN_CONNECT_METHOD_NAME, methodName);
     codegenOperation.getVendorExtensions()
         .put(EXTENSION_VAADIN_CONNECT_SERVICE_NAME, serviceName);
+    if (isStreamingOperation(operation)) {
+      codegenOperation.getVendorExtensions()
+          .put(EXTENSION_VAADIN_CONNECT_STREAM, true);
+    }
     validateOperationTags(path, httpMethod, operation);
     return codegenOperation;
   }
 
+  private boolean isStreamingOperation(Operation operation) {
+    return Optional.ofNullable(operation.getResponses())
+        .map(responses -> responses.get("200")).map(ApiResponse::getContent)
+        .map(content -> content
+            .containsKey(OpenApiObjectGenerator.MEDIA_TYPE_EVENT_STREAM))
+        .orElse(false);
+  }
+
   @Override
   public String getSchemaType(Schema schema) {
     if (isNullableWrapperSchema(schema)) {
@@ -19,10 +19,12 @@ import java.time.Instant;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import com.github.javaparser.resolution.declarations.ResolvedTypeParameterDeclaration;
 import com.github.javaparser.resolution.types.ResolvedArrayType;
@@ -121,6 +123,35 @@ public class SchemaResolverTest {
     Assert.assertTrue(schemaResolver.getFoundTypes().isEmpty());
   }
 
+  @Test
+  public void should_ReturnNullableArray_When_GivenTypeIsAStreamString() {
+    assertStringArraySchema(mockReferencedTypeOf(Stream.class));
+  }
+
+  @Test
+  public void should_ReturnNullableArray_When_GivenTypeIsAnIteratorString() {
+    assertStringArraySchema(mockReferencedTypeOf(Iterator.class));
+  }
+
+  @Test
+  public void should_ReturnNullableArray_When_GivenTypeIsAnIterableString() {
+    assertStringArraySchema(mockReferencedTypeOf(Iterable.class));
+  }
+
+  private void assertStringArraySchema(ResolvedType resolvedType) {
+    List<Pair<ResolvedTypeParameterDeclaration, ResolvedType>> pairs = Collections
+        .singletonList(new Pair<>(null, mockReferencedTypeOf(String.class)));
+    when(resolvedType.asReferenceType().getTypeParametersMap())
+        .thenReturn(pairs);
+
+    Schema schema = schemaResolver.parseResolvedTypeToSchema(resolvedType);
+
+    Assert.assertTrue(schema instanceof ArraySchema);
+    Assert.assertTrue(schema.getNullable());
+    Assert
+        .assertTrue(((ArraySchema) schema).getItems() instanceof StringSchema);
+  }
+
   @Test
   public void should_ReturnNotNullableBoolean_When_GivenTypeIsAPrimitiveBoolean() {
     ResolvedType resolvedType = mockPrimitiveTypeOf(
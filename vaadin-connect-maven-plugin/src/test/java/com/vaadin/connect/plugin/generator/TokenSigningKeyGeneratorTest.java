@@ -21,6 +21,15 @@ import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
 
 import org.apache.commons.configuration2.PropertiesConfiguration;
 import org.apache.commons.configuration2.ex.ConfigurationException;
@@ -32,7 +41,10 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import static com.vaadin.connect.plugin.generator.TokenSigningKeyGenerator.VAADIN_CONNECT_AUTH_TOKEN_SIGNING_ALGORITHM;
 import static com.vaadin.connect.plugin.generator.TokenSigningKeyGenerator.VAADIN_CONNECT_AUTH_TOKEN_SIGNING_KEY;
+import static com.vaadin.connect.plugin.generator.TokenSigningKeyGenerator.VAADIN_CONNECT_AUTH_TOKEN_SIGNING_PRIVATE_KEY;
+import static com.vaadin.connect.plugin.generator.TokenSigningKeyGenerator.VAADIN_CONNECT_AUTH_TOKEN_SIGNING_PUBLIC_KEY;
 
 /**
  * Token signing key generator test class
@@ -113,6 +125,86 @@ public class TokenSigningKeyGeneratorTest {
     Assert.assertTrue(readApplicationProperties().contains(importantComment));
   }
 
+  @Test
+  public void should_GenerateRsaKeyPair_When_RS256AlgorithmIsConfigured()
+      throws Exception {
+    mockProperties(VAADIN_CONNECT_AUTH_TOKEN_SIGNING_ALGORITHM + "=RS256");
+
+    generateAndSaveTokenSigningKey();
+
+    PublicKey publicKey = assertGeneratedKeyPair("RSA", "SHA256withRSA");
+    Assert.assertTrue(publicKey instanceof RSAPublicKey);
+    Assert.assertEquals(2048,
+        ((RSAPublicKey) publicKey).getModulus().bitLength());
+    Assert.assertNull(propertiesConfiguration
+        .getString(VAADIN_CONNECT_AUTH_TOKEN_SIGNING_KEY));
+  }
+
+  @Test
+  public void should_GenerateEllipticCurveKeyPair_When_ES384AlgorithmIsConfigured()
+      throws Exception {
+    mockProperties(VAADIN_CONNECT_AUTH_TOKEN_SIGNING_ALGORITHM + "=ES384");
+
+    generateAndSaveTokenSigningKey();
+
+    PublicKey publicKey = assertGeneratedKeyPair("EC", "SHA384withECDSA");
+    Assert.assertTrue(publicKey instanceof ECPublicKey);
+    Assert.assertEquals(384, ((ECPublicKey) publicKey).getParams().getCurve()
+        .getField().getFieldSize());
+  }
+
+  @Test
+  public void should_NotGenerateKeyPair_When_PrivateKeyIsDefined() {
+    String properties = VAADIN_CONNECT_AUTH_TOKEN_SIGNING_ALGORITHM + "=ES256\n"
+        + VAADIN_CONNECT_AUTH_TOKEN_SIGNING_PRIVATE_KEY + "=MyPr1vateK3y";
+    mockProperties(properties);
+
+    generateAndSaveTokenSigningKey();
+
+    Assert.assertEquals("MyPr1vateK3y", propertiesConfiguration
+        .getString(VAADIN_CONNECT_AUTH_TOKEN_SIGNING_PRIVATE_KEY));
+    Assert.assertNull(propertiesConfiguration
+        .getString(VAADIN_CONNECT_AUTH_TOKEN_SIGNING_PUBLIC_KEY));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void should_Fail_When_UnsupportedAlgorithmIsConfigured() {
+    mockProperties(VAADIN_CONNECT_AUTH_TOKEN_SIGNING_ALGORITHM + "=PS256");
+
+    generateAndSaveTokenSigningKey();
+  }
+
+  private PublicKey assertGeneratedKeyPair(String keyAlgorithm,
+      String signatureAlgorithm) throws Exception {
+    String properties = readApplicationProperties();
+    String privateKeyText = propertiesConfiguration
+        .getString(VAADIN_CONNECT_AUTH_TOKEN_SIGNING_PRIVATE_KEY);
+    String publicKeyText = propertiesConfiguration
+        .getString(VAADIN_CONNECT_AUTH_TOKEN_SIGNING_PUBLIC_KEY);
+    Assert.assertTrue(properties.contains(
+        VAADIN_CONNECT_AUTH_TOKEN_SIGNING_PRIVATE_KEY + "=" + privateKeyText));
+    Assert.assertTrue(properties.contains(
+        VAADIN_CONNECT_AUTH_TOKEN_SIGNING_PUBLIC_KEY + "=" + publicKeyText));
+
+    KeyFactory keyFactory = KeyFactory.getInstance(keyAlgorithm);
+    PrivateKey privateKey = keyFactory.generatePrivate(
+        new PKCS8EncodedKeySpec(Base64.getDecoder().decode(privateKeyText)));
+    PublicKey publicKey = keyFactory.generatePublic(
+        new X509EncodedKeySpec(Base64.getDecoder().decode(publicKeyText)));
+
+    byte[] data = "data".getBytes(StandardCharsets.UTF_8);
+    Signature signer = Signature.getInstance(signatureAlgorithm);
+    signer.initSign(privateKey);
+    signer.update(data);
+    byte[] signature = signer.sign();
+    Signature verifier = Signature.getInstance(signatureAlgorithm);
+    verifier.initVerify(publicKey);
+    verifier.update(data);
+    Assert.assertTrue("The generated keys should be a key pair",
+        verifier.verify(signature));
+    return publicKey;
+  }
+
   private void generateAndSaveTokenSigningKey() {
     TokenSigningKeyGenerator.generateTokenSigningKey(propertiesConfiguration);
     try {
@@ -23,6 +23,8 @@ import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -32,15 +34,17 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.stream.Stream;
 
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
@@ -71,6 +75,7 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Rule;
 import org.junit.rules.TemporaryFolder;
+import org.reactivestreams.Publisher;
 import org.slf4j.LoggerFactory;
 
 import com.vaadin.connect.VaadinService;
@@ -285,9 +290,22 @@ public abstract class AbstractServiceGenerationTest {
     assertNotNull("Every operation is expected to have a single '200' response",
         apiResponse);
 
-    if (expectedServiceMethod.getReturnType() != void.class) {
+    Class<?> expectedResponseType = getResponseType(expectedServiceMethod);
+    if (Publisher.class
+        .isAssignableFrom(expectedServiceMethod.getReturnType())) {
+      Content content = apiResponse.getContent();
+      assertEquals(
+          "Expecting newline-delimited JSON and event stream contents for a streaming method",
+          2, content.size());
+      assertSchema(
+          content.get(OpenApiObjectGenerator.MEDIA_TYPE_NDJSON).getSchema(),
+          expectedResponseType);
+      assertNotNull(
+          content.get(OpenApiObjectGenerator.MEDIA_TYPE_EVENT_STREAM));
+    } else if (expectedResponseType != void.class
+        && expectedResponseType != Void.class) {
       assertSchema(extractSchema(apiResponse.getContent()),
-          expectedServiceMethod.getReturnType());
+          expectedResponseType);
     } else {
       assertNull(String.format(
           "No response is expected to be present for void method '%s'",
@@ -306,6 +324,18 @@ public abstract class AbstractServiceGenerationTest {
     }
   }
 
+  private Class<?> getResponseType(Method serviceMethod) {
+    if (!CompletionStage.class.isAssignableFrom(serviceMethod.getReturnType())
+        && !Publisher.class.isAssignableFrom(serviceMethod.getReturnType())) {
+      return serviceMethod.getReturnType();
+    }
+    Type resultType = ((ParameterizedType) serviceMethod.getGenericReturnType())
+        .getActualTypeArguments()[0];
+    return resultType instanceof ParameterizedType
+        ? (Class<?>) ((ParameterizedType) resultType).getRawType()
+        : (Class<?>) resultType;
+  }
+
   private void assertRequestSchema(Schema requestSchema,
       Class<?>... parameterTypes) {
     Map<String, Schema> properties = requestSchema.getProperties();
@@ -367,7 +397,9 @@ public abstract class AbstractServiceGenerationTest {
           assertSchema(((ArraySchema) actualSchema).getItems(),
               expectedSchemaClass.getComponentType());
         } else {
-          assertTrue(Collection.class.isAssignableFrom(expectedSchemaClass));
+          assertTrue(Iterable.class.isAssignableFrom(expectedSchemaClass)
+              || Stream.class.isAssignableFrom(expectedSchemaClass)
+              || Iterator.class.isAssignableFrom(expectedSchemaClass));
         }
       } else if (actualSchema instanceof MapSchema) {
         assertTrue(Map.class.isAssignableFrom(expectedSchemaClass));
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect.plugin.generator.services.async;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import com.vaadin.connect.VaadinService;
+
+@VaadinService
+public class AsyncService {
+
+  /**
+   * Get a greeting asynchronously.
+   *
+   * @param name
+   *          the name to greet
+   * @return the greeting
+   */
+  public CompletableFuture<String> getGreeting(String name) {
+    return CompletableFuture.completedFuture("Hello, " + name);
+  }
+
+  public CompletionStage<List<Integer>> getNumbers() {
+    return CompletableFuture.completedFuture(null);
+  }
+
+  public CompletableFuture<Report> getReport() {
+    return CompletableFuture.completedFuture(new Report());
+  }
+
+  public CompletableFuture<Void> refresh() {
+    return CompletableFuture.completedFuture(null);
+  }
+
+  public static class Report {
+    private String title;
+    private int pageCount;
+  }
+}
@@ -16,6 +16,7 @@
 package com.vaadin.connect.plugin.generator.services.collectionservice;
 
 import java.util.ArrayList;
+import java.util.stream.Stream;
 
 import com.vaadin.connect.VaadinService;
 
@@ -43,6 +44,26 @@ public class CollectionService {
     return new ArrayList<>();
   }
 
+  /**
+   * Count the user names read as a stream.
+   *
+   * @param userNames
+   *          user names
+   * @return number of user names
+   */
+  public long countUserNames(Stream<String> userNames) {
+    return userNames.count();
+  }
+
+  /**
+   * Get the user names to write one by one.
+   *
+   * @return user names
+   */
+  public Stream<String> getUserNames() {
+    return Stream.empty();
+  }
+
   public static class Collection {
     private String collectionName;
     private String type;
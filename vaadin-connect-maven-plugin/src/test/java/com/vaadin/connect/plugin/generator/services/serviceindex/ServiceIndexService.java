@@ -0,0 +1,38 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect.plugin.generator.services.serviceindex;
+
+import java.util.List;
+
+import com.vaadin.connect.VaadinService;
+
+@VaadinService
+public class ServiceIndexService {
+
+  public String greet(String name) {
+    return "Hello, " + name;
+  }
+
+  public int sum(List<Integer> numbers, int initial) {
+    return numbers.stream().reduce(initial, Integer::sum);
+  }
+
+  @VaadinService
+  public static class NestedIndexService {
+    public void reset() {
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect.plugin.generator.services.serviceindex;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.commons.configuration2.PropertiesConfiguration;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.vaadin.connect.VaadinServiceIndex;
+import com.vaadin.connect.plugin.generator.OpenApiSpecGenerator;
+
+public class ServiceIndexTest {
+  @Rule
+  public TemporaryFolder outputDirectory = new TemporaryFolder();
+
+  private Path serviceIndexOutput;
+  private OpenApiSpecGenerator generator;
+
+  @Before
+  public void setUpGenerator() {
+    serviceIndexOutput = outputDirectory.getRoot().toPath()
+        .resolve(VaadinServiceIndex.RESOURCE_NAME);
+    generator = new OpenApiSpecGenerator(new PropertiesConfiguration());
+    generator.generateOpenApiSpec(
+        Collections.singletonList(Paths.get("src/test/java",
+            getClass().getPackage().getName().replace('.',
+                File.separatorChar))),
+        getClass().getClassLoader(),
+        outputDirectory.getRoot().toPath().resolve("openapi.json"));
+  }
+
+  @Test
+  public void should_WriteAllServices_When_GeneratingServiceIndex()
+      throws IOException {
+    generator.generateServiceIndex(getClass().getClassLoader(),
+        serviceIndexOutput);
+
+    Assert.assertEquals(
+        VaadinServiceIndex.create(Arrays.asList(ServiceIndexService.class,
+            ServiceIndexService.NestedIndexService.class)),
+        new String(Files.readAllBytes(serviceIndexOutput), "UTF-8"));
+  }
+
+  @Test
+  public void should_RemoveStaleIndex_When_ServiceClassCannotBeLoaded()
+      throws IOException {
+    generator.generateServiceIndex(getClass().getClassLoader(),
+        serviceIndexOutput);
+    Assert.assertTrue(serviceIndexOutput.toFile().exists());
+
+    try (URLClassLoader emptyClassLoader = new URLClassLoader(new URL[0],
+        null)) {
+      generator.generateServiceIndex(emptyClassLoader, serviceIndexOutput);
+    }
+
+    Assert.assertFalse(serviceIndexOutput.toFile().exists());
+  }
+}
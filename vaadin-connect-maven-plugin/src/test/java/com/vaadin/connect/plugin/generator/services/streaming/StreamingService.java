@@ -0,0 +1,44 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect.plugin.generator.services.streaming;
+
+import org.reactivestreams.Publisher;
+
+import com.vaadin.connect.VaadinService;
+
+@VaadinService
+public class StreamingService {
+
+  /**
+   * Find the search hits gradually.
+   *
+   * @param query
+   *          the search query
+   * @return the search hits
+   */
+  public Publisher<SearchHit> search(String query) {
+    return null;
+  }
+
+  public Publisher<String> getLogLines() {
+    return null;
+  }
+
+  public static class SearchHit {
+    private String title;
+    private double score;
+  }
+}
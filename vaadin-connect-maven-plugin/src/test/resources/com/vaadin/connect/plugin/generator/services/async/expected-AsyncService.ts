@@ -0,0 +1,27 @@
+// @ts-ignore
+import client from './connect-client.default';
+import Report from './com/vaadin/connect/plugin/generator/services/async/AsyncService/Report';
+
+/**
+ * Get a greeting asynchronously.
+ *
+ * @param name the name to greet
+ * Return the greeting
+ */
+export function getGreeting(
+  name: string | null
+): Promise<string | null> {
+  return client.call('AsyncService', 'getGreeting', {name});
+}
+
+export function getNumbers(): Promise<Array<number | null> | null> {
+  return client.call('AsyncService', 'getNumbers');
+}
+
+export function getReport(): Promise<Report | null> {
+  return client.call('AsyncService', 'getReport');
+}
+
+export function refresh(): Promise<void> {
+  return client.call('AsyncService', 'refresh');
+}
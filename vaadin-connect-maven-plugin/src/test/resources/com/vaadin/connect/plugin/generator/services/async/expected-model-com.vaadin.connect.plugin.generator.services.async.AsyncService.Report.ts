@@ -0,0 +1,4 @@
+export default interface Report {
+  pageCount: number;
+  title?: string | null;
+}
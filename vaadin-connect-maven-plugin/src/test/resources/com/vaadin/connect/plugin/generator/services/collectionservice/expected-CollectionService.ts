@@ -2,6 +2,18 @@
 import client from './connect-client.default';
 import Collection from './com/vaadin/connect/plugin/generator/services/collectionservice/CollectionService/Collection';
 
+/**
+ * Count the user names read as a stream.
+ *
+ * @param userNames user names
+ * Return number of user names
+ */
+export function countUserNames(
+  userNames: Array<string | null> | null
+): Promise<number> {
+  return client.call('CollectionService', 'countUserNames', {userNames});
+}
+
 /**
  * Get a collection by author name. The generator should not mix this type with the Java's Collection type.
  *
@@ -22,3 +34,12 @@ export function getCollectionByAuthor(
 export function getListOfUserName(): Promise<Array<string | null> | null> {
   return client.call('CollectionService', 'getListOfUserName');
 }
+
+/**
+ * Get the user names to write one by one.
+ *
+ * Return user names
+ */
+export function getUserNames(): Promise<Array<string | null> | null> {
+  return client.call('CollectionService', 'getUserNames');
+}
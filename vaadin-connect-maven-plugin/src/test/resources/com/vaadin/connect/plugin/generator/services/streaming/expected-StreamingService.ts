@@ -0,0 +1,19 @@
+// @ts-ignore
+import client from './connect-client.default';
+import SearchHit from './com/vaadin/connect/plugin/generator/services/streaming/StreamingService/SearchHit';
+
+export function getLogLines(): AsyncIterableIterator<string> {
+  return client.stream('StreamingService', 'getLogLines');
+}
+
+/**
+ * Find the search hits gradually.
+ *
+ * @param query the search query
+ * Return the search hits
+ */
+export function search(
+  query: string | null
+): AsyncIterableIterator<SearchHit> {
+  return client.stream('StreamingService', 'search', {query});
+}
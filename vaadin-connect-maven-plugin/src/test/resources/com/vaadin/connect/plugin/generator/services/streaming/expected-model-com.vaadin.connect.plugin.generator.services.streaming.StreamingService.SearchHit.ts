@@ -0,0 +1,4 @@
+export default interface SearchHit {
+  score: number;
+  title?: string | null;
+}
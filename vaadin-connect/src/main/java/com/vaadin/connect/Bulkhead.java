@@ -0,0 +1,83 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of the concurrent executions of the Vaadin Connect service
+ * method it is placed onto, or of all the methods of the service class it is
+ * placed onto, so that a slow method cannot take all the request threads of the
+ * application.
+ * <p>
+ * A call over the limit waits for a running one to complete, if there are less
+ * than {@link #maxQueuedCalls()} calls waiting already, for at most the
+ * {@link #maxWaitTime()}. Otherwise, the call is rejected with the
+ * {@code 503 Service Unavailable} status and the {@code Retry-After} header.
+ * The limit placed on a method takes precedence over the limit of its class,
+ * and the limits can be overridden with the {@code vaadin.connect.bulkheads}
+ * property, see {@link VaadinConnectProperties#getVaadinConnectBulkheads()}.
+ * <p>
+ * A call holds its place until it completes, which, for the asynchronous
+ * methods, is when the returned stage completes, and for the streaming methods,
+ * is when the returned publisher terminates or the client stops reading the
+ * stream.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.TYPE, ElementType.METHOD })
+public @interface Bulkhead {
+  /**
+   * The maximum number of the concurrent executions.
+   *
+   * @return the maximum number of the concurrent executions
+   */
+  int maxConcurrentCalls();
+
+  /**
+   * The maximum number of the calls waiting for a running call to complete.
+   * With the default {@code 0} value, the calls over the limit are rejected
+   * right away.
+   *
+   * @return the maximum number of the waiting calls
+   */
+  int maxQueuedCalls() default 0;
+
+  /**
+   * The maximum time for a call to wait, in the {@link #timeUnit()} units.
+   *
+   * @return the maximum time for a call to wait
+   */
+  long maxWaitTime() default 0;
+
+  /**
+   * The unit of the {@link #maxWaitTime()} value.
+   *
+   * @return the time unit
+   */
+  TimeUnit timeUnit() default TimeUnit.MILLISECONDS;
+
+  /**
+   * The number of seconds the client is advised to wait before retrying a
+   * rejected call, sent in the {@code Retry-After} header.
+   *
+   * @return the number of seconds to wait before retrying
+   */
+  long retryAfter() default 1;
+}
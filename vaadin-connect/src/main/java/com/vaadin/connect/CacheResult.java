@@ -0,0 +1,84 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the serialized response of the Vaadin Connect service method it is
+ * placed onto, so that the subsequent calls with the same parameters get the
+ * same response, without the method being invoked.
+ * <p>
+ * The responses are cached by the parameter values, regardless of the order of
+ * the properties in the parameter objects, and, if {@link #perUser()} is set,
+ * by the name of the user that calls the method. The access to the method is
+ * checked on each call, also when the response is cached. Only the successful
+ * responses are cached.
+ * <p>
+ * The cache is bounded by the number of the entries and, optionally, by the
+ * total size of the cached responses: the least recently used responses are
+ * evicted when a bound is exceeded. The cached responses can be evicted with
+ * {@link VaadinConnectController#evictCachedResults(String, String)}.
+ * <p>
+ * The annotation is not supported on the asynchronous and the streaming
+ * methods.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface CacheResult {
+  /**
+   * The time to keep a response in the cache, in the {@link #timeUnit()} units.
+   *
+   * @return the time to keep a response in the cache
+   */
+  long timeToLive() default 60;
+
+  /**
+   * The unit of the {@link #timeToLive()} value.
+   *
+   * @return the time unit
+   */
+  TimeUnit timeUnit() default TimeUnit.SECONDS;
+
+  /**
+   * The maximum number of the responses cached for the method.
+   *
+   * @return the maximum number of the cached responses
+   */
+  int maxEntries() default 1000;
+
+  /**
+   * The maximum total size of the responses cached for the method, in bytes of
+   * the serialized JSON. The default {@code 0} value means no size limit.
+   *
+   * @return the maximum total size of the cached responses
+   */
+  long maxBytes() default 0;
+
+  /**
+   * Whether the responses are cached separately for each user, by the name of
+   * the authenticated principal. Should be set if the response depends on the
+   * user that calls the method.
+   *
+   * @return {@code true} to cache the responses per user, {@code false} to
+   *         share them among all the users
+   */
+  boolean perUser() default false;
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the Vaadin Connect service method it is placed onto as idempotent: the
+ * method has no side effects, so the response for the same parameters only
+ * changes when the underlying data changes.
+ * <p>
+ * The successful responses of the idempotent methods are sent with a strong
+ * {@code ETag} header, which is a hash of the serialized response. When the
+ * request has an {@code If-None-Match} header matching the {@code ETag} of the
+ * response, the {@code 304 Not Modified} status is sent without the body, so
+ * that the clients polling the method do not download the same response again.
+ * The methods annotated with {@link CacheResult} are idempotent as well.
+ * <p>
+ * The annotation is not supported on the asynchronous and the streaming
+ * methods.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Idempotent {
+}
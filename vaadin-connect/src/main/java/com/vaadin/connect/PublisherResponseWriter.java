@@ -0,0 +1,358 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect;
+
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.web.context.request.async.DeferredResult;
+
+/**
+ * Writes the elements published by a streaming service method into the
+ * response, either as newline-delimited JSON, one element per line, or as
+ * server-sent events, one {@code data} event per element.
+ * <p>
+ * The elements are written by the threads of the stream executor, not by the
+ * threads of the publisher, since writing into the response blocks while the
+ * client does not read the data. The signals of the publisher are queued and
+ * written one at a time, in the order they are received. The elements are
+ * requested from the publisher one by one: the next element is requested only
+ * after the previous one is written and flushed into the response. So a slow
+ * client slows down the publisher, instead of blocking its threads or making
+ * the elements pile up in memory.
+ * <p>
+ * When server-sent events are used, an error that occurs after the first
+ * element is written is sent as an {@code error} event, and the successful end
+ * of the stream is marked with a {@code complete} event. Newline-delimited JSON
+ * has no way to report the errors, so the stream just ends.
+ * <p>
+ * The elements are written, and the request is completed on timeout, while
+ * holding the same lock, so the request is never completed while an element is
+ * being written by the stream executor thread.
+ * <p>
+ * The class refers to the reactive streams API, so it is only loaded when a
+ * streaming method is called.
+ */
+class PublisherResponseWriter implements Subscriber<Object> {
+  private final String serviceName;
+  private final String methodName;
+  private final VaadinServiceMethod serviceMethod;
+  private final VaadinConnectController.VaadinServiceData serviceData;
+  private final JsonFactory jsonFactory;
+  private final ObjectWriter errorWriter;
+  private final Function<Throwable, ResponseEntity<?>> errorHandler;
+  private final HttpServletResponse response;
+  private final boolean serverSentEvents;
+  private final DeferredResult<Object> deferredResult;
+  private final SecurityContext securityContext;
+  private final Executor writeExecutor;
+
+  private final Object lock = new Object();
+  private final Queue<Runnable> writes = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pendingWrites = new AtomicInteger();
+  private volatile Subscription subscription;
+  private volatile boolean done;
+  private JsonGenerator generator;
+
+  /**
+   * Creates a writer for the response of a single streaming method call.
+   *
+   * @param serviceName
+   *          the name of the service called
+   * @param methodName
+   *          the name of the method called
+   * @param serviceMethod
+   *          the method called
+   * @param serviceData
+   *          the data of the service called, to get the element writers from
+   * @param jsonFactory
+   *          the factory to create the JSON generator with
+   * @param errorWriter
+   *          the writer to serialize the error objects with
+   * @param errorHandler
+   *          the function to create the error response with, when the publisher
+   *          signals an error
+   * @param response
+   *          the response to write the elements into
+   * @param serverSentEvents
+   *          {@code true} to write the elements as server-sent events,
+   *          {@code false} for newline-delimited JSON
+   * @param deferredResult
+   *          the deferred result of the request, that is set when the stream
+   *          ends
+   * @param securityContext
+   *          the security context of the request, that is used when the
+   *          elements are serialized
+   * @param writeExecutor
+   *          the executor to write the elements in
+   */
+  PublisherResponseWriter(String serviceName, String methodName,
+      VaadinServiceMethod serviceMethod,
+      VaadinConnectController.VaadinServiceData serviceData,
+      JsonFactory jsonFactory, ObjectWriter errorWriter,
+      Function<Throwable, ResponseEntity<?>> errorHandler,
+      HttpServletResponse response, boolean serverSentEvents,
+      DeferredResult<Object> deferredResult, SecurityContext securityContext,
+      Executor writeExecutor) {
+    this.serviceName = serviceName;
+    this.methodName = methodName;
+    this.serviceMethod = serviceMethod;
+    this.serviceData = serviceData;
+    this.jsonFactory = jsonFactory;
+    this.errorWriter = errorWriter;
+    this.errorHandler = errorHandler;
+    this.response = response;
+    this.serverSentEvents = serverSentEvents;
+    this.deferredResult = deferredResult;
+    this.securityContext = securityContext;
+    this.writeExecutor = writeExecutor;
+  }
+
+  /**
+   * Subscribes to the publisher given. The subscription is cancelled when the
+   * request completes before the stream ends, for instance, when the client
+   * disconnects or the request times out.
+   *
+   * @param publisher
+   *          the publisher returned by the streaming method, not {@code null}
+   */
+  @SuppressWarnings("unchecked")
+  void subscribeTo(Object publisher) {
+    deferredResult.onTimeout(() -> {
+      getLogger().debug(
+          "Service '{}' method '{}' stream timed out, cancelling the subscription",
+          serviceName, methodName);
+      synchronized (lock) {
+        cancel();
+        deferredResult.setResult(null);
+      }
+    });
+    deferredResult.onCompletion(this::cancel);
+    ((Publisher<Object>) publisher).subscribe(this);
+  }
+
+  @Override
+  public void onSubscribe(Subscription subscription) {
+    this.subscription = subscription;
+    subscription.request(1);
+  }
+
+  @Override
+  public void onNext(Object element) {
+    if (done) {
+      return;
+    }
+    write(() -> {
+      synchronized (lock) {
+        if (done) {
+          return;
+        }
+        try {
+          writeElement(element);
+        } catch (IOException e) {
+          getLogger().debug(
+              "Failed to write service '{}' method '{}' stream element, cancelling the subscription",
+              serviceName, methodName, e);
+          cancel();
+          if (e instanceof JsonProcessingException) {
+            writeError(e);
+          } else {
+            deferredResult.setResult(null);
+          }
+          return;
+        }
+      }
+      subscription.request(1);
+    });
+  }
+
+  @Override
+  public void onError(Throwable error) {
+    if (done) {
+      return;
+    }
+    write(() -> {
+      synchronized (lock) {
+        if (!done) {
+          writeError(error);
+        }
+      }
+    });
+  }
+
+  @Override
+  public void onComplete() {
+    if (done) {
+      return;
+    }
+    write(() -> {
+      synchronized (lock) {
+        if (done) {
+          return;
+        }
+        done = true;
+        try {
+          JsonGenerator jsonGenerator = getGenerator();
+          if (serverSentEvents) {
+            jsonGenerator.writeRaw("event: complete\ndata:\n\n");
+          }
+          jsonGenerator.close();
+          deferredResult.setResult(null);
+        } catch (IOException e) {
+          deferredResult.setErrorResult(e);
+        }
+      }
+    });
+  }
+
+  /**
+   * Queues the write given, and starts writing the queued writes in the stream
+   * executor unless a thread is writing them already, so that the writes are
+   * done one at a time, in the order they are queued.
+   */
+  private void write(Runnable write) {
+    writes.add(write);
+    if (pendingWrites.getAndIncrement() != 0) {
+      return;
+    }
+    try {
+      writeExecutor.execute(this::runWrites);
+    } catch (RejectedExecutionException e) {
+      getLogger().warn(
+          "Service '{}' method '{}' stream cannot be written, cancelling the subscription",
+          serviceName, methodName, e);
+      synchronized (lock) {
+        cancel();
+        deferredResult.setErrorResult(e);
+      }
+    }
+  }
+
+  private void runWrites() {
+    do {
+      Runnable write = writes.poll();
+      try {
+        new DelegatingSecurityContextRunnable(write, securityContext).run();
+      } catch (RuntimeException e) {
+        getLogger().error("Service '{}' method '{}' stream write failed",
+            serviceName, methodName, e);
+        synchronized (lock) {
+          cancel();
+          deferredResult.setErrorResult(e);
+        }
+      }
+    } while (pendingWrites.decrementAndGet() != 0);
+  }
+
+  private void writeElement(Object element) throws IOException {
+    ObjectWriter writer = serviceData
+        .getWriter(serviceMethod.getResponseType(element))
+        .without(SerializationFeature.INDENT_OUTPUT)
+        .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    JsonGenerator jsonGenerator = getGenerator();
+    if (serverSentEvents) {
+      jsonGenerator.writeRaw("data: ");
+    }
+    writer.writeValue(jsonGenerator, element);
+    jsonGenerator.writeRaw(serverSentEvents ? "\n\n" : "\n");
+    jsonGenerator.flush();
+  }
+
+  private void writeError(Throwable error) {
+    done = true;
+    ResponseEntity<?> errorResult = errorHandler.apply(error);
+    try {
+      if (generator == null) {
+        // Nothing is sent yet, so the error can be sent as a regular response
+        response.setStatus(errorResult.getStatusCode().value());
+        response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+        JsonGenerator jsonGenerator = jsonFactory
+            .createGenerator(response.getOutputStream(), JsonEncoding.UTF8)
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        errorWriter.writeValue(jsonGenerator, errorResult.getBody());
+        jsonGenerator.close();
+      } else if (serverSentEvents) {
+        generator.writeRaw("event: error\ndata: ");
+        errorWriter.without(SerializationFeature.INDENT_OUTPUT)
+            .writeValue(generator, errorResult.getBody());
+        generator.writeRaw("\n\n");
+        generator.close();
+      } else {
+        generator.close();
+      }
+      deferredResult.setResult(null);
+    } catch (IOException e) {
+      deferredResult.setErrorResult(e);
+    }
+  }
+
+  /**
+   * Gets the generator to write the stream with, committing the response
+   * headers on the first call.
+   */
+  private JsonGenerator getGenerator() throws IOException {
+    if (generator == null) {
+      response.setStatus(HttpStatus.OK.value());
+      if (serverSentEvents) {
+        response.setContentType(MediaType.TEXT_EVENT_STREAM_VALUE);
+        response.setHeader("Cache-Control", "no-cache");
+      } else {
+        response.setContentType(VaadinConnectController.APPLICATION_NDJSON);
+      }
+      response.setCharacterEncoding("UTF-8");
+      generator = jsonFactory
+          .createGenerator(response.getOutputStream(), JsonEncoding.UTF8)
+          .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      generator.setRootValueSeparator(null);
+    }
+    return generator;
+  }
+
+  private void cancel() {
+    done = true;
+    Subscription currentSubscription = subscription;
+    if (currentSubscription != null) {
+      currentSubscription.cancel();
+    }
+  }
+
+  private static Logger getLogger() {
+    return LoggerFactory.getLogger(PublisherResponseWriter.class);
+  }
+}
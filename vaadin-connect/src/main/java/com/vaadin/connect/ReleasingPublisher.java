@@ -0,0 +1,121 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Wraps the publisher returned by a streaming service method, to run a task
+ * when the stream terminates, or the subscription is cancelled, for instance,
+ * to release the bulkhead permit of the call.
+ * <p>
+ * The class refers to the reactive streams API, so it is only loaded when a
+ * streaming method is called.
+ */
+class ReleasingPublisher implements Publisher<Object> {
+  private final Publisher<Object> publisher;
+  private final Runnable release;
+
+  /**
+   * Wraps the publisher given.
+   *
+   * @param publisher
+   *          the publisher returned by the streaming method, not {@code null}
+   * @param release
+   *          the task to run when the stream terminates or is cancelled, it can
+   *          be run more than once
+   */
+  @SuppressWarnings("unchecked")
+  ReleasingPublisher(Object publisher, Runnable release) {
+    this.publisher = (Publisher<Object>) publisher;
+    this.release = release;
+  }
+
+  @Override
+  public void subscribe(Subscriber<? super Object> subscriber) {
+    publisher.subscribe(new Subscriber<Object>() {
+      @Override
+      public void onSubscribe(Subscription subscription) {
+        subscriber.onSubscribe(new Subscription() {
+          @Override
+          public void request(long n) {
+            subscription.request(n);
+          }
+
+          @Override
+          public void cancel() {
+            try {
+              subscription.cancel();
+            } finally {
+              release.run();
+            }
+          }
+        });
+      }
+
+      @Override
+      public void onNext(Object element) {
+        subscriber.onNext(element);
+      }
+
+      @Override
+      public void onError(Throwable error) {
+        release.run();
+        subscriber.onError(error);
+      }
+
+      @Override
+      public void onComplete() {
+        release.run();
+        subscriber.onComplete();
+      }
+    });
+  }
+
+  /**
+   * Cancels the stream of a publisher that is not subscribed to, because its
+   * result is discarded, so that the resources held by the stream are released.
+   *
+   * @param publisher
+   *          the publisher returned by the streaming method, not {@code null}
+   */
+  @SuppressWarnings("unchecked")
+  static void discard(Object publisher) {
+    ((Publisher<Object>) publisher).subscribe(new Subscriber<Object>() {
+      @Override
+      public void onSubscribe(Subscription subscription) {
+        subscription.cancel();
+      }
+
+      @Override
+      public void onNext(Object element) {
+        // nothing is requested
+      }
+
+      @Override
+      public void onError(Throwable error) {
+        // the result is discarded
+      }
+
+      @Override
+      public void onComplete() {
+        // the result is discarded
+      }
+    });
+  }
+}
@@ -15,6 +15,8 @@
  */
 package com.vaadin.connect;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.ConstraintViolation;
 import javax.validation.Validation;
 import javax.validation.Validator;
@@ -24,40 +26,74 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Enumeration;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.JsonParserDelegate;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.jackson.JacksonProperties;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.DeferredResultProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.method.support.ModelAndViewContainer;
 
 import com.vaadin.connect.auth.VaadinConnectAccessChecker;
 import com.vaadin.connect.exception.VaadinConnectException;
@@ -93,38 +129,265 @@ public class VaadinConnectController {
    */
   public static final String VAADIN_SERVICE_MAPPER_BEAN_QUALIFIER = "vaadinServiceMapper";
 
+  /**
+   * The media type of the newline-delimited JSON, that the streaming service
+   * methods respond with, unless server-sent events are requested.
+   */
+  public static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+  /**
+   * The media type of the CBOR format, that the service methods can be called
+   * with, if the {@code jackson-dataformat-cbor} library is on the classpath.
+   */
+  public static final String APPLICATION_CBOR = "application/cbor";
+
+  /**
+   * The media type of the Smile format, that the service methods can be called
+   * with, if the {@code jackson-dataformat-smile} library is on the classpath.
+   */
+  public static final String APPLICATION_SMILE = "application/x-jackson-smile";
+
+  private static final int ITERATED_RESPONSE_FLUSH_INTERVAL = 100;
+  private static final long NO_TIMEOUT = -1;
+
   final Map<String, VaadinServiceData> vaadinServices = new HashMap<>();
+  private VaadinServiceRoutes<VaadinServiceRoute> routes;
 
   private final ObjectMapper vaadinServiceMapper;
+  private final List<VaadinServiceWireFormat> wireFormats;
   private final VaadinConnectAccessChecker accessChecker;
+  private final Executor serviceExecutor;
+  private final VaadinServiceBatchDispatcher batchDispatcher;
+  private final Executor streamExecutor;
+  private final long streamTimeout;
+  private final int returnValueSampleRate;
+  private final VaadinServiceInterceptor[] interceptors;
   private final Validator validator = Validation.buildDefaultValidatorFactory()
       .getValidator();
+  private final ClassValue<Boolean> constrainedTypes = VaadinServiceValidationPlan
+      .createConstrainedTypes(validator);
+  private volatile VaadinServiceCallTimer.Recorder callRecorder;
 
   static class VaadinServiceData {
+    private final String serviceName;
     private final Object vaadinServiceObject;
-    final Map<String, Method> methods = new HashMap<>();
+    private final ObjectMapper vaadinServiceMapper;
+    final Map<String, VaadinServiceMethod> methods = new HashMap<>();
+    final Map<Type, ObjectReader> readers = new ConcurrentHashMap<>();
+    final Map<Type, ObjectWriter> writers = new ConcurrentHashMap<>();
 
-    private VaadinServiceData(Object vaadinServiceObject,
+    private VaadinServiceData(String serviceName, Object vaadinServiceObject,
+        ObjectMapper vaadinServiceMapper, Validator validator,
+        ClassValue<Boolean> constrainedTypes,
+        Function<Method, VaadinServiceBulkhead> bulkheads,
         Method... serviceMethods) {
+      this.serviceName = serviceName;
       this.vaadinServiceObject = vaadinServiceObject;
-      Stream.of(serviceMethods)
-          .filter(method -> method.getDeclaringClass() != Object.class
-              && !method.isBridge())
-          .forEach(method -> methods
-              .put(method.getName().toLowerCase(Locale.ENGLISH), method));
+      this.vaadinServiceMapper = vaadinServiceMapper;
+      Stream.of(serviceMethods).filter(VaadinServiceIndex::isServiceMethod)
+          .forEach(method -> methods.put(
+              method.getName().toLowerCase(Locale.ENGLISH),
+              new VaadinServiceMethod(method,
+                  VaadinServiceValidationPlan.create(validator,
+                      constrainedTypes, vaadinServiceObject.getClass(), method),
+                  bulkheads.apply(method))));
     }
 
-    private Optional<Method> getMethod(String methodName) {
+    private Optional<VaadinServiceMethod> getMethod(String methodName) {
       return Optional.ofNullable(methods.get(methodName));
     }
 
     private Object getServiceObject() {
       return vaadinServiceObject;
     }
+
+    private ObjectReader getReader(Type type) {
+      return readers.computeIfAbsent(type, key -> vaadinServiceMapper
+          .readerFor(vaadinServiceMapper.getTypeFactory().constructType(key)));
+    }
+
+    ObjectWriter getWriter(Type type) {
+      return writers.computeIfAbsent(type, key -> vaadinServiceMapper
+          .writerFor(vaadinServiceMapper.getTypeFactory().constructType(key)));
+    }
+  }
+
+  /**
+   * The target of a call in the routing table: the service method together with
+   * the data of the service it is invoked on.
+   */
+  private static class VaadinServiceRoute {
+    private final VaadinServiceData serviceData;
+    private final VaadinServiceMethod method;
+
+    private VaadinServiceRoute(VaadinServiceData serviceData,
+        VaadinServiceMethod method) {
+      this.serviceData = serviceData;
+      this.method = method;
+    }
+  }
+
+  /**
+   * Narrows the numbers that do not fit into the requested integral type
+   * instead of failing, the same way as it is done when the numbers are read
+   * from a JSON tree, so that the parameters read from a stream are converted
+   * the same way as the ones read from a tree before.
+   */
+  private static class NarrowingNumberParser extends JsonParserDelegate {
+    private NarrowingNumberParser(JsonParser parser) {
+      super(parser);
+    }
+
+    @Override
+    public int getIntValue() throws IOException {
+      if (getNumberType() == NumberType.INT) {
+        return super.getIntValue();
+      }
+      return getNumberValue().intValue();
+    }
+
+    @Override
+    public long getLongValue() throws IOException {
+      NumberType numberType = getNumberType();
+      if (numberType == NumberType.INT || numberType == NumberType.LONG) {
+        return super.getLongValue();
+      }
+      return getNumberValue().longValue();
+    }
+  }
+
+  /**
+   * Iterates the value returned by an iterated method, and releases the
+   * bulkhead permit of the call when it is closed, that is, when the value is
+   * written or discarded.
+   */
+  private static class ReleasingIterator
+      implements Iterator<Object>, AutoCloseable {
+    private final VaadinServiceMethod method;
+    private final Object returnValue;
+    private final Iterator<?> elements;
+    private final Runnable release;
+
+    private ReleasingIterator(VaadinServiceMethod method, Object returnValue,
+        Runnable release) {
+      this.method = method;
+      this.returnValue = returnValue;
+      this.elements = method.iterate(returnValue);
+      this.release = release;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return elements.hasNext();
+    }
+
+    @Override
+    public Object next() {
+      return elements.next();
+    }
+
+    @Override
+    public void close() {
+      try {
+        method.closeIterated(returnValue);
+      } finally {
+        release.run();
+      }
+    }
+  }
+
+  private static class RequestParameters {
+    private final Object[] values;
+    private final Map<String, String> deserializationErrors = new HashMap<>();
+    private final Set<ConstraintViolation<Object>> constraintViolations = new LinkedHashSet<>();
+    private int count;
+
+    private RequestParameters(int parameterCount) {
+      values = new Object[parameterCount];
+    }
+  }
+
+  /**
+   * Provides the parser to read the method parameters from, either from the
+   * request body, or from a call of a batch request.
+   */
+  @FunctionalInterface
+  private interface ParametersSource {
+    JsonParser createParser() throws IOException;
   }
 
   /**
-   * A constructor used to initialize the controller.
+   * The settings of the controller that are configured in the Vaadin Connect
+   * properties. The defaults are the same as the defaults of the properties.
+   */
+  static class Settings {
+    private Executor serviceExecutor;
+    private Executor batchExecutor;
+    private int maxBatchCalls = VaadinConnectProperties.DEFAULT_BATCH_MAX_CALLS;
+    private Executor streamExecutor = VaadinServiceExecutors
+        .createStreamExecutor();
+    private long streamTimeout;
+    private int returnValueSampleRate = VaadinServiceValidationPlan.VALIDATE_ALL_RETURN_VALUES;
+    private Map<String, Integer> bulkheadLimits = Collections.emptyMap();
+
+    static Settings from(VaadinConnectProperties vaadinConnectProperties) {
+      return new Settings()
+          .serviceExecutor(VaadinServiceExecutors
+              .create(vaadinConnectProperties.getVaadinConnectExecutor()))
+          .batchExecutor(VaadinServiceExecutors.createBatchExecutor(
+              vaadinConnectProperties.getVaadinConnectBatchThreads()))
+          .maxBatchCalls(
+              vaadinConnectProperties.getVaadinConnectBatchMaxCalls())
+          .streamTimeout(
+              vaadinConnectProperties.getVaadinConnectStreamTimeout())
+          .returnValueSampleRate(
+              VaadinServiceValidationPlan.getReturnValueSampleRate(
+                  vaadinConnectProperties
+                      .getVaadinConnectReturnValueValidation(),
+                  vaadinConnectProperties
+                      .getVaadinConnectReturnValueSampleRate()))
+          .bulkheadLimits(VaadinServiceBulkhead.parseLimits(
+              vaadinConnectProperties.getVaadinConnectBulkheads()));
+    }
+
+    Settings serviceExecutor(Executor serviceExecutor) {
+      this.serviceExecutor = serviceExecutor;
+      return this;
+    }
+
+    Settings batchExecutor(Executor batchExecutor) {
+      this.batchExecutor = batchExecutor;
+      return this;
+    }
+
+    Settings maxBatchCalls(int maxBatchCalls) {
+      this.maxBatchCalls = maxBatchCalls;
+      return this;
+    }
+
+    Settings streamExecutor(Executor streamExecutor) {
+      this.streamExecutor = streamExecutor;
+      return this;
+    }
+
+    Settings streamTimeout(long streamTimeout) {
+      this.streamTimeout = streamTimeout;
+      return this;
+    }
+
+    Settings returnValueSampleRate(int returnValueSampleRate) {
+      this.returnValueSampleRate = returnValueSampleRate;
+      return this;
+    }
+
+    Settings bulkheadLimits(Map<String, Integer> bulkheadLimits) {
+      this.bulkheadLimits = bulkheadLimits;
+      return this;
+    }
+  }
+
+  /**
+   * A constructor used to initialize the controller with the default settings.
    *
    * @param vaadinServiceMapper
    *          optional bean to override the default {@link ObjectMapper} that is
@@ -145,46 +408,211 @@ public class VaadinConnectController {
       @Autowired(required = false) @Qualifier(VAADIN_SERVICE_MAPPER_BEAN_QUALIFIER) ObjectMapper vaadinServiceMapper,
       VaadinConnectAccessChecker accessChecker,
       VaadinServiceNameChecker serviceNameChecker, ApplicationContext context) {
+    this(vaadinServiceMapper, accessChecker, serviceNameChecker, context,
+        new Settings());
+  }
+
+  /**
+   * A constructor used to initialize the controller with the service executor
+   * and the batch request settings configured in the Vaadin Connect properties.
+   *
+   * @param vaadinServiceMapper
+   *          optional bean to override the default {@link ObjectMapper} that is
+   *          used for serializing and deserializing request and response bodies
+   *          Use
+   *          {@link VaadinConnectController#VAADIN_SERVICE_MAPPER_BEAN_QUALIFIER}
+   *          qualifier to override the mapper.
+   * @param accessChecker
+   *          the ACL checker to verify the service method access permissions
+   * @param serviceNameChecker
+   *          the service name checker to verify custom Vaadin Connect service
+   *          names
+   * @param context
+   *          Spring context to extract beans annotated with
+   *          {@link VaadinService} from
+   * @param vaadinConnectProperties
+   *          Vaadin Connect properties, to get the service executor mode, the
+   *          batch request settings, the stream timeout, the return value
+   *          validation mode and the bulkhead limits from
+   * @see VaadinConnectProperties#getVaadinConnectExecutor()
+   * @see VaadinConnectProperties#getVaadinConnectBatchThreads()
+   * @see VaadinConnectProperties#getVaadinConnectBatchMaxCalls()
+   * @see VaadinConnectProperties#getVaadinConnectStreamTimeout()
+   * @see VaadinConnectProperties#getVaadinConnectReturnValueValidation()
+   * @see VaadinConnectProperties#getVaadinConnectBulkheads()
+   */
+  @Autowired
+  public VaadinConnectController(
+      @Autowired(required = false) @Qualifier(VAADIN_SERVICE_MAPPER_BEAN_QUALIFIER) ObjectMapper vaadinServiceMapper,
+      VaadinConnectAccessChecker accessChecker,
+      VaadinServiceNameChecker serviceNameChecker, ApplicationContext context,
+      VaadinConnectProperties vaadinConnectProperties) {
+    this(vaadinServiceMapper, accessChecker, serviceNameChecker, context,
+        Settings.from(vaadinConnectProperties));
+  }
+
+  VaadinConnectController(ObjectMapper vaadinServiceMapper,
+      VaadinConnectAccessChecker accessChecker,
+      VaadinServiceNameChecker serviceNameChecker, ApplicationContext context,
+      Settings settings) {
     this.vaadinServiceMapper = vaadinServiceMapper != null ? vaadinServiceMapper
         : getDefaultObjectMapper(context);
+    this.wireFormats = VaadinServiceWireFormat
+        .createFormats(this.vaadinServiceMapper);
     this.accessChecker = accessChecker;
+    this.serviceExecutor = settings.serviceExecutor;
+    this.batchDispatcher = new VaadinServiceBatchDispatcher(
+        this.vaadinServiceMapper, settings.batchExecutor,
+        settings.maxBatchCalls, this::executeBatchCall);
+    this.streamExecutor = settings.streamExecutor;
+    this.streamTimeout = settings.streamTimeout;
+    this.returnValueSampleRate = settings.returnValueSampleRate;
+    this.interceptors = VaadinServiceInterceptorChain.getInterceptors(context);
 
-    context.getBeansWithAnnotation(VaadinService.class)
-        .forEach((name, serviceBean) -> {
-          // Check the bean type instead of the implementation type in
-          // case of e.g. proxies
-          Class<?> beanType = context.getType(name);
-          if (beanType == null) {
-            throw new IllegalStateException(String.format(
-                "Unable to determine a type for the bean with name '%s', "
-                    + "double check your bean configuration",
-                name));
-          }
+    Map<String, Integer> bulkheadLimits = settings.bulkheadLimits;
+    VaadinServiceIndex serviceIndex = VaadinServiceIndex
+        .load(getClassLoader(context));
+    if (serviceIndex == null) {
+      context.getBeansWithAnnotation(VaadinService.class)
+          .forEach((name, serviceBean) -> registerService(name, serviceBean,
+              getBeanType(context, name), null, serviceNameChecker,
+              bulkheadLimits));
+    } else {
+      registerIndexedServices(serviceIndex, context, serviceNameChecker,
+          bulkheadLimits);
+    }
+    updateRoutes();
+  }
 
-          String serviceName = Optional
-              .ofNullable(beanType.getAnnotation(VaadinService.class))
-              .map(VaadinService::value).filter(value -> !value.isEmpty())
-              .orElse(beanType.getSimpleName());
-          if (serviceName.isEmpty()) {
-            throw new IllegalStateException(String.format(
-                "A bean with name '%s' and type '%s' is annotated with '%s' "
-                    + "annotation but is an anonymous class hence has no name. ",
-                name, beanType, VaadinService.class)
-                + String.format(
-                    "Either modify the bean declaration so that it is not an "
-                        + "anonymous class or specify a service name in the '%s' annotation",
-                    VaadinService.class));
-          }
-          String validationError = serviceNameChecker.check(serviceName);
-          if (validationError != null) {
-            throw new IllegalStateException(
-                String.format("Service name '%s' is invalid, reason: '%s'",
-                    serviceName, validationError));
-          }
+  private static ClassLoader getClassLoader(ApplicationContext context) {
+    ClassLoader classLoader = context.getClassLoader();
+    return classLoader != null ? classLoader
+        : ClassUtils.getDefaultClassLoader();
+  }
 
-          vaadinServices.put(serviceName.toLowerCase(Locale.ENGLISH),
-              new VaadinServiceData(serviceBean, beanType.getMethods()));
-        });
+  private static Class<?> getBeanType(ApplicationContext context,
+      String beanName) {
+    // Check the bean type instead of the implementation type in case of e.g.
+    // proxies
+    Class<?> beanType = context.getType(beanName);
+    if (beanType == null) {
+      throw new IllegalStateException(String
+          .format("Unable to determine a type for the bean with name '%s', "
+              + "double check your bean configuration", beanName));
+    }
+    return beanType;
+  }
+
+  /**
+   * Registers the beans of the service classes listed in the build-time index
+   * with the methods listed in the index, so that their methods are not looked
+   * up with reflection. The methods of a service, which index is out of date,
+   * and the services that are not listed in the index, for instance, the ones
+   * of a library with no index, are looked up with reflection.
+   */
+  private void registerIndexedServices(VaadinServiceIndex serviceIndex,
+      ApplicationContext context, VaadinServiceNameChecker serviceNameChecker,
+      Map<String, Integer> bulkheadLimits) {
+    ClassLoader classLoader = getClassLoader(context);
+    Set<String> serviceBeanNames = new LinkedHashSet<>(
+        Arrays.asList(context.getBeanNamesForAnnotation(VaadinService.class)));
+    Set<String> registeredBeanNames = new HashSet<>();
+    for (String serviceClassName : serviceIndex.getServiceClassNames()) {
+      Class<?> serviceClass;
+      try {
+        serviceClass = ClassUtils.forName(serviceClassName, classLoader);
+      } catch (ClassNotFoundException | LinkageError e) {
+        getLogger().warn(
+            "Service class '{}' of the service index is not found, "
+                + "rebuild the application to update the index",
+            serviceClassName, e);
+        continue;
+      }
+      for (String beanName : context.getBeanNamesForType(serviceClass)) {
+        // Skip the subclasses that are not annotated, as the scanning does
+        if (!serviceBeanNames.contains(beanName)
+            || !registeredBeanNames.add(beanName)) {
+          continue;
+        }
+        Class<?> beanType = getBeanType(context, beanName);
+        Method[] methods;
+        try {
+          methods = serviceIndex.getMethods(serviceClassName, beanType);
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+          getLogger().warn(
+              "Service class '{}' does not match the service index, "
+                  + "rebuild the application to update the index",
+              serviceClassName, e);
+          methods = null;
+        }
+        registerService(beanName, context.getBean(beanName), beanType, methods,
+            serviceNameChecker, bulkheadLimits);
+      }
+    }
+    for (String beanName : serviceBeanNames) {
+      if (!registeredBeanNames.contains(beanName)) {
+        registerService(beanName, context.getBean(beanName),
+            getBeanType(context, beanName), null, serviceNameChecker,
+            bulkheadLimits);
+      }
+    }
+  }
+
+  /**
+   * Registers a service bean.
+   *
+   * @param methods
+   *          the service methods, or {@code null} to register all the public
+   *          methods of the bean type
+   */
+  private void registerService(String beanName, Object serviceBean,
+      Class<?> beanType, Method[] methods,
+      VaadinServiceNameChecker serviceNameChecker,
+      Map<String, Integer> bulkheadLimits) {
+    String serviceName = Optional
+        .ofNullable(beanType.getAnnotation(VaadinService.class))
+        .map(VaadinService::value).filter(value -> !value.isEmpty())
+        .orElse(beanType.getSimpleName());
+    if (serviceName.isEmpty()) {
+      throw new IllegalStateException(String.format(
+          "A bean with name '%s' and type '%s' is annotated with '%s' "
+              + "annotation but is an anonymous class hence has no name. ",
+          beanName, beanType, VaadinService.class)
+          + String.format(
+              "Either modify the bean declaration so that it is not an "
+                  + "anonymous class or specify a service name in the '%s' annotation",
+              VaadinService.class));
+    }
+    String validationError = serviceNameChecker.check(serviceName);
+    if (validationError != null) {
+      throw new IllegalStateException(
+          String.format("Service name '%s' is invalid, reason: '%s'",
+              serviceName, validationError));
+    }
+
+    VaadinServiceBulkhead serviceBulkhead = VaadinServiceBulkhead
+        .forService(serviceName, beanType, bulkheadLimits);
+    vaadinServices.put(serviceName.toLowerCase(Locale.ENGLISH),
+        new VaadinServiceData(serviceName, serviceBean,
+            this.vaadinServiceMapper, validator, constrainedTypes,
+            method -> VaadinServiceBulkhead.forMethod(serviceName, beanType,
+                method, bulkheadLimits, serviceBulkhead),
+            methods != null ? methods : beanType.getMethods()));
+  }
+
+  /**
+   * Rebuilds the routing table from the registered services, so that the
+   * changes of the {@link #vaadinServices} take effect.
+   */
+  void updateRoutes() {
+    Map<String, Map<String, VaadinServiceRoute>> serviceRoutes = new HashMap<>();
+    vaadinServices.forEach((serviceName, serviceData) -> {
+      Map<String, VaadinServiceRoute> methodRoutes = new HashMap<>();
+      serviceData.methods.forEach((methodName, method) -> methodRoutes
+          .put(methodName, new VaadinServiceRoute(serviceData, method)));
+      serviceRoutes.put(serviceName, methodRoutes);
+    });
+    routes = new VaadinServiceRoutes<>(serviceRoutes);
   }
 
   private ObjectMapper getDefaultObjectMapper(ApplicationContext context) {
@@ -222,106 +650,1066 @@ public class VaadinConnectController {
    *          the name of a service to address the calls to, not case sensitive
    * @param methodName
    *          the method name to execute on a service, not case sensitive
-   * @param body
-   *          optional request body, that should be specified if the method
-   *          called has parameters
-   * @return execution result as a JSON string or an error message string
-   */
-  @PostMapping(path = "/{service}/{method}", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-  public ResponseEntity<String> serveVaadinService(
-      @PathVariable("service") String serviceName,
-      @PathVariable("method") String methodName,
-      @RequestBody(required = false) ObjectNode body) {
-    getLogger().debug("Service: {}, method: {}, request body: {}", serviceName,
-        methodName, body);
+   * @param request
+   *          the request to read the method parameters from, the request body
+   *          is optional and should be specified if the method called has
+   *          parameters
+   * @param response
+   *          the response to write the execution result as a JSON or an error
+   *          message to
+   * @throws IOException
+   *           if writing the response fails
+   */
+  @PostMapping(path = "/{service}/{method}", produces = {
+      MediaType.APPLICATION_JSON_UTF8_VALUE, APPLICATION_NDJSON,
+      MediaType.TEXT_EVENT_STREAM_VALUE, APPLICATION_CBOR, APPLICATION_SMILE })
+  public void serveVaadinService(@PathVariable("service") String serviceName,
+      @PathVariable("method") String methodName, HttpServletRequest request,
+      HttpServletResponse response) throws IOException {
+    getLogger().debug("Service: {}, method: {}", serviceName, methodName);
 
-    VaadinServiceData vaadinServiceData = vaadinServices
-        .get(serviceName.toLowerCase(Locale.ENGLISH));
-    if (vaadinServiceData == null) {
-      getLogger().debug("Service '{}' not found", serviceName);
-      return ResponseEntity.notFound().build();
+    VaadinServiceRoute route = routes.get(serviceName, methodName);
+    if (route == null) {
+      if (isServiceRegistered(serviceName)) {
+        getLogger().debug("Method '{}' not found in service '{}'", methodName,
+            serviceName);
+      } else {
+        getLogger().debug("Service '{}' not found", serviceName);
+      }
+      response.setStatus(HttpStatus.NOT_FOUND.value());
+      return;
+    }
+    VaadinServiceData vaadinServiceData = route.serviceData;
+    VaadinServiceMethod methodToInvoke = route.method;
+    VaadinServiceCallTimer timer = createCallTimer(vaadinServiceData,
+        methodToInvoke);
+    HttpServletResponse callResponse = VaadinServiceCallTimer
+        .countResponseBytes(timer, response);
+    if (timer != null) {
+      recordCallOnAsyncCompletion(request, callResponse, timer);
+    }
+
+    if (serviceExecutor != null) {
+      invokeInServiceExecutor(serviceName, methodName, methodToInvoke,
+          vaadinServiceData, request, callResponse, timer);
+      return;
+    }
+    boolean isCompleted = false;
+    try {
+      invokeAndWriteResponse(serviceName, methodName, methodToInvoke,
+          vaadinServiceData, request, callResponse, null, timer);
+      isCompleted = true;
+    } finally {
+      if (!request.isAsyncStarted()) {
+        recordCall(timer, isCompleted ? callResponse.getStatus()
+            : HttpStatus.INTERNAL_SERVER_ERROR.value());
+      }
+    }
+  }
+
+  /**
+   * Sets the recorder to report the phase times and the body sizes of the
+   * service method calls with.
+   *
+   * @param callRecorder
+   *          the recorder of the calls, or {@code null} not to measure the
+   *          calls
+   */
+  void setCallRecorder(VaadinServiceCallTimer.Recorder callRecorder) {
+    this.callRecorder = callRecorder;
+  }
+
+  private VaadinServiceCallTimer createCallTimer(
+      VaadinServiceData vaadinServiceData, VaadinServiceMethod methodToInvoke) {
+    if (callRecorder == null) {
+      return null;
+    }
+    return new VaadinServiceCallTimer(vaadinServiceData.serviceName,
+        methodToInvoke.getMethod().getName());
+  }
+
+  /**
+   * Records the call when the request completes, if the request is put into the
+   * asynchronous mode, so that the status and the size of the response that is
+   * written when the asynchronous result is available are recorded, including
+   * the response written when the request times out.
+   */
+  private void recordCallOnAsyncCompletion(HttpServletRequest request,
+      HttpServletResponse response, VaadinServiceCallTimer timer) {
+    WebAsyncUtils.getAsyncManager(request).registerDeferredResultInterceptor(
+        VaadinServiceCallTimer.class,
+        new DeferredResultProcessingInterceptor() {
+          @Override
+          public <T> void afterCompletion(NativeWebRequest webRequest,
+              DeferredResult<T> deferredResult) {
+            recordCall(timer, response.getStatus());
+          }
+        });
+  }
+
+  private void recordCall(VaadinServiceCallTimer timer, int status) {
+    VaadinServiceCallTimer.Recorder recorder = callRecorder;
+    if (timer != null && recorder != null) {
+      recorder.record(timer, status);
+    }
+  }
+
+  /**
+   * Invokes the service method in the service executor, in the asynchronous
+   * mode of the request, so that the request thread is released while the
+   * method is running. The security context and the logging diagnostic context
+   * of the request are used in the executor thread.
+   */
+  private void invokeInServiceExecutor(String serviceName, String methodName,
+      VaadinServiceMethod methodToInvoke, VaadinServiceData vaadinServiceData,
+      HttpServletRequest request, HttpServletResponse response,
+      VaadinServiceCallTimer timer) {
+    VaadinServiceDeferredResult deferredResult = startDeferredResultProcessing(
+        serviceName, methodName, methodToInvoke, request);
+    Runnable invocation = () -> {
+      try {
+        invokeAndWriteResponse(serviceName, methodName, methodToInvoke,
+            vaadinServiceData, request, response, deferredResult, timer);
+      } catch (Exception e) {
+        deferredResult.setErrorResult(e);
+      }
+    };
+    try {
+      serviceExecutor.execute(new DelegatingSecurityContextRunnable(
+          withDiagnosticContext(invocation, MDC.getCopyOfContextMap()),
+          SecurityContextHolder.getContext()));
+    } catch (RejectedExecutionException e) {
+      deferredResult.setErrorResult(e);
+    }
+  }
+
+  static Runnable withDiagnosticContext(Runnable runnable,
+      Map<String, String> diagnosticContext) {
+    return () -> {
+      Map<String, String> previousContext = MDC.getCopyOfContextMap();
+      setDiagnosticContext(diagnosticContext);
+      try {
+        runnable.run();
+      } finally {
+        setDiagnosticContext(previousContext);
+      }
+    };
+  }
+
+  private static void setDiagnosticContext(
+      Map<String, String> diagnosticContext) {
+    if (diagnosticContext == null) {
+      MDC.clear();
+    } else {
+      MDC.setContextMap(diagnosticContext);
+    }
+  }
+
+  /**
+   * Captures and processes the Vaadin Connect batch requests, that execute
+   * several service method calls in one round trip.
+   * <p>
+   * The request body should be a JSON array of the calls, each call being a
+   * JSON object with the {@code service} and {@code method} names, and the
+   * optional {@code params} object with the method parameters, same as the body
+   * of a regular request. Each call is processed the same way as a regular
+   * request, including the access check. The calls are executed in the request
+   * thread one by one, unless the batch threads are configured, in which case
+   * the calls are executed in parallel.
+   * <p>
+   * The response is a JSON array with an entry for each call, in the order of
+   * the calls. Each entry has the {@code status} field with the HTTP status
+   * code the call would have as a regular request, and either the
+   * {@code result} field with the value returned by the method, or the
+   * {@code error} field with the error object. The results of the asynchronous
+   * methods are awaited by the request thread, once all the calls are started,
+   * the streaming methods cannot be called in a batch.
+   *
+   * @param request
+   *          the request to read the calls from
+   * @param response
+   *          the response to write the results of the calls into
+   * @throws IOException
+   *           if writing the response fails
+   * @see VaadinConnectProperties#getVaadinConnectBatchThreads()
+   * @see VaadinConnectProperties#getVaadinConnectBatchMaxCalls()
+   */
+  @PostMapping(path = "/_batch", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+  public void serveVaadinServiceBatch(HttpServletRequest request,
+      HttpServletResponse response) throws IOException {
+    batchDispatcher.dispatch(request, response);
+  }
+
+  private CompletableFuture<VaadinServiceBatchDispatcher.Result> executeBatchCall(
+      String serviceName, String methodName, JsonNode params) {
+    VaadinServiceRoute route = routes.get(serviceName, methodName);
+    if (route == null) {
+      String errorMessage = isServiceRegistered(serviceName)
+          ? String.format("Method '%s' not found in service '%s'", methodName,
+              serviceName)
+          : String.format("Service '%s' not found", serviceName);
+      return batchDispatcher.createCompletedErrorResult(HttpStatus.NOT_FOUND,
+          createResponseErrorObject(errorMessage));
+    }
+    VaadinServiceData vaadinServiceData = route.serviceData;
+    VaadinServiceMethod methodToInvoke = route.method;
+    VaadinServiceCallTimer timer = createCallTimer(vaadinServiceData,
+        methodToInvoke);
+    CompletableFuture<VaadinServiceBatchDispatcher.Result> result;
+    try {
+      result = executeBatchCall(serviceName, methodName, methodToInvoke,
+          vaadinServiceData, params, timer);
+    } catch (RuntimeException e) {
+      result = new CompletableFuture<>();
+      result.completeExceptionally(e);
+    }
+    return result.whenComplete((value, error) -> recordCall(timer,
+        error == null ? value.getStatus().value()
+            : HttpStatus.INTERNAL_SERVER_ERROR.value()));
+  }
+
+  private CompletableFuture<VaadinServiceBatchDispatcher.Result> executeBatchCall(
+      String serviceName, String methodName, VaadinServiceMethod methodToInvoke,
+      VaadinServiceData vaadinServiceData, JsonNode params,
+      VaadinServiceCallTimer timer) {
+    if (methodToInvoke.isStreaming()) {
+      return batchDispatcher.createCompletedErrorResult(HttpStatus.BAD_REQUEST,
+          createResponseErrorObject(String.format(
+              "Service '%s' method '%s' is streaming and cannot be called in a batch request",
+              serviceName, methodName)));
+    }
+
+    ParametersSource parametersSource = () -> vaadinServiceMapper
+        .treeAsTokens(params.isMissingNode() || params.isNull()
+            ? vaadinServiceMapper.createObjectNode()
+            : params);
+    if (methodToInvoke.getResultCache() != null) {
+      ResponseEntity<?> result = invokeCachedServiceMethod(serviceName,
+          methodName, methodToInvoke, parametersSource, vaadinServiceData,
+          wireFormats.get(0), timer);
+      if (result.getStatusCode() != HttpStatus.OK) {
+        return batchDispatcher.createCompletedErrorResult(
+            result.getStatusCode(), result.getBody());
+      }
+      String json = new String((byte[]) result.getBody(),
+          StandardCharsets.UTF_8);
+      try {
+        return CompletableFuture.completedFuture(batchDispatcher
+            .createValueResult(generator -> generator.writeRawValue(json)));
+      } catch (IOException unexpected) {
+        throw new IllegalStateException(
+            "Unexpected: Failed to buffer a serialized response", unexpected);
+      }
+    }
+
+    ResponseEntity<?> result = invokeVaadinServiceMethod(serviceName,
+        methodName, methodToInvoke, parametersSource, vaadinServiceData, timer);
+    if (result.getStatusCode() != HttpStatus.OK) {
+      return batchDispatcher.createCompletedErrorResult(result.getStatusCode(),
+          result.getBody());
     }
 
-    Method methodToInvoke = vaadinServiceData
-        .getMethod(methodName.toLowerCase(Locale.ENGLISH)).orElse(null);
-    if (methodToInvoke == null) {
-      getLogger().debug("Method '{}' not found in service '{}'", methodName,
-          serviceName);
-      return ResponseEntity.notFound().build();
+    Object returnValue = result.getBody();
+    if (!methodToInvoke.isAsync() || returnValue == null) {
+      return CompletableFuture
+          .completedFuture(createBatchValueResult(serviceName, methodName,
+              methodToInvoke, vaadinServiceData, returnValue, timer));
     }
+    // The result is serialized by the thread that completes the stage, with
+    // the security context of the request
+    CompletableFuture<VaadinServiceBatchDispatcher.Result> batchResult = new CompletableFuture<>();
+    SecurityContext securityContext = SecurityContextHolder.getContext();
+    ((CompletionStage<?>) returnValue).whenComplete((value, error) -> {
+      Runnable completion = () -> {
+        try {
+          batchResult
+              .complete(createBatchCompletionResult(serviceName, methodName,
+                  methodToInvoke, vaadinServiceData, value, error, timer));
+        } catch (RuntimeException e) {
+          batchResult.completeExceptionally(e);
+        }
+      };
+      new DelegatingSecurityContextRunnable(completion, securityContext).run();
+    });
+    return batchResult;
+  }
 
+  private VaadinServiceBatchDispatcher.Result createBatchCompletionResult(
+      String serviceName, String methodName, VaadinServiceMethod methodToInvoke,
+      VaadinServiceData vaadinServiceData, Object value, Throwable error,
+      VaadinServiceCallTimer timer) {
+    if (error == null) {
+      return createBatchValueResult(serviceName, methodName, methodToInvoke,
+          vaadinServiceData, value, timer);
+    }
+    Throwable cause = error instanceof CompletionException
+        && error.getCause() != null ? error.getCause() : error;
+    ResponseEntity<?> errorResult = handleMethodExecutionError(serviceName,
+        methodName, cause);
+    return batchDispatcher.createErrorResult(errorResult.getStatusCode(),
+        errorResult.getBody());
+  }
+
+  private VaadinServiceBatchDispatcher.Result createBatchValueResult(
+      String serviceName, String methodName, VaadinServiceMethod methodToInvoke,
+      VaadinServiceData vaadinServiceData, Object returnValue,
+      VaadinServiceCallTimer timer) {
+    boolean isIterated = methodToInvoke.isIterated() && returnValue != null;
+    ObjectWriter writer = vaadinServiceData
+        .getWriter(isIterated ? Iterator.class
+            : methodToInvoke.getResponseType(returnValue));
+    Object value = isIterated ? methodToInvoke.iterate(returnValue)
+        : returnValue;
+    long serializationStart = VaadinServiceCallTimer.start(timer);
     try {
-      return invokeVaadinServiceMethod(serviceName, methodName, methodToInvoke,
-          body, vaadinServiceData);
+      return batchDispatcher
+          .createValueResult(generator -> writer.writeValue(generator, value));
+    } catch (IOException e) {
+      String errorMessage = getSerializationErrorMessage(serviceName,
+          methodName);
+      getLogger().error(errorMessage, e);
+      return batchDispatcher.createErrorResult(HttpStatus.INTERNAL_SERVER_ERROR,
+          createResponseErrorObject(errorMessage));
+    } finally {
+      methodToInvoke.closeIterated(returnValue);
+      VaadinServiceCallTimer.stop(timer, VaadinServiceCallTimer.SERIALIZATION,
+          serializationStart);
+    }
+  }
+
+  /**
+   * Invokes the service method and writes its result.
+   *
+   * @param deferredResult
+   *          the deferred result of the request that is in the asynchronous
+   *          mode already, which is completed once the response is written, or
+   *          {@code null} if the request is not in the asynchronous mode
+   * @return {@code true} if the response is written completely, {@code false}
+   *         if the response is written later, when the asynchronous result of
+   *         the method is available, or not at all, because the request has
+   *         expired
+   */
+  private boolean invokeAndWriteResponse(String serviceName, String methodName,
+      VaadinServiceMethod methodToInvoke, VaadinServiceData vaadinServiceData,
+      HttpServletRequest request, HttpServletResponse response,
+      VaadinServiceDeferredResult deferredResult, VaadinServiceCallTimer timer)
+      throws IOException {
+    VaadinServiceWireFormat requestFormat = VaadinServiceWireFormat
+        .getRequestFormat(wireFormats, request);
+    if (requestFormat == null) {
+      return writeCompleteResponse(deferredResult, () -> writeErrorResponse(
+          response, HttpStatus.UNSUPPORTED_MEDIA_TYPE,
+          createResponseErrorObject(String.format(
+              "Service '%s' method '%s' request content type '%s' is not supported, "
+                  + "add the corresponding Jackson data format library to the classpath",
+              serviceName, methodName, request.getContentType()))));
+    }
+    VaadinServiceWireFormat responseFormat = VaadinServiceWireFormat
+        .getResponseFormat(wireFormats, request);
+    ParametersSource parametersSource = () -> requestFormat.getFactory()
+        .createParser(VaadinServiceCallTimer.countRequestBytes(timer,
+            request.getInputStream()));
+    ResponseEntity<?> result;
+    if (methodToInvoke.getResultCache() != null) {
+      result = invokeCachedServiceMethod(serviceName, methodName,
+          methodToInvoke, parametersSource, vaadinServiceData, responseFormat,
+          timer);
+    } else if (methodToInvoke.isIdempotent()) {
+      result = serializeResult(
+          serviceName, methodName, methodToInvoke, vaadinServiceData,
+          responseFormat, invokeVaadinServiceMethod(serviceName, methodName,
+              methodToInvoke, parametersSource, vaadinServiceData, timer),
+          timer);
+    } else {
+      result = invokeVaadinServiceMethod(serviceName, methodName,
+          methodToInvoke, parametersSource, vaadinServiceData, timer);
+    }
+    long serializationStart = VaadinServiceCallTimer.start(timer);
+    boolean isWritten;
+    if (deferredResult == null || isWrittenLater(methodToInvoke, result)) {
+      if (deferredResult != null && deferredResult.isSetOrExpired()) {
+        logExpiredResult(serviceName, methodName);
+        discardResult(methodToInvoke, result);
+        return false;
+      }
+      // The asynchronous and the streaming results guard their own writes
+      isWritten = writeResult(serviceName, methodName, methodToInvoke,
+          vaadinServiceData, request, response, responseFormat, deferredResult,
+          result);
+    } else {
+      isWritten = deferredResult.complete(() -> writeResult(serviceName,
+          methodName, methodToInvoke, vaadinServiceData, request, response,
+          responseFormat, deferredResult, result));
+      if (!isWritten) {
+        logExpiredResult(serviceName, methodName);
+        discardResult(methodToInvoke, result);
+      }
+    }
+    if (isWritten) {
+      VaadinServiceCallTimer.stop(timer, VaadinServiceCallTimer.SERIALIZATION,
+          serializationStart);
+    }
+    return isWritten;
+  }
+
+  /**
+   * Checks if the result is written later, when the asynchronous result of the
+   * method is available, or as the elements of the stream are published.
+   */
+  private static boolean isWrittenLater(VaadinServiceMethod methodToInvoke,
+      ResponseEntity<?> result) {
+    return result.getStatusCode() == HttpStatus.OK
+        && !methodToInvoke.isIdempotent() && result.getBody() != null
+        && (methodToInvoke.isAsync() || methodToInvoke.isStreaming());
+  }
+
+  /**
+   * Writes a complete response, and completes the request, if it is in the
+   * asynchronous mode, unless it has expired already.
+   *
+   * @return {@code true} if the response is written, {@code false} if the
+   *         request has expired
+   */
+  private static boolean writeCompleteResponse(
+      VaadinServiceDeferredResult deferredResult,
+      VaadinServiceDeferredResult.ResponseWriter writer) throws IOException {
+    if (deferredResult == null) {
+      writer.write();
+      return true;
+    }
+    return deferredResult.complete(writer);
+  }
+
+  private static void logExpiredResult(String serviceName, String methodName) {
+    getLogger().debug(
+        "Service '{}' method '{}' completed after the request had expired, the result is discarded",
+        serviceName, methodName);
+  }
+
+  /**
+   * Releases the resources held by the result of the service method invocation
+   * that is not written.
+   */
+  private static void discardResult(VaadinServiceMethod methodToInvoke,
+      ResponseEntity<?> result) {
+    if (methodToInvoke.isStreaming() && result.getBody() != null
+        && result.getStatusCode() == HttpStatus.OK) {
+      ReleasingPublisher.discard(result.getBody());
+    } else {
+      methodToInvoke.closeIterated(result.getBody());
+    }
+  }
+
+  /**
+   * Writes the result of the service method invocation.
+   *
+   * @return {@code true} if the response is written completely, {@code false}
+   *         if the response is written later, when the asynchronous result of
+   *         the method is available
+   */
+  private boolean writeResult(String serviceName, String methodName,
+      VaadinServiceMethod methodToInvoke, VaadinServiceData vaadinServiceData,
+      HttpServletRequest request, HttpServletResponse response,
+      VaadinServiceWireFormat responseFormat,
+      VaadinServiceDeferredResult deferredResult, ResponseEntity<?> result)
+      throws IOException {
+    if (result.getStatusCode() != HttpStatus.OK) {
+      result.getHeaders().forEach((name, values) -> values
+          .forEach(value -> response.addHeader(name, value)));
+      writeErrorResponse(response, result.getStatusCode(), result.getBody());
+      return true;
+    }
+
+    Object returnValue = result.getBody();
+    if (methodToInvoke.isIdempotent()) {
+      writeIdempotentResponse(request, response, responseFormat,
+          (byte[]) returnValue);
+      return true;
+    }
+    if (methodToInvoke.isAsync() && returnValue != null) {
+      return writeAsyncServiceResponse(serviceName, methodName, methodToInvoke,
+          vaadinServiceData, (CompletionStage<?>) returnValue, request,
+          response, responseFormat, deferredResult);
+    }
+    if (methodToInvoke.isStreaming() && returnValue != null) {
+      writeStreamingServiceResponse(serviceName, methodName, methodToInvoke,
+          vaadinServiceData, returnValue, request, response, deferredResult);
+      return false;
+    }
+    if (methodToInvoke.isIterated() && returnValue != null) {
+      writeIteratedServiceResponse(serviceName, methodName, methodToInvoke,
+          vaadinServiceData, response, responseFormat, returnValue);
+      return true;
+    }
+    writeServiceResponse(serviceName, methodName, methodToInvoke,
+        vaadinServiceData, response, responseFormat, returnValue);
+    return true;
+  }
+
+  /**
+   * Writes the elements of the value returned by an iterated service method as
+   * an array, one element at a time, as they are iterated, and flushes the
+   * response after each {@value #ITERATED_RESPONSE_FLUSH_INTERVAL} elements, so
+   * that the memory used does not depend on the number of the elements. The
+   * returned value is closed once the response is written, or fails to be
+   * written, for instance, when the client disconnects.
+   */
+  private void writeIteratedServiceResponse(String serviceName,
+      String methodName, VaadinServiceMethod methodToInvoke,
+      VaadinServiceData vaadinServiceData, HttpServletResponse response,
+      VaadinServiceWireFormat responseFormat, Object returnValue)
+      throws IOException {
+    try {
+      response.setStatus(HttpStatus.OK.value());
+      response.setContentType(responseFormat.getContentType());
+      JsonGenerator generator = responseFormat.getFactory()
+          .createGenerator(response.getOutputStream(), JsonEncoding.UTF8)
+          .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      generator.writeStartArray();
+      Iterator<?> elements = methodToInvoke.iterate(returnValue);
+      Type writerType = null;
+      ObjectWriter writer = null;
+      int elementCount = 0;
+      while (elements.hasNext()) {
+        Object element = elements.next();
+        Type elementType = methodToInvoke.getElementResponseType(element);
+        if (elementType != writerType) {
+          writer = vaadinServiceData.getWriter(elementType)
+              .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+          writerType = elementType;
+        }
+        writer.writeValue(generator, element);
+        if (++elementCount % ITERATED_RESPONSE_FLUSH_INTERVAL == 0) {
+          generator.flush();
+        }
+      }
+      generator.writeEndArray();
+      generator.close();
     } catch (JsonProcessingException e) {
-      String errorMessage = String.format(
-          "Failed to serialize service '%s' method '%s' response. "
-              + "Double check method's return type or specify a custom mapper bean with qualifier '%s'",
-          serviceName, methodName, VAADIN_SERVICE_MAPPER_BEAN_QUALIFIER);
+      String errorMessage = getSerializationErrorMessage(serviceName,
+          methodName);
       getLogger().error(errorMessage, e);
+      writeIterationError(response, errorMessage, e,
+          createResponseErrorObject(errorMessage),
+          HttpStatus.INTERNAL_SERVER_ERROR);
+    } catch (RuntimeException e) {
+      ResponseEntity<?> errorResult = handleMethodExecutionError(serviceName,
+          methodName, e);
+      writeIterationError(response,
+          String.format("Service '%s' method '%s' iteration failure",
+              serviceName, methodName),
+          e, errorResult.getBody(), errorResult.getStatusCode());
+    } finally {
+      methodToInvoke.closeIterated(returnValue);
+    }
+  }
+
+  private void writeIterationError(HttpServletResponse response,
+      String errorMessage, Exception e, Object error, HttpStatus status)
+      throws IOException {
+    if (response.isCommitted()) {
+      throw new IllegalStateException(errorMessage
+          + ". The response is already committed, so the error cannot be sent",
+          e);
+    }
+    response.resetBuffer();
+    writeErrorResponse(response, status, error);
+  }
+
+  /**
+   * Writes the elements published by a streaming service method as they arrive,
+   * in the asynchronous mode of the request. The elements are written as
+   * server-sent events, if the client accepts those, and as newline-delimited
+   * JSON otherwise.
+   */
+  private void writeStreamingServiceResponse(String serviceName,
+      String methodName, VaadinServiceMethod methodToInvoke,
+      VaadinServiceData vaadinServiceData, Object publisher,
+      HttpServletRequest request, HttpServletResponse response,
+      DeferredResult<Object> startedResult) {
+    DeferredResult<Object> deferredResult = startedResult != null
+        ? startedResult
+        : startDeferredResultProcessing(serviceName, methodName, methodToInvoke,
+            request);
+    new PublisherResponseWriter(serviceName, methodName, methodToInvoke,
+        vaadinServiceData, vaadinServiceMapper.getFactory(),
+        vaadinServiceMapper.writer(),
+        error -> handleMethodExecutionError(serviceName, methodName, error),
+        response, isEventStreamRequested(request), deferredResult,
+        SecurityContextHolder.getContext(), streamExecutor)
+            .subscribeTo(publisher);
+  }
+
+  private boolean isEventStreamRequested(HttpServletRequest request) {
+    String accept = request.getHeader(HttpHeaders.ACCEPT);
+    if (accept == null) {
+      return false;
+    }
+    try {
+      return MediaType.parseMediaTypes(accept).stream()
+          .anyMatch(MediaType.TEXT_EVENT_STREAM::includes);
+    } catch (InvalidMediaTypeException e) {
+      getLogger().debug("Failed to parse the accepted media types '{}'", accept,
+          e);
+      return false;
+    }
+  }
+
+  /**
+   * Puts the request into the asynchronous mode. The requests of the streaming
+   * methods have their own timeout, which is not limited by default, the other
+   * requests use the default timeout of the asynchronous requests.
+   */
+  private VaadinServiceDeferredResult startDeferredResultProcessing(
+      String serviceName, String methodName, VaadinServiceMethod methodToInvoke,
+      HttpServletRequest request) {
+    Long timeout = null;
+    if (methodToInvoke.isStreaming()) {
+      timeout = streamTimeout > 0 ? streamTimeout : NO_TIMEOUT;
+    }
+    VaadinServiceDeferredResult deferredResult = new VaadinServiceDeferredResult(
+        timeout);
+    // The response is written by the controller, so the request dispatched
+    // when the result is set is marked as handled already
+    ModelAndViewContainer handledRequestContainer = new ModelAndViewContainer();
+    handledRequestContainer.setRequestHandled(true);
+    try {
+      WebAsyncUtils.getAsyncManager(request).startDeferredResultProcessing(
+          deferredResult, handledRequestContainer);
+      return deferredResult;
+    } catch (Exception e) {
+      throw new IllegalStateException(String.format(
+          "Failed to start the asynchronous processing of service '%s' method '%s' request",
+          serviceName, methodName), e);
+    }
+  }
+
+  /**
+   * Writes the result of an asynchronous service method. If the stage returned
+   * is already completed, the result is written right away. Otherwise, the
+   * request is put into the asynchronous mode, so that the request thread is
+   * released, and the result is written by the thread that completes the stage,
+   * with the security context of the request.
+   *
+   * @return {@code true} if the result is written right away, {@code false}
+   *         otherwise
+   */
+  private boolean writeAsyncServiceResponse(String serviceName,
+      String methodName, VaadinServiceMethod methodToInvoke,
+      VaadinServiceData vaadinServiceData, CompletionStage<?> completionStage,
+      HttpServletRequest request, HttpServletResponse response,
+      VaadinServiceWireFormat responseFormat,
+      VaadinServiceDeferredResult startedResult) throws IOException {
+    if (completionStage instanceof CompletableFuture
+        && ((CompletableFuture<?>) completionStage).isDone()) {
+      Object value = null;
+      Throwable error = null;
       try {
-        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-            .body(createResponseErrorObject(errorMessage));
-      } catch (JsonProcessingException unexpected) {
-        throw new IllegalStateException(String.format(
-            "Unexpected: Failed to serialize a plain Java string '%s' into a JSON. "
-                + "Double check the provided mapper's configuration.",
-            errorMessage), unexpected);
+        value = ((CompletableFuture<?>) completionStage).join();
+      } catch (RuntimeException e) {
+        error = e;
       }
+      Object completedValue = value;
+      Throwable completedError = error;
+      return writeCompleteResponse(startedResult,
+          () -> writeCompletionResult(serviceName, methodName, methodToInvoke,
+              vaadinServiceData, response, responseFormat, completedValue,
+              completedError));
     }
+
+    VaadinServiceDeferredResult deferredResult = startedResult != null
+        ? startedResult
+        : startDeferredResultProcessing(serviceName, methodName, methodToInvoke,
+            request);
+    SecurityContext securityContext = SecurityContextHolder.getContext();
+    completionStage.whenComplete((value, error) -> {
+      Runnable completion = () -> completeDeferredResult(serviceName,
+          methodName, methodToInvoke, vaadinServiceData, response,
+          responseFormat, deferredResult, value, error);
+      new DelegatingSecurityContextRunnable(completion, securityContext).run();
+    });
+    return false;
   }
 
-  private ResponseEntity<String> invokeVaadinServiceMethod(String serviceName,
-      String methodName, Method methodToInvoke, ObjectNode body,
-      VaadinServiceData vaadinServiceData) throws JsonProcessingException {
-    String checkError = accessChecker.check(methodToInvoke);
-    if (checkError != null) {
-      return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-          .body(createResponseErrorObject(String.format(
-              "Service '%s' method '%s' request cannot be accessed, reason: '%s'",
-              serviceName, methodName, checkError)));
+  private void completeDeferredResult(String serviceName, String methodName,
+      VaadinServiceMethod methodToInvoke, VaadinServiceData vaadinServiceData,
+      HttpServletResponse response, VaadinServiceWireFormat responseFormat,
+      VaadinServiceDeferredResult deferredResult, Object value,
+      Throwable error) {
+    if (!deferredResult.complete(
+        () -> writeCompletionResult(serviceName, methodName, methodToInvoke,
+            vaadinServiceData, response, responseFormat, value, error))) {
+      logExpiredResult(serviceName, methodName);
+    }
+  }
+
+  private void writeCompletionResult(String serviceName, String methodName,
+      VaadinServiceMethod methodToInvoke, VaadinServiceData vaadinServiceData,
+      HttpServletResponse response, VaadinServiceWireFormat responseFormat,
+      Object value, Throwable error) throws IOException {
+    if (error == null) {
+      writeServiceResponse(serviceName, methodName, methodToInvoke,
+          vaadinServiceData, response, responseFormat, value);
+      return;
+    }
+    Throwable cause = error instanceof CompletionException
+        && error.getCause() != null ? error.getCause() : error;
+    ResponseEntity<?> errorResult = handleMethodExecutionError(serviceName,
+        methodName, cause);
+    writeErrorResponse(response, errorResult.getStatusCode(),
+        errorResult.getBody());
+  }
+
+  private void writeServiceResponse(String serviceName, String methodName,
+      VaadinServiceMethod methodToInvoke, VaadinServiceData vaadinServiceData,
+      HttpServletResponse response, VaadinServiceWireFormat responseFormat,
+      Object returnValue) throws IOException {
+    try {
+      writeResponse(response, HttpStatus.OK, responseFormat, vaadinServiceData
+          .getWriter(methodToInvoke.getResponseType(returnValue)), returnValue);
+    } catch (JsonProcessingException e) {
+      String errorMessage = getSerializationErrorMessage(serviceName,
+          methodName);
+      if (response.isCommitted()) {
+        throw new IllegalStateException(errorMessage
+            + ". The response is already committed, so the error cannot be sent",
+            e);
+      }
+      getLogger().error(errorMessage, e);
+      response.resetBuffer();
+      writeErrorResponse(response, HttpStatus.INTERNAL_SERVER_ERROR,
+          createResponseErrorObject(errorMessage));
+    }
+  }
+
+  /**
+   * Writes the serialized response of an idempotent method with a strong
+   * {@code ETag} header, or only the {@code 304 Not Modified} status and the
+   * header, if the {@code ETag} matches the {@code If-None-Match} header of the
+   * request.
+   */
+  private void writeIdempotentResponse(HttpServletRequest request,
+      HttpServletResponse response, VaadinServiceWireFormat responseFormat,
+      byte[] body) throws IOException {
+    String eTag = '"' + DigestUtils.md5DigestAsHex(body) + '"';
+    response.setHeader(HttpHeaders.ETAG, eTag);
+    if (isNoneMatchFailed(request, eTag)) {
+      response.setStatus(HttpStatus.NOT_MODIFIED.value());
+      return;
+    }
+    response.setStatus(HttpStatus.OK.value());
+    response.setContentType(responseFormat.getContentType());
+    response.setContentLength(body.length);
+    response.getOutputStream().write(body);
+  }
+
+  /**
+   * Checks if any of the entity tags of the {@code If-None-Match} request
+   * headers matches the {@code ETag} given. The weak comparison is used, as
+   * required for the {@code If-None-Match} header, so the weak tags sent by the
+   * proxies that modify the responses, for instance, by compressing them, match
+   * as well.
+   */
+  private static boolean isNoneMatchFailed(HttpServletRequest request,
+      String eTag) {
+    Enumeration<String> headers = request.getHeaders(HttpHeaders.IF_NONE_MATCH);
+    while (headers != null && headers.hasMoreElements()) {
+      for (String tag : StringUtils
+          .commaDelimitedListToStringArray(headers.nextElement())) {
+        String trimmedTag = tag.trim();
+        if ("*".equals(trimmedTag)
+            || eTag.equals(trimmedTag.startsWith("W/") ? trimmedTag.substring(2)
+                : trimmedTag)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private String getSerializationErrorMessage(String serviceName,
+      String methodName) {
+    return String.format(
+        "Failed to serialize service '%s' method '%s' response. "
+            + "Double check method's return type or specify a custom mapper bean with qualifier '%s'",
+        serviceName, methodName, VAADIN_SERVICE_MAPPER_BEAN_QUALIFIER);
+  }
+
+  private void writeErrorResponse(HttpServletResponse response,
+      HttpStatus status, Object error) throws IOException {
+    try {
+      writeResponse(response, status, wireFormats.get(0),
+          vaadinServiceMapper.writer(), error);
+    } catch (JsonProcessingException unexpected) {
+      throw new IllegalStateException(String.format(
+          "Unexpected: Failed to serialize an error object '%s' into a JSON. "
+              + "Double check the provided mapper's configuration.",
+          error), unexpected);
+    }
+  }
+
+  /**
+   * Serializes the value given directly into the response output stream,
+   * without creating an intermediate string. The generator writes through a
+   * buffer that is recycled by Jackson between the calls on the same thread. If
+   * the serialization fails, the generator is not flushed, so the content that
+   * is still buffered does not get into the response.
+   */
+  private void writeResponse(HttpServletResponse response, HttpStatus status,
+      VaadinServiceWireFormat format, ObjectWriter writer, Object value)
+      throws IOException {
+    response.setStatus(status.value());
+    response.setContentType(format.getContentType());
+    JsonGenerator generator = format.getFactory()
+        .createGenerator(response.getOutputStream(), JsonEncoding.UTF8)
+        .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    writer.writeValue(generator, value);
+    generator.close();
+  }
+
+  private ResponseEntity<?> checkAccess(String serviceName, String methodName,
+      VaadinServiceMethod methodToInvoke, VaadinServiceCallTimer timer) {
+    long accessCheckStart = VaadinServiceCallTimer.start(timer);
+    String checkError = accessChecker.check(methodToInvoke.getMethod());
+    VaadinServiceCallTimer.stop(timer, VaadinServiceCallTimer.ACCESS_CHECK,
+        accessCheckStart);
+    if (checkError == null) {
+      return null;
+    }
+    return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+        .body(createResponseErrorObject(String.format(
+            "Service '%s' method '%s' request cannot be accessed, reason: '%s'",
+            serviceName, methodName, checkError)));
+  }
+
+  private ResponseEntity<?> createParametersReadError(String serviceName,
+      String methodName, IOException e) {
+    String errorMessage = String.format(
+        "Failed to read the request body of service '%s' method '%s', "
+            + "expected a JSON object with the method parameters",
+        serviceName, methodName);
+    getLogger().debug(errorMessage, e);
+    return ResponseEntity.badRequest()
+        .body(createResponseErrorObject(errorMessage));
+  }
+
+  /**
+   * Gets the response of a method annotated with {@link CacheResult} from the
+   * cache, or invokes the method and caches its response. The parameters are
+   * read into a JSON tree to create the cache key, so that on a cache hit no
+   * parameters are deserialized nor validated.
+   *
+   * @return the serialized response as the body of the successful result, or
+   *         the error object otherwise
+   */
+  private ResponseEntity<?> invokeCachedServiceMethod(String serviceName,
+      String methodName, VaadinServiceMethod methodToInvoke,
+      ParametersSource parametersSource, VaadinServiceData vaadinServiceData,
+      VaadinServiceWireFormat responseFormat, VaadinServiceCallTimer timer) {
+    ResponseEntity<?> accessError = checkAccess(serviceName, methodName,
+        methodToInvoke, timer);
+    if (accessError != null) {
+      return accessError;
+    }
+
+    JsonNode parameters;
+    long deserializationStart = VaadinServiceCallTimer.start(timer);
+    try (JsonParser parser = parametersSource.createParser()) {
+      parameters = vaadinServiceMapper.readTree(parser);
+    } catch (IOException e) {
+      return createParametersReadError(serviceName, methodName, e);
+    } finally {
+      VaadinServiceCallTimer.stop(timer, VaadinServiceCallTimer.DESERIALIZATION,
+          deserializationStart);
+    }
+    JsonNode parametersTree = parameters == null || parameters.isMissingNode()
+        || parameters.isNull() ? vaadinServiceMapper.createObjectNode()
+            : parameters;
+
+    VaadinServiceResultCache resultCache = methodToInvoke.getResultCache();
+    String cacheKey = responseFormat.getCacheKeyPrefix()
+        + resultCache.createKey(parametersTree);
+    byte[] cachedJson = resultCache.get(cacheKey);
+    if (cachedJson != null) {
+      getLogger().debug("Service '{}' method '{}' response is cached",
+          serviceName, methodName);
+      return ResponseEntity.ok(cachedJson);
+    }
+
+    ResponseEntity<?> result = serializeResult(serviceName, methodName,
+        methodToInvoke, vaadinServiceData, responseFormat,
+        invokeAccessibleServiceMethod(serviceName, methodName, methodToInvoke,
+            () -> vaadinServiceMapper.treeAsTokens(parametersTree),
+            vaadinServiceData, timer),
+        timer);
+    if (result.getStatusCode() == HttpStatus.OK) {
+      resultCache.put(cacheKey, (byte[]) result.getBody());
+    }
+    return result;
+  }
+
+  /**
+   * Serializes the return value of a successful method invocation into a byte
+   * array in the response format, so that the complete response is available
+   * before it is written.
+   *
+   * @return the serialized response as the body of the successful result, or
+   *         the error object otherwise
+   */
+  private ResponseEntity<?> serializeResult(String serviceName,
+      String methodName, VaadinServiceMethod methodToInvoke,
+      VaadinServiceData vaadinServiceData,
+      VaadinServiceWireFormat responseFormat, ResponseEntity<?> result,
+      VaadinServiceCallTimer timer) {
+    if (result.getStatusCode() != HttpStatus.OK) {
+      return result;
+    }
+    Object returnValue = result.getBody();
+    long serializationStart = VaadinServiceCallTimer.start(timer);
+    try {
+      if (methodToInvoke.isIterated() && returnValue != null) {
+        return ResponseEntity.ok(vaadinServiceData.getWriter(Iterator.class)
+            .with(responseFormat.getFactory())
+            .writeValueAsBytes(methodToInvoke.iterate(returnValue)));
+      }
+      return ResponseEntity.ok(vaadinServiceData
+          .getWriter(methodToInvoke.getResponseType(returnValue))
+          .with(responseFormat.getFactory()).writeValueAsBytes(returnValue));
+    } catch (JsonProcessingException e) {
+      String errorMessage = getSerializationErrorMessage(serviceName,
+          methodName);
+      getLogger().error(errorMessage, e);
+      return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+          .body(createResponseErrorObject(errorMessage));
+    } finally {
+      methodToInvoke.closeIterated(returnValue);
+      VaadinServiceCallTimer.stop(timer, VaadinServiceCallTimer.SERIALIZATION,
+          serializationStart);
+    }
+  }
+
+  private ResponseEntity<?> invokeVaadinServiceMethod(String serviceName,
+      String methodName, VaadinServiceMethod methodToInvoke,
+      ParametersSource parametersSource, VaadinServiceData vaadinServiceData,
+      VaadinServiceCallTimer timer) {
+    ResponseEntity<?> accessError = checkAccess(serviceName, methodName,
+        methodToInvoke, timer);
+    if (accessError != null) {
+      return accessError;
     }
+    return invokeAccessibleServiceMethod(serviceName, methodName,
+        methodToInvoke, parametersSource, vaadinServiceData, timer);
+  }
+
+  /**
+   * Invokes the method with the parameters read from the source given. The
+   * parser is kept open until the method returns, so that the method can read
+   * the elements of its streamed parameter.
+   */
+  private ResponseEntity<?> invokeAccessibleServiceMethod(String serviceName,
+      String methodName, VaadinServiceMethod methodToInvoke,
+      ParametersSource parametersSource, VaadinServiceData vaadinServiceData,
+      VaadinServiceCallTimer timer) {
+    try (JsonParser parser = new NarrowingNumberParser(
+        parametersSource.createParser())) {
+      return invokeAccessibleServiceMethod(serviceName, methodName,
+          methodToInvoke, parser, vaadinServiceData, timer);
+    } catch (IOException e) {
+      return createParametersReadError(serviceName, methodName, e);
+    }
+  }
 
-    Map<String, JsonNode> requestParameters = getRequestParameters(body);
+  private ResponseEntity<?> invokeAccessibleServiceMethod(String serviceName,
+      String methodName, VaadinServiceMethod methodToInvoke, JsonParser parser,
+      VaadinServiceData vaadinServiceData, VaadinServiceCallTimer timer)
+      throws IOException {
     Parameter[] javaParameters = methodToInvoke.getParameters();
-    if (javaParameters.length != requestParameters.size()) {
+    VaadinServiceValidationPlan validationPlan = methodToInvoke
+        .getValidationPlan();
+    long deserializationStart = VaadinServiceCallTimer.start(timer);
+    RequestParameters requestParameters;
+    try {
+      requestParameters = readRequestParameters(serviceName, methodName, parser,
+          javaParameters, validationPlan, methodToInvoke.getStreamParameter(),
+          vaadinServiceData, timer);
+    } finally {
+      VaadinServiceCallTimer.stop(timer, VaadinServiceCallTimer.DESERIALIZATION,
+          deserializationStart);
+    }
+
+    if (javaParameters.length != requestParameters.count) {
       return ResponseEntity.badRequest()
           .body(createResponseErrorObject(String.format(
               "Incorrect number of parameters for service '%s' method '%s', "
                   + "expected: %s, got: %s",
               serviceName, methodName, javaParameters.length,
-              requestParameters.size())));
+              requestParameters.count)));
     }
 
-    Object[] vaadinServiceParameters;
-    try {
-      vaadinServiceParameters = getVaadinServiceParameters(requestParameters,
-          javaParameters, methodName, serviceName);
-    } catch (VaadinConnectValidationException e) {
+    if (!requestParameters.deserializationErrors.isEmpty()
+        || !requestParameters.constraintViolations.isEmpty()) {
+      VaadinConnectValidationException e = getInvalidServiceParametersException(
+          methodName, serviceName, requestParameters.deserializationErrors,
+          requestParameters.constraintViolations);
       getLogger().debug("Service '{}' method '{}' received invalid response",
           serviceName, methodName, e);
-      return ResponseEntity.badRequest().body(
-          vaadinServiceMapper.writeValueAsString(e.getSerializationData()));
+      return ResponseEntity.badRequest().body(e.getSerializationData());
     }
+    Object[] vaadinServiceParameters = requestParameters.values;
 
-    Set<ConstraintViolation<Object>> methodParameterConstraintViolations = validator
-        .forExecutables()
-        .validateParameters(vaadinServiceData.getServiceObject(),
-            methodToInvoke, vaadinServiceParameters);
-    if (!methodParameterConstraintViolations.isEmpty()) {
-      return ResponseEntity.badRequest().body(vaadinServiceMapper
-          .writeValueAsString(new VaadinConnectValidationException(
-              String.format("Validation error in service '%s' method '%s'",
-                  serviceName, methodName),
-              createMethodValidationErrors(methodParameterConstraintViolations))
-                  .getSerializationData()));
+    if (validationPlan.validatesParameters()) {
+      long validationStart = VaadinServiceCallTimer.start(timer);
+      Set<ConstraintViolation<Object>> methodParameterConstraintViolations = validator
+          .forExecutables()
+          .validateParameters(vaadinServiceData.getServiceObject(),
+              methodToInvoke.getMethod(), vaadinServiceParameters);
+      VaadinServiceCallTimer.stop(timer, VaadinServiceCallTimer.VALIDATION,
+          validationStart);
+      if (!methodParameterConstraintViolations.isEmpty()) {
+        return ResponseEntity.badRequest()
+            .body(new VaadinConnectValidationException(
+                String.format("Validation error in service '%s' method '%s'",
+                    serviceName, methodName),
+                createMethodValidationErrors(
+                    methodParameterConstraintViolations))
+                        .getSerializationData());
+      }
+    }
+
+    VaadinServiceBulkhead bulkhead = methodToInvoke.getBulkhead();
+    if (bulkhead != null && !bulkhead.tryAcquire()) {
+      getLogger().debug(
+          "Service '{}' method '{}' call is rejected by the bulkhead '{}'",
+          serviceName, methodName, bulkhead.getName());
+      return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+          .header(HttpHeaders.RETRY_AFTER,
+              Long.toString(bulkhead.getRetryAfterSeconds()))
+          .body(createResponseErrorObject(String.format(
+              "Service '%s' method '%s' has too many concurrent calls, retry later",
+              serviceName, methodName)));
     }
 
     Object returnValue;
+    boolean isPermitHeld = false;
+    VaadinServiceInterceptorChain interceptorChain = null;
+    long invocationStart = VaadinServiceCallTimer.start(timer);
     try {
-      returnValue = methodToInvoke.invoke(vaadinServiceData.getServiceObject(),
-          vaadinServiceParameters);
+      if (interceptors.length == 0) {
+        returnValue = methodToInvoke.invoke(
+            vaadinServiceData.getServiceObject(), vaadinServiceParameters);
+      } else {
+        interceptorChain = VaadinServiceInterceptorChain.create(interceptors,
+            vaadinServiceData.serviceName, methodToInvoke,
+            vaadinServiceData.getServiceObject(), vaadinServiceParameters);
+        returnValue = interceptorChain.invoke();
+      }
+      isPermitHeld = bulkhead != null && returnValue != null
+          && (methodToInvoke.isAsync() || methodToInvoke.isStreaming()
+              || methodToInvoke.isIterated());
     } catch (IllegalArgumentException e) {
+      if (interceptorChain != null && !interceptorChain.isArgumentsRejected()) {
+        return handleMethodExecutionError(serviceName, methodName, e);
+      }
       String errorMessage = String.format(
           "Received incorrect arguments for service '%s' method '%s'. "
               + "Expected parameter types (and their order) are: '[%s]'",
@@ -336,46 +1724,87 @@ public class VaadinConnectController {
       return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
           .body(createResponseErrorObject(errorMessage));
     } catch (InvocationTargetException e) {
+      return handleMethodExecutionError(serviceName, methodName, e.getCause());
+    } catch (Exception e) {
+      // Thrown by an interceptor, or by the method through the interceptors
       return handleMethodExecutionError(serviceName, methodName, e);
+    } finally {
+      VaadinServiceCallTimer.stop(timer, VaadinServiceCallTimer.INVOCATION,
+          invocationStart);
+      if (bulkhead != null && !isPermitHeld) {
+        bulkhead.release();
+      }
     }
+    Object result = isPermitHeld
+        ? releaseOnCompletion(methodToInvoke, returnValue,
+            bulkhead.createRelease())
+        : returnValue;
 
-    Set<ConstraintViolation<Object>> returnValueConstraintViolations = validator
-        .forExecutables().validateReturnValue(
-            vaadinServiceData.getServiceObject(), methodToInvoke, returnValue);
-    if (!returnValueConstraintViolations.isEmpty()) {
-      getLogger().error(
-          "Service '{}' method '{}' had returned a value that has validation errors: '{}', this might cause bugs on the client side. Fix the method implementation.",
-          serviceName, methodName, returnValueConstraintViolations);
+    if (validationPlan.validatesReturnValue(returnValueSampleRate)) {
+      long validationStart = VaadinServiceCallTimer.start(timer);
+      Set<ConstraintViolation<Object>> returnValueConstraintViolations = validator
+          .forExecutables()
+          .validateReturnValue(vaadinServiceData.getServiceObject(),
+              methodToInvoke.getMethod(), returnValue);
+      VaadinServiceCallTimer.stop(timer, VaadinServiceCallTimer.VALIDATION,
+          validationStart);
+      if (!returnValueConstraintViolations.isEmpty()) {
+        getLogger().error(
+            "Service '{}' method '{}' had returned a value that has validation errors: '{}', this might cause bugs on the client side. Fix the method implementation.",
+            serviceName, methodName, returnValueConstraintViolations);
+      }
     }
-    return ResponseEntity
-        .ok(vaadinServiceMapper.writeValueAsString(returnValue));
+    return ResponseEntity.ok(result);
   }
 
-  private ResponseEntity<String> handleMethodExecutionError(String serviceName,
-      String methodName, InvocationTargetException e)
-      throws JsonProcessingException {
-    if (VaadinConnectException.class
-        .isAssignableFrom(e.getCause().getClass())) {
-      VaadinConnectException serviceException = ((VaadinConnectException) e
-          .getCause());
+  /**
+   * Holds the bulkhead permit of a call until the value returned by the method
+   * is completed: the stage of an asynchronous method completes, the publisher
+   * of a streaming method terminates or is cancelled, or the value of an
+   * iterated method is written or discarded.
+   *
+   * @return the value to use as the result of the call instead of the value
+   *         returned by the method
+   */
+  private static Object releaseOnCompletion(VaadinServiceMethod methodToInvoke,
+      Object returnValue, Runnable release) {
+    if (methodToInvoke.isAsync()) {
+      ((CompletionStage<?>) returnValue)
+          .whenComplete((value, error) -> release.run());
+      return returnValue;
+    }
+    if (methodToInvoke.isStreaming()) {
+      return new ReleasingPublisher(returnValue, release);
+    }
+    try {
+      return new ReleasingIterator(methodToInvoke, returnValue, release);
+    } catch (RuntimeException e) {
+      release.run();
+      throw e;
+    }
+  }
+
+  private ResponseEntity<?> handleMethodExecutionError(String serviceName,
+      String methodName, Throwable cause) {
+    if (cause instanceof VaadinConnectException) {
+      VaadinConnectException serviceException = (VaadinConnectException) cause;
       getLogger().debug("Service '{}' method '{}' aborted the execution",
           serviceName, methodName, serviceException);
-      return ResponseEntity.badRequest().body(vaadinServiceMapper
-          .writeValueAsString(serviceException.getSerializationData()));
+      return ResponseEntity.badRequest()
+          .body(serviceException.getSerializationData());
     } else {
       String errorMessage = String.format(
           "Service '%s' method '%s' execution failure", serviceName,
           methodName);
-      getLogger().error(errorMessage, e);
+      getLogger().error(errorMessage, cause);
       return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
           .body(createResponseErrorObject(errorMessage));
     }
   }
 
-  private String createResponseErrorObject(String errorMessage)
-      throws JsonProcessingException {
-    return vaadinServiceMapper.writeValueAsString(Collections.singletonMap(
-        VaadinConnectException.ERROR_MESSAGE_FIELD, errorMessage));
+  private Map<String, String> createResponseErrorObject(String errorMessage) {
+    return Collections.singletonMap(VaadinConnectException.ERROR_MESSAGE_FIELD,
+        errorMessage);
   }
 
   private String listMethodParameterTypes(Parameter[] javaParameters) {
@@ -383,40 +1812,151 @@ public class VaadinConnectController {
         .collect(Collectors.joining(", "));
   }
 
-  private Object[] getVaadinServiceParameters(
-      Map<String, JsonNode> requestParameters, Parameter[] javaParameters,
-      String methodName, String serviceName) {
-    Object[] serviceParameters = new Object[javaParameters.length];
-    String[] parameterNames = new String[requestParameters.size()];
-    requestParameters.keySet().toArray(parameterNames);
-    Map<String, String> errorParams = new HashMap<>();
-    Set<ConstraintViolation<Object>> constraintViolations = new LinkedHashSet<>();
+  /**
+   * Reads the method parameters from the request body JSON object, binding each
+   * top-level field directly to the type of the method parameter at the same
+   * position, without building an intermediate JSON tree. The fields that do
+   * not correspond to any parameter are skipped, but counted. The reading stops
+   * at the streamed parameter, which elements are read by the method later, so
+   * the fields following it are neither read nor counted.
+   */
+  private RequestParameters readRequestParameters(String serviceName,
+      String methodName, JsonParser parser, Parameter[] javaParameters,
+      VaadinServiceValidationPlan validationPlan,
+      VaadinServiceStreamParameter streamParameter,
+      VaadinServiceData vaadinServiceData, VaadinServiceCallTimer timer)
+      throws IOException {
+    RequestParameters requestParameters = new RequestParameters(
+        javaParameters.length);
+    JsonToken token = parser.nextToken();
+    if (token == null) {
+      return requestParameters;
+    }
+    if (token != JsonToken.START_OBJECT) {
+      throw new JsonParseException(parser,
+          String.format(
+              "Unexpected token '%s', the request body should be a JSON object",
+              token));
+    }
 
-    for (int i = 0; i < javaParameters.length; i++) {
-      Type expectedType = javaParameters[i].getParameterizedType();
+    JsonStreamContext parametersContext = parser.getParsingContext();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String parameterName = parser.getCurrentName();
+      parser.nextToken();
+      int parameterIndex = requestParameters.count++;
+      if (parameterIndex >= javaParameters.length) {
+        parser.skipChildren();
+        continue;
+      }
+      if (streamParameter != null
+          && parameterIndex == streamParameter.getIndex()) {
+        readStreamParameter(serviceName, methodName, parser, parameterName,
+            streamParameter, requestParameters, vaadinServiceData);
+        break;
+      }
+
+      Type expectedType = javaParameters[parameterIndex].getParameterizedType();
       try {
-        Object parameter = vaadinServiceMapper
-            .readerFor(vaadinServiceMapper.getTypeFactory()
-                .constructType(expectedType))
-            .readValue(requestParameters.get(parameterNames[i]));
-
-        serviceParameters[i] = parameter;
-        if (parameter != null) {
-          constraintViolations.addAll(validator.validate(parameter));
+        Object parameter = vaadinServiceData.getReader(expectedType)
+            .readValue(parser);
+
+        requestParameters.values[parameterIndex] = parameter;
+        if (parameter != null
+            && validationPlan.validatesBean(parameterIndex, parameter)) {
+          long validationStart = VaadinServiceCallTimer.start(timer);
+          requestParameters.constraintViolations
+              .addAll(validator.validate(parameter));
+          VaadinServiceCallTimer.stopNested(timer,
+              VaadinServiceCallTimer.VALIDATION,
+              VaadinServiceCallTimer.DESERIALIZATION, validationStart);
         }
       } catch (IOException e) {
         String typeName = expectedType.getTypeName();
         getLogger().debug("Unable to deserialize parameter {} with type {}",
-            parameterNames[i], typeName, e);
-        errorParams.put(parameterNames[i], typeName);
+            parameterName, typeName, e);
+        requestParameters.deserializationErrors.put(parameterName, typeName);
+        skipToContext(parser, parametersContext);
       }
     }
+    return requestParameters;
+  }
 
-    if (errorParams.isEmpty() && constraintViolations.isEmpty()) {
-      return serviceParameters;
+  private void readStreamParameter(String serviceName, String methodName,
+      JsonParser parser, String parameterName,
+      VaadinServiceStreamParameter streamParameter,
+      RequestParameters requestParameters,
+      VaadinServiceData vaadinServiceData) {
+    JsonToken token = parser.getCurrentToken();
+    if (token == JsonToken.START_ARRAY) {
+      requestParameters.values[streamParameter.getIndex()] = streamParameter
+          .createValue(parser,
+              new StreamElementReader(serviceName, methodName, parameterName,
+                  streamParameter.getElementType(), vaadinServiceData));
+    } else if (token != JsonToken.VALUE_NULL) {
+      String typeName = streamParameter.getElementType().getTypeName();
+      getLogger().debug(
+          "Unable to read parameter {} as a stream of {}, got {} instead of an array",
+          parameterName, typeName, token);
+      requestParameters.deserializationErrors.put(parameterName, typeName);
+    }
+  }
+
+  /**
+   * Reads the elements of a streamed parameter, while the method consumes them,
+   * and validates each element as a bean. An element that cannot be read or is
+   * invalid aborts the method execution with a
+   * {@link VaadinConnectValidationException}.
+   */
+  private class StreamElementReader
+      implements VaadinServiceStreamParameter.ElementReader {
+    private final String serviceName;
+    private final String methodName;
+    private final String parameterName;
+    private final Type elementType;
+    private final ObjectReader reader;
+
+    private StreamElementReader(String serviceName, String methodName,
+        String parameterName, Type elementType,
+        VaadinServiceData vaadinServiceData) {
+      this.serviceName = serviceName;
+      this.methodName = methodName;
+      this.parameterName = parameterName;
+      this.elementType = elementType;
+      this.reader = vaadinServiceData.getReader(elementType);
+    }
+
+    @Override
+    public Object read(JsonParser parser) throws IOException {
+      Object element = reader.readValue(parser);
+      if (element != null && constrainedTypes.get(element.getClass())) {
+        Set<ConstraintViolation<Object>> constraintViolations = validator
+            .validate(element);
+        if (!constraintViolations.isEmpty()) {
+          throw getInvalidServiceParametersException(methodName, serviceName,
+              Collections.emptyMap(), constraintViolations);
+        }
+      }
+      return element;
+    }
+
+    @Override
+    public RuntimeException readFailed(IOException e) {
+      String typeName = elementType.getTypeName();
+      getLogger().debug(
+          "Unable to deserialize an element of parameter {} with type {}",
+          parameterName, typeName, e);
+      return getInvalidServiceParametersException(methodName, serviceName,
+          Collections.singletonMap(parameterName, typeName),
+          Collections.emptySet());
+    }
+  }
+
+  private void skipToContext(JsonParser parser, JsonStreamContext context)
+      throws IOException {
+    while (parser.getParsingContext() != context
+        && parser.nextToken() != null) {
+      // skip the rest of the value that failed to deserialize
     }
-    throw getInvalidServiceParametersException(methodName, serviceName,
-        errorParams, constraintViolations);
   }
 
   private VaadinConnectValidationException getInvalidServiceParametersException(
@@ -469,13 +2009,161 @@ public class VaadinConnectController {
     }).collect(Collectors.toList());
   }
 
-  private Map<String, JsonNode> getRequestParameters(ObjectNode body) {
-    Map<String, JsonNode> parametersData = new LinkedHashMap<>();
-    if (body != null) {
-      body.fields().forEachRemaining(
-          entry -> parametersData.put(entry.getKey(), entry.getValue()));
+  /**
+   * Gets the number of the {@link ObjectReader} instances cached for reading
+   * the service method parameters.
+   *
+   * @return the number of cached readers
+   */
+  int getCachedReaderCount() {
+    return vaadinServices.values().stream()
+        .mapToInt(serviceData -> serviceData.readers.size()).sum();
+  }
+
+  /**
+   * Gets the number of the {@link ObjectWriter} instances cached for writing
+   * the service method return values.
+   *
+   * @return the number of cached writers
+   */
+  int getCachedWriterCount() {
+    return vaadinServices.values().stream()
+        .mapToInt(serviceData -> serviceData.writers.size()).sum();
+  }
+
+  /**
+   * Evicts the cached responses of all the methods of the service given, that
+   * are annotated with {@link CacheResult}.
+   *
+   * @param serviceName
+   *          the name of the service, not case sensitive
+   * @throws IllegalArgumentException
+   *           if there is no service with the name given
+   */
+  public void evictCachedResults(String serviceName) {
+    getServiceData(serviceName).methods.values().stream()
+        .map(VaadinServiceMethod::getResultCache).filter(Objects::nonNull)
+        .forEach(VaadinServiceResultCache::clear);
+  }
+
+  /**
+   * Evicts the cached responses of the service method given, that is annotated
+   * with {@link CacheResult}.
+   *
+   * @param serviceName
+   *          the name of the service, not case sensitive
+   * @param methodName
+   *          the name of the method, not case sensitive
+   * @throws IllegalArgumentException
+   *           if there is no service method with the names given, or the method
+   *           is not annotated with {@link CacheResult}
+   */
+  public void evictCachedResults(String serviceName, String methodName) {
+    VaadinServiceResultCache resultCache = getServiceData(serviceName)
+        .getMethod(methodName.toLowerCase(Locale.ENGLISH))
+        .map(VaadinServiceMethod::getResultCache)
+        .orElseThrow(() -> new IllegalArgumentException(
+            String.format("Service '%s' has no method '%s' annotated with '%s'",
+                serviceName, methodName, CacheResult.class.getSimpleName())));
+    resultCache.clear();
+  }
+
+  /**
+   * Evicts the cached responses of all the service methods.
+   */
+  public void evictAllCachedResults() {
+    getResultCaches().forEach(VaadinServiceResultCache::clear);
+  }
+
+  private boolean isServiceRegistered(String serviceName) {
+    return vaadinServices.containsKey(serviceName.toLowerCase(Locale.ENGLISH));
+  }
+
+  private VaadinServiceData getServiceData(String serviceName) {
+    VaadinServiceData vaadinServiceData = vaadinServices
+        .get(serviceName.toLowerCase(Locale.ENGLISH));
+    if (vaadinServiceData == null) {
+      throw new IllegalArgumentException(
+          String.format("Service '%s' not found", serviceName));
     }
-    return parametersData;
+    return vaadinServiceData;
+  }
+
+  /**
+   * Gets the bulkheads that limit the concurrent executions of the service
+   * methods.
+   *
+   * @return the bulkheads of the service methods
+   * @see Bulkhead
+   */
+  List<VaadinServiceBulkhead> getBulkheads() {
+    return vaadinServices.values().stream()
+        .flatMap(serviceData -> serviceData.methods.values().stream())
+        .map(VaadinServiceMethod::getBulkhead).filter(Objects::nonNull)
+        .distinct().collect(Collectors.toList());
+  }
+
+  private Stream<VaadinServiceResultCache> getResultCaches() {
+    return vaadinServices.values().stream()
+        .flatMap(serviceData -> serviceData.methods.values().stream())
+        .map(VaadinServiceMethod::getResultCache).filter(Objects::nonNull);
+  }
+
+  /**
+   * Gets the number of the service method calls that got the response from the
+   * cache.
+   *
+   * @return the number of the cache hits
+   * @see CacheResult
+   */
+  public long getCachedResultHitCount() {
+    return getResultCaches().mapToLong(VaadinServiceResultCache::getHitCount)
+        .sum();
+  }
+
+  /**
+   * Gets the number of the calls of the service methods annotated with
+   * {@link CacheResult} that did not find the response in the cache.
+   *
+   * @return the number of the cache misses
+   */
+  public long getCachedResultMissCount() {
+    return getResultCaches().mapToLong(VaadinServiceResultCache::getMissCount)
+        .sum();
+  }
+
+  /**
+   * Gets the number of the cached responses evicted because the cache bounds
+   * were exceeded.
+   *
+   * @return the number of the evicted responses
+   * @see CacheResult
+   */
+  public long getCachedResultEvictionCount() {
+    return getResultCaches()
+        .mapToLong(VaadinServiceResultCache::getEvictionCount).sum();
+  }
+
+  /**
+   * Gets the number of the cached service method responses.
+   *
+   * @return the number of the cached responses
+   * @see CacheResult
+   */
+  public int getCachedResultCount() {
+    return getResultCaches().mapToInt(VaadinServiceResultCache::getSize).sum();
+  }
+
+  /**
+   * Gets the total size of the cached service method responses, in bytes of the
+   * serialized JSON.
+   *
+   * @return the size of the cached responses
+   * @see CacheResult
+   */
+  public long getCachedResultBytes() {
+    return getResultCaches().mapToLong(VaadinServiceResultCache::getBytes)
+        .sum();
   }
 
   private static Logger getLogger() {
@@ -19,6 +19,7 @@ package com.vaadin.connect;
 import java.lang.reflect.Method;
 
 import com.vaadin.connect.auth.VaadinConnectAccessChecker;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.web.servlet.WebMvcRegistrations;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -102,4 +103,29 @@ public class VaadinConnectControllerConfiguration {
   public VaadinConnectAccessChecker accessChecker() {
     return new VaadinConnectAccessChecker();
   }
+
+  /**
+   * A configuration that registers the Vaadin Connect metrics, if Micrometer is
+   * available.
+   */
+  @Configuration
+  @ConditionalOnClass(name = "io.micrometer.core.instrument.binder.MeterBinder")
+  public static class VaadinConnectMetricsConfiguration {
+    /**
+     * Registers the metrics of the {@link VaadinConnectController}.
+     *
+     * @param controller
+     *          the controller to report the metrics of
+     * @param vaadinConnectProperties
+     *          Vaadin Connect properties
+     * @return the metrics binder
+     */
+    @Bean
+    public VaadinConnectControllerMetrics vaadinConnectControllerMetrics(
+        VaadinConnectController controller,
+        VaadinConnectProperties vaadinConnectProperties) {
+      return new VaadinConnectControllerMetrics(controller,
+          vaadinConnectProperties.isVaadinConnectCallMetricsEnabled());
+    }
+  }
 }
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect;
+
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Binds the metrics of the {@link VaadinConnectController} to a Micrometer
+ * {@link MeterRegistry}. Registered automatically when Micrometer is present on
+ * the classpath.
+ */
+public class VaadinConnectControllerMetrics implements MeterBinder {
+  /**
+   * The name of the gauge that reports the number of the cached readers and
+   * writers, tagged with {@code type} being either {@code reader} or
+   * {@code writer}.
+   */
+  public static final String MAPPER_CACHE_SIZE_METRIC = "vaadin.connect.mapper.cache.size";
+
+  /**
+   * The name of the counter of the calls of the service methods annotated with
+   * {@link CacheResult}, tagged with {@code result} being either {@code hit} or
+   * {@code miss}.
+   */
+  public static final String RESULT_CACHE_REQUESTS_METRIC = "vaadin.connect.result.cache.requests";
+
+  /**
+   * The name of the counter of the cached responses evicted because the cache
+   * bounds were exceeded.
+   */
+  public static final String RESULT_CACHE_EVICTIONS_METRIC = "vaadin.connect.result.cache.evictions";
+
+  /**
+   * The name of the gauge that reports the number of the cached responses.
+   */
+  public static final String RESULT_CACHE_SIZE_METRIC = "vaadin.connect.result.cache.size";
+
+  /**
+   * The name of the gauge that reports the total size of the cached responses.
+   */
+  public static final String RESULT_CACHE_BYTES_METRIC = "vaadin.connect.result.cache.bytes";
+
+  /**
+   * The name of the gauge that reports the number of the running calls limited
+   * by a {@link Bulkhead}, tagged with the {@code bulkhead} name, which is
+   * either the service name or the service and the method names separated by a
+   * dot.
+   */
+  public static final String BULKHEAD_ACTIVE_CALLS_METRIC = "vaadin.connect.bulkhead.active";
+
+  /**
+   * The name of the gauge that reports the number of the calls waiting for a
+   * {@link Bulkhead}, tagged with the {@code bulkhead} name.
+   */
+  public static final String BULKHEAD_QUEUED_CALLS_METRIC = "vaadin.connect.bulkhead.queued";
+
+  /**
+   * The name of the counter of the calls rejected by a {@link Bulkhead}, tagged
+   * with the {@code bulkhead} name.
+   */
+  public static final String BULKHEAD_REJECTED_CALLS_METRIC = "vaadin.connect.bulkhead.rejected";
+
+  /**
+   * The name of the timer of the service method call phases, tagged with the
+   * {@code service} and the {@code method} names, the {@code phase} being one
+   * of {@code access-check}, {@code deserialization}, {@code validation},
+   * {@code invocation} or {@code serialization}, and the {@code outcome} being
+   * one of {@code ok}, {@code 4xx} or {@code 5xx}. Reported only when the call
+   * metrics are enabled.
+   */
+  public static final String CALL_PHASE_METRIC = "vaadin.connect.call.phase";
+
+  /**
+   * The name of the distribution summary of the service method call request
+   * body sizes, tagged with the {@code service}, the {@code method} and the
+   * {@code outcome}. Reported only when the call metrics are enabled.
+   */
+  public static final String CALL_REQUEST_SIZE_METRIC = "vaadin.connect.call.request.size";
+
+  /**
+   * The name of the distribution summary of the service method call response
+   * body sizes, tagged with the {@code service}, the {@code method} and the
+   * {@code outcome}. Reported only when the call metrics are enabled.
+   */
+  public static final String CALL_RESPONSE_SIZE_METRIC = "vaadin.connect.call.response.size";
+
+  private final VaadinConnectController controller;
+  private final boolean callMetricsEnabled;
+
+  /**
+   * Creates the metrics binder for the controller given.
+   *
+   * @param controller
+   *          the controller to report the metrics of
+   */
+  public VaadinConnectControllerMetrics(VaadinConnectController controller) {
+    this(controller, false);
+  }
+
+  /**
+   * Creates the metrics binder for the controller given.
+   *
+   * @param controller
+   *          the controller to report the metrics of
+   * @param callMetricsEnabled
+   *          {@code true} to measure the phases and the body sizes of each
+   *          service method call, {@code false} to leave the calls unmeasured
+   */
+  public VaadinConnectControllerMetrics(VaadinConnectController controller,
+      boolean callMetricsEnabled) {
+    this.controller = controller;
+    this.callMetricsEnabled = callMetricsEnabled;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge
+        .builder(MAPPER_CACHE_SIZE_METRIC, controller,
+            VaadinConnectController::getCachedReaderCount)
+        .tag("type", "reader")
+        .description("The number of the cached service parameter readers")
+        .register(registry);
+    Gauge
+        .builder(MAPPER_CACHE_SIZE_METRIC, controller,
+            VaadinConnectController::getCachedWriterCount)
+        .tag("type", "writer")
+        .description("The number of the cached service return value writers")
+        .register(registry);
+    FunctionCounter
+        .builder(RESULT_CACHE_REQUESTS_METRIC, controller,
+            VaadinConnectController::getCachedResultHitCount)
+        .tag("result", "hit")
+        .description("The number of the calls that got the cached response")
+        .register(registry);
+    FunctionCounter
+        .builder(RESULT_CACHE_REQUESTS_METRIC, controller,
+            VaadinConnectController::getCachedResultMissCount)
+        .tag("result", "miss")
+        .description("The number of the calls that invoked the cached method")
+        .register(registry);
+    FunctionCounter
+        .builder(RESULT_CACHE_EVICTIONS_METRIC, controller,
+            VaadinConnectController::getCachedResultEvictionCount)
+        .description("The number of the evicted cached responses")
+        .register(registry);
+    Gauge
+        .builder(RESULT_CACHE_SIZE_METRIC, controller,
+            VaadinConnectController::getCachedResultCount)
+        .description("The number of the cached responses").register(registry);
+    Gauge
+        .builder(RESULT_CACHE_BYTES_METRIC, controller,
+            VaadinConnectController::getCachedResultBytes)
+        .baseUnit("bytes").description("The total size of the cached responses")
+        .register(registry);
+    for (VaadinServiceBulkhead bulkhead : controller.getBulkheads()) {
+      Gauge
+          .builder(BULKHEAD_ACTIVE_CALLS_METRIC, bulkhead,
+              VaadinServiceBulkhead::getActiveCallCount)
+          .tag("bulkhead", bulkhead.getName())
+          .description("The number of the running calls").register(registry);
+      Gauge
+          .builder(BULKHEAD_QUEUED_CALLS_METRIC, bulkhead,
+              VaadinServiceBulkhead::getQueuedCallCount)
+          .tag("bulkhead", bulkhead.getName())
+          .description("The number of the waiting calls").register(registry);
+      FunctionCounter
+          .builder(BULKHEAD_REJECTED_CALLS_METRIC, bulkhead,
+              VaadinServiceBulkhead::getRejectedCallCount)
+          .tag("bulkhead", bulkhead.getName())
+          .description("The number of the rejected calls").register(registry);
+    }
+    if (callMetricsEnabled) {
+      controller.setCallRecorder(new CallMetricsRecorder(registry));
+    }
+  }
+
+  static String getOutcome(int status) {
+    if (status >= 500) {
+      return "5xx";
+    }
+    return status >= 400 ? "4xx" : "ok";
+  }
+
+  private static class CallMetricsRecorder
+      implements VaadinServiceCallTimer.Recorder {
+    private final MeterRegistry registry;
+
+    private CallMetricsRecorder(MeterRegistry registry) {
+      this.registry = registry;
+    }
+
+    @Override
+    public void record(VaadinServiceCallTimer timer, int status) {
+      String service = timer.getServiceName();
+      String method = timer.getMethodName();
+      String outcome = getOutcome(status);
+      for (int phase = 0; phase < VaadinServiceCallTimer
+          .getPhaseCount(); phase++) {
+        if (timer.isMeasured(phase)) {
+          Timer.builder(CALL_PHASE_METRIC).tag("service", service)
+              .tag("method", method)
+              .tag("phase", VaadinServiceCallTimer.getPhaseName(phase))
+              .tag("outcome", outcome)
+              .description("The time of the service method call phase")
+              .register(registry)
+              .record(timer.getPhaseNanos(phase), TimeUnit.NANOSECONDS);
+        }
+      }
+      recordSize(CALL_REQUEST_SIZE_METRIC, "The request body size", service,
+          method, outcome, timer.getRequestBytes());
+      recordSize(CALL_RESPONSE_SIZE_METRIC, "The response body size", service,
+          method, outcome, timer.getResponseBytes());
+    }
+
+    private void recordSize(String name, String description, String service,
+        String method, String outcome, long bytes) {
+      if (bytes >= 0) {
+        DistributionSummary.builder(name).tag("service", service)
+            .tag("method", method).tag("outcome", outcome).baseUnit("bytes")
+            .description(description).register(registry).record(bytes);
+      }
+    }
+  }
+}
@@ -25,6 +25,30 @@ import org.springframework.stereotype.Component;
 @Component
 @ConfigurationProperties("vaadin.connect")
 public class VaadinConnectProperties {
+  /**
+   * The default maximum number of calls in a batch request.
+   */
+  public static final int DEFAULT_BATCH_MAX_CALLS = 50;
+
+  /**
+   * The default maximum number of the verified access tokens cached.
+   */
+  public static final int DEFAULT_TOKEN_CACHE_MAX_ENTRIES = 10000;
+
+  /**
+   * The default expected number of the revoked tokens that have not expired.
+   */
+  public static final int DEFAULT_TOKEN_REVOCATION_EXPECTED_ENTRIES = 10000;
+
+  /**
+   * The default BCrypt work factor of the password hashing.
+   */
+  public static final int DEFAULT_PASSWORD_HASHING_STRENGTH = 10;
+
+  /**
+   * The default maximum number of the passwords waiting to be hashed.
+   */
+  public static final int DEFAULT_PASSWORD_HASHING_QUEUE_CAPACITY = 100;
 
   @Value("${vaadin.connect.endpoint:/connect}")
   private String vaadinConnectEndpoint;
@@ -32,6 +56,67 @@ public class VaadinConnectProperties {
   @Value("${vaadin.connect.auth.token-signing-key:}")
   private String vaadinConnectTokenSigningKey;
 
+  @Value("${vaadin.connect.auth.token-signing-algorithm:HS256}")
+  private String vaadinConnectTokenSigningAlgorithm;
+
+  @Value("${vaadin.connect.auth.token-signing-key-id:}")
+  private String vaadinConnectTokenSigningKeyId;
+
+  @Value("${vaadin.connect.auth.token-signing-private-key:}")
+  private String vaadinConnectTokenSigningPrivateKey;
+
+  @Value("${vaadin.connect.auth.token-signing-public-key:}")
+  private String vaadinConnectTokenSigningPublicKey;
+
+  @Value("${vaadin.connect.auth.token-verification-keys:}")
+  private String vaadinConnectTokenVerificationKeys;
+
+  @Value("${vaadin.connect.auth.token-accept-shared-secret:false}")
+  private boolean vaadinConnectTokenAcceptSharedSecret;
+
+  @Value("${vaadin.connect.auth.token-cache.max-entries:"
+      + DEFAULT_TOKEN_CACHE_MAX_ENTRIES + "}")
+  private int vaadinConnectTokenCacheMaxEntries;
+
+  @Value("${vaadin.connect.auth.token-revocation.expected-entries:"
+      + DEFAULT_TOKEN_REVOCATION_EXPECTED_ENTRIES + "}")
+  private int vaadinConnectTokenRevocationExpectedEntries;
+
+  @Value("${vaadin.connect.auth.password-hashing.strength:"
+      + DEFAULT_PASSWORD_HASHING_STRENGTH + "}")
+  private int vaadinConnectPasswordHashingStrength;
+
+  @Value("${vaadin.connect.auth.password-hashing.threads:0}")
+  private int vaadinConnectPasswordHashingThreads;
+
+  @Value("${vaadin.connect.auth.password-hashing.queue-capacity:"
+      + DEFAULT_PASSWORD_HASHING_QUEUE_CAPACITY + "}")
+  private int vaadinConnectPasswordHashingQueueCapacity;
+
+  @Value("${vaadin.connect.executor:platform}")
+  private String vaadinConnectExecutor;
+
+  @Value("${vaadin.connect.batch.threads:0}")
+  private int vaadinConnectBatchThreads;
+
+  @Value("${vaadin.connect.batch.max-calls:" + DEFAULT_BATCH_MAX_CALLS + "}")
+  private int vaadinConnectBatchMaxCalls;
+
+  @Value("${vaadin.connect.stream.timeout:0}")
+  private long vaadinConnectStreamTimeout;
+
+  @Value("${vaadin.connect.validation.return-value:always}")
+  private String vaadinConnectReturnValueValidation;
+
+  @Value("${vaadin.connect.validation.return-value-sample-rate:100}")
+  private int vaadinConnectReturnValueSampleRate;
+
+  @Value("${vaadin.connect.bulkheads:}")
+  private String vaadinConnectBulkheads;
+
+  @Value("${vaadin.connect.metrics.calls.enabled:false}")
+  private boolean vaadinConnectCallMetricsEnabled;
+
   /**
    * Customize the endpoint for all Vaadin Connect services. See default value
    * in the {@link VaadinConnectProperties#vaadinConnectEndpoint} field
@@ -53,4 +138,242 @@ public class VaadinConnectProperties {
   public String getVaadinConnectTokenSigningKey() {
     return vaadinConnectTokenSigningKey;
   }
+
+  /**
+   * Customize the algorithm the tokens are signed with. With the default
+   * {@code HS256} value, the tokens are signed with the
+   * {@link #getVaadinConnectTokenSigningKey() shared secret}. With the
+   * {@code RS256}, {@code ES256}, {@code ES384} or {@code ES512} value, the
+   * tokens are signed with the {@link #getVaadinConnectTokenSigningPrivateKey()
+   * private key} of an RSA or an elliptic curve key pair, and can be verified
+   * with its public key.
+   *
+   * @return the JWS algorithm name
+   */
+  public String getVaadinConnectTokenSigningAlgorithm() {
+    return vaadinConnectTokenSigningAlgorithm;
+  }
+
+  /**
+   * Customize the identifier of the token signing key pair, which is set as the
+   * {@code kid} header of the tokens. When not given, the identifier is derived
+   * from the public key.
+   *
+   * @return the key identifier
+   */
+  public String getVaadinConnectTokenSigningKeyId() {
+    return vaadinConnectTokenSigningKeyId;
+  }
+
+  /**
+   * Customize the private key the tokens are signed with, when an asymmetric
+   * token signing algorithm is used. The key is a Base64 encoded PKCS #8 key,
+   * optionally in the PEM format. The nodes that only verify the tokens do not
+   * need it.
+   *
+   * @return the private key
+   */
+  public String getVaadinConnectTokenSigningPrivateKey() {
+    return vaadinConnectTokenSigningPrivateKey;
+  }
+
+  /**
+   * Customize the public key the tokens are verified with, when an asymmetric
+   * token signing algorithm is used. The key is a Base64 encoded X.509 key,
+   * optionally in the PEM format.
+   *
+   * @return the public key
+   */
+  public String getVaadinConnectTokenSigningPublicKey() {
+    return vaadinConnectTokenSigningPublicKey;
+  }
+
+  /**
+   * Customize the additional public keys the tokens are verified with, for
+   * instance, the keys the tokens were signed with before the signing key was
+   * rotated. The value is a comma-separated list of the key identifiers and the
+   * Base64 encoded X.509 keys, separated by a colon, for instance,
+   * {@code previous-key:MIIBIjANBgkqh...}.
+   *
+   * @return the additional verification keys
+   */
+  public String getVaadinConnectTokenVerificationKeys() {
+    return vaadinConnectTokenVerificationKeys;
+  }
+
+  /**
+   * Customize whether the tokens signed with the
+   * {@link #getVaadinConnectTokenSigningKey() shared secret} are still accepted
+   * when the tokens are signed with a key pair, for instance, while migrating
+   * from the {@code HS256} algorithm to a key pair. Disabled by default, so
+   * that only the configured algorithm is accepted.
+   *
+   * @return {@code true} if the tokens signed with the shared secret are
+   *         accepted with a key pair
+   */
+  public boolean isVaadinConnectTokenAcceptSharedSecret() {
+    return vaadinConnectTokenAcceptSharedSecret;
+  }
+
+  /**
+   * Customize the maximum number of the verified access tokens that are cached,
+   * so that a token used in many requests is only decoded and verified once
+   * until it expires. The least recently used tokens are evicted when the bound
+   * is exceeded, {@code 0} disables the caching.
+   *
+   * @return the maximum number of the cached tokens
+   */
+  public int getVaadinConnectTokenCacheMaxEntries() {
+    return vaadinConnectTokenCacheMaxEntries;
+  }
+
+  /**
+   * Customize the expected number of the tokens that are revoked and not
+   * expired at the same time, which sizes the filter that tells the tokens that
+   * are not revoked. The filter grows if the number is exceeded.
+   *
+   * @return the expected number of the revoked tokens
+   */
+  public int getVaadinConnectTokenRevocationExpectedEntries() {
+    return vaadinConnectTokenRevocationExpectedEntries;
+  }
+
+  /**
+   * Customize the BCrypt work factor the passwords are hashed with by the
+   * default password encoder. The passwords hashed with a lower work factor are
+   * hashed again on the next successful login, if a
+   * {@code UserDetailsPasswordService} Bean stores the new hashes.
+   *
+   * @return the BCrypt work factor
+   */
+  public int getVaadinConnectPasswordHashingStrength() {
+    return vaadinConnectPasswordHashingStrength;
+  }
+
+  /**
+   * Customize the number of threads the default password encoder hashes the
+   * passwords in. With the default {@code 0} value, there are as many threads
+   * as available processors.
+   *
+   * @return the number of the password hashing threads
+   */
+  public int getVaadinConnectPasswordHashingThreads() {
+    return vaadinConnectPasswordHashingThreads;
+  }
+
+  /**
+   * Customize the maximum number of the passwords waiting for a hashing thread.
+   * When the queue is full, the login is rejected right away with the
+   * {@code 503 Service Unavailable} status.
+   *
+   * @return the maximum number of the passwords waiting to be hashed
+   */
+  public int getVaadinConnectPasswordHashingQueueCapacity() {
+    return vaadinConnectPasswordHashingQueueCapacity;
+  }
+
+  /**
+   * Customize the threads the service methods are invoked in. With the default
+   * {@code platform} value, the methods are invoked in the request threads of
+   * the servlet container. With the {@code virtual} value, each method call is
+   * invoked in a new virtual thread, in the asynchronous mode of the request,
+   * if the Java version supports virtual threads.
+   *
+   * @return the service executor mode, either {@code platform} or
+   *         {@code virtual}
+   */
+  public String getVaadinConnectExecutor() {
+    return vaadinConnectExecutor;
+  }
+
+  /**
+   * Customize the number of threads to execute the calls of the batch requests
+   * in parallel. The threads are shared by all the batch requests: when all of
+   * them are busy, the calls are executed in the request thread. With the
+   * default {@code 0} value, the calls of a batch request are executed in the
+   * request thread one by one.
+   *
+   * @return the number of threads to execute the batch calls in
+   */
+  public int getVaadinConnectBatchThreads() {
+    return vaadinConnectBatchThreads;
+  }
+
+  /**
+   * Customize the maximum number of calls in a batch request, the batch
+   * requests with more calls are rejected. A value that is not positive means
+   * no limit.
+   *
+   * @return the maximum number of calls in a batch request
+   */
+  public int getVaadinConnectBatchMaxCalls() {
+    return vaadinConnectBatchMaxCalls;
+  }
+
+  /**
+   * Customize the timeout of the streaming service method requests, in
+   * milliseconds, after which the subscription to the stream is cancelled and
+   * the response is ended. The streams are expected to be long-lived, so they
+   * do not use the default timeout of the asynchronous requests. A value that
+   * is not positive, the default, means no limit.
+   *
+   * @return the timeout of the streaming requests in milliseconds
+   */
+  public long getVaadinConnectStreamTimeout() {
+    return vaadinConnectStreamTimeout;
+  }
+
+  /**
+   * Customize the validation of the service method return values, which
+   * constraint violations are logged. With the default {@code always} value,
+   * each return value that has constraints is validated. With the
+   * {@code sampled} value, one of each
+   * {@link #getVaadinConnectReturnValueSampleRate()} return values of a method
+   * is validated. With the {@code off} value, the return values are not
+   * validated.
+   *
+   * @return the return value validation mode, either {@code always},
+   *         {@code sampled} or {@code off}
+   */
+  public String getVaadinConnectReturnValueValidation() {
+    return vaadinConnectReturnValueValidation;
+  }
+
+  /**
+   * Customize the rate to sample the return values to validate with, when the
+   * {@link #getVaadinConnectReturnValueValidation()} mode is {@code sampled}.
+   *
+   * @return the return value sample rate
+   */
+  public int getVaadinConnectReturnValueSampleRate() {
+    return vaadinConnectReturnValueSampleRate;
+  }
+
+  /**
+   * Customize the limits of the concurrent executions of the service methods.
+   * The value is a comma separated list of the service names, or of the service
+   * and the method names separated by a dot, with the maximum numbers of the
+   * concurrent executions, for instance,
+   * {@code ReportService=4,ReportService.export=1}. The limits override the
+   * ones of the {@link Bulkhead} annotations, a limit that is not positive
+   * removes the limit of the annotation.
+   *
+   * @return the limits of the concurrent executions
+   */
+  public String getVaadinConnectBulkheads() {
+    return vaadinConnectBulkheads;
+  }
+
+  /**
+   * Customize whether the time of each phase of the service method calls, and
+   * the sizes of their request and response bodies, are reported as metrics.
+   * Disabled by default, since the metrics are tagged per service method, and
+   * measuring adds a small overhead to each call.
+   *
+   * @return {@code true} if the call metrics are reported, {@code false}
+   *         otherwise
+   */
+  public boolean isVaadinConnectCallMetricsEnabled() {
+    return vaadinConnectCallMetricsEnabled;
+  }
 }
@@ -0,0 +1,381 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.vaadin.connect.exception.VaadinConnectException;
+
+/**
+ * Dispatches the calls of a batch request, that executes several service method
+ * calls in one round trip, and writes their results into the response.
+ * <p>
+ * The calls are executed in the request thread one by one, unless there is a
+ * batch executor, in which case the calls are executed in parallel in it, with
+ * the security context and the logging diagnostic context of the request. The
+ * results are serialized into buffers by the threads that execute the calls, or
+ * complete the asynchronous results, and the response is written in the request
+ * thread. Only the request thread waits for the asynchronous results, the batch
+ * threads are not blocked by them, so the calls waiting for a result that is
+ * completed by another call of the same batch do not exhaust the batch threads.
+ * <p>
+ * Each call has its own entry in the response, so a call that fails
+ * unexpectedly, or cannot be executed, gets an error entry, and the other calls
+ * of the batch are not affected.
+ */
+class VaadinServiceBatchDispatcher {
+  private static final String SERVICE_FIELD = "service";
+  private static final String METHOD_FIELD = "method";
+  private static final String PARAMS_FIELD = "params";
+  private static final String STATUS_FIELD = "status";
+  private static final String RESULT_FIELD = "result";
+  private static final String ERROR_FIELD = "error";
+
+  private final ObjectMapper mapper;
+  private final Executor executor;
+  private final int maxCalls;
+  private final CallHandler callHandler;
+
+  /**
+   * Executes a single call of a batch request.
+   */
+  @FunctionalInterface
+  interface CallHandler {
+    /**
+     * Executes the call of the service method given.
+     *
+     * @param serviceName
+     *          the name of the service called
+     * @param methodName
+     *          the name of the method called
+     * @param params
+     *          the {@code params} object of the call, which is a missing node
+     *          if the call has no parameters
+     * @return the result of the call, which completes once the method has
+     *         returned, or its asynchronous result has completed
+     */
+    CompletableFuture<Result> execute(String serviceName, String methodName,
+        JsonNode params);
+  }
+
+  /**
+   * Writes the value of a batch call result.
+   */
+  @FunctionalInterface
+  interface ValueWriter {
+    void write(JsonGenerator generator) throws IOException;
+  }
+
+  /**
+   * The result of a batch call, serialized into a buffer, so that a result that
+   * fails to serialize does not break the response of the other calls, together
+   * with the HTTP status of the call.
+   */
+  static class Result {
+    private final HttpStatus status;
+    private final TokenBuffer buffer;
+
+    private Result(HttpStatus status, TokenBuffer buffer) {
+      this.status = status;
+      this.buffer = buffer;
+    }
+
+    /**
+     * Gets the HTTP status the call would have as a regular request.
+     *
+     * @return the status of the call
+     */
+    HttpStatus getStatus() {
+      return status;
+    }
+  }
+
+  /**
+   * Creates a dispatcher for the batch requests.
+   *
+   * @param mapper
+   *          the mapper to read the calls and to serialize the results with
+   * @param executor
+   *          the executor to execute the calls in parallel in, or {@code null}
+   *          to execute them in the request thread
+   * @param maxCalls
+   *          the maximum number of the calls in a batch request, {@code 0} for
+   *          no limit
+   * @param callHandler
+   *          the handler that executes each call
+   */
+  VaadinServiceBatchDispatcher(ObjectMapper mapper, Executor executor,
+      int maxCalls, CallHandler callHandler) {
+    this.mapper = mapper;
+    this.executor = executor;
+    this.maxCalls = maxCalls;
+    this.callHandler = callHandler;
+  }
+
+  /**
+   * Reads the calls from the request body, executes them, and writes the
+   * response with the results of the calls, or a bad request response if the
+   * calls cannot be read.
+   *
+   * @param request
+   *          the request to read the calls from
+   * @param response
+   *          the response to write the results of the calls into
+   * @throws IOException
+   *           if writing the response fails
+   */
+  void dispatch(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    JsonNode calls;
+    try {
+      calls = mapper.readTree(request.getInputStream());
+    } catch (IOException e) {
+      getLogger().debug("Failed to read the batch request body", e);
+      calls = null;
+    }
+    if (calls == null || !calls.isArray()) {
+      writeBadRequest(response,
+          "Failed to read the batch request body, expected a JSON array of the calls");
+      return;
+    }
+    if (maxCalls > 0 && calls.size() > maxCalls) {
+      writeBadRequest(response,
+          String.format("The batch request has %d calls, the maximum is %d",
+              calls.size(), maxCalls));
+      return;
+    }
+    getLogger().debug("Batch of {} calls", calls.size());
+
+    Result[] results = executeCalls(calls);
+    response.setStatus(HttpStatus.OK.value());
+    response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+    JsonGenerator generator = createGenerator(response);
+    generator.writeStartArray();
+    for (Result result : results) {
+      result.buffer.serialize(generator);
+    }
+    generator.writeEndArray();
+    generator.close();
+  }
+
+  /**
+   * Creates the successful result of a call.
+   *
+   * @param valueWriter
+   *          the writer of the value returned by the method
+   * @return the result
+   * @throws IOException
+   *           if the value fails to serialize
+   */
+  Result createValueResult(ValueWriter valueWriter) throws IOException {
+    return createResult(HttpStatus.OK, RESULT_FIELD, valueWriter);
+  }
+
+  /**
+   * Creates the failed result of a call.
+   *
+   * @param status
+   *          the HTTP status the call would have as a regular request
+   * @param error
+   *          the error object
+   * @return the result
+   */
+  Result createErrorResult(HttpStatus status, Object error) {
+    try {
+      return createResult(status, ERROR_FIELD,
+          generator -> mapper.writer().writeValue(generator, error));
+    } catch (IOException unexpected) {
+      throw new IllegalStateException(String.format(
+          "Unexpected: Failed to serialize an error object '%s' into a JSON. "
+              + "Double check the provided mapper's configuration.",
+          error), unexpected);
+    }
+  }
+
+  /**
+   * Creates the failed result of a call, which is already completed.
+   *
+   * @param status
+   *          the HTTP status the call would have as a regular request
+   * @param error
+   *          the error object
+   * @return the completed result
+   */
+  CompletableFuture<Result> createCompletedErrorResult(HttpStatus status,
+      Object error) {
+    return CompletableFuture.completedFuture(createErrorResult(status, error));
+  }
+
+  private Result[] executeCalls(JsonNode calls) {
+    CompletableFuture<Result>[] results = startCalls(calls);
+    CompletableFuture.allOf(results).join();
+    return Stream.of(results).map(CompletableFuture::join)
+        .toArray(Result[]::new);
+  }
+
+  private CompletableFuture<Result>[] startCalls(JsonNode calls) {
+    @SuppressWarnings("unchecked")
+    CompletableFuture<Result>[] results = new CompletableFuture[calls.size()];
+    if (executor == null || results.length < 2) {
+      for (int i = 0; i < results.length; i++) {
+        results[i] = executeCall(calls.get(i));
+      }
+      return results;
+    }
+    SecurityContext securityContext = SecurityContextHolder.getContext();
+    Map<String, String> diagnosticContext = MDC.getCopyOfContextMap();
+    for (int i = 0; i < results.length; i++) {
+      JsonNode call = calls.get(i);
+      CompletableFuture<Result> result = new CompletableFuture<>();
+      Runnable execution = () -> {
+        try {
+          executeCall(call)
+              .whenComplete((value, error) -> complete(result, value, error));
+        } catch (RuntimeException e) {
+          result.completeExceptionally(e);
+        }
+      };
+      try {
+        executor.execute(new DelegatingSecurityContextRunnable(
+            VaadinConnectController.withDiagnosticContext(execution,
+                diagnosticContext),
+            securityContext));
+      } catch (RejectedExecutionException e) {
+        getLogger().warn("The batch call is rejected by the batch executor", e);
+        result.complete(
+            createErrorResult(HttpStatus.SERVICE_UNAVAILABLE, createErrorObject(
+                "The batch call cannot be executed now, retry later")));
+      }
+      results[i] = result;
+    }
+    return results;
+  }
+
+  /**
+   * Executes a single call, turning any unexpected failure of the call into the
+   * error result of the call, so the returned result never completes
+   * exceptionally.
+   */
+  private CompletableFuture<Result> executeCall(JsonNode call) {
+    JsonNode serviceNameNode = call.path(SERVICE_FIELD);
+    JsonNode methodNameNode = call.path(METHOD_FIELD);
+    if (!serviceNameNode.isTextual() || !methodNameNode.isTextual()) {
+      return createCompletedErrorResult(HttpStatus.BAD_REQUEST,
+          createErrorObject(String.format(
+              "Each call of a batch request should be a JSON object "
+                  + "with the '%s' and '%s' names",
+              SERVICE_FIELD, METHOD_FIELD)));
+    }
+    String serviceName = serviceNameNode.asText();
+    String methodName = methodNameNode.asText();
+    getLogger().debug("Batch call, service: {}, method: {}", serviceName,
+        methodName);
+
+    CompletableFuture<Result> result;
+    try {
+      result = callHandler.execute(serviceName, methodName,
+          call.path(PARAMS_FIELD));
+    } catch (RuntimeException e) {
+      result = new CompletableFuture<>();
+      result.completeExceptionally(e);
+    }
+    return result
+        .exceptionally(error -> createFailureResult(serviceName, methodName,
+            error instanceof CompletionException && error.getCause() != null
+                ? error.getCause()
+                : error));
+  }
+
+  private Result createFailureResult(String serviceName, String methodName,
+      Throwable cause) {
+    String errorMessage = String.format(
+        "Service '%s' method '%s' execution failure", serviceName, methodName);
+    getLogger().error(errorMessage, cause);
+    return createErrorResult(HttpStatus.INTERNAL_SERVER_ERROR,
+        createErrorObject(errorMessage));
+  }
+
+  private static void complete(CompletableFuture<Result> result, Result value,
+      Throwable error) {
+    if (error == null) {
+      result.complete(value);
+    } else {
+      result.completeExceptionally(error);
+    }
+  }
+
+  /**
+   * Serializes the result of a batch call into a buffer.
+   */
+  private Result createResult(HttpStatus status, String valueField,
+      ValueWriter valueWriter) throws IOException {
+    TokenBuffer buffer = new TokenBuffer(mapper, false);
+    buffer.writeStartObject();
+    buffer.writeNumberField(STATUS_FIELD, status.value());
+    buffer.writeFieldName(valueField);
+    valueWriter.write(buffer);
+    buffer.writeEndObject();
+    return new Result(status, buffer);
+  }
+
+  private void writeBadRequest(HttpServletResponse response,
+      String errorMessage) throws IOException {
+    response.setStatus(HttpStatus.BAD_REQUEST.value());
+    response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+    JsonGenerator generator = createGenerator(response);
+    mapper.writer().writeValue(generator, createErrorObject(errorMessage));
+  }
+
+  private JsonGenerator createGenerator(HttpServletResponse response)
+      throws IOException {
+    return mapper.getFactory()
+        .createGenerator(response.getOutputStream(), JsonEncoding.UTF8)
+        .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+  }
+
+  private static Map<String, String> createErrorObject(String errorMessage) {
+    return Collections.singletonMap(VaadinConnectException.ERROR_MESSAGE_FIELD,
+        errorMessage);
+  }
+
+  private static Logger getLogger() {
+    return LoggerFactory.getLogger(VaadinServiceBatchDispatcher.class);
+  }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * The limit of the concurrent executions of a service method, or of all the
+ * methods of a service, configured with the {@link Bulkhead} annotation or the
+ * {@code vaadin.connect.bulkheads} property.
+ * <p>
+ * The executions are limited with a fair semaphore. A call that does not get a
+ * permit right away waits for one, if there are less than the maximum number of
+ * the calls waiting already, and is rejected otherwise.
+ * <p>
+ * The permit of a call is held until the call completes: for the asynchronous
+ * methods, until the returned stage completes, for the streaming methods, until
+ * the returned publisher terminates or the subscription is cancelled, and for
+ * the iterated methods, until the returned value is iterated and closed.
+ */
+class VaadinServiceBulkhead {
+  private static final String PROPERTY_NAME = "vaadin.connect.bulkheads";
+
+  private final String name;
+  private final int maxConcurrentCalls;
+  private final int maxQueuedCalls;
+  private final long maxWaitNanos;
+  private final long retryAfterSeconds;
+  private final Semaphore permits;
+  private final AtomicInteger queuedCalls = new AtomicInteger();
+  private final LongAdder rejectedCalls = new LongAdder();
+
+  VaadinServiceBulkhead(String name, int maxConcurrentCalls, int maxQueuedCalls,
+      long maxWaitNanos, long retryAfterSeconds) {
+    this.name = name;
+    this.maxConcurrentCalls = maxConcurrentCalls;
+    this.maxQueuedCalls = maxQueuedCalls;
+    this.maxWaitNanos = maxWaitNanos;
+    this.retryAfterSeconds = retryAfterSeconds;
+    this.permits = new Semaphore(maxConcurrentCalls, true);
+  }
+
+  /**
+   * Acquires a permit to execute a call, waiting for it if the limit is reached
+   * and the queue is not full. A call that gets the permit should
+   * {@link #release()} it when it completes.
+   *
+   * @return {@code true} if the permit is acquired, {@code false} if the call
+   *         is rejected
+   */
+  boolean tryAcquire() {
+    if (permits.tryAcquire()) {
+      return true;
+    }
+    if (maxQueuedCalls > 0 && maxWaitNanos > 0) {
+      try {
+        if (queuedCalls.incrementAndGet() <= maxQueuedCalls
+            && permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS)) {
+          return true;
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        queuedCalls.decrementAndGet();
+      }
+    }
+    rejectedCalls.increment();
+    return false;
+  }
+
+  /**
+   * Releases the permit of a completed call.
+   */
+  void release() {
+    permits.release();
+  }
+
+  /**
+   * Creates a task that releases the permit of a call that completes after the
+   * method returns. The permit is released only the first time the task runs,
+   * so the task can be run from each of the ways the call can complete.
+   *
+   * @return the task to release the permit of the call with
+   */
+  Runnable createRelease() {
+    AtomicBoolean released = new AtomicBoolean();
+    return () -> {
+      if (released.compareAndSet(false, true)) {
+        release();
+      }
+    };
+  }
+
+  /**
+   * Gets the name of the bulkhead: the service name for the limit of the
+   * service, or the service and the method names separated by a dot for the
+   * limit of the method.
+   *
+   * @return the name of the bulkhead
+   */
+  String getName() {
+    return name;
+  }
+
+  long getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+
+  int getActiveCallCount() {
+    return maxConcurrentCalls - permits.availablePermits();
+  }
+
+  int getQueuedCallCount() {
+    return Math.max(0, Math.min(queuedCalls.get(), maxQueuedCalls));
+  }
+
+  long getRejectedCallCount() {
+    return rejectedCalls.sum();
+  }
+
+  /**
+   * Parses the bulkhead limits of the {@code vaadin.connect.bulkheads}
+   * property: a comma separated list of the service names, or of the service
+   * and the method names separated by a dot, with the maximum numbers of the
+   * concurrent executions, for instance,
+   * {@code ReportService=4,ReportService.export=1}.
+   *
+   * @param limits
+   *          the property value, may be {@code null} or empty
+   * @return the maximum numbers of the concurrent executions by the lower case
+   *         names
+   * @throws IllegalStateException
+   *           if the property value is not valid
+   */
+  static Map<String, Integer> parseLimits(String limits) {
+    if (limits == null || limits.trim().isEmpty()) {
+      return Collections.emptyMap();
+    }
+    Map<String, Integer> parsedLimits = new HashMap<>();
+    for (String limit : StringUtils.commaDelimitedListToStringArray(limits)) {
+      String[] nameAndValue = StringUtils.split(limit, "=");
+      if (nameAndValue == null || nameAndValue[0].trim().isEmpty()) {
+        throw createInvalidLimitException(limit, null);
+      }
+      try {
+        parsedLimits.put(nameAndValue[0].trim().toLowerCase(Locale.ENGLISH),
+            Integer.valueOf(nameAndValue[1].trim()));
+      } catch (NumberFormatException e) {
+        throw createInvalidLimitException(limit, e);
+      }
+    }
+    return parsedLimits;
+  }
+
+  private static IllegalStateException createInvalidLimitException(String limit,
+      NumberFormatException cause) {
+    return new IllegalStateException(String.format(
+        "Invalid Vaadin Connect bulkhead limit '%s', "
+            + "the '%s' property should be a comma separated list of 'service=limit' or 'service.method=limit' values",
+        limit.trim(), PROPERTY_NAME), cause);
+  }
+
+  /**
+   * Creates the bulkhead shared by the methods of the service given, if the
+   * service class is annotated with {@link Bulkhead}, or the limit of the
+   * service is set in the property.
+   *
+   * @param serviceName
+   *          the name of the service
+   * @param serviceType
+   *          the type of the service bean
+   * @param limits
+   *          the limits of the property
+   * @return the bulkhead of the service, or {@code null} if the service is not
+   *         limited
+   */
+  static VaadinServiceBulkhead forService(String serviceName,
+      Class<?> serviceType, Map<String, Integer> limits) {
+    return create(serviceName,
+        AnnotatedElementUtils.findMergedAnnotation(serviceType, Bulkhead.class),
+        null, limits.get(serviceName.toLowerCase(Locale.ENGLISH)));
+  }
+
+  /**
+   * Gets the bulkhead of the service method given: a new one, if the method is
+   * annotated with {@link Bulkhead}, or its limit is set in the property, or
+   * the bulkhead of the service otherwise.
+   *
+   * @param serviceName
+   *          the name of the service
+   * @param serviceType
+   *          the type of the service bean
+   * @param method
+   *          the service method
+   * @param limits
+   *          the limits of the property
+   * @param serviceBulkhead
+   *          the bulkhead of the service, or {@code null} if the service is not
+   *          limited
+   * @return the bulkhead of the method, or {@code null} if the method is not
+   *         limited
+   */
+  static VaadinServiceBulkhead forMethod(String serviceName,
+      Class<?> serviceType, Method method, Map<String, Integer> limits,
+      VaadinServiceBulkhead serviceBulkhead) {
+    String name = serviceName + '.' + method.getName();
+    String key = name.toLowerCase(Locale.ENGLISH);
+    Bulkhead annotation = method.getAnnotation(Bulkhead.class);
+    if (annotation == null && !limits.containsKey(key)) {
+      return serviceBulkhead;
+    }
+    return create(name, annotation,
+        AnnotatedElementUtils.findMergedAnnotation(serviceType, Bulkhead.class),
+        limits.get(key));
+  }
+
+  private static VaadinServiceBulkhead create(String name, Bulkhead annotation,
+      Bulkhead fallbackAnnotation, Integer limit) {
+    Bulkhead settings = annotation != null ? annotation : fallbackAnnotation;
+    if ((limit != null && limit <= 0)
+        || (limit == null && annotation == null)) {
+      return null;
+    }
+    int maxConcurrentCalls = limit != null ? limit
+        : annotation.maxConcurrentCalls();
+    if (maxConcurrentCalls <= 0 || (settings != null
+        && (settings.maxQueuedCalls() < 0 || settings.maxWaitTime() < 0))) {
+      throw new IllegalStateException(String.format(
+          "'%s' has invalid '%s' limits, "
+              + "the maximum number of the concurrent calls should be positive, "
+              + "and the queue size and the wait time should not be negative",
+          name, Bulkhead.class.getSimpleName()));
+    }
+    if (settings == null) {
+      return new VaadinServiceBulkhead(name, maxConcurrentCalls, 0, 0, 1);
+    }
+    return new VaadinServiceBulkhead(name, maxConcurrentCalls,
+        settings.maxQueuedCalls(),
+        settings.timeUnit().toNanos(settings.maxWaitTime()),
+        settings.retryAfter());
+  }
+}
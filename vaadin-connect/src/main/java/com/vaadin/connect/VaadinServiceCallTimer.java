@@ -0,0 +1,329 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Measures the time a single service method call spends in each phase of its
+ * processing, and the sizes of its request and response bodies, to be reported
+ * by a {@link Recorder} when the call completes.
+ * <p>
+ * The timer is only created when the call metrics are enabled. The static
+ * methods accept a {@code null} timer and do nothing then, so that the calls
+ * are not slowed down, nor allocate anything, when the metrics are disabled.
+ */
+class VaadinServiceCallTimer {
+  static final int ACCESS_CHECK = 0;
+  static final int DESERIALIZATION = 1;
+  static final int VALIDATION = 2;
+  static final int INVOCATION = 3;
+  static final int SERIALIZATION = 4;
+
+  private static final String[] PHASE_NAMES = { "access-check",
+      "deserialization", "validation", "invocation", "serialization" };
+
+  /**
+   * Reports the measurements of a completed call.
+   */
+  @FunctionalInterface
+  interface Recorder {
+    /**
+     * Reports the measurements of a call.
+     *
+     * @param timer
+     *          the timer of the call
+     * @param status
+     *          the HTTP status code of the call
+     */
+    void record(VaadinServiceCallTimer timer, int status);
+  }
+
+  private final String serviceName;
+  private final String methodName;
+  private final long[] phaseNanos = new long[PHASE_NAMES.length];
+  private int measuredPhases;
+  private long requestBytes = -1;
+  private long responseBytes = -1;
+
+  /**
+   * Creates a timer for a call of the service method given.
+   *
+   * @param serviceName
+   *          the name of the service called
+   * @param methodName
+   *          the name of the method called
+   */
+  VaadinServiceCallTimer(String serviceName, String methodName) {
+    this.serviceName = serviceName;
+    this.methodName = methodName;
+  }
+
+  /**
+   * Gets the start time of a phase.
+   *
+   * @param timer
+   *          the timer of the call, or {@code null} if it is not measured
+   * @return the current time in nanoseconds, or {@code 0} if the call is not
+   *         measured
+   */
+  static long start(VaadinServiceCallTimer timer) {
+    return timer == null ? 0 : System.nanoTime();
+  }
+
+  /**
+   * Adds the time elapsed since the start time given to the phase.
+   *
+   * @param timer
+   *          the timer of the call, or {@code null} if it is not measured
+   * @param phase
+   *          the phase to add the time to
+   * @param startNanos
+   *          the start time returned by {@link #start(VaadinServiceCallTimer)}
+   */
+  static void stop(VaadinServiceCallTimer timer, int phase, long startNanos) {
+    if (timer != null) {
+      timer.add(phase, System.nanoTime() - startNanos);
+    }
+  }
+
+  /**
+   * Adds the time elapsed since the start time given to the phase, and removes
+   * it from the enclosing phase, which time is measured around this one.
+   *
+   * @param timer
+   *          the timer of the call, or {@code null} if it is not measured
+   * @param phase
+   *          the phase to add the time to
+   * @param enclosingPhase
+   *          the phase to remove the time from
+   * @param startNanos
+   *          the start time returned by {@link #start(VaadinServiceCallTimer)}
+   */
+  static void stopNested(VaadinServiceCallTimer timer, int phase,
+      int enclosingPhase, long startNanos) {
+    if (timer != null) {
+      long elapsedNanos = System.nanoTime() - startNanos;
+      timer.add(phase, elapsedNanos);
+      timer.phaseNanos[enclosingPhase] -= elapsedNanos;
+    }
+  }
+
+  private void add(int phase, long nanos) {
+    phaseNanos[phase] += nanos;
+    measuredPhases |= 1 << phase;
+  }
+
+  /**
+   * Wraps the request body stream to count the bytes read from it.
+   *
+   * @param timer
+   *          the timer of the call, or {@code null} if it is not measured
+   * @param requestBody
+   *          the request body stream
+   * @return the counting stream, or the stream given if the call is not
+   *         measured
+   */
+  static InputStream countRequestBytes(VaadinServiceCallTimer timer,
+      InputStream requestBody) {
+    if (timer == null) {
+      return requestBody;
+    }
+    timer.requestBytes = 0;
+    return new FilterInputStream(requestBody) {
+      @Override
+      public int read() throws IOException {
+        int read = super.read();
+        if (read >= 0) {
+          timer.requestBytes++;
+        }
+        return read;
+      }
+
+      @Override
+      public int read(byte[] buffer, int offset, int length)
+          throws IOException {
+        int read = super.read(buffer, offset, length);
+        if (read > 0) {
+          timer.requestBytes += read;
+        }
+        return read;
+      }
+    };
+  }
+
+  /**
+   * Wraps the response to count the bytes written into its body.
+   *
+   * @param timer
+   *          the timer of the call, or {@code null} if it is not measured
+   * @param response
+   *          the response of the call
+   * @return the counting response, or the response given if the call is not
+   *         measured
+   */
+  static HttpServletResponse countResponseBytes(VaadinServiceCallTimer timer,
+      HttpServletResponse response) {
+    if (timer == null) {
+      return response;
+    }
+    timer.responseBytes = 0;
+    return new HttpServletResponseWrapper(response) {
+      private ServletOutputStream outputStream;
+
+      @Override
+      public ServletOutputStream getOutputStream() throws IOException {
+        if (outputStream == null) {
+          outputStream = new CountingOutputStream(super.getOutputStream(),
+              timer);
+        }
+        return outputStream;
+      }
+    };
+  }
+
+  /**
+   * Gets the name of the service called.
+   *
+   * @return the service name
+   */
+  String getServiceName() {
+    return serviceName;
+  }
+
+  /**
+   * Gets the name of the method called.
+   *
+   * @return the method name
+   */
+  String getMethodName() {
+    return methodName;
+  }
+
+  /**
+   * Gets the number of the phases.
+   *
+   * @return the number of the phases
+   */
+  static int getPhaseCount() {
+    return PHASE_NAMES.length;
+  }
+
+  /**
+   * Gets the name of the phase to report the time of the phase with.
+   *
+   * @param phase
+   *          the phase
+   * @return the phase name
+   */
+  static String getPhaseName(int phase) {
+    return PHASE_NAMES[phase];
+  }
+
+  /**
+   * Checks if the call went through the phase given.
+   *
+   * @param phase
+   *          the phase
+   * @return {@code true} if the time of the phase was measured, {@code false}
+   *         otherwise
+   */
+  boolean isMeasured(int phase) {
+    return (measuredPhases & 1 << phase) != 0;
+  }
+
+  /**
+   * Gets the time the call spent in the phase given.
+   *
+   * @param phase
+   *          the phase
+   * @return the time in nanoseconds
+   */
+  long getPhaseNanos(int phase) {
+    return Math.max(0, phaseNanos[phase]);
+  }
+
+  /**
+   * Gets the number of the bytes read from the request body.
+   *
+   * @return the request body size, or {@code -1} if it is not measured, for
+   *         instance, for the calls of a batch request
+   */
+  long getRequestBytes() {
+    return requestBytes;
+  }
+
+  /**
+   * Gets the number of the bytes written into the response body.
+   *
+   * @return the response body size, or {@code -1} if it is not measured, for
+   *         instance, for the calls of a batch request
+   */
+  long getResponseBytes() {
+    return responseBytes;
+  }
+
+  private static class CountingOutputStream extends ServletOutputStream {
+    private final ServletOutputStream delegate;
+    private final VaadinServiceCallTimer timer;
+
+    private CountingOutputStream(ServletOutputStream delegate,
+        VaadinServiceCallTimer timer) {
+      this.delegate = delegate;
+      this.timer = timer;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      delegate.write(b);
+      timer.responseBytes++;
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length)
+        throws IOException {
+      delegate.write(buffer, offset, length);
+      timer.responseBytes += length;
+    }
+
+    @Override
+    public void flush() throws IOException {
+      delegate.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      delegate.close();
+    }
+
+    @Override
+    public boolean isReady() {
+      return delegate.isReady();
+    }
+
+    @Override
+    public void setWriteListener(WriteListener writeListener) {
+      delegate.setWriteListener(writeListener);
+    }
+  }
+}
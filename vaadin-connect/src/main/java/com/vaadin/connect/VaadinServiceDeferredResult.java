@@ -0,0 +1,87 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect;
+
+import java.io.IOException;
+
+import org.springframework.web.context.request.async.AsyncRequestTimeoutException;
+import org.springframework.web.context.request.async.DeferredResult;
+
+/**
+ * The deferred result of a service method call request that is in the
+ * asynchronous mode, which writes the response of the call into the servlet
+ * response directly.
+ * <p>
+ * The check that the request has not expired, the write of the response, and
+ * the completion of the request are done holding the same lock as the timeout
+ * handler, which completes the request with an
+ * {@link AsyncRequestTimeoutException}. So the request never times out while
+ * the response is being written, and the response is never written after the
+ * request has timed out.
+ */
+class VaadinServiceDeferredResult extends DeferredResult<Object> {
+  private final Object lock = new Object();
+
+  /**
+   * Writes the response into the servlet response.
+   */
+  @FunctionalInterface
+  interface ResponseWriter {
+    void write() throws IOException;
+  }
+
+  /**
+   * Creates a deferred result with the timeout given.
+   *
+   * @param timeout
+   *          the timeout in milliseconds, a negative value for no timeout, or
+   *          {@code null} for the default timeout of the asynchronous requests
+   */
+  VaadinServiceDeferredResult(Long timeout) {
+    super(timeout);
+    onTimeout(() -> {
+      synchronized (lock) {
+        setErrorResult(new AsyncRequestTimeoutException());
+      }
+    });
+  }
+
+  /**
+   * Writes the complete response, and completes the request, unless the request
+   * has completed or expired already. If the write fails, the request is
+   * completed with the error.
+   *
+   * @param writer
+   *          the writer of the response
+   * @return {@code true} if the response is written, {@code false} if the
+   *         request has completed or expired already
+   */
+  boolean complete(ResponseWriter writer) {
+    synchronized (lock) {
+      if (isSetOrExpired()) {
+        return false;
+      }
+      try {
+        writer.write();
+        // The response is written already, the dispatch only completes it
+        setResult(null);
+      } catch (IOException | RuntimeException e) {
+        setErrorResult(e);
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates the executor to invoke the service methods in, based on the
+ * {@link VaadinConnectProperties#getVaadinConnectExecutor()} value, the
+ * executor to execute the calls of the batch requests in, and the executor to
+ * write the elements of the streaming responses in.
+ * <p>
+ * The virtual threads are created through reflection, so that the project can
+ * be compiled and run with the Java versions that do not support virtual
+ * threads. On such versions, the service methods are invoked in the request
+ * threads, same as with the {@code platform} executor.
+ */
+final class VaadinServiceExecutors {
+  static final String PLATFORM_EXECUTOR = "platform";
+  static final String VIRTUAL_EXECUTOR = "virtual";
+
+  private static final String VIRTUAL_EXECUTOR_FACTORY_METHOD = "newVirtualThreadPerTaskExecutor";
+  private static final String BATCH_THREAD_NAME_PREFIX = "vaadin-connect-batch-";
+  private static final long BATCH_THREAD_KEEP_ALIVE_SECONDS = 60;
+  private static final String STREAM_THREAD_NAME_PREFIX = "vaadin-connect-stream-";
+
+  private VaadinServiceExecutors() {
+  }
+
+  /**
+   * Creates the executor for the executor mode given.
+   *
+   * @param executorMode
+   *          the executor mode, {@code platform} or {@code virtual}, the
+   *          {@code null} value means {@code platform}
+   * @return the executor to invoke the service methods in, or {@code null} if
+   *         the service methods should be invoked in the request threads
+   * @throws IllegalStateException
+   *           if the executor mode is not supported
+   */
+  static Executor create(String executorMode) {
+    if (executorMode == null || PLATFORM_EXECUTOR.equals(executorMode)) {
+      return null;
+    }
+    if (!VIRTUAL_EXECUTOR.equals(executorMode)) {
+      throw new IllegalStateException(String.format(
+          "Unsupported Vaadin Connect executor '%s', "
+              + "the 'vaadin.connect.executor' property should be either '%s' or '%s'",
+          executorMode, PLATFORM_EXECUTOR, VIRTUAL_EXECUTOR));
+    }
+    return createVirtualThreadExecutor();
+  }
+
+  /**
+   * Creates the executor for the calls of the batch requests, with the fixed
+   * number of threads shared by all the batch requests. The executor does not
+   * queue the calls: when all the threads are busy, the call is executed by the
+   * thread that submits it, that is, the request thread.
+   *
+   * @param threads
+   *          the number of threads
+   * @return the executor for the batch calls, or {@code null} if the batch
+   *         calls should be executed in the request threads one by one
+   */
+  static Executor createBatchExecutor(int threads) {
+    if (threads <= 0) {
+      return null;
+    }
+    AtomicInteger threadCount = new AtomicInteger();
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+        BATCH_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+        new SynchronousQueue<>(), runnable -> {
+          Thread thread = new Thread(runnable,
+              BATCH_THREAD_NAME_PREFIX + threadCount.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * Creates the executor to write the elements of the streaming responses in,
+   * so that the threads of the publishers are not blocked while the elements
+   * are written to the clients. A thread is created for each stream that is
+   * being written at the same time, and is kept for a while after the write for
+   * the next one.
+   *
+   * @return the executor for the stream writes
+   */
+  static Executor createStreamExecutor() {
+    AtomicInteger threadCount = new AtomicInteger();
+    return new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+        BATCH_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+        new SynchronousQueue<>(), runnable -> {
+          Thread thread = new Thread(runnable,
+              STREAM_THREAD_NAME_PREFIX + threadCount.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  private static Executor createVirtualThreadExecutor() {
+    Method factoryMethod;
+    try {
+      factoryMethod = Executors.class
+          .getMethod(VIRTUAL_EXECUTOR_FACTORY_METHOD);
+    } catch (NoSuchMethodException e) {
+      getLogger().warn(
+          "Virtual threads are not supported by the Java version '{}', "
+              + "the service methods are invoked in the request threads",
+          System.getProperty("java.version"));
+      return null;
+    }
+    try {
+      return (Executor) factoryMethod.invoke(null);
+    } catch (IllegalAccessException | InvocationTargetException e) {
+      throw new IllegalStateException(
+          "Failed to create the virtual thread executor", e);
+    }
+  }
+
+  private static Logger getLogger() {
+    return LoggerFactory.getLogger(VaadinServiceExecutors.class);
+  }
+}
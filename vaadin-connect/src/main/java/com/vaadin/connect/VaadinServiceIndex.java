@@ -0,0 +1,252 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.util.ClassUtils;
+
+/**
+ * The index of the Vaadin Connect services of an application, generated when
+ * the application is built by the {@code generate-openapi-spec} goal of the
+ * Vaadin Connect Maven plugin, so that the {@link VaadinConnectController} does
+ * not need to list all the public methods of each indexed service with
+ * reflection when the application starts. The services that are not listed in
+ * the index are still registered, with their methods looked up with reflection.
+ * <p>
+ * The index is the {@value #RESOURCE_NAME} resource, which lists the service
+ * classes, and the names and the parameter types of the methods of each
+ * service, for instance:
+ *
+ * <pre>
+ * {
+ *   "services" : [ {
+ *     "class" : "com.example.UserService",
+ *     "methods" : [ {
+ *       "name" : "getUser",
+ *       "parameterTypes" : [ "long" ]
+ *     } ]
+ *   } ]
+ * }
+ * </pre>
+ */
+public final class VaadinServiceIndex {
+  /**
+   * The name of the index resource in the application classpath.
+   */
+  public static final String RESOURCE_NAME = "META-INF/vaadin-connect/service-index.json";
+
+  private static final String SERVICES_FIELD = "services";
+  private static final String CLASS_FIELD = "class";
+  private static final String METHODS_FIELD = "methods";
+  private static final String NAME_FIELD = "name";
+  private static final String PARAMETER_TYPES_FIELD = "parameterTypes";
+
+  private final Map<String, List<IndexedMethod>> services;
+
+  private static class IndexedMethod {
+    private final String name;
+    private final List<String> parameterTypes;
+
+    private IndexedMethod(String name, List<String> parameterTypes) {
+      this.name = name;
+      this.parameterTypes = parameterTypes;
+    }
+  }
+
+  private VaadinServiceIndex(Map<String, List<IndexedMethod>> services) {
+    this.services = services;
+  }
+
+  /**
+   * Checks if the method of a service class is a service method, that is,
+   * neither a bridge method, nor a method of the {@link Object} class.
+   *
+   * @param method
+   *          a public method of a service class
+   * @return {@code true} if the method can be called as a service method,
+   *         {@code false} otherwise
+   */
+  static boolean isServiceMethod(Method method) {
+    return method.getDeclaringClass() != Object.class && !method.isBridge();
+  }
+
+  /**
+   * Creates the index of the service classes given.
+   *
+   * @param serviceClasses
+   *          the classes annotated with {@link VaadinService}
+   * @return the index JSON, to be written into the {@value #RESOURCE_NAME}
+   *         resource
+   */
+  public static String create(Collection<Class<?>> serviceClasses) {
+    ObjectMapper mapper = new ObjectMapper()
+        .enable(SerializationFeature.INDENT_OUTPUT);
+    ObjectNode index = mapper.createObjectNode();
+    ArrayNode servicesNode = index.putArray(SERVICES_FIELD);
+    serviceClasses.stream().sorted(Comparator.comparing(Class::getName))
+        .forEach(serviceClass -> {
+          ObjectNode serviceNode = servicesNode.addObject();
+          serviceNode.put(CLASS_FIELD, serviceClass.getName());
+          ArrayNode methodsNode = serviceNode.putArray(METHODS_FIELD);
+          Stream.of(serviceClass.getMethods())
+              .filter(VaadinServiceIndex::isServiceMethod)
+              .sorted(Comparator.comparing(Method::getName).thenComparing(
+                  method -> getParameterTypeNames(method).toString()))
+              .forEach(method -> {
+                ObjectNode methodNode = methodsNode.addObject();
+                methodNode.put(NAME_FIELD, method.getName());
+                getParameterTypeNames(method)
+                    .forEach(methodNode.putArray(PARAMETER_TYPES_FIELD)::add);
+              });
+        });
+    try {
+      return mapper.writeValueAsString(index);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException(
+          "Unexpected: Failed to write the service index", e);
+    }
+  }
+
+  private static List<String> getParameterTypeNames(Method method) {
+    return Stream.of(method.getParameterTypes()).map(Class::getName)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Loads the index from all the {@value #RESOURCE_NAME} resources of the class
+   * loader given.
+   *
+   * @param classLoader
+   *          the class loader of the application
+   * @return the index, or {@code null} if there are no index resources
+   * @throws IllegalStateException
+   *           if an index resource cannot be read
+   */
+  static VaadinServiceIndex load(ClassLoader classLoader) {
+    Map<String, List<IndexedMethod>> services = new LinkedHashMap<>();
+    ObjectMapper mapper = new ObjectMapper();
+    boolean found = false;
+    try {
+      Enumeration<URL> resources = classLoader.getResources(RESOURCE_NAME);
+      while (resources.hasMoreElements()) {
+        URL resource = resources.nextElement();
+        found = true;
+        try (InputStream stream = resource.openStream()) {
+          readServices(mapper.readTree(stream), services);
+        } catch (IOException | RuntimeException e) {
+          throw new IllegalStateException(
+              String.format(
+                  "Failed to read the service index '%s', "
+                      + "rebuild the application to generate it again",
+                  resource),
+              e);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(
+          "Failed to look up the service index resources", e);
+    }
+    return found ? new VaadinServiceIndex(services) : null;
+  }
+
+  private static void readServices(JsonNode index,
+      Map<String, List<IndexedMethod>> services) {
+    for (JsonNode serviceNode : getRequired(index, SERVICES_FIELD)) {
+      List<IndexedMethod> methods = new ArrayList<>();
+      for (JsonNode methodNode : getRequired(serviceNode, METHODS_FIELD)) {
+        List<String> parameterTypes = new ArrayList<>();
+        getRequired(methodNode, PARAMETER_TYPES_FIELD)
+            .forEach(typeNode -> parameterTypes.add(typeNode.asText()));
+        methods.add(new IndexedMethod(
+            getRequired(methodNode, NAME_FIELD).asText(), parameterTypes));
+      }
+      services.put(getRequired(serviceNode, CLASS_FIELD).asText(), methods);
+    }
+  }
+
+  private static JsonNode getRequired(JsonNode node, String fieldName) {
+    JsonNode field = node.get(fieldName);
+    if (field == null || field.isNull()) {
+      throw new IllegalArgumentException(
+          String.format("Missing the '%s' field in '%s'", fieldName, node));
+    }
+    return field;
+  }
+
+  /**
+   * Gets the names of the indexed service classes.
+   *
+   * @return the service class names
+   */
+  Set<String> getServiceClassNames() {
+    return Collections.unmodifiableSet(services.keySet());
+  }
+
+  /**
+   * Gets the indexed methods of a service from the type of its bean.
+   *
+   * @param serviceClassName
+   *          the name of the indexed service class
+   * @param beanType
+   *          the type of the service bean, which is either the service class,
+   *          or its subclass, for instance, a proxy
+   * @return the public methods of the bean type that are indexed
+   * @throws ClassNotFoundException
+   *           if a parameter type of an indexed method does not exist, since
+   *           the index is out of date
+   * @throws NoSuchMethodException
+   *           if an indexed method does not exist, since the index is out of
+   *           date
+   */
+  Method[] getMethods(String serviceClassName, Class<?> beanType)
+      throws ClassNotFoundException, NoSuchMethodException {
+    List<IndexedMethod> indexedMethods = services.get(serviceClassName);
+    Method[] methods = new Method[indexedMethods.size()];
+    for (int i = 0; i < methods.length; i++) {
+      IndexedMethod indexedMethod = indexedMethods.get(i);
+      Class<?>[] parameterTypes = new Class<?>[indexedMethod.parameterTypes
+          .size()];
+      for (int j = 0; j < parameterTypes.length; j++) {
+        parameterTypes[j] = ClassUtils.forName(
+            indexedMethod.parameterTypes.get(j), beanType.getClassLoader());
+      }
+      methods[i] = beanType.getMethod(indexedMethod.name, parameterTypes);
+    }
+    return methods;
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect;
+
+/**
+ * Intercepts the invocations of the Vaadin Connect service methods, for
+ * instance, to trace, rate limit or cache the calls without changing the
+ * services.
+ * <p>
+ * The interceptors are the beans of this type in the application context. They
+ * are ordered with the {@link org.springframework.core.annotation.Order}
+ * annotation or the {@link org.springframework.core.Ordered} interface, the
+ * first interceptor being the outermost one, and form a chain around the
+ * service method invocation, similar to the servlet filters. Each interceptor
+ * decides whether to {@link VaadinServiceInvocation#proceed() proceed} with the
+ * next interceptor, or the service method for the last one, or to return a
+ * result of its own instead.
+ * <p>
+ * The interceptors are invoked after the access is checked and the parameters
+ * are read and validated, and before the return value is validated and written.
+ * An interceptor is invoked for each call of each service method, in the thread
+ * that invokes the method, so it should be thread-safe and fast.
+ */
+@FunctionalInterface
+public interface VaadinServiceInterceptor {
+  /**
+   * Intercepts the invocation of a service method.
+   *
+   * @param invocation
+   *          the invocation of the service method
+   * @return the result of the {@link VaadinServiceInvocation#proceed()} call,
+   *         or a result to return instead of invoking the method, which should
+   *         be an instance of the method return type
+   * @throws Exception
+   *           to abort the call, a
+   *           {@link com.vaadin.connect.exception.VaadinConnectException} is
+   *           sent to the client as the {@code 400 Bad Request} response, and
+   *           any other exception as the {@code 500 Internal Server Error}
+   *           response
+   */
+  Object intercept(VaadinServiceInvocation invocation) throws Exception;
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.ClassUtils;
+
+/**
+ * The chain of the {@link VaadinServiceInterceptor} beans around a single
+ * service method invocation.
+ * <p>
+ * The chain is only created for the calls when there are interceptors, and is
+ * the only object allocated for the interception: the position of the next
+ * interceptor is kept in the chain itself, and the principal is only looked up
+ * when an interceptor asks for it.
+ */
+final class VaadinServiceInterceptorChain implements VaadinServiceInvocation {
+  private final VaadinServiceInterceptor[] interceptors;
+  private final String serviceName;
+  private final VaadinServiceMethod serviceMethod;
+  private final Object serviceObject;
+  private final Object[] arguments;
+  private int position;
+  private boolean argumentsRejected;
+
+  private VaadinServiceInterceptorChain(VaadinServiceInterceptor[] interceptors,
+      String serviceName, VaadinServiceMethod serviceMethod,
+      Object serviceObject, Object[] arguments) {
+    this.interceptors = interceptors;
+    this.serviceName = serviceName;
+    this.serviceMethod = serviceMethod;
+    this.serviceObject = serviceObject;
+    this.arguments = arguments;
+  }
+
+  /**
+   * Gets the interceptor beans of the application context, in their order.
+   *
+   * @param context
+   *          the application context
+   * @return the ordered interceptors, empty if there are none
+   */
+  static VaadinServiceInterceptor[] getInterceptors(
+      ApplicationContext context) {
+    Map<String, VaadinServiceInterceptor> beans = context
+        .getBeansOfType(VaadinServiceInterceptor.class);
+    if (beans == null || beans.isEmpty()) {
+      return new VaadinServiceInterceptor[0];
+    }
+    List<VaadinServiceInterceptor> interceptors = new ArrayList<>(
+        beans.values());
+    AnnotationAwareOrderComparator.sort(interceptors);
+    return interceptors.toArray(new VaadinServiceInterceptor[0]);
+  }
+
+  /**
+   * Creates the chain of the interceptors around the service method invocation.
+   *
+   * @param interceptors
+   *          the ordered interceptors, not empty
+   * @param serviceName
+   *          the name of the service called
+   * @param serviceMethod
+   *          the method to invoke
+   * @param serviceObject
+   *          the service to invoke the method on
+   * @param arguments
+   *          the method arguments
+   * @return the chain to {@link #invoke()}
+   */
+  static VaadinServiceInterceptorChain create(
+      VaadinServiceInterceptor[] interceptors, String serviceName,
+      VaadinServiceMethod serviceMethod, Object serviceObject,
+      Object[] arguments) {
+    return new VaadinServiceInterceptorChain(interceptors, serviceName,
+        serviceMethod, serviceObject, arguments);
+  }
+
+  /**
+   * Invokes the interceptors and the method, and checks that the result
+   * returned by the interceptors can be returned by the method.
+   *
+   * @return the result of the first interceptor
+   * @throws InvocationTargetException
+   *           if the method throws an exception that is not an
+   *           {@link Exception}
+   * @throws Exception
+   *           if an interceptor or the method throws an exception
+   */
+  Object invoke() throws Exception {
+    Object result = proceed();
+    Method method = serviceMethod.getMethod();
+    if (result != null
+        && !ClassUtils.resolvePrimitiveIfNecessary(method.getReturnType())
+            .isInstance(result)) {
+      throw new IllegalStateException(String.format(
+          "An interceptor returned '%s' for service '%s' method '%s', "
+              + "which return type is '%s'",
+          result.getClass().getName(), serviceName, method.getName(),
+          method.getGenericReturnType().getTypeName()));
+    }
+    return result;
+  }
+
+  /**
+   * Checks if the method was not invoked because the arguments do not match the
+   * method declaration, as opposed to an interceptor or the method throwing an
+   * {@link IllegalArgumentException}.
+   *
+   * @return {@code true} if the arguments are rejected, {@code false} otherwise
+   */
+  boolean isArgumentsRejected() {
+    return argumentsRejected;
+  }
+
+  @Override
+  public String getServiceName() {
+    return serviceName;
+  }
+
+  @Override
+  public Method getMethod() {
+    return serviceMethod.getMethod();
+  }
+
+  @Override
+  public Object[] getArguments() {
+    return arguments;
+  }
+
+  @Override
+  public Principal getPrincipal() {
+    Authentication authentication = SecurityContextHolder.getContext()
+        .getAuthentication();
+    return authentication instanceof AnonymousAuthenticationToken ? null
+        : authentication;
+  }
+
+  @Override
+  public Object proceed() throws Exception {
+    int current = position;
+    if (current < interceptors.length) {
+      position = current + 1;
+      try {
+        return interceptors[current].intercept(this);
+      } finally {
+        // Allows an interceptor to proceed again, for instance, to retry
+        position = current;
+      }
+    }
+    try {
+      return serviceMethod.invoke(serviceObject, arguments);
+    } catch (IllegalArgumentException e) {
+      argumentsRejected = true;
+      throw e;
+    } catch (InvocationTargetException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      }
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect;
+
+import java.lang.reflect.Method;
+import java.security.Principal;
+
+/**
+ * The invocation of a Vaadin Connect service method, passed through the chain
+ * of the {@link VaadinServiceInterceptor} beans.
+ */
+public interface VaadinServiceInvocation {
+  /**
+   * Gets the name of the service called, as declared with the
+   * {@link VaadinService} annotation or the class name.
+   *
+   * @return the service name
+   */
+  String getServiceName();
+
+  /**
+   * Gets the service method to invoke.
+   *
+   * @return the service method
+   */
+  Method getMethod();
+
+  /**
+   * Gets the arguments to invoke the method with, as read from the request. The
+   * array is passed to the method as is, so changing its elements changes the
+   * arguments of the invocation.
+   *
+   * @return the method arguments, in the declaration order
+   */
+  Object[] getArguments();
+
+  /**
+   * Gets the authenticated user that calls the method.
+   *
+   * @return the user, or {@code null} for the anonymous calls
+   */
+  Principal getPrincipal();
+
+  /**
+   * Proceeds with the next interceptor of the chain, or invokes the service
+   * method if there are no more interceptors.
+   *
+   * @return the value returned by the next interceptor or the method
+   * @throws Exception
+   *           if the next interceptor or the method throws an exception
+   */
+  Object proceed() throws Exception;
+}
@@ -0,0 +1,521 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.ResolvableType;
+import org.springframework.util.ClassUtils;
+
+/**
+ * A public method of a Vaadin Connect service, together with the data that is
+ * resolved for it once, when the service is registered, and reused by every
+ * call to the method.
+ * <p>
+ * The method is invoked through a {@link MethodHandle} that is adapted to a
+ * generic {@code (Object, Object[])Object} signature, so that no access checks
+ * are performed and no arguments are copied on each call. If the method cannot
+ * be accessed with a public lookup (for instance, when it is declared in a
+ * non-public class), the method falls back to the reflective invocation, that
+ * reports the access issue on each call, same as before.
+ * <p>
+ * The methods returning a {@link CompletionStage} are asynchronous: the value
+ * the stage completes with is the response of the method, so the response type
+ * is the type argument of the stage, not the declared return type. Similarly,
+ * the methods returning a {@code org.reactivestreams.Publisher} are streaming:
+ * each element published is a separate response value, which type is the type
+ * argument of the publisher.
+ * <p>
+ * The methods returning a {@link Stream}, an {@link Iterator} or an
+ * {@link Iterable} that is not a {@link Collection} are iterated: the elements
+ * are written into the response one by one, as they are iterated, so the type
+ * of each element is resolved from the type argument of the returned value.
+ * <p>
+ * The responses of the methods annotated with {@link CacheResult} are cached in
+ * the {@link VaadinServiceResultCache} of the method. Those methods and the
+ * methods annotated with {@link Idempotent} are idempotent, so their responses
+ * are sent with an {@code ETag} header.
+ * <p>
+ * The parameters and the return value of the method are validated according to
+ * its {@link VaadinServiceValidationPlan}, so that the unconstrained ones skip
+ * the validator.
+ * <p>
+ * The last parameter of the method can be a {@code java.util.stream.Stream} or
+ * an {@code Iterator}, which elements are read lazily from the request body,
+ * see {@link VaadinServiceStreamParameter}.
+ */
+class VaadinServiceMethod {
+  private static final String PUBLISHER_CLASS_NAME = "org.reactivestreams.Publisher";
+  private static final Map<Class<?>, Class<?>[]> WIDENING_CONVERSIONS = new HashMap<>();
+
+  static {
+    WIDENING_CONVERSIONS.put(boolean.class, new Class<?>[] { Boolean.class });
+    WIDENING_CONVERSIONS.put(char.class, new Class<?>[] { Character.class });
+    WIDENING_CONVERSIONS.put(byte.class, new Class<?>[] { Byte.class });
+    WIDENING_CONVERSIONS.put(short.class,
+        new Class<?>[] { Short.class, Byte.class });
+    WIDENING_CONVERSIONS.put(int.class, new Class<?>[] { Integer.class,
+        Character.class, Short.class, Byte.class });
+    WIDENING_CONVERSIONS.put(long.class, new Class<?>[] { Long.class,
+        Integer.class, Character.class, Short.class, Byte.class });
+    WIDENING_CONVERSIONS.put(float.class, new Class<?>[] { Float.class,
+        Long.class, Integer.class, Character.class, Short.class, Byte.class });
+    WIDENING_CONVERSIONS.put(double.class,
+        new Class<?>[] { Double.class, Float.class, Long.class, Integer.class,
+            Character.class, Short.class, Byte.class });
+  }
+
+  private final Method method;
+  private final Parameter[] parameters;
+  private final Class<?>[] parameterTypes;
+  private final Class<?>[][] acceptedWrappers;
+  private final boolean isStatic;
+  private final MethodHandle invoker;
+  private final boolean isAsync;
+  private final boolean isStreaming;
+  private final Type returnType;
+  private final boolean isReturnTypeExact;
+  private final boolean isIterated;
+  private final Type elementType;
+  private final boolean isElementTypeExact;
+  private final VaadinServiceResultCache resultCache;
+  private final boolean isIdempotent;
+  private final VaadinServiceValidationPlan validationPlan;
+  private final VaadinServiceBulkhead bulkhead;
+  private final VaadinServiceStreamParameter streamParameter;
+
+  /**
+   * Creates the service method data and precompiles the method invoker. The
+   * parameters and the return value of the method are always validated.
+   *
+   * @param method
+   *          the public method of the service to create the data for, not
+   *          {@code null}
+   */
+  VaadinServiceMethod(Method method) {
+    this(method, VaadinServiceValidationPlan.validateAll(method), null);
+  }
+
+  /**
+   * Creates the service method data with the validation plan and the bulkhead
+   * given and precompiles the method invoker.
+   *
+   * @param method
+   *          the public method of the service to create the data for, not
+   *          {@code null}
+   * @param validationPlan
+   *          the plan to validate the method parameters and return value with,
+   *          not {@code null}
+   * @param bulkhead
+   *          the bulkhead to limit the concurrent executions of the method
+   *          with, or {@code null} if they are not limited
+   */
+  VaadinServiceMethod(Method method, VaadinServiceValidationPlan validationPlan,
+      VaadinServiceBulkhead bulkhead) {
+    this.method = method;
+    this.validationPlan = validationPlan;
+    this.bulkhead = bulkhead;
+    this.parameters = method.getParameters();
+    this.parameterTypes = method.getParameterTypes();
+    this.acceptedWrappers = new Class<?>[parameterTypes.length][];
+    for (int i = 0; i < parameterTypes.length; i++) {
+      acceptedWrappers[i] = WIDENING_CONVERSIONS.get(parameterTypes[i]);
+    }
+    this.isStatic = Modifier.isStatic(method.getModifiers());
+    this.invoker = createInvoker(method, isStatic, parameterTypes.length);
+    this.isAsync = CompletionStage.class
+        .isAssignableFrom(method.getReturnType());
+    this.isStreaming = !isAsync && isPublisher(method.getReturnType());
+    if (isAsync || isStreaming) {
+      Class<?> containerType = isAsync ? CompletionStage.class
+          : ClassUtils.resolveClassName(PUBLISHER_CLASS_NAME,
+              method.getReturnType().getClassLoader());
+      ResolvableType resultType = ResolvableType.forMethodReturnType(method)
+          .as(containerType).getGeneric(0);
+      this.returnType = getTypeArgument(resultType);
+      this.isReturnTypeExact = resultType.resolve() != null
+          && isSerializedAsDeclared(resultType.resolve());
+    } else {
+      this.returnType = method.getGenericReturnType();
+      this.isReturnTypeExact = isSerializedAsDeclared(method.getReturnType());
+    }
+    Class<?> iteratedType = isAsync || isStreaming ? null
+        : getIteratedType(method.getReturnType());
+    this.isIterated = iteratedType != null;
+    if (isIterated) {
+      ResolvableType iteratedElementType = ResolvableType
+          .forMethodReturnType(method).as(iteratedType).getGeneric(0);
+      this.elementType = getTypeArgument(iteratedElementType);
+      this.isElementTypeExact = iteratedElementType.resolve() != null
+          && isSerializedAsDeclared(iteratedElementType.resolve());
+    } else {
+      this.elementType = null;
+      this.isElementTypeExact = false;
+    }
+    this.streamParameter = VaadinServiceStreamParameter.forMethod(method);
+    if (streamParameter != null && (isAsync || isStreaming)) {
+      throw new IllegalStateException(String.format(
+          "Method '%s' has a parameter read as a stream, which is not supported on the asynchronous and streaming methods",
+          method));
+    }
+    this.resultCache = VaadinServiceResultCache.forMethod(this);
+    boolean isAnnotatedIdempotent = method
+        .isAnnotationPresent(Idempotent.class);
+    if (isAnnotatedIdempotent && (isAsync || isStreaming)) {
+      throw new IllegalStateException(String.format(
+          "Method '%s' is annotated with '%s', which is not supported on the asynchronous and streaming methods",
+          method, Idempotent.class.getSimpleName()));
+    }
+    this.isIdempotent = isAnnotatedIdempotent || resultCache != null;
+  }
+
+  private static Type getTypeArgument(ResolvableType typeArgument) {
+    Class<?> typeArgumentClass = typeArgument.resolve();
+    if (typeArgumentClass == null) {
+      return Object.class;
+    }
+    if (typeArgument.getType() instanceof TypeVariable) {
+      // The type argument is declared by a subtype of the container, for
+      // instance, in Flux<T> implementing Publisher<T>
+      return typeArgumentClass;
+    }
+    return typeArgument.getType();
+  }
+
+  /**
+   * Gets the type to iterate the values of the type given as, or {@code null}
+   * if the values are not iterated. The collections are not iterated, since
+   * their elements are in memory already.
+   */
+  private static Class<?> getIteratedType(Class<?> type) {
+    if (Stream.class.isAssignableFrom(type)) {
+      return Stream.class;
+    }
+    if (Iterator.class.isAssignableFrom(type)) {
+      return Iterator.class;
+    }
+    if (Iterable.class.isAssignableFrom(type)
+        && !Collection.class.isAssignableFrom(type)) {
+      return Iterable.class;
+    }
+    return null;
+  }
+
+  /**
+   * Checks if the type is a reactive streams publisher by the type name, so
+   * that the reactive streams library is not required, unless it is used.
+   */
+  private static boolean isPublisher(Class<?> type) {
+    if (PUBLISHER_CLASS_NAME.equals(type.getName())) {
+      return true;
+    }
+    return ClassUtils.getAllInterfacesForClassAsSet(type).stream().anyMatch(
+        implemented -> PUBLISHER_CLASS_NAME.equals(implemented.getName()));
+  }
+
+  /**
+   * Checks if any value of the type given is serialized the same way when
+   * serialized as the declared type, as when serialized as its runtime type:
+   * the type cannot be subclassed or it is a container type, which elements are
+   * serialized based on their runtime types anyway.
+   */
+  private static boolean isSerializedAsDeclared(Class<?> type) {
+    return type.isPrimitive() || type.isArray()
+        || Modifier.isFinal(type.getModifiers())
+        || Collection.class.isAssignableFrom(type)
+        || Map.class.isAssignableFrom(type);
+  }
+
+  private static MethodHandle createInvoker(Method method, boolean isStatic,
+      int parameterCount) {
+    MethodHandle methodHandle;
+    try {
+      methodHandle = MethodHandles.publicLookup().unreflect(method);
+    } catch (IllegalAccessException e) {
+      getLogger().debug(
+          "Method '{}' cannot be accessed with a public lookup, falling back to the reflective invocation",
+          method, e);
+      return null;
+    }
+    if (isStatic) {
+      methodHandle = MethodHandles.dropArguments(methodHandle, 0, Object.class);
+    }
+    return methodHandle.asType(MethodType.genericMethodType(parameterCount + 1))
+        .asSpreader(Object[].class, parameterCount);
+  }
+
+  /**
+   * Gets the Java method.
+   *
+   * @return the Java method
+   */
+  Method getMethod() {
+    return method;
+  }
+
+  /**
+   * Gets the parameters of the Java method. Unlike
+   * {@link Method#getParameters()}, the same array is returned on each call, so
+   * it should not be modified.
+   *
+   * @return the method parameters
+   */
+  Parameter[] getParameters() {
+    return parameters;
+  }
+
+  /**
+   * Checks if the method is asynchronous, that is, it returns a
+   * {@link CompletionStage} which result should be sent as the response.
+   *
+   * @return {@code true} if the method returns a {@link CompletionStage},
+   *         {@code false} otherwise
+   */
+  boolean isAsync() {
+    return isAsync;
+  }
+
+  /**
+   * Checks if the method is streaming, that is, it returns a reactive streams
+   * publisher which elements should be sent as the response.
+   *
+   * @return {@code true} if the method returns a publisher, {@code false}
+   *         otherwise
+   */
+  boolean isStreaming() {
+    return isStreaming;
+  }
+
+  /**
+   * Gets the cache of the method responses.
+   *
+   * @return the cache of the responses, or {@code null} if the method is not
+   *         annotated with {@link CacheResult}
+   */
+  VaadinServiceResultCache getResultCache() {
+    return resultCache;
+  }
+
+  /**
+   * Checks if the method is idempotent, that is, it is annotated with
+   * {@link Idempotent} or {@link CacheResult}, so that its response is sent
+   * with an {@code ETag} header.
+   *
+   * @return {@code true} if the method is idempotent, {@code false} otherwise
+   */
+  boolean isIdempotent() {
+    return isIdempotent;
+  }
+
+  /**
+   * Gets the plan to validate the method parameters and return value with.
+   *
+   * @return the validation plan
+   */
+  VaadinServiceValidationPlan getValidationPlan() {
+    return validationPlan;
+  }
+
+  /**
+   * Gets the bulkhead that limits the concurrent executions of the method.
+   *
+   * @return the bulkhead, or {@code null} if the executions are not limited
+   */
+  VaadinServiceBulkhead getBulkhead() {
+    return bulkhead;
+  }
+
+  /**
+   * Checks if the method is iterated, that is, it returns a {@link Stream}, an
+   * {@link Iterator} or a non-collection {@link Iterable}, which elements
+   * should be written into the response one by one.
+   *
+   * @return {@code true} if the method return value is iterated, {@code false}
+   *         otherwise
+   */
+  boolean isIterated() {
+    return isIterated;
+  }
+
+  /**
+   * Gets the type to serialize an element of the value returned by an iterated
+   * method as. It is the type argument of the returned value, unless the
+   * element can be of its subtype.
+   *
+   * @param element
+   *          an element of the value returned by the method
+   * @return the type to serialize the element as
+   */
+  Type getElementResponseType(Object element) {
+    if (element == null || isElementTypeExact) {
+      return elementType;
+    }
+    return element.getClass();
+  }
+
+  /**
+   * Gets the iterator over the elements of the value returned by an iterated
+   * method.
+   *
+   * @param returnValue
+   *          the value returned by the method, not {@code null}
+   * @return the iterator over the returned elements
+   */
+  Iterator<?> iterate(Object returnValue) {
+    if (returnValue instanceof Stream) {
+      return ((Stream<?>) returnValue).iterator();
+    }
+    if (returnValue instanceof Iterable) {
+      return ((Iterable<?>) returnValue).iterator();
+    }
+    return (Iterator<?>) returnValue;
+  }
+
+  /**
+   * Closes the value returned by an iterated method, if it holds any resources,
+   * for instance, a {@link Stream} backed by a database cursor. The failures to
+   * close are logged, since the response is written already.
+   *
+   * @param returnValue
+   *          the value returned by the method, or {@code null}, it is not
+   *          closed unless the method is iterated
+   */
+  void closeIterated(Object returnValue) {
+    if (!isIterated || !(returnValue instanceof AutoCloseable)) {
+      return;
+    }
+    try {
+      ((AutoCloseable) returnValue).close();
+    } catch (Exception e) {
+      getLogger().warn("Failed to close the value returned by method '{}'",
+          method, e);
+    }
+  }
+
+  /**
+   * Gets the parameter of the method which elements are read lazily.
+   *
+   * @return the streamed parameter, or {@code null} if the method has none
+   */
+  VaadinServiceStreamParameter getStreamParameter() {
+    return streamParameter;
+  }
+
+  /**
+   * Gets the type to serialize the response of the method as. It is the generic
+   * return type of the method (or the type argument of the returned
+   * {@link CompletionStage} or publisher for asynchronous and streaming
+   * methods), unless the value can be of a subtype of the declared type, which
+   * properties would be lost if serialized as the declared type.
+   *
+   * @param returnValue
+   *          the value returned by the method, the result of the stage returned
+   *          by an asynchronous method, or an element published by a streaming
+   *          method
+   * @return the type to serialize the value as
+   */
+  Type getResponseType(Object returnValue) {
+    if (returnValue == null || isReturnTypeExact) {
+      return returnType;
+    }
+    return returnValue.getClass();
+  }
+
+  /**
+   * Invokes the method on the service object given.
+   *
+   * @param serviceObject
+   *          the service object to invoke the method on
+   * @param arguments
+   *          the method arguments, in the declaration order
+   * @return the value returned by the method, {@code null} for {@code void}
+   *         methods
+   * @throws IllegalArgumentException
+   *           if the service object or the arguments do not match the method
+   *           declaration
+   * @throws IllegalAccessException
+   *           if the method is not accessible
+   * @throws InvocationTargetException
+   *           if the method throws an exception
+   */
+  Object invoke(Object serviceObject, Object[] arguments)
+      throws IllegalAccessException, InvocationTargetException {
+    if (invoker == null) {
+      return method.invoke(serviceObject, arguments);
+    }
+    checkArguments(serviceObject, arguments);
+    try {
+      return (Object) invoker.invokeExact(serviceObject, arguments);
+    } catch (Throwable e) {
+      throw new InvocationTargetException(e);
+    }
+  }
+
+  private void checkArguments(Object serviceObject, Object[] arguments) {
+    if (!isStatic && !method.getDeclaringClass().isInstance(serviceObject)) {
+      throw new IllegalArgumentException(
+          "object is not an instance of declaring class");
+    }
+    int argumentCount = arguments == null ? 0 : arguments.length;
+    if (argumentCount != parameterTypes.length) {
+      throw new IllegalArgumentException("wrong number of arguments");
+    }
+    for (int i = 0; i < argumentCount; i++) {
+      if (!isAssignable(i, arguments[i])) {
+        throw new IllegalArgumentException("argument type mismatch");
+      }
+    }
+  }
+
+  private boolean isAssignable(int parameterIndex, Object argument) {
+    Class<?>[] wrappers = acceptedWrappers[parameterIndex];
+    if (wrappers == null) {
+      Class<?> parameterType = parameterTypes[parameterIndex];
+      return argument == null || parameterType == Object.class
+          || parameterType.isInstance(argument);
+    }
+    if (argument == null) {
+      return false;
+    }
+    Class<?> argumentType = argument.getClass();
+    for (Class<?> wrapper : wrappers) {
+      if (wrapper == argumentType) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static Logger getLogger() {
+    return LoggerFactory.getLogger(VaadinServiceMethod.class);
+  }
+}
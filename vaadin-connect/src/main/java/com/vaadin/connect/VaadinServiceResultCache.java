@@ -0,0 +1,326 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.ClassUtils;
+
+/**
+ * The cache of the serialized responses of a service method annotated with
+ * {@link CacheResult}.
+ * <p>
+ * The entries are kept in the least recently used order, and the least recently
+ * used ones are evicted when the number of the entries or the total size of the
+ * cached responses exceeds the bounds. The expired entries are removed when
+ * they are looked up.
+ */
+class VaadinServiceResultCache {
+  // The number types that bind the same value for the numbers that have the
+  // same decimal value, whatever their JSON representation is
+  private static final Set<Class<?>> NORMALIZED_NUMBER_TYPES = new HashSet<>(
+      Arrays.asList(Byte.class, Short.class, Integer.class, Long.class,
+          Float.class, Double.class));
+
+  private final long timeToLiveNanos;
+  private final int maxEntries;
+  private final long maxBytes;
+  private final boolean perUser;
+  private final boolean[] normalizedNumberParameters;
+  private final LongSupplier nanoClock;
+
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16,
+      0.75f, true);
+  private long totalBytes;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  private static class Entry {
+    private final byte[] json;
+    private final long expirationNanos;
+
+    private Entry(byte[] json, long expirationNanos) {
+      this.json = json;
+      this.expirationNanos = expirationNanos;
+    }
+  }
+
+  /**
+   * Creates the cache configured by the annotation given.
+   *
+   * @param cacheResult
+   *          the annotation of the cached method
+   * @param parameterTypes
+   *          the declared parameter types of the cached method
+   */
+  VaadinServiceResultCache(CacheResult cacheResult, Class<?>[] parameterTypes) {
+    this(cacheResult.timeUnit().toNanos(cacheResult.timeToLive()),
+        cacheResult.maxEntries(), cacheResult.maxBytes(), cacheResult.perUser(),
+        parameterTypes, System::nanoTime);
+  }
+
+  VaadinServiceResultCache(long timeToLiveNanos, int maxEntries, long maxBytes,
+      boolean perUser, Class<?>[] parameterTypes, LongSupplier nanoClock) {
+    this.timeToLiveNanos = timeToLiveNanos;
+    this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+    this.perUser = perUser;
+    this.normalizedNumberParameters = new boolean[parameterTypes.length];
+    for (int i = 0; i < parameterTypes.length; i++) {
+      normalizedNumberParameters[i] = NORMALIZED_NUMBER_TYPES
+          .contains(ClassUtils.resolvePrimitiveIfNecessary(parameterTypes[i]));
+    }
+    this.nanoClock = nanoClock;
+  }
+
+  /**
+   * Creates the cache key for a call with the parameters given. The key has a
+   * value for each declared method parameter, which is the request value that
+   * is bound to it, that is, the value at the same position in the request,
+   * since the parameters are bound by their position, not by their name. The
+   * properties of the objects are sorted by name, and the numbers are written
+   * as they were read, so that the values that bind differently, for instance,
+   * {@code 1} and {@code 1.0} for an {@code Object} or a {@code BigDecimal}
+   * parameter, never share a key. Only the numbers of the parameters declared
+   * with a primitive or a boxed number type are written in the canonical form
+   * of their decimal value, since {@code 1} and {@code 1.0} bind the same value
+   * to them.
+   *
+   * @param parameters
+   *          the JSON object with the method parameters
+   * @return the cache key
+   */
+  String createKey(JsonNode parameters) {
+    StringBuilder key = new StringBuilder();
+    if (perUser) {
+      Authentication authentication = SecurityContextHolder.getContext()
+          .getAuthentication();
+      appendText(key, authentication == null ? "" : authentication.getName());
+    }
+    key.append('[');
+    if (parameters.isObject()) {
+      Iterator<JsonNode> values = parameters.elements();
+      for (int i = 0; values.hasNext(); i++) {
+        if (i > 0) {
+          key.append(',');
+        }
+        // The values beyond the declared parameters fail the call, they are
+        // only kept apart from the other keys
+        JsonNode value = values.next();
+        if (i < normalizedNumberParameters.length
+            && normalizedNumberParameters[i] && value.isNumber()) {
+          appendNormalizedNumber(key, value);
+        } else {
+          appendCanonical(key, value);
+        }
+      }
+    } else {
+      appendCanonical(key, parameters);
+    }
+    return key.append(']').toString();
+  }
+
+  private static void appendCanonical(StringBuilder key, JsonNode node) {
+    if (node.isObject()) {
+      List<String> names = new ArrayList<>(node.size());
+      node.fieldNames().forEachRemaining(names::add);
+      Collections.sort(names);
+      key.append('{');
+      for (int i = 0; i < names.size(); i++) {
+        if (i > 0) {
+          key.append(',');
+        }
+        appendText(key, names.get(i));
+        key.append(':');
+        appendCanonical(key, node.get(names.get(i)));
+      }
+      key.append('}');
+    } else if (node.isArray()) {
+      key.append('[');
+      for (int i = 0; i < node.size(); i++) {
+        if (i > 0) {
+          key.append(',');
+        }
+        appendCanonical(key, node.get(i));
+      }
+      key.append(']');
+    } else {
+      key.append(node);
+    }
+  }
+
+  private static void appendNormalizedNumber(StringBuilder key, JsonNode node) {
+    if ((node.isDouble() || node.isFloat())
+        && !Double.isFinite(node.doubleValue())) {
+      key.append(node);
+      return;
+    }
+    BigDecimal number = node.decimalValue();
+    key.append(
+        number.signum() == 0 ? "0" : number.stripTrailingZeros().toString());
+  }
+
+  private static void appendText(StringBuilder key, String text) {
+    key.append(TextNode.valueOf(text));
+  }
+
+  /**
+   * Gets the cached response for the key given.
+   *
+   * @param key
+   *          the cache key of the call
+   * @return the serialized response, or {@code null} if there is no response
+   *         cached for the key, or it has expired
+   */
+  byte[] get(String key) {
+    synchronized (entries) {
+      Entry entry = entries.get(key);
+      if (entry != null && nanoClock.getAsLong() - entry.expirationNanos >= 0) {
+        entries.remove(key);
+        totalBytes -= entry.json.length;
+        entry = null;
+      }
+      if (entry == null) {
+        misses.increment();
+        return null;
+      }
+      hits.increment();
+      return entry.json;
+    }
+  }
+
+  /**
+   * Caches the response for the key given, evicting the least recently used
+   * responses if the cache bounds are exceeded. A response that is larger than
+   * the size bound is not cached.
+   *
+   * @param key
+   *          the cache key of the call
+   * @param json
+   *          the serialized response
+   */
+  void put(String key, byte[] json) {
+    if (maxBytes > 0 && json.length > maxBytes) {
+      return;
+    }
+    Entry entry = new Entry(json, nanoClock.getAsLong() + timeToLiveNanos);
+    synchronized (entries) {
+      Entry previous = entries.put(key, entry);
+      if (previous != null) {
+        totalBytes -= previous.json.length;
+      }
+      totalBytes += json.length;
+      Iterator<Entry> eldest = entries.values().iterator();
+      while (entries.size() > maxEntries
+          || (maxBytes > 0 && totalBytes > maxBytes)) {
+        totalBytes -= eldest.next().json.length;
+        eldest.remove();
+        evictions.increment();
+      }
+    }
+  }
+
+  /**
+   * Removes all the cached responses.
+   */
+  void clear() {
+    synchronized (entries) {
+      entries.clear();
+      totalBytes = 0;
+    }
+  }
+
+  long getHitCount() {
+    return hits.sum();
+  }
+
+  long getMissCount() {
+    return misses.sum();
+  }
+
+  long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  int getSize() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  long getBytes() {
+    synchronized (entries) {
+      return totalBytes;
+    }
+  }
+
+  /**
+   * Creates the cache for the method given, if it is annotated with
+   * {@link CacheResult}.
+   *
+   * @param method
+   *          the service method
+   * @return the cache, or {@code null} if the method is not annotated
+   * @throws IllegalStateException
+   *           if the method is asynchronous or streaming, or the cache bounds
+   *           are not valid
+   */
+  static VaadinServiceResultCache forMethod(VaadinServiceMethod method) {
+    CacheResult cacheResult = method.getMethod()
+        .getAnnotation(CacheResult.class);
+    if (cacheResult == null) {
+      return null;
+    }
+    if (method.isAsync() || method.isStreaming()) {
+      throw new IllegalStateException(String.format(
+          "Method '%s' is annotated with '%s', which is not supported on the asynchronous and streaming methods",
+          method.getMethod(), CacheResult.class.getSimpleName()));
+    }
+    if (method.getStreamParameter() != null) {
+      // The cache key is created from the parameters read into a tree, which
+      // would read the whole stream before the method is invoked
+      throw new IllegalStateException(String.format(
+          "Method '%s' is annotated with '%s', which is not supported on the methods with a parameter read as a stream",
+          method.getMethod(), CacheResult.class.getSimpleName()));
+    }
+    if (cacheResult.maxEntries() <= 0 || cacheResult.maxBytes() < 0
+        || cacheResult.timeToLive() <= 0) {
+      throw new IllegalStateException(String.format(
+          "Method '%s' is annotated with '%s' that has invalid bounds, "
+              + "the time to live and the maximum number of entries should be positive",
+          method.getMethod(), CacheResult.class.getSimpleName()));
+    }
+    return new VaadinServiceResultCache(cacheResult,
+        method.getMethod().getParameterTypes());
+  }
+}
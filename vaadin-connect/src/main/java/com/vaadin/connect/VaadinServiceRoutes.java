@@ -0,0 +1,157 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect;
+
+import java.util.Map;
+
+/**
+ * A case-insensitive routing table of the service methods, that is built once,
+ * when the services are registered, and looks up the target of a call by the
+ * service and the method names in a single probe sequence, without allocating
+ * the lower case names or any other objects.
+ * <p>
+ * The names are kept with the characters folded to the lower case, the same way
+ * as they are compared with {@link String#equalsIgnoreCase(String)}, and the
+ * names of a call are folded character by character while they are hashed and
+ * compared. The table uses open addressing with linear probing, and is never
+ * more than half full.
+ *
+ * @param <T>
+ *          the type of the route targets
+ */
+final class VaadinServiceRoutes<T> {
+  private final int[] hashes;
+  private final String[] serviceNames;
+  private final String[] methodNames;
+  private final Object[] targets;
+  private final int mask;
+  private final int size;
+
+  /**
+   * Creates the routing table for the targets given.
+   *
+   * @param routes
+   *          the route targets by the method name, by the service name
+   */
+  VaadinServiceRoutes(Map<String, ? extends Map<String, ? extends T>> routes) {
+    int routeCount = routes.values().stream().mapToInt(Map::size).sum();
+    int capacity = Integer.highestOneBit(Math.max(routeCount, 1) * 2 - 1) << 1;
+    hashes = new int[capacity];
+    serviceNames = new String[capacity];
+    methodNames = new String[capacity];
+    targets = new Object[capacity];
+    mask = capacity - 1;
+    size = routeCount;
+    routes.forEach((serviceName, methods) -> methods
+        .forEach((methodName, target) -> add(serviceName, methodName, target)));
+  }
+
+  private void add(String serviceName, String methodName, T target) {
+    int hash = hash(serviceName, methodName);
+    int index = hash & mask;
+    while (serviceNames[index] != null
+        && !matches(index, hash, serviceName, methodName)) {
+      index = (index + 1) & mask;
+    }
+    hashes[index] = hash;
+    serviceNames[index] = fold(serviceName);
+    methodNames[index] = fold(methodName);
+    targets[index] = target;
+  }
+
+  /**
+   * Gets the target of the route with the names given.
+   *
+   * @param serviceName
+   *          the name of the service, not case sensitive
+   * @param methodName
+   *          the name of the method, not case sensitive
+   * @return the target of the route, or {@code null} if there is no route with
+   *         the names given, or a name is {@code null}
+   */
+  @SuppressWarnings("unchecked")
+  T get(String serviceName, String methodName) {
+    if (serviceName == null || methodName == null) {
+      return null;
+    }
+    int hash = hash(serviceName, methodName);
+    int index = hash & mask;
+    while (serviceNames[index] != null) {
+      if (matches(index, hash, serviceName, methodName)) {
+        return (T) targets[index];
+      }
+      index = (index + 1) & mask;
+    }
+    return null;
+  }
+
+  /**
+   * Gets the number of the routes in the table.
+   *
+   * @return the number of the routes
+   */
+  int size() {
+    return size;
+  }
+
+  private boolean matches(int index, int hash, String serviceName,
+      String methodName) {
+    return hashes[index] == hash && matches(serviceNames[index], serviceName)
+        && matches(methodNames[index], methodName);
+  }
+
+  private static boolean matches(String foldedName, String name) {
+    if (foldedName.length() != name.length()) {
+      return false;
+    }
+    for (int i = 0; i < name.length(); i++) {
+      if (foldedName.charAt(i) != fold(name.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int hash(String serviceName, String methodName) {
+    int hash = hash(0, serviceName);
+    hash = hash(31 * hash + '/', methodName);
+    return hash ^ (hash >>> 16);
+  }
+
+  private static int hash(int hash, String name) {
+    for (int i = 0; i < name.length(); i++) {
+      hash = 31 * hash + fold(name.charAt(i));
+    }
+    return hash;
+  }
+
+  private static String fold(String name) {
+    char[] folded = new char[name.length()];
+    for (int i = 0; i < folded.length; i++) {
+      folded[i] = fold(name.charAt(i));
+    }
+    return new String(folded);
+  }
+
+  private static char fold(char character) {
+    if (character < 128) {
+      return character >= 'A' && character <= 'Z'
+          ? (char) (character + ('a' - 'A'))
+          : character;
+    }
+    return Character.toLowerCase(Character.toUpperCase(character));
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonEOFException;
+import org.springframework.core.ResolvableType;
+
+/**
+ * The last parameter of a service method, declared as a {@link Stream} or an
+ * {@link Iterator}, which elements are read from the request body lazily, while
+ * the method consumes them, so that the large collections are processed in
+ * constant memory.
+ * <p>
+ * The elements are read from the same parser as the preceding parameters, so
+ * the parameter has to be the last field of the request body JSON object, and
+ * the method has to consume the elements before it returns, which is why the
+ * asynchronous and streaming methods cannot declare such a parameter.
+ */
+class VaadinServiceStreamParameter {
+
+  /**
+   * Reads and validates an element of the parameter, and creates the exception
+   * to abort the method execution with, if the element cannot be read.
+   */
+  interface ElementReader {
+    Object read(JsonParser parser) throws IOException;
+
+    RuntimeException readFailed(IOException e);
+  }
+
+  private final int index;
+  private final Type elementType;
+  private final boolean isStream;
+
+  private VaadinServiceStreamParameter(int index, Type elementType,
+      boolean isStream) {
+    this.index = index;
+    this.elementType = elementType;
+    this.isStream = isStream;
+  }
+
+  /**
+   * Finds the {@link Stream} or {@link Iterator} parameter of the service
+   * method.
+   *
+   * @param method
+   *          the service method
+   * @return the streamed parameter, or {@code null} if the method has none
+   * @throws IllegalStateException
+   *           if the streamed parameter is not the last method parameter
+   */
+  static VaadinServiceStreamParameter forMethod(Method method) {
+    Class<?>[] parameterTypes = method.getParameterTypes();
+    for (int i = 0; i < parameterTypes.length; i++) {
+      Class<?> parameterType = parameterTypes[i];
+      if (parameterType != Stream.class && parameterType != Iterator.class) {
+        continue;
+      }
+      if (i != parameterTypes.length - 1) {
+        throw new IllegalStateException(String.format(
+            "Method '%s' has a '%s' parameter that is not the last one, only the last parameter of a service method can be read as a stream",
+            method, parameterType.getSimpleName()));
+      }
+      return new VaadinServiceStreamParameter(i, getElementType(ResolvableType
+          .forMethodParameter(method, i).as(parameterType).getGeneric(0)),
+          parameterType == Stream.class);
+    }
+    return null;
+  }
+
+  private static Type getElementType(ResolvableType elementType) {
+    Class<?> elementClass = elementType.resolve();
+    if (elementClass == null) {
+      return Object.class;
+    }
+    Type type = elementType.getType();
+    return type instanceof TypeVariable || type instanceof WildcardType
+        ? elementClass
+        : type;
+  }
+
+  /**
+   * Gets the index of the parameter in the method parameters.
+   *
+   * @return the parameter index
+   */
+  int getIndex() {
+    return index;
+  }
+
+  /**
+   * Gets the type to read the parameter elements as.
+   *
+   * @return the element type
+   */
+  Type getElementType() {
+    return elementType;
+  }
+
+  /**
+   * Creates the parameter value that reads the elements of the JSON array the
+   * parser is positioned at, when they are consumed.
+   *
+   * @param parser
+   *          the parser positioned at the start of the array
+   * @param elementReader
+   *          the reader of the array elements
+   * @return the {@link Stream} or {@link Iterator} of the elements, depending
+   *         on the parameter type
+   */
+  Object createValue(JsonParser parser, ElementReader elementReader) {
+    Iterator<Object> elements = new Elements(parser, elementReader);
+    if (!isStream) {
+      return elements;
+    }
+    return StreamSupport.stream(
+        Spliterators.spliteratorUnknownSize(elements, Spliterator.ORDERED),
+        false);
+  }
+
+  private static class Elements implements Iterator<Object> {
+    private final JsonParser parser;
+    private final ElementReader elementReader;
+    private boolean hasNext;
+    private boolean done;
+
+    private Elements(JsonParser parser, ElementReader elementReader) {
+      this.parser = parser;
+      this.elementReader = elementReader;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (hasNext || done) {
+        return hasNext;
+      }
+      JsonToken token;
+      try {
+        token = parser.nextToken();
+        if (token == null) {
+          throw new JsonEOFException(parser, null,
+              "Unexpected end of the request body, the array is not closed");
+        }
+      } catch (IOException e) {
+        done = true;
+        throw elementReader.readFailed(e);
+      }
+      done = token == JsonToken.END_ARRAY;
+      hasNext = !done;
+      return hasNext;
+    }
+
+    @Override
+    public Object next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      hasNext = false;
+      try {
+        return elementReader.read(parser);
+      } catch (IOException e) {
+        done = true;
+        throw elementReader.readFailed(e);
+      }
+    }
+  }
+}
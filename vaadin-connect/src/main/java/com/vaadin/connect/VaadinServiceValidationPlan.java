@@ -0,0 +1,228 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect;
+
+import javax.validation.Validator;
+import javax.validation.metadata.MethodDescriptor;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The validation plan of a service method, that is resolved once from the Bean
+ * Validation metadata, when the service is registered, so that the calls skip
+ * the validator for the parameters and the return values that have no
+ * constraints.
+ * <p>
+ * The method parameters and the return value are validated only if the method
+ * declares constraints for them, either directly or with {@code @Valid}. Each
+ * parameter value is validated as a bean only if its type has constraints: the
+ * types that cannot be subclassed are checked once, the other types are checked
+ * by the runtime type of the value, unless the declared type is constrained
+ * already.
+ */
+class VaadinServiceValidationPlan {
+  static final String ALWAYS_VALIDATION = "always";
+  static final String SAMPLED_VALIDATION = "sampled";
+  static final String OFF_VALIDATION = "off";
+
+  /**
+   * The return value sample rate that validates all the return values.
+   */
+  static final int VALIDATE_ALL_RETURN_VALUES = 1;
+
+  private static final byte SKIP_BEAN = 0;
+  private static final byte VALIDATE_BEAN = 1;
+  private static final byte CHECK_RUNTIME_TYPE = 2;
+
+  private final boolean validatesParameters;
+  private final boolean validatesReturnValue;
+  private final byte[] beanValidations;
+  private final ClassValue<Boolean> constrainedTypes;
+  private final AtomicLong returnValueCalls = new AtomicLong();
+
+  private VaadinServiceValidationPlan(boolean validatesParameters,
+      boolean validatesReturnValue, byte[] beanValidations,
+      ClassValue<Boolean> constrainedTypes) {
+    this.validatesParameters = validatesParameters;
+    this.validatesReturnValue = validatesReturnValue;
+    this.beanValidations = beanValidations;
+    this.constrainedTypes = constrainedTypes;
+  }
+
+  /**
+   * Creates the plan that validates everything, the same as if each parameter
+   * and the return value were constrained.
+   *
+   * @param method
+   *          the service method
+   * @return the plan validating everything
+   */
+  static VaadinServiceValidationPlan validateAll(Method method) {
+    byte[] beanValidations = new byte[method.getParameterCount()];
+    Arrays.fill(beanValidations, VALIDATE_BEAN);
+    return new VaadinServiceValidationPlan(true, true, beanValidations, null);
+  }
+
+  /**
+   * Creates the plan for the method given from the constraints known to the
+   * validator.
+   *
+   * @param validator
+   *          the validator to get the constraints from
+   * @param constrainedTypes
+   *          the cache of the types, which values have constraints to validate,
+   *          see {@link #createConstrainedTypes(Validator)}
+   * @param serviceType
+   *          the type of the service object the method is invoked on
+   * @param method
+   *          the service method
+   * @return the validation plan of the method
+   */
+  static VaadinServiceValidationPlan create(Validator validator,
+      ClassValue<Boolean> constrainedTypes, Class<?> serviceType,
+      Method method) {
+    MethodDescriptor methodDescriptor = validator
+        .getConstraintsForClass(serviceType)
+        .getConstraintsForMethod(method.getName(), method.getParameterTypes());
+    Class<?>[] parameterTypes = method.getParameterTypes();
+    byte[] beanValidations = new byte[parameterTypes.length];
+    for (int i = 0; i < parameterTypes.length; i++) {
+      Class<?> parameterType = parameterTypes[i];
+      if (parameterType.isPrimitive()) {
+        beanValidations[i] = SKIP_BEAN;
+      } else if (constrainedTypes.get(parameterType)) {
+        beanValidations[i] = VALIDATE_BEAN;
+      } else if (Modifier.isFinal(parameterType.getModifiers())) {
+        beanValidations[i] = SKIP_BEAN;
+      } else {
+        beanValidations[i] = CHECK_RUNTIME_TYPE;
+      }
+    }
+    return new VaadinServiceValidationPlan(
+        methodDescriptor != null && methodDescriptor.hasConstrainedParameters(),
+        methodDescriptor != null
+            && methodDescriptor.hasConstrainedReturnValue(),
+        beanValidations, constrainedTypes);
+  }
+
+  /**
+   * Creates the cache of the types, which values have constraints to validate
+   * with {@link Validator#validate(Object, Class[])}.
+   *
+   * @param validator
+   *          the validator to get the constraints from
+   * @return the cache of the constrained types
+   */
+  static ClassValue<Boolean> createConstrainedTypes(Validator validator) {
+    return new ClassValue<Boolean>() {
+      @Override
+      protected Boolean computeValue(Class<?> type) {
+        return !type.isArray()
+            && validator.getConstraintsForClass(type).isBeanConstrained();
+      }
+    };
+  }
+
+  /**
+   * Gets the return value sample rate for the return value validation mode
+   * given.
+   *
+   * @param validationMode
+   *          the return value validation mode, {@code always}, {@code sampled}
+   *          or {@code off}, the {@code null} value means {@code always}
+   * @param sampleRate
+   *          the rate to sample the return values with in the {@code sampled}
+   *          mode, one of each {@code sampleRate} return values is validated
+   * @return the rate to validate the return values with, {@code 0} if the
+   *         return values are not validated
+   * @throws IllegalStateException
+   *           if the validation mode is not supported, or the sample rate is
+   *           not positive in the {@code sampled} mode
+   */
+  static int getReturnValueSampleRate(String validationMode, int sampleRate) {
+    if (validationMode == null || ALWAYS_VALIDATION.equals(validationMode)) {
+      return VALIDATE_ALL_RETURN_VALUES;
+    }
+    if (OFF_VALIDATION.equals(validationMode)) {
+      return 0;
+    }
+    if (!SAMPLED_VALIDATION.equals(validationMode)) {
+      throw new IllegalStateException(String.format(
+          "Unsupported Vaadin Connect return value validation '%s', "
+              + "the 'vaadin.connect.validation.return-value' property should be either '%s', '%s' or '%s'",
+          validationMode, ALWAYS_VALIDATION, SAMPLED_VALIDATION,
+          OFF_VALIDATION));
+    }
+    if (sampleRate <= 0) {
+      throw new IllegalStateException(String.format(
+          "Invalid Vaadin Connect return value sample rate '%s', "
+              + "the 'vaadin.connect.validation.return-value-sample-rate' property should be positive",
+          sampleRate));
+    }
+    return sampleRate;
+  }
+
+  /**
+   * Checks if the method parameters should be validated with the method
+   * constraints.
+   *
+   * @return {@code true} if the method has constrained parameters,
+   *         {@code false} otherwise
+   */
+  boolean validatesParameters() {
+    return validatesParameters;
+  }
+
+  /**
+   * Checks if the parameter value given should be validated as a bean.
+   *
+   * @param parameterIndex
+   *          the index of the method parameter
+   * @param value
+   *          the parameter value, not {@code null}
+   * @return {@code true} if the value type has constraints, {@code false}
+   *         otherwise
+   */
+  boolean validatesBean(int parameterIndex, Object value) {
+    byte beanValidation = beanValidations[parameterIndex];
+    if (beanValidation == CHECK_RUNTIME_TYPE) {
+      return constrainedTypes.get(value.getClass());
+    }
+    return beanValidation == VALIDATE_BEAN;
+  }
+
+  /**
+   * Checks if the return value of the current call should be validated. If the
+   * method has a constrained return value, one of each {@code sampleRate} calls
+   * is validated.
+   *
+   * @param sampleRate
+   *          the rate to validate the return values with, {@code 0} not to
+   *          validate them
+   * @return {@code true} if the return value should be validated, {@code false}
+   *         otherwise
+   */
+  boolean validatesReturnValue(int sampleRate) {
+    if (!validatesReturnValue || sampleRate <= 0) {
+      return false;
+    }
+    return sampleRate == VALIDATE_ALL_RETURN_VALUES
+        || returnValueCalls.getAndIncrement() % sampleRate == 0;
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect;
+
+import javax.servlet.http.HttpServletRequest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.util.ClassUtils;
+
+/**
+ * A format the service method parameters and return values are sent in: JSON,
+ * or one of the binary formats supported by Jackson, CBOR and Smile, if the
+ * corresponding Jackson data format library is on the classpath.
+ * <p>
+ * All the formats are read and written with the same
+ * {@code vaadinServiceMapper} configuration, only the parsers and the
+ * generators are created by the factory of the format.
+ */
+final class VaadinServiceWireFormat {
+  private static final String CBOR_FACTORY_CLASS_NAME = "com.fasterxml.jackson.dataformat.cbor.CBORFactory";
+  private static final String SMILE_FACTORY_CLASS_NAME = "com.fasterxml.jackson.dataformat.smile.SmileFactory";
+  private static final MediaType CBOR_MEDIA_TYPE = MediaType
+      .valueOf(VaadinConnectController.APPLICATION_CBOR);
+  private static final MediaType SMILE_MEDIA_TYPE = MediaType
+      .valueOf(VaadinConnectController.APPLICATION_SMILE);
+
+  private final MediaType mediaType;
+  private final String contentType;
+  private final JsonFactory factory;
+  private final String cacheKeyPrefix;
+
+  private VaadinServiceWireFormat(MediaType mediaType, String contentType,
+      JsonFactory factory, String cacheKeyPrefix) {
+    this.mediaType = mediaType;
+    this.contentType = contentType;
+    this.factory = factory;
+    this.cacheKeyPrefix = cacheKeyPrefix;
+  }
+
+  /**
+   * Creates the JSON format, and the binary formats, which libraries are on the
+   * classpath.
+   *
+   * @param mapper
+   *          the mapper to read and write the values with
+   * @return the supported formats, the JSON format being the first one
+   */
+  static List<VaadinServiceWireFormat> createFormats(ObjectMapper mapper) {
+    List<VaadinServiceWireFormat> formats = new ArrayList<>(3);
+    formats.add(new VaadinServiceWireFormat(MediaType.APPLICATION_JSON,
+        MediaType.APPLICATION_JSON_UTF8_VALUE, mapper.getFactory(), ""));
+    addBinaryFormat(formats, CBOR_MEDIA_TYPE, CBOR_FACTORY_CLASS_NAME, mapper);
+    addBinaryFormat(formats, SMILE_MEDIA_TYPE, SMILE_FACTORY_CLASS_NAME,
+        mapper);
+    return Collections.unmodifiableList(formats);
+  }
+
+  /**
+   * Creates the factory of the binary format through reflection, so that the
+   * data format library is not required, unless it is used.
+   */
+  private static void addBinaryFormat(List<VaadinServiceWireFormat> formats,
+      MediaType mediaType, String factoryClassName, ObjectMapper mapper) {
+    ClassLoader classLoader = VaadinServiceWireFormat.class.getClassLoader();
+    if (!ClassUtils.isPresent(factoryClassName, classLoader)) {
+      return;
+    }
+    JsonFactory factory = (JsonFactory) BeanUtils.instantiateClass(
+        ClassUtils.resolveClassName(factoryClassName, classLoader));
+    factory.setCodec(mapper);
+    getLogger().debug("Vaadin Connect supports the '{}' format", mediaType);
+    formats.add(new VaadinServiceWireFormat(mediaType, mediaType.toString(),
+        factory, mediaType.toString() + ' '));
+  }
+
+  /**
+   * Gets the format of the request body, based on the {@code Content-Type}
+   * header of the request. The JSON format is used, if the header is missing or
+   * has no binary format.
+   *
+   * @param formats
+   *          the supported formats, the JSON format being the first one
+   * @param request
+   *          the request to get the format for
+   * @return the format of the request body, or {@code null} if the request is
+   *         sent in a binary format that is not supported
+   */
+  static VaadinServiceWireFormat getRequestFormat(
+      List<VaadinServiceWireFormat> formats, HttpServletRequest request) {
+    String contentType = request.getContentType();
+    if (contentType == null) {
+      return formats.get(0);
+    }
+    MediaType requestType;
+    try {
+      requestType = MediaType.parseMediaType(contentType);
+    } catch (InvalidMediaTypeException e) {
+      getLogger().debug("Failed to parse the request content type '{}'",
+          contentType, e);
+      return formats.get(0);
+    }
+    for (VaadinServiceWireFormat format : formats) {
+      if (isSameType(format.mediaType, requestType)) {
+        return format;
+      }
+    }
+    return isBinaryFormat(requestType) ? null : formats.get(0);
+  }
+
+  /**
+   * Gets the format for the response, based on the {@code Accept} header of the
+   * request: the supported format that is compatible with the most preferred
+   * accepted media type. The JSON format is used, if the header is missing or
+   * no supported format is accepted.
+   *
+   * @param formats
+   *          the supported formats, the JSON format being the first one
+   * @param request
+   *          the request to get the format for
+   * @return the format for the response
+   */
+  static VaadinServiceWireFormat getResponseFormat(
+      List<VaadinServiceWireFormat> formats, HttpServletRequest request) {
+    String accept = request.getHeader(HttpHeaders.ACCEPT);
+    if (accept == null || formats.size() == 1) {
+      return formats.get(0);
+    }
+    List<MediaType> acceptedTypes;
+    try {
+      acceptedTypes = MediaType.parseMediaTypes(accept);
+    } catch (InvalidMediaTypeException e) {
+      getLogger().debug("Failed to parse the accepted media types '{}'", accept,
+          e);
+      return formats.get(0);
+    }
+    MediaType.sortBySpecificityAndQuality(acceptedTypes);
+    for (MediaType acceptedType : acceptedTypes) {
+      for (VaadinServiceWireFormat format : formats) {
+        if (acceptedType.isCompatibleWith(format.mediaType)) {
+          return format;
+        }
+      }
+    }
+    return formats.get(0);
+  }
+
+  private static boolean isSameType(MediaType mediaType, MediaType other) {
+    // The type and the subtype are lower case already
+    return mediaType.getType().equals(other.getType())
+        && mediaType.getSubtype().equals(other.getSubtype());
+  }
+
+  private static boolean isBinaryFormat(MediaType mediaType) {
+    return isSameType(CBOR_MEDIA_TYPE, mediaType)
+        || isSameType(SMILE_MEDIA_TYPE, mediaType);
+  }
+
+  /**
+   * Gets the value of the {@code Content-Type} header of the responses in this
+   * format.
+   *
+   * @return the response content type
+   */
+  String getContentType() {
+    return contentType;
+  }
+
+  /**
+   * Gets the factory to create the parsers and the generators with.
+   *
+   * @return the factory of the format
+   */
+  JsonFactory getFactory() {
+    return factory;
+  }
+
+  /**
+   * Gets the prefix of the result cache keys, so that the responses cached in
+   * different formats do not mix.
+   *
+   * @return the cache key prefix, empty for the JSON format
+   */
+  String getCacheKeyPrefix() {
+    return cacheKeyPrefix;
+  }
+
+  private static Logger getLogger() {
+    return LoggerFactory.getLogger(VaadinServiceWireFormat.class);
+  }
+}
@@ -24,11 +24,13 @@ import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.springframework.security.authentication.AnonymousAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -48,6 +50,9 @@ import org.springframework.security.oauth2.provider.OAuth2Authentication;
  * <p>
  * Method-level annotation override Class-level ones.
  * <p>
+ * The annotations of each method are only analyzed the first time the method is
+ * checked, the resulting access policy is reused for the subsequent checks.
+ * <p>
  * In the next example, since the class is denied to all, method1 is not
  * accessible to anyone, method2 can be executed by any authorized used, method3
  * is only allowed to the accounts having the ROLE_USER authority and method4 is
@@ -78,6 +83,74 @@ import org.springframework.security.oauth2.provider.OAuth2Authentication;
  *
  */
 public class VaadinConnectAccessChecker {
+  private final Map<Method, AccessPolicy> accessPolicies = new ConcurrentHashMap<>();
+
+  /**
+   * The access rules of a service method, computed from its security
+   * annotations.
+   */
+  private static final class AccessPolicy {
+    private static final AccessPolicy DENY_ALL = new AccessPolicy(false, false,
+        null);
+    private static final AccessPolicy ANONYMOUS_ALLOWED = new AccessPolicy(true,
+        true, null);
+    private static final AccessPolicy PERMIT_ALL = new AccessPolicy(false, true,
+        null);
+
+    private final boolean anonymousAllowed;
+    private final boolean authenticatedAllowed;
+    private final Set<String> allowedRoles;
+
+    private AccessPolicy(boolean anonymousAllowed, boolean authenticatedAllowed,
+        Set<String> allowedRoles) {
+      this.anonymousAllowed = anonymousAllowed;
+      this.authenticatedAllowed = authenticatedAllowed;
+      this.allowedRoles = allowedRoles;
+    }
+
+    private static AccessPolicy create(AnnotatedElement securityTarget) {
+      if (securityTarget.isAnnotationPresent(DenyAll.class)) {
+        return DENY_ALL;
+      }
+      if (securityTarget.isAnnotationPresent(AnonymousAllowed.class)) {
+        return ANONYMOUS_ALLOWED;
+      }
+      RolesAllowed rolesAllowed = securityTarget
+          .getAnnotation(RolesAllowed.class);
+      if (rolesAllowed == null) {
+        return PERMIT_ALL;
+      }
+      return new AccessPolicy(false, true,
+          new HashSet<>(Arrays.asList(rolesAllowed.value())));
+    }
+
+    private boolean allows(OAuth2Authentication auth) {
+      if (!authenticatedAllowed) {
+        return false;
+      }
+      if (allowedRoles == null) {
+        return true;
+      }
+      Collection<? extends GrantedAuthority> authorities = auth
+          .getAuthorities();
+      if (authorities instanceof List && authorities instanceof RandomAccess) {
+        // Avoid allocating an iterator on each call
+        List<? extends GrantedAuthority> authorityList = (List<? extends GrantedAuthority>) authorities;
+        for (int i = 0; i < authorityList.size(); i++) {
+          if (!allowedRoles.contains(authorityList.get(i).getAuthority())) {
+            return false;
+          }
+        }
+        return true;
+      }
+      for (GrantedAuthority authority : authorities) {
+        if (!allowedRoles.contains(authority.getAuthority())) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
 
   /**
    * Check that the service is accessible for the current user.
@@ -92,13 +165,24 @@ public class VaadinConnectAccessChecker {
         .getAuthentication();
 
     if (auth instanceof OAuth2Authentication) {
-      return verifyAuthenticatedUser(method, (OAuth2Authentication) auth);
+      return getAccessPolicy(method).allows((OAuth2Authentication) auth) ? null
+          : "Unauthorized access to vaadin service";
     } else if (auth instanceof AnonymousAuthenticationToken) {
-      return verifyAnonymousUser(method);
+      return getAccessPolicy(method).anonymousAllowed ? null
+          : "Anonymous access is not allowed";
     }
     return "Bad authentication, the request should use oauth2";
   }
 
+  private AccessPolicy getAccessPolicy(Method method) {
+    AccessPolicy accessPolicy = accessPolicies.get(method);
+    if (accessPolicy == null) {
+      accessPolicy = accessPolicies.computeIfAbsent(method,
+          key -> AccessPolicy.create(getSecurityTarget(key)));
+    }
+    return accessPolicy;
+  }
+
   /**
    * Gets the entity to check for Vaadin Connect security restrictions.
    *
@@ -118,47 +202,6 @@ public class VaadinConnectAccessChecker {
     return hasSecurityAnnotation(method) ? method : method.getDeclaringClass();
   }
 
-  private String verifyAnonymousUser(Method method) {
-    if (!getSecurityTarget(method).isAnnotationPresent(AnonymousAllowed.class)
-        || cannotAccessMethod(method, Collections.emptyList())) {
-      return "Anonymous access is not allowed";
-    }
-    return null;
-  }
-
-  private String verifyAuthenticatedUser(Method method,
-      OAuth2Authentication auth) {
-    if (cannotAccessMethod(method, auth.getAuthorities().stream()
-        .map(GrantedAuthority::getAuthority).collect(Collectors.toList()))) {
-      return "Unauthorized access to vaadin service";
-    }
-    return null;
-  }
-
-  private boolean cannotAccessMethod(Method method,
-      List<String> requestedAuthorities) {
-    return entityForbidden(getSecurityTarget(method), requestedAuthorities);
-  }
-
-  private boolean entityForbidden(AnnotatedElement entity,
-      List<String> requestedAuthorities) {
-    return entity.isAnnotationPresent(DenyAll.class)
-        || (!entity.isAnnotationPresent(AnonymousAllowed.class)
-            && !roleAllowed(entity.getAnnotation(RolesAllowed.class),
-                requestedAuthorities));
-  }
-
-  private boolean roleAllowed(RolesAllowed rolesAllowed,
-      List<String> requestedAuthorities) {
-    if (rolesAllowed == null) {
-      return true;
-    }
-
-    Set<String> allowedRoles = new HashSet<>(
-        Arrays.asList(rolesAllowed.value()));
-    return allowedRoles.containsAll(requestedAuthorities);
-  }
-
   private boolean hasSecurityAnnotation(Method method) {
     return method.isAnnotationPresent(AnonymousAllowed.class)
         || method.isAnnotationPresent(PermitAll.class)
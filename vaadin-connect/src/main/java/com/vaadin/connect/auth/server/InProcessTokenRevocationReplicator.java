@@ -0,0 +1,43 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect.auth.server;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * A {@link VaadinConnectTokenRevocationReplicator} that delivers the
+ * revocations synchronously to the listeners in the same JVM. It is used when
+ * there is a single node, and it can stand for a cluster in tests, by sharing
+ * one instance between several revocation lists.
+ */
+public class InProcessTokenRevocationReplicator
+    implements VaadinConnectTokenRevocationReplicator {
+  private final List<ObjLongConsumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+  @Override
+  public void publish(String tokenId, long expirationMillis) {
+    for (ObjLongConsumer<String> listener : listeners) {
+      listener.accept(tokenId, expirationMillis);
+    }
+  }
+
+  @Override
+  public void subscribe(ObjLongConsumer<String> listener) {
+    listeners.add(listener);
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect.auth.server;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.security.oauth2.common.exceptions.OAuth2Exception;
+
+/**
+ * Thrown when a password cannot be hashed because all the password hashing
+ * threads are busy and the queue is full. The token endpoint responds to it
+ * with the {@code 503 Service Unavailable} status and the
+ * {@code temporarily_unavailable} OAuth 2.0 error, so that the client can retry
+ * the login later.
+ *
+ * @see VaadinConnectPasswordEncoder
+ */
+public class PasswordHashingRejectedException extends OAuth2Exception {
+
+  /**
+   * Creates the exception.
+   *
+   * @param message
+   *          the detail message
+   */
+  public PasswordHashingRejectedException(String message) {
+    super(message);
+  }
+
+  @Override
+  public String getOAuth2ErrorCode() {
+    return "temporarily_unavailable";
+  }
+
+  @Override
+  public int getHttpErrorCode() {
+    return HttpStatus.SERVICE_UNAVAILABLE.value();
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect.auth.server;
+
+import java.util.Map;
+
+import org.springframework.security.jwt.Jwt;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.exceptions.InvalidTokenException;
+import org.springframework.security.oauth2.common.util.JsonParser;
+import org.springframework.security.oauth2.common.util.JsonParserFactory;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.store.JwtAccessTokenConverter;
+
+/**
+ * A {@link JwtAccessTokenConverter} that signs the tokens with the shared
+ * secret, or with an RSA or an elliptic curve private key and the {@code kid}
+ * header, and verifies them with the key their header tells. The keys are the
+ * only source of the signing and the verification keys, the signing key of the
+ * superclass is not used.
+ *
+ * @see VaadinConnectTokenKeys
+ */
+public class VaadinConnectAccessTokenConverter extends JwtAccessTokenConverter {
+  private final VaadinConnectTokenKeys keys;
+  private final JsonParser jsonParser = JsonParserFactory.create();
+
+  VaadinConnectAccessTokenConverter(VaadinConnectTokenKeys keys) {
+    this.keys = keys;
+  }
+
+  /**
+   * Gets the public keys that verify the tokens, in the JSON Web Key Set
+   * format.
+   *
+   * @return the key set, which has no keys if the tokens are signed with the
+   *         shared secret
+   */
+  public Map<String, Object> getJwkSet() {
+    return keys.getJwkSet();
+  }
+
+  @Override
+  public void afterPropertiesSet() {
+    // The tokens are signed and verified with the keys only, the signing key
+    // and the verifier of the superclass are not used
+  }
+
+  @Override
+  protected String encode(OAuth2AccessToken accessToken,
+      OAuth2Authentication authentication) {
+    String claims;
+    try {
+      claims = jsonParser.formatMap(getAccessTokenConverter()
+          .convertAccessToken(accessToken, authentication));
+    } catch (Exception e) {
+      throw new IllegalStateException("Cannot convert access token to JSON", e);
+    }
+    return keys.sign(claims);
+  }
+
+  @Override
+  protected Map<String, Object> decode(String token) {
+    try {
+      Jwt jwt = keys.decodeAndVerify(token);
+      Map<String, Object> claims = jsonParser.parseMap(jwt.getClaims());
+      Object expiration = claims.get(EXP);
+      if (expiration instanceof Integer) {
+        claims.put(EXP, ((Integer) expiration).longValue());
+      }
+      getJwtClaimsSetVerifier().verify(claims);
+      return claims;
+    } catch (Exception e) {
+      throw new InvalidTokenException("Cannot convert access token to JSON", e);
+    }
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect.auth.server;
+
+import java.util.Map;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * The endpoint that publishes the public keys the tokens are verified with, in
+ * the JSON Web Key Set format, so that the nodes that only serve the services
+ * can verify the tokens without knowing the private key or any secret. The
+ * shared secret of the {@code HS256} algorithm is never published.
+ */
+@RestController
+public class VaadinConnectJwkSetEndpoint {
+  /**
+   * The path of the endpoint.
+   */
+  public static final String JWK_SET_PATH = "/.well-known/jwks.json";
+
+  private final VaadinConnectAccessTokenConverter accessTokenConverter;
+
+  /**
+   * Creates the endpoint.
+   *
+   * @param accessTokenConverter
+   *          the converter that signs the tokens
+   */
+  public VaadinConnectJwkSetEndpoint(
+      VaadinConnectAccessTokenConverter accessTokenConverter) {
+    this.accessTokenConverter = accessTokenConverter;
+  }
+
+  /**
+   * Gets the public keys that verify the tokens.
+   *
+   * @return the JSON Web Key Set
+   */
+  @GetMapping(JWK_SET_PATH)
+  public Map<String, Object> getKeys() {
+    return accessTokenConverter.getJwkSet();
+  }
+}
@@ -18,6 +18,7 @@ package com.vaadin.connect.auth.server;
 import java.util.Arrays;
 import java.util.List;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.security.oauth2.resource.OAuth2ResourceServerConfiguration;
 import org.springframework.context.annotation.Bean;
@@ -35,7 +36,6 @@ import org.springframework.security.oauth2.config.annotation.web.configuration.R
 import org.springframework.security.oauth2.provider.token.TokenStore;
 import org.springframework.security.oauth2.provider.token.store.JwtAccessTokenConverter;
 import org.springframework.security.oauth2.provider.token.store.JwtClaimsSetVerifier;
-import org.springframework.security.oauth2.provider.token.store.JwtTokenStore;
 
 import com.vaadin.connect.VaadinConnectProperties;
 
@@ -78,9 +78,11 @@ import com.vaadin.connect.VaadinConnectProperties;
  * }
  * </pre>
  *
- * This configurator automatically register a {@link BCryptPasswordEncoder}. If
- * you store passwords in your database using another encoding algorithm define
- * your own {@link PasswordEncoder} Bean.
+ * This configurator automatically register a {@link BCryptPasswordEncoder},
+ * which hashes the passwords in a bounded pool of threads, see
+ * {@link VaadinConnectPasswordEncoder}. If you store passwords in your database
+ * using another encoding algorithm define your own {@link PasswordEncoder}
+ * Bean.
  *
  * <pre class="code">
  * public class MyApplicationConfiguration {
@@ -104,7 +106,7 @@ public class VaadinConnectOAuthConfiguration
    * Default constructor.
    *
    * @param vaadinConnectProperties
-   *        The Vaadin connect app configuration
+   *          The Vaadin connect app configuration
    */
   public VaadinConnectOAuthConfiguration(
       VaadinConnectProperties vaadinConnectProperties) {
@@ -112,19 +114,16 @@ public class VaadinConnectOAuthConfiguration
   }
 
   /**
-   * Provide the {@link JwtAccessTokenConverter} Bean.
+   * Provide the {@link JwtAccessTokenConverter} Bean, which signs the tokens
+   * with the key configured by the {@code vaadin.connect.auth.token-signing-*}
+   * properties.
    *
    * @return the JwtAccessTokenConverter
    */
   @Bean
-  public JwtAccessTokenConverter accessTokenConverter() {
-    JwtAccessTokenConverter converter = new JwtAccessTokenConverter();
-
-    String sigKey = vaadinConnectProperties.getVaadinConnectTokenSigningKey();
-    if (!sigKey.isEmpty()) {
-      converter.setSigningKey(sigKey);
-    }
-
+  public VaadinConnectAccessTokenConverter accessTokenConverter() {
+    VaadinConnectAccessTokenConverter converter = new VaadinConnectAccessTokenConverter(
+        VaadinConnectTokenKeys.create(vaadinConnectProperties));
     converter.setJwtClaimsSetVerifier(getJwtClaimsSetVerifier());
     return converter;
   }
@@ -141,13 +140,98 @@ public class VaadinConnectOAuthConfiguration
   }
 
   /**
-   * Provide the {@link TokenStore} Bean.
+   * Provide the endpoint that publishes the public keys the tokens are verified
+   * with.
+   *
+   * @return the JWK Set endpoint
+   */
+  @Bean
+  public VaadinConnectJwkSetEndpoint jwkSetEndpoint() {
+    return new VaadinConnectJwkSetEndpoint(accessTokenConverter());
+  }
+
+  /**
+   * Provide the endpoint that revokes the access token of the request, when the
+   * user logs out.
+   *
+   * @param tokenStore
+   *          the token store
+   * @return the token revocation endpoint
+   */
+  @Bean
+  public VaadinConnectTokenRevocationEndpoint tokenRevocationEndpoint(
+      VaadinConnectTokenStore tokenStore) {
+    return new VaadinConnectTokenRevocationEndpoint(tokenStore);
+  }
+
+  /**
+   * Provide the {@link TokenStore} Bean, which caches the verified access
+   * tokens and rejects the revoked ones.
    *
+   * @param tokenRevocationList
+   *          the revoked tokens
    * @return the TokenStore
    */
   @Bean
-  public TokenStore tokenStore() {
-    return new JwtTokenStore(accessTokenConverter());
+  public VaadinConnectTokenStore tokenStore(
+      VaadinConnectTokenRevocationList tokenRevocationList) {
+    return new VaadinConnectTokenStore(accessTokenConverter(),
+        vaadinConnectProperties.getVaadinConnectTokenCacheMaxEntries(),
+        tokenRevocationList);
+  }
+
+  /**
+   * Provide the list of the revoked tokens, which is shared with the other
+   * nodes by the {@link VaadinConnectTokenRevocationReplicator} Bean.
+   *
+   * @param replicator
+   *          the replicator of the revocations
+   * @return the token revocation list
+   */
+  @Bean
+  public VaadinConnectTokenRevocationList tokenRevocationList(
+      VaadinConnectTokenRevocationReplicator replicator) {
+    return new VaadinConnectTokenRevocationList(vaadinConnectProperties
+        .getVaadinConnectTokenRevocationExpectedEntries(), replicator);
+  }
+
+  @Configuration
+  @ConditionalOnMissingBean(VaadinConnectTokenRevocationReplicator.class)
+  protected static class TokenRevocationReplicatorConfiguration {
+
+    /**
+     * Provide the {@link VaadinConnectTokenRevocationReplicator} Bean, which
+     * only shares the revocations within this node. Define your own Bean to
+     * share them with the other nodes.
+     *
+     * @return the replicator
+     */
+    @Bean
+    public VaadinConnectTokenRevocationReplicator tokenRevocationReplicator() {
+      return new InProcessTokenRevocationReplicator();
+    }
+  }
+
+  /**
+   * A configuration that registers the token cache metrics, if Micrometer is
+   * available.
+   */
+  @Configuration
+  @ConditionalOnClass(name = "io.micrometer.core.instrument.binder.MeterBinder")
+  protected static class TokenStoreMetricsConfiguration {
+
+    /**
+     * Registers the metrics of the {@link VaadinConnectTokenStore}.
+     *
+     * @param tokenStore
+     *          the token store to report the metrics of
+     * @return the metrics binder
+     */
+    @Bean
+    public VaadinConnectTokenStoreMetrics vaadinConnectTokenStoreMetrics(
+        VaadinConnectTokenStore tokenStore) {
+      return new VaadinConnectTokenStoreMetrics(tokenStore);
+    }
   }
 
   @Configuration
@@ -155,25 +239,56 @@ public class VaadinConnectOAuthConfiguration
   protected static class PasswordEncoderConfiguration {
 
     /**
-     * Provide the {@link PasswordEncoder} Bean.
+     * Provide the {@link PasswordEncoder} Bean, which hashes the passwords with
+     * BCrypt in a bounded pool of threads.
      *
+     * @param vaadinConnectProperties
+     *          the Vaadin Connect properties
      * @return the PasswordEncoder
      */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-      return new BCryptPasswordEncoder();
+    public VaadinConnectPasswordEncoder passwordEncoder(
+        VaadinConnectProperties vaadinConnectProperties) {
+      return new VaadinConnectPasswordEncoder(
+          vaadinConnectProperties.getVaadinConnectPasswordHashingStrength(),
+          vaadinConnectProperties.getVaadinConnectPasswordHashingThreads(),
+          vaadinConnectProperties
+              .getVaadinConnectPasswordHashingQueueCapacity());
+    }
+  }
+
+  /**
+   * A configuration that registers the password hashing metrics, if Micrometer
+   * is available.
+   */
+  @Configuration
+  @ConditionalOnClass(name = "io.micrometer.core.instrument.binder.MeterBinder")
+  protected static class PasswordEncoderMetricsConfiguration {
+
+    /**
+     * Registers the metrics of the {@link VaadinConnectPasswordEncoder}.
+     *
+     * @param passwordEncoder
+     *          the password encoder to report the metrics of, there are no
+     *          metrics if a custom password encoder is used
+     * @return the metrics binder
+     */
+    @Bean
+    public VaadinConnectPasswordEncoderMetrics vaadinConnectPasswordEncoderMetrics(
+        PasswordEncoder passwordEncoder) {
+      return new VaadinConnectPasswordEncoderMetrics(passwordEncoder);
     }
   }
 
   /**
-   * Provide the {@link ResourceServerConfigurerAdapter} Bean allowing to
-   * serve any end-point without authentication.
+   * Provide the {@link ResourceServerConfigurerAdapter} Bean allowing to serve
+   * any end-point without authentication.
    *
    * It overrides {@link OAuth2ResourceServerConfiguration} which by default
    * requires authenticated requests for everything.
    *
-   * User still can provide a customised
-   * {@link ResourceServerConfigurerAdapter} Bean.
+   * User still can provide a customised {@link ResourceServerConfigurerAdapter}
+   * Bean.
    *
    * @return ResourceServerConfigurerAdapter
    */
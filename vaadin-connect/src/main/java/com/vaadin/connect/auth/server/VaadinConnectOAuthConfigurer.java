@@ -59,7 +59,6 @@ public class VaadinConnectOAuthConfigurer
   private static final String CLIENT_ID = "vaadin-connect-client";
   private static final String CLIENT_SECRET = "*";
 
-  private final PasswordEncoder encoder;
   private final TokenStore tokenStore;
   private final JwtAccessTokenConverter accessTokenConverter;
   private final AuthenticationManager authenticationManager;
@@ -93,11 +92,24 @@ public class VaadinConnectOAuthConfigurer
     }
   }
 
+  // The client secret is not a secret, since the filter above adds it to all
+  // the requests, so it is compared as is instead of hashing it in each login
+  private static class ClientSecretEncoder implements PasswordEncoder {
+    @Override
+    public String encode(CharSequence rawPassword) {
+      return rawPassword.toString();
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+      return rawPassword != null
+          && rawPassword.toString().equals(encodedPassword);
+    }
+  }
+
   /**
    * Creates VaadinConnectOAuthConfigurer bean.
    *
-   * @param encoder
-   *          password encoder bean
    * @param tokenStore
    *          token store bean
    * @param accessTokenConverter
@@ -112,13 +124,12 @@ public class VaadinConnectOAuthConfigurer
    *           if bean configuration fails due to
    *           {@link AuthenticationConfiguration#getAuthenticationManager()}
    */
-  public VaadinConnectOAuthConfigurer(PasswordEncoder encoder,
-      TokenStore tokenStore, JwtAccessTokenConverter accessTokenConverter,
+  public VaadinConnectOAuthConfigurer(TokenStore tokenStore,
+      JwtAccessTokenConverter accessTokenConverter,
       AuthenticationConfiguration authenticationConfiguration,
       @Autowired(required = false) UserDetailsService userDetails,
       @Autowired(required = false) AuthenticationManager authenticationManager)
       throws Exception {
-    this.encoder = encoder;
     this.tokenStore = tokenStore;
     this.accessTokenConverter = accessTokenConverter;
     this.userDetails = userDetails;
@@ -139,15 +150,15 @@ public class VaadinConnectOAuthConfigurer
   @Override
   public void configure(ClientDetailsServiceConfigurer clients)
       throws Exception {
-    clients.inMemory().withClient(CLIENT_ID)
-        .secret(encoder.encode(CLIENT_SECRET)).scopes(SCOPES)
-        .authorizedGrantTypes(GRANT_TYPES);
+    clients.inMemory().withClient(CLIENT_ID).secret(CLIENT_SECRET)
+        .scopes(SCOPES).authorizedGrantTypes(GRANT_TYPES);
   }
 
   @Override
   public void configure(AuthorizationServerSecurityConfigurer oauthServer)
       throws Exception {
-    oauthServer.addTokenEndpointAuthenticationFilter(
-        new PreBasicHttpFilter(CLIENT_ID, CLIENT_SECRET));
+    oauthServer.passwordEncoder(new ClientSecretEncoder())
+        .addTokenEndpointAuthenticationFilter(
+            new PreBasicHttpFilter(CLIENT_ID, CLIENT_SECRET));
   }
 }
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect.auth.server;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * A {@link BCryptPasswordEncoder} that hashes the passwords in a bounded pool
+ * of threads, so that a burst of logins does not occupy all the request threads
+ * with the deliberately slow hashing, and the other requests are still served.
+ * <p>
+ * The calling thread waits for the hashing to complete. When all the hashing
+ * threads are busy and the queue is full, the hashing is rejected right away
+ * with a {@link PasswordHashingRejectedException}, which the token endpoint
+ * reports as {@code 503 Service Unavailable}.
+ * <p>
+ * The BCrypt hashes with a lower work factor than the configured strength need
+ * an upgrade, so the password of a user is hashed again with the current
+ * strength on the next successful login, if a
+ * {@link UserDetailsPasswordService} Bean stores the new hash.
+ */
+public class VaadinConnectPasswordEncoder implements PasswordEncoder {
+  private static final String THREAD_NAME_PREFIX = "vaadin-connect-password-hashing-";
+  private static final long THREAD_KEEP_ALIVE_SECONDS = 60;
+  private static final Pattern BCRYPT_PATTERN = Pattern
+      .compile("\\A\\$2[aby]?\\$(\\d\\d)\\$[./0-9A-Za-z]{53}");
+
+  private final PasswordEncoder delegate;
+  private final int strength;
+  private final ThreadPoolExecutor executor;
+
+  private final LongAdder hashCount = new LongAdder();
+  private final LongAdder hashNanos = new LongAdder();
+  private final LongAdder rejectedCount = new LongAdder();
+
+  /**
+   * Creates the password encoder.
+   *
+   * @param strength
+   *          the BCrypt work factor, the logarithm of the number of the hashing
+   *          rounds, between 4 and 31
+   * @param threads
+   *          the number of the hashing threads, {@code 0} means the number of
+   *          the available processors
+   * @param queueCapacity
+   *          the maximum number of the passwords waiting for a hashing thread,
+   *          {@code 0} means that the hashing is rejected when all the threads
+   *          are busy
+   */
+  public VaadinConnectPasswordEncoder(int strength, int threads,
+      int queueCapacity) {
+    this(new BCryptPasswordEncoder(strength), strength, threads, queueCapacity);
+  }
+
+  VaadinConnectPasswordEncoder(PasswordEncoder delegate, int strength,
+      int threads, int queueCapacity) {
+    if (threads < 0 || queueCapacity < 0) {
+      throw new IllegalArgumentException(String.format(
+          "The number of the password hashing threads and the queue capacity should not be negative, got '%s' and '%s'",
+          threads, queueCapacity));
+    }
+    this.delegate = delegate;
+    this.strength = strength;
+    int poolSize = threads == 0 ? Runtime.getRuntime().availableProcessors()
+        : threads;
+    BlockingQueue<Runnable> queue = queueCapacity == 0
+        ? new SynchronousQueue<>()
+        : new ArrayBlockingQueue<>(queueCapacity);
+    AtomicInteger threadCount = new AtomicInteger();
+    executor = new ThreadPoolExecutor(poolSize, poolSize,
+        THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, queue, runnable -> {
+          Thread thread = new Thread(runnable,
+              THREAD_NAME_PREFIX + threadCount.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  @Override
+  public String encode(CharSequence rawPassword) {
+    return hash(() -> delegate.encode(rawPassword));
+  }
+
+  @Override
+  public boolean matches(CharSequence rawPassword, String encodedPassword) {
+    if (encodedPassword == null
+        || !BCRYPT_PATTERN.matcher(encodedPassword).matches()) {
+      // Rejected by the delegate without hashing
+      return delegate.matches(rawPassword, encodedPassword);
+    }
+    return hash(() -> delegate.matches(rawPassword, encodedPassword));
+  }
+
+  @Override
+  public boolean upgradeEncoding(String encodedPassword) {
+    if (encodedPassword == null) {
+      return false;
+    }
+    Matcher matcher = BCRYPT_PATTERN.matcher(encodedPassword);
+    return matcher.matches() && Integer.parseInt(matcher.group(1)) < strength;
+  }
+
+  /**
+   * Stops the hashing threads.
+   */
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+  private <T> T hash(Callable<T> hashing) {
+    Future<T> result;
+    try {
+      result = executor.submit(() -> {
+        long start = System.nanoTime();
+        try {
+          return hashing.call();
+        } finally {
+          hashNanos.add(System.nanoTime() - start);
+          hashCount.increment();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      rejectedCount.increment();
+      throw new PasswordHashingRejectedException(
+          "Too many concurrent logins, try again later");
+    }
+    try {
+      return result.get();
+    } catch (InterruptedException e) {
+      result.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(
+          "Interrupted while waiting for the password hashing", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException("Failed to hash the password", cause);
+    }
+  }
+
+  long getHashCount() {
+    return hashCount.sum();
+  }
+
+  double getHashNanos() {
+    return hashNanos.sum();
+  }
+
+  long getRejectedCount() {
+    return rejectedCount.sum();
+  }
+
+  int getQueuedCount() {
+    return executor.getQueue().size();
+  }
+
+  int getActiveCount() {
+    return executor.getActiveCount();
+  }
+}
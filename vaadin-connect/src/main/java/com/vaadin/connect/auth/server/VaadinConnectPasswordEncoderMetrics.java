@@ -0,0 +1,101 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect.auth.server;
+
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Binds the metrics of the {@link VaadinConnectPasswordEncoder} hashing pool to
+ * a Micrometer {@link MeterRegistry}. Registered automatically when Micrometer
+ * is present on the classpath. Nothing is reported if a custom password encoder
+ * is used instead of the default one.
+ */
+public class VaadinConnectPasswordEncoderMetrics implements MeterBinder {
+  /**
+   * The name of the timer of the password hashing, which measures the time
+   * spent in the hashing threads.
+   */
+  public static final String PASSWORD_HASHING_METRIC = "vaadin.connect.auth.password.hashing";
+
+  /**
+   * The name of the gauge that reports the number of the passwords waiting for
+   * a hashing thread.
+   */
+  public static final String PASSWORD_HASHING_QUEUED_METRIC = "vaadin.connect.auth.password.hashing.queued";
+
+  /**
+   * The name of the gauge that reports the number of the passwords being
+   * hashed.
+   */
+  public static final String PASSWORD_HASHING_ACTIVE_METRIC = "vaadin.connect.auth.password.hashing.active";
+
+  /**
+   * The name of the counter of the password hashing rejected because the
+   * threads were busy and the queue was full.
+   */
+  public static final String PASSWORD_HASHING_REJECTED_METRIC = "vaadin.connect.auth.password.hashing.rejected";
+
+  private final PasswordEncoder passwordEncoder;
+
+  /**
+   * Creates the metrics binder for the password encoder given.
+   *
+   * @param passwordEncoder
+   *          the password encoder to report the metrics of, if it is a
+   *          {@link VaadinConnectPasswordEncoder}
+   */
+  public VaadinConnectPasswordEncoderMetrics(PasswordEncoder passwordEncoder) {
+    this.passwordEncoder = passwordEncoder;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    if (passwordEncoder instanceof VaadinConnectPasswordEncoder) {
+      bindTo(registry, (VaadinConnectPasswordEncoder) passwordEncoder);
+    }
+  }
+
+  private static void bindTo(MeterRegistry registry,
+      VaadinConnectPasswordEncoder passwordEncoder) {
+    FunctionTimer
+        .builder(PASSWORD_HASHING_METRIC, passwordEncoder,
+            VaadinConnectPasswordEncoder::getHashCount,
+            VaadinConnectPasswordEncoder::getHashNanos, TimeUnit.NANOSECONDS)
+        .description("The time spent hashing the passwords").register(registry);
+    Gauge
+        .builder(PASSWORD_HASHING_QUEUED_METRIC, passwordEncoder,
+            VaadinConnectPasswordEncoder::getQueuedCount)
+        .description("The number of the passwords waiting to be hashed")
+        .register(registry);
+    Gauge
+        .builder(PASSWORD_HASHING_ACTIVE_METRIC, passwordEncoder,
+            VaadinConnectPasswordEncoder::getActiveCount)
+        .description("The number of the passwords being hashed")
+        .register(registry);
+    FunctionCounter
+        .builder(PASSWORD_HASHING_REJECTED_METRIC, passwordEncoder,
+            VaadinConnectPasswordEncoder::getRejectedCount)
+        .description("The number of the rejected password hashing")
+        .register(registry);
+  }
+}
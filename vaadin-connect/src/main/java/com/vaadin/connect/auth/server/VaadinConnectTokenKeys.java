@@ -0,0 +1,478 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect.auth.server;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.security.jwt.Jwt;
+import org.springframework.security.jwt.JwtHelper;
+import org.springframework.security.jwt.crypto.sign.EllipticCurveVerifier;
+import org.springframework.security.jwt.crypto.sign.InvalidSignatureException;
+import org.springframework.security.jwt.crypto.sign.MacSigner;
+import org.springframework.security.jwt.crypto.sign.RsaVerifier;
+import org.springframework.security.jwt.crypto.sign.SignatureVerifier;
+import org.springframework.security.oauth2.common.util.JsonParser;
+import org.springframework.security.oauth2.common.util.JsonParserFactory;
+import org.springframework.security.oauth2.common.util.RandomValueStringGenerator;
+import org.springframework.util.StringUtils;
+
+import com.vaadin.connect.VaadinConnectProperties;
+
+/**
+ * The keys the access and refresh tokens are signed and verified with.
+ * <p>
+ * The tokens are signed either with the shared secret
+ * {@code vaadin.connect.auth.token-signing-key} using the {@code HS256}
+ * algorithm, or with the private key of an RSA ({@code RS256}) or an elliptic
+ * curve ({@code ES256}, {@code ES384} or {@code ES512}) key pair. The tokens
+ * signed with a key pair have the {@code kid} header, which tells the public
+ * key that verifies them, so that several keys can be accepted at the same time
+ * while the signing key is rotated. The public keys are published in the JSON
+ * Web Key Set format, so that other nodes can verify the tokens without knowing
+ * any secret.
+ */
+final class VaadinConnectTokenKeys {
+  static final String HS256 = "HS256";
+  private static final String RS256 = "RS256";
+  private static final String KEY_ID_HEADER = "kid";
+  private static final String ALGORITHM_HEADER = "alg";
+
+  private static final Map<String, String> JAVA_ALGORITHMS;
+
+  static {
+    Map<String, String> javaAlgorithms = new LinkedHashMap<>();
+    javaAlgorithms.put(HS256, "HMACSHA256");
+    javaAlgorithms.put(RS256, "SHA256withRSA");
+    javaAlgorithms.put("ES256", "SHA256withECDSA");
+    javaAlgorithms.put("ES384", "SHA384withECDSA");
+    javaAlgorithms.put("ES512", "SHA512withECDSA");
+    JAVA_ALGORITHMS = Collections.unmodifiableMap(javaAlgorithms);
+  }
+
+  private final String algorithm;
+  private final String keyId;
+  private final MacSigner macSigner;
+  private final PrivateKey privateKey;
+  private final Map<String, VerificationKey> verificationKeys;
+  private final JsonParser jsonParser = JsonParserFactory.create();
+
+  private static class VerificationKey {
+    private final String algorithm;
+    private final PublicKey publicKey;
+    private final SignatureVerifier verifier;
+
+    private VerificationKey(String algorithm, PublicKey publicKey) {
+      this.algorithm = algorithm;
+      this.publicKey = publicKey;
+      this.verifier = publicKey instanceof RSAPublicKey
+          ? new RsaVerifier((RSAPublicKey) publicKey,
+              JAVA_ALGORITHMS.get(algorithm))
+          : new EllipticCurveVerifier((ECPublicKey) publicKey,
+              JAVA_ALGORITHMS.get(algorithm));
+    }
+  }
+
+  private VaadinConnectTokenKeys(String algorithm, String keyId,
+      MacSigner macSigner, PrivateKey privateKey,
+      Map<String, VerificationKey> verificationKeys) {
+    this.algorithm = algorithm;
+    this.keyId = keyId;
+    this.macSigner = macSigner;
+    this.privateKey = privateKey;
+    this.verificationKeys = verificationKeys;
+  }
+
+  /**
+   * Creates the keys configured by the properties given.
+   *
+   * @param properties
+   *          the Vaadin Connect properties
+   * @return the keys
+   * @throws IllegalStateException
+   *           if the keys are not configured correctly
+   */
+  static VaadinConnectTokenKeys create(VaadinConnectProperties properties) {
+    String algorithm = properties.getVaadinConnectTokenSigningAlgorithm();
+    if (!JAVA_ALGORITHMS.containsKey(algorithm)) {
+      throw new IllegalStateException(String.format(
+          "Unsupported token signing algorithm '%s', the supported ones are %s",
+          algorithm, JAVA_ALGORITHMS.keySet()));
+    }
+
+    String secret = properties.getVaadinConnectTokenSigningKey();
+    if (HS256.equals(algorithm)) {
+      // Same as JwtAccessTokenConverter, which uses a random key by default
+      MacSigner macSigner = new MacSigner(StringUtils.isEmpty(secret)
+          ? new RandomValueStringGenerator().generate()
+          : secret);
+      return new VaadinConnectTokenKeys(algorithm, null, macSigner, null,
+          Collections.emptyMap());
+    }
+    MacSigner macSigner = null;
+    if (properties.isVaadinConnectTokenAcceptSharedSecret()) {
+      if (StringUtils.isEmpty(secret)) {
+        throw new IllegalStateException(
+            "The shared secret the tokens are accepted with is missing, set the "
+                + "'vaadin.connect.auth.token-signing-key' property");
+      }
+      macSigner = new MacSigner(secret);
+    }
+
+    Map<String, VerificationKey> verificationKeys = new LinkedHashMap<>();
+    String publicKeyText = properties.getVaadinConnectTokenSigningPublicKey();
+    if (StringUtils.isEmpty(publicKeyText)) {
+      throw new IllegalStateException(String.format(
+          "The public key of the '%s' token signing algorithm is missing, "
+              + "set the 'vaadin.connect.auth.token-signing-public-key' property",
+          algorithm));
+    }
+    PublicKey publicKey = parsePublicKey(publicKeyText);
+    checkKeyAlgorithm(algorithm, publicKey);
+    String keyId = properties.getVaadinConnectTokenSigningKeyId();
+    if (StringUtils.isEmpty(keyId)) {
+      keyId = createKeyId(publicKey);
+    }
+    verificationKeys.put(keyId, new VerificationKey(algorithm, publicKey));
+
+    for (String entry : StringUtils.commaDelimitedListToStringArray(
+        properties.getVaadinConnectTokenVerificationKeys())) {
+      int separator = entry.indexOf(':');
+      if (separator <= 0) {
+        throw new IllegalStateException(
+            String.format("Invalid token verification key '%s', "
+                + "the expected format is 'key-id:public-key'", entry));
+      }
+      PublicKey verificationKey = parsePublicKey(
+          entry.substring(separator + 1));
+      verificationKeys.put(entry.substring(0, separator).trim(),
+          new VerificationKey(getAlgorithm(verificationKey), verificationKey));
+    }
+
+    String privateKeyText = properties.getVaadinConnectTokenSigningPrivateKey();
+    PrivateKey privateKey = null;
+    if (!StringUtils.isEmpty(privateKeyText)) {
+      privateKey = parsePrivateKey(privateKeyText, publicKey.getAlgorithm());
+    }
+    return new VaadinConnectTokenKeys(algorithm, keyId, macSigner, privateKey,
+        Collections.unmodifiableMap(verificationKeys));
+  }
+
+  /**
+   * Creates the identifier of the public key given, which is the beginning of
+   * the Base64URL-encoded SHA-256 digest of the key.
+   *
+   * @param publicKey
+   *          the public key
+   * @return the key identifier
+   */
+  static String createKeyId(PublicKey publicKey) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256")
+          .digest(publicKey.getEncoded());
+      return base64Url(digest).substring(0, 16);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Unexpected: SHA-256 is not available",
+          e);
+    }
+  }
+
+  /**
+   * Gets the algorithm the tokens are signed with.
+   *
+   * @return the JWS algorithm name
+   */
+  String getAlgorithm() {
+    return algorithm;
+  }
+
+  /**
+   * Gets the identifier of the key the tokens are signed with.
+   *
+   * @return the key identifier, or {@code null} if the tokens are signed with
+   *         the shared secret
+   */
+  String getKeyId() {
+    return keyId;
+  }
+
+  /**
+   * Gets the shared secret signer, which is used with the {@code HS256}
+   * algorithm, and verifies the tokens without the {@code kid} header with a
+   * key pair if the tokens signed with the shared secret are still accepted.
+   *
+   * @return the shared secret signer, or {@code null} if the tokens signed with
+   *         the shared secret are not accepted
+   */
+  MacSigner getMacSigner() {
+    return macSigner;
+  }
+
+  /**
+   * Signs the token claims given.
+   *
+   * @param claims
+   *          the JSON claims of the token
+   * @return the encoded token
+   * @throws IllegalStateException
+   *           if this node has no private key to sign the tokens with
+   */
+  String sign(String claims) {
+    if (macSigner != null && HS256.equals(algorithm)) {
+      return JwtHelper.encode(claims, macSigner).getEncoded();
+    }
+    if (privateKey == null) {
+      throw new IllegalStateException(
+          "The private key to sign the tokens with is missing, set the "
+              + "'vaadin.connect.auth.token-signing-private-key' property");
+    }
+    Map<String, Object> header = new LinkedHashMap<>();
+    header.put(ALGORITHM_HEADER, algorithm);
+    header.put("typ", "JWT");
+    header.put(KEY_ID_HEADER, keyId);
+    String signingInput = base64Url(
+        jsonParser.formatMap(header).getBytes(StandardCharsets.UTF_8)) + '.'
+        + base64Url(claims.getBytes(StandardCharsets.UTF_8));
+    try {
+      Signature signature = Signature
+          .getInstance(JAVA_ALGORITHMS.get(algorithm));
+      signature.initSign(privateKey);
+      signature.update(signingInput.getBytes(StandardCharsets.US_ASCII));
+      byte[] signatureBytes = signature.sign();
+      if (privateKey instanceof ECPrivateKey) {
+        signatureBytes = toConcatenatedSignature(signatureBytes,
+            getCoordinateLength(((ECPrivateKey) privateKey).getParams()
+                .getCurve().getField().getFieldSize()));
+      }
+      return signingInput + '.' + base64Url(signatureBytes);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Failed to sign the token", e);
+    }
+  }
+
+  /**
+   * Decodes the token given, verifying its signature with the key of its
+   * {@code kid} header, or with the shared secret if it has no such header and
+   * the tokens signed with the shared secret are accepted.
+   *
+   * @param token
+   *          the encoded token
+   * @return the decoded token
+   * @throws InvalidSignatureException
+   *           if the token is signed with an unknown key, with an unexpected
+   *           algorithm, or the signature does not match
+   */
+  Jwt decodeAndVerify(String token) {
+    Map<String, String> header = JwtHelper.headers(token);
+    String tokenKeyId = header.get(KEY_ID_HEADER);
+    String tokenAlgorithm = header.get(ALGORITHM_HEADER);
+    if (tokenKeyId == null) {
+      if (macSigner == null || !HS256.equals(tokenAlgorithm)) {
+        throw new InvalidSignatureException("The token has no key identifier");
+      }
+      return JwtHelper.decodeAndVerify(token, macSigner);
+    }
+    VerificationKey key = verificationKeys.get(tokenKeyId);
+    if (key == null) {
+      throw new InvalidSignatureException(
+          String.format("Unknown token key identifier '%s'", tokenKeyId));
+    }
+    if (!key.algorithm.equals(tokenAlgorithm)) {
+      throw new InvalidSignatureException(String.format(
+          "The token algorithm '%s' does not match the '%s' algorithm of the key '%s'",
+          tokenAlgorithm, key.algorithm, tokenKeyId));
+    }
+    return JwtHelper.decodeAndVerify(token, key.verifier);
+  }
+
+  /**
+   * Gets the public keys that verify the tokens in the JSON Web Key Set format.
+   *
+   * @return the key set, which is empty if the tokens are signed with the
+   *         shared secret
+   */
+  Map<String, Object> getJwkSet() {
+    List<Map<String, Object>> keys = new ArrayList<>();
+    verificationKeys.forEach((id, key) -> {
+      Map<String, Object> jwk = new LinkedHashMap<>();
+      jwk.put("kid", id);
+      jwk.put("use", "sig");
+      jwk.put("alg", key.algorithm);
+      if (key.publicKey instanceof RSAPublicKey) {
+        RSAPublicKey rsaKey = (RSAPublicKey) key.publicKey;
+        jwk.put("kty", "RSA");
+        jwk.put("n", base64Url(toUnsignedBytes(rsaKey.getModulus(), 0)));
+        jwk.put("e", base64Url(toUnsignedBytes(rsaKey.getPublicExponent(), 0)));
+      } else {
+        ECPublicKey ecKey = (ECPublicKey) key.publicKey;
+        int fieldSize = ecKey.getParams().getCurve().getField().getFieldSize();
+        int length = getCoordinateLength(fieldSize);
+        jwk.put("kty", "EC");
+        jwk.put("crv", "P-" + fieldSize);
+        jwk.put("x",
+            base64Url(toUnsignedBytes(ecKey.getW().getAffineX(), length)));
+        jwk.put("y",
+            base64Url(toUnsignedBytes(ecKey.getW().getAffineY(), length)));
+      }
+      keys.add(jwk);
+    });
+    return Collections.singletonMap("keys", keys);
+  }
+
+  private static String getAlgorithm(PublicKey publicKey) {
+    if (publicKey instanceof RSAPublicKey) {
+      return RS256;
+    }
+    if (publicKey instanceof ECPublicKey) {
+      int fieldSize = ((ECPublicKey) publicKey).getParams().getCurve()
+          .getField().getFieldSize();
+      switch (fieldSize) {
+      case 256:
+        return "ES256";
+      case 384:
+        return "ES384";
+      case 521:
+        return "ES512";
+      default:
+        break;
+      }
+    }
+    throw new IllegalStateException(String.format(
+        "Unsupported token verification key '%s', "
+            + "the key should be either an RSA key or a P-256, P-384 or P-521 elliptic curve key",
+        publicKey.getAlgorithm()));
+  }
+
+  private static void checkKeyAlgorithm(String algorithm, PublicKey publicKey) {
+    String keyAlgorithm = getAlgorithm(publicKey);
+    if (!keyAlgorithm.equals(algorithm)) {
+      throw new IllegalStateException(String.format(
+          "The token signing public key is suitable for the '%s' algorithm, but the '%s' algorithm is configured",
+          keyAlgorithm, algorithm));
+    }
+  }
+
+  private static PublicKey parsePublicKey(String text) {
+    try {
+      byte[] encoded = decodeKey(text);
+      for (String keyAlgorithm : Arrays.asList("RSA", "EC")) {
+        try {
+          return KeyFactory.getInstance(keyAlgorithm)
+              .generatePublic(new X509EncodedKeySpec(encoded));
+        } catch (GeneralSecurityException e) {
+          // Try the next key algorithm
+        }
+      }
+    } catch (IllegalArgumentException e) {
+      throw new IllegalStateException(
+          "The token public key is not Base64 encoded", e);
+    }
+    throw new IllegalStateException(
+        "The token public key is neither an RSA nor an EC X.509 public key");
+  }
+
+  private static PrivateKey parsePrivateKey(String text, String keyAlgorithm) {
+    try {
+      PrivateKey privateKey = KeyFactory.getInstance(keyAlgorithm)
+          .generatePrivate(new PKCS8EncodedKeySpec(decodeKey(text)));
+      if (!(privateKey instanceof RSAPrivateKey
+          || privateKey instanceof ECPrivateKey)) {
+        throw new IllegalStateException(
+            "The token signing private key is neither an RSA nor an EC key");
+      }
+      return privateKey;
+    } catch (GeneralSecurityException | IllegalArgumentException e) {
+      throw new IllegalStateException(String.format(
+          "The token signing private key is not a Base64 encoded %s PKCS #8 private key "
+              + "matching the public key",
+          keyAlgorithm), e);
+    }
+  }
+
+  private static byte[] decodeKey(String text) {
+    // Accept both the plain Base64 and the PEM encoding
+    String base64 = text.replaceAll("-----[A-Z ]+-----", "").replaceAll("\\s",
+        "");
+    return Base64.getDecoder().decode(base64);
+  }
+
+  private static int getCoordinateLength(int fieldSize) {
+    return (fieldSize + 7) / 8;
+  }
+
+  /**
+   * Converts the DER-encoded ECDSA signature produced by Java to the
+   * concatenated R and S values, as JWS requires.
+   */
+  private static byte[] toConcatenatedSignature(byte[] der, int length)
+      throws GeneralSecurityException {
+    int offset = 1;
+    if (der.length < 8 || der[0] != 0x30) {
+      throw new GeneralSecurityException("Invalid ECDSA signature format");
+    }
+    offset += (der[offset] & 0x80) != 0 ? 1 + (der[offset] & 0x7f) : 1;
+    byte[] result = new byte[2 * length];
+    for (int i = 0; i < 2; i++) {
+      if (der[offset] != 0x02) {
+        throw new GeneralSecurityException("Invalid ECDSA signature format");
+      }
+      int valueLength = der[offset + 1] & 0xff;
+      int valueOffset = offset + 2;
+      BigInteger value = new BigInteger(1,
+          Arrays.copyOfRange(der, valueOffset, valueOffset + valueLength));
+      byte[] bytes = toUnsignedBytes(value, length);
+      System.arraycopy(bytes, 0, result, i * length, length);
+      offset = valueOffset + valueLength;
+    }
+    return result;
+  }
+
+  private static byte[] toUnsignedBytes(BigInteger value, int length) {
+    byte[] bytes = value.toByteArray();
+    if (bytes.length > 1 && bytes[0] == 0) {
+      bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+    }
+    if (bytes.length >= length) {
+      return bytes;
+    }
+    byte[] padded = new byte[length];
+    System.arraycopy(bytes, 0, padded, length - bytes.length, bytes.length);
+    return padded;
+  }
+
+  private static String base64Url(byte[] bytes) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect.auth.server;
+
+import java.security.Principal;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.authentication.OAuth2AuthenticationDetails;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * The endpoint that revokes the access token the request is authorized with, so
+ * that the token is rejected in the following requests, even though it has not
+ * expired yet. The client calls it when the user logs out.
+ * <p>
+ * The token is revoked with
+ * {@link VaadinConnectTokenStore#removeAccessToken(OAuth2AccessToken)}, which
+ * adds its {@code jti} claim to the {@link VaadinConnectTokenRevocationList}.
+ */
+@RestController
+public class VaadinConnectTokenRevocationEndpoint {
+  /**
+   * The path of the endpoint.
+   */
+  public static final String REVOCATION_PATH = "/oauth/revoke";
+
+  private final VaadinConnectTokenStore tokenStore;
+
+  /**
+   * Creates the endpoint.
+   *
+   * @param tokenStore
+   *          the store that revokes the tokens
+   */
+  public VaadinConnectTokenRevocationEndpoint(
+      VaadinConnectTokenStore tokenStore) {
+    this.tokenStore = tokenStore;
+  }
+
+  /**
+   * Revokes the access token of the request.
+   *
+   * @param principal
+   *          the authentication of the request
+   * @return {@code 204 No Content} when the token is revoked, or
+   *         {@code 401 Unauthorized} if the request has no access token
+   */
+  @PostMapping(REVOCATION_PATH)
+  public ResponseEntity<Void> revoke(Principal principal) {
+    Object details = principal instanceof OAuth2Authentication
+        ? ((OAuth2Authentication) principal).getDetails()
+        : null;
+    if (!(details instanceof OAuth2AuthenticationDetails)) {
+      return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+    }
+    String tokenValue = ((OAuth2AuthenticationDetails) details).getTokenValue();
+    OAuth2AccessToken accessToken = tokenStore.readAccessToken(tokenValue);
+    if (accessToken != null) {
+      tokenStore.removeAccessToken(accessToken);
+    }
+    return ResponseEntity.noContent().build();
+  }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect.auth.server;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.provider.token.AccessTokenConverter;
+
+/**
+ * The identifiers ({@code jti} claims) of the tokens that are revoked before
+ * they expire.
+ * <p>
+ * The check is made in each request, so it is made in two steps: a Bloom filter
+ * tells, without locking or allocating, that most of the tokens are not
+ * revoked, and only the tokens it may match are looked up from the exact set of
+ * the revoked identifiers. The revocations are kept until the tokens would have
+ * expired anyway, and then pruned. The revocations are shared with the other
+ * nodes through a {@link VaadinConnectTokenRevocationReplicator}.
+ */
+public class VaadinConnectTokenRevocationList {
+  private static final long PRUNE_INTERVAL_MILLIS = TimeUnit.MINUTES
+      .toMillis(1);
+  // The hash halves of the identifier checked, reused so that the check does
+  // not allocate
+  private static final ThreadLocal<long[]> HASHES = ThreadLocal
+      .withInitial(() -> new long[2]);
+
+  private final int expectedEntries;
+  private final LongSupplier clock;
+  private final VaadinConnectTokenRevocationReplicator replicator;
+
+  private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+  private volatile BloomFilter filter;
+  private long nextPruneMillis;
+
+  /**
+   * A Bloom filter of about 10 bits per entry and 7 hash functions, which
+   * matches about 1% of the identifiers that are not added to it.
+   * <p>
+   * The bits of an identifier are chosen with the double hashing of Kirsch and
+   * Mitzenmacher, from the two independent 64-bit halves of the 128-bit
+   * MurmurHash3 of the UTF-16 code units of the identifier, so that the
+   * identifiers that have the same {@link String#hashCode()} do not match each
+   * other.
+   */
+  static final class BloomFilter {
+    private static final int BITS_PER_ENTRY = 10;
+    private static final int HASH_FUNCTIONS = 7;
+    private static final long C1 = 0x87C37B91114253D5L;
+    private static final long C2 = 0x4CF5AD432745937FL;
+
+    private final AtomicLongArray words;
+    private final int mask;
+    private final int capacity;
+
+    BloomFilter(int capacity) {
+      int bits = Integer
+          .highestOneBit(Math.max(64, capacity * BITS_PER_ENTRY - 1)) << 1;
+      this.words = new AtomicLongArray(bits >>> 6);
+      this.mask = bits - 1;
+      this.capacity = capacity;
+    }
+
+    void add(String tokenId) {
+      long[] hash = HASHES.get();
+      hash(tokenId, hash);
+      // An odd second hash visits distinct bits in each step
+      long hash2 = hash[1] | 1;
+      for (int i = 0; i < HASH_FUNCTIONS; i++) {
+        int bit = (int) (hash[0] + i * hash2) & mask;
+        long bitMask = 1L << bit;
+        int index = bit >>> 6;
+        long word;
+        do {
+          word = words.get(index);
+        } while ((word & bitMask) == 0
+            && !words.compareAndSet(index, word, word | bitMask));
+      }
+    }
+
+    boolean mightContain(String tokenId) {
+      long[] hash = HASHES.get();
+      hash(tokenId, hash);
+      long hash2 = hash[1] | 1;
+      for (int i = 0; i < HASH_FUNCTIONS; i++) {
+        int bit = (int) (hash[0] + i * hash2) & mask;
+        if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Computes the 128-bit MurmurHash3 (x64 variant, seed 0) of the UTF-16LE
+     * bytes of the identifier, reading the characters directly instead of
+     * encoding them into an array, and stores its two halves into the array
+     * given.
+     */
+    static void hash(String tokenId, long[] result) {
+      int length = tokenId.length();
+      long h1 = 0;
+      long h2 = 0;
+      int blockEnd = length & ~7;
+      for (int i = 0; i < blockEnd; i += 8) {
+        h1 ^= mixK1(getLong(tokenId, i, 4));
+        h1 = Long.rotateLeft(h1, 27) + h2;
+        h1 = h1 * 5 + 0x52DCE729;
+        h2 ^= mixK2(getLong(tokenId, i + 4, 4));
+        h2 = Long.rotateLeft(h2, 31) + h1;
+        h2 = h2 * 5 + 0x38495AB5;
+      }
+      int tail = length - blockEnd;
+      if (tail > 4) {
+        h2 ^= mixK2(getLong(tokenId, blockEnd + 4, tail - 4));
+      }
+      if (tail > 0) {
+        h1 ^= mixK1(getLong(tokenId, blockEnd, Math.min(tail, 4)));
+      }
+      long byteLength = 2L * length;
+      h1 ^= byteLength;
+      h2 ^= byteLength;
+      h1 += h2;
+      h2 += h1;
+      h1 = fmix(h1);
+      h2 = fmix(h2);
+      h1 += h2;
+      h2 += h1;
+      result[0] = h1;
+      result[1] = h2;
+    }
+
+    private static long getLong(String tokenId, int start, int chars) {
+      long value = 0;
+      for (int i = 0; i < chars; i++) {
+        value |= (long) tokenId.charAt(start + i) << (i << 4);
+      }
+      return value;
+    }
+
+    private static long mixK1(long k1) {
+      return Long.rotateLeft(k1 * C1, 31) * C2;
+    }
+
+    private static long mixK2(long k2) {
+      return Long.rotateLeft(k2 * C2, 33) * C1;
+    }
+
+    private static long fmix(long hash) {
+      hash ^= hash >>> 33;
+      hash *= 0xFF51AFD7ED558CCDL;
+      hash ^= hash >>> 33;
+      hash *= 0xC4CEB9FE1A85EC53L;
+      hash ^= hash >>> 33;
+      return hash;
+    }
+  }
+
+  /**
+   * Creates the revocation list.
+   *
+   * @param expectedEntries
+   *          the expected maximum number of the tokens revoked and not yet
+   *          expired at the same time, the filter grows if it is exceeded
+   * @param replicator
+   *          the replicator that shares the revocations with the other nodes
+   */
+  public VaadinConnectTokenRevocationList(int expectedEntries,
+      VaadinConnectTokenRevocationReplicator replicator) {
+    this(expectedEntries, replicator, System::currentTimeMillis);
+  }
+
+  VaadinConnectTokenRevocationList(int expectedEntries,
+      VaadinConnectTokenRevocationReplicator replicator, LongSupplier clock) {
+    if (expectedEntries <= 0) {
+      throw new IllegalArgumentException(String.format(
+          "The expected number of the revoked tokens should be positive, got '%s'",
+          expectedEntries));
+    }
+    this.expectedEntries = expectedEntries;
+    this.replicator = replicator;
+    this.clock = clock;
+    this.filter = new BloomFilter(expectedEntries);
+    this.nextPruneMillis = clock.getAsLong() + PRUNE_INTERVAL_MILLIS;
+    replicator.subscribe(this::add);
+  }
+
+  /**
+   * Revokes the access token given on all the nodes.
+   *
+   * @param accessToken
+   *          the access token to revoke
+   * @throws IllegalArgumentException
+   *           if the token has no {@code jti} claim or expiration time
+   */
+  public void revoke(OAuth2AccessToken accessToken) {
+    Object tokenId = accessToken.getAdditionalInformation()
+        .get(AccessTokenConverter.JTI);
+    Date expiration = accessToken.getExpiration();
+    if (tokenId == null || expiration == null) {
+      throw new IllegalArgumentException(
+          "Only the tokens with the 'jti' and 'exp' claims can be revoked");
+    }
+    revoke(tokenId.toString(), expiration.getTime());
+  }
+
+  /**
+   * Revokes the token given on all the nodes.
+   *
+   * @param tokenId
+   *          the {@code jti} claim of the token
+   * @param expirationMillis
+   *          the expiration time of the token, in milliseconds since the epoch,
+   *          after which the revocation is forgotten
+   */
+  public void revoke(String tokenId, long expirationMillis) {
+    add(tokenId, expirationMillis);
+    replicator.publish(tokenId, expirationMillis);
+  }
+
+  /**
+   * Checks if the token given is revoked.
+   *
+   * @param tokenId
+   *          the {@code jti} claim of the token, may be {@code null}
+   * @return {@code true} if the token is revoked
+   */
+  public boolean isRevoked(String tokenId) {
+    return tokenId != null && filter.mightContain(tokenId)
+        && revokedTokens.containsKey(tokenId);
+  }
+
+  /**
+   * Forgets the revocations of the tokens that have expired, and rebuilds the
+   * filter without them. This is done automatically when tokens are revoked.
+   */
+  public synchronized void prune() {
+    long now = clock.getAsLong();
+    Iterator<Long> expirations = revokedTokens.values().iterator();
+    while (expirations.hasNext()) {
+      if (expirations.next() <= now) {
+        expirations.remove();
+      }
+    }
+    BloomFilter prunedFilter = new BloomFilter(
+        Math.max(expectedEntries, 2 * revokedTokens.size()));
+    revokedTokens.keySet().forEach(prunedFilter::add);
+    filter = prunedFilter;
+    nextPruneMillis = now + PRUNE_INTERVAL_MILLIS;
+  }
+
+  private synchronized void add(String tokenId, long expirationMillis) {
+    if (expirationMillis <= clock.getAsLong()) {
+      // The token is rejected anyway
+      return;
+    }
+    // The exact set is updated before the filter, so that a token matched by
+    // the filter is always found from the set
+    revokedTokens.put(tokenId, expirationMillis);
+    filter.add(tokenId);
+    if (clock.getAsLong() >= nextPruneMillis
+        || revokedTokens.size() > filter.capacity) {
+      prune();
+    }
+  }
+
+  int getSize() {
+    return revokedTokens.size();
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect.auth.server;
+
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Replicates the token revocations between the nodes that verify the tokens, so
+ * that a token revoked on one node is rejected by all of them.
+ * <p>
+ * An implementation delivers each published revocation to the listeners
+ * subscribed on every node, including the publishing one, for instance, over a
+ * message broker or a shared cache. The delivery may be asynchronous, and the
+ * same revocation may be delivered more than once.
+ *
+ * @see VaadinConnectTokenRevocationList
+ * @see InProcessTokenRevocationReplicator
+ */
+public interface VaadinConnectTokenRevocationReplicator {
+
+  /**
+   * Publishes the revocation of a token to all the nodes.
+   *
+   * @param tokenId
+   *          the {@code jti} claim of the revoked token
+   * @param expirationMillis
+   *          the expiration time of the revoked token, in milliseconds since
+   *          the epoch
+   */
+  void publish(String tokenId, long expirationMillis);
+
+  /**
+   * Subscribes a listener to the revocations published by any node.
+   *
+   * @param listener
+   *          the listener that receives the {@code jti} claim and the
+   *          expiration time of each revoked token
+   */
+  void subscribe(ObjLongConsumer<String> listener);
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect.auth.server;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.exceptions.InvalidTokenException;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.AccessTokenConverter;
+import org.springframework.security.oauth2.provider.token.store.JwtTokenStore;
+
+/**
+ * A {@link JwtTokenStore} that caches the access tokens it has verified, so
+ * that a token used in many requests is only decoded, verified and converted to
+ * an authentication once.
+ * <p>
+ * The tokens are cached by their encoded value until they expire. The least
+ * recently used tokens are evicted when the number of the cached tokens exceeds
+ * the bound. A token is removed from the cache immediately when it is revoked
+ * with {@link #removeAccessToken(OAuth2AccessToken)}, or evicted with
+ * {@link #evict(String)} or {@link #evictUser(String)}, for instance, when the
+ * user logs out.
+ * <p>
+ * If a {@link VaadinConnectTokenRevocationList} is given, the tokens revoked on
+ * any node are rejected, whether they are cached or not, and the tokens revoked
+ * with {@link #removeAccessToken(OAuth2AccessToken)} are added to it.
+ */
+public class VaadinConnectTokenStore extends JwtTokenStore {
+  private final VaadinConnectAccessTokenConverter converter;
+  private final int maxEntries;
+  private final LongSupplier clock;
+  private final VaadinConnectTokenRevocationList revocationList;
+
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16,
+      0.75f, true);
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  private static class Entry {
+    private final OAuth2AccessToken accessToken;
+    private final OAuth2Authentication authentication;
+    private final long expirationMillis;
+    private final String tokenId;
+
+    private Entry(OAuth2AccessToken accessToken,
+        OAuth2Authentication authentication, long expirationMillis) {
+      this.accessToken = accessToken;
+      this.authentication = authentication;
+      this.expirationMillis = expirationMillis;
+      this.tokenId = getTokenId(accessToken);
+    }
+  }
+
+  /**
+   * Creates the token store.
+   *
+   * @param jwtTokenEnhancer
+   *          the converter that decodes and verifies the tokens
+   * @param maxEntries
+   *          the maximum number of the cached tokens, {@code 0} disables the
+   *          caching
+   */
+  public VaadinConnectTokenStore(
+      VaadinConnectAccessTokenConverter jwtTokenEnhancer, int maxEntries) {
+    this(jwtTokenEnhancer, maxEntries, null);
+  }
+
+  /**
+   * Creates the token store that rejects the revoked tokens.
+   *
+   * @param jwtTokenEnhancer
+   *          the converter that decodes and verifies the tokens
+   * @param maxEntries
+   *          the maximum number of the cached tokens, {@code 0} disables the
+   *          caching
+   * @param revocationList
+   *          the revoked tokens, or {@code null} to not check the revocations
+   */
+  public VaadinConnectTokenStore(
+      VaadinConnectAccessTokenConverter jwtTokenEnhancer, int maxEntries,
+      VaadinConnectTokenRevocationList revocationList) {
+    this(jwtTokenEnhancer, maxEntries, revocationList,
+        System::currentTimeMillis);
+  }
+
+  VaadinConnectTokenStore(VaadinConnectAccessTokenConverter jwtTokenEnhancer,
+      int maxEntries, VaadinConnectTokenRevocationList revocationList,
+      LongSupplier clock) {
+    super(jwtTokenEnhancer);
+    if (maxEntries < 0) {
+      throw new IllegalArgumentException(String.format(
+          "The maximum number of the cached tokens should not be negative, got '%s'",
+          maxEntries));
+    }
+    this.converter = jwtTokenEnhancer;
+    this.maxEntries = maxEntries;
+    this.revocationList = revocationList;
+    this.clock = clock;
+  }
+
+  @Override
+  public OAuth2AccessToken readAccessToken(String tokenValue) {
+    if (maxEntries == 0) {
+      OAuth2AccessToken accessToken = super.readAccessToken(tokenValue);
+      return isRevoked(getTokenId(accessToken)) ? null : accessToken;
+    }
+    Entry entry = getEntry(tokenValue);
+    if (entry != null) {
+      if (isRevoked(entry.tokenId)) {
+        evict(tokenValue);
+        return null;
+      }
+      hits.increment();
+      return entry.accessToken;
+    }
+    misses.increment();
+
+    // Decode and verify the token once for both the token and its
+    // authentication
+    Map<String, Object> claims = converter.decode(tokenValue);
+    OAuth2AccessToken accessToken = converter.extractAccessToken(tokenValue,
+        claims);
+    if (converter.isRefreshToken(accessToken)) {
+      throw new InvalidTokenException("Encoded token is a refresh token");
+    }
+    if (isRevoked(getTokenId(accessToken))) {
+      return null;
+    }
+    Date expiration = accessToken.getExpiration();
+    if (expiration != null && expiration.getTime() > clock.getAsLong()) {
+      put(tokenValue, new Entry(accessToken,
+          converter.extractAuthentication(claims), expiration.getTime()));
+    }
+    return accessToken;
+  }
+
+  @Override
+  public OAuth2Authentication readAuthentication(String token) {
+    Entry entry = maxEntries == 0 ? null : getEntry(token);
+    if (entry == null) {
+      return super.readAuthentication(token);
+    }
+    // The authentication is completed with the request details by the caller,
+    // so each request gets its own instance
+    return new OAuth2Authentication(entry.authentication.getOAuth2Request(),
+        entry.authentication.getUserAuthentication());
+  }
+
+  @Override
+  public void removeAccessToken(OAuth2AccessToken token) {
+    evict(token.getValue());
+    if (revocationList != null && getTokenId(token) != null
+        && token.getExpiration() != null) {
+      revocationList.revoke(token);
+    }
+    super.removeAccessToken(token);
+  }
+
+  /**
+   * Removes the token given from the cache, so that it is verified again the
+   * next time it is used.
+   *
+   * @param tokenValue
+   *          the encoded token
+   */
+  public void evict(String tokenValue) {
+    synchronized (entries) {
+      entries.remove(tokenValue);
+    }
+  }
+
+  /**
+   * Removes all the cached tokens of the user given.
+   *
+   * @param userName
+   *          the name of the user
+   */
+  public void evictUser(String userName) {
+    synchronized (entries) {
+      entries.values().removeIf(entry -> {
+        Authentication userAuthentication = entry.authentication
+            .getUserAuthentication();
+        return userAuthentication != null
+            && userName.equals(userAuthentication.getName());
+      });
+    }
+  }
+
+  /**
+   * Removes all the cached tokens.
+   */
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+
+  private boolean isRevoked(String tokenId) {
+    return revocationList != null && revocationList.isRevoked(tokenId);
+  }
+
+  private static String getTokenId(OAuth2AccessToken accessToken) {
+    Object tokenId = accessToken.getAdditionalInformation()
+        .get(AccessTokenConverter.JTI);
+    return tokenId == null ? null : tokenId.toString();
+  }
+
+  private Entry getEntry(String tokenValue) {
+    synchronized (entries) {
+      Entry entry = entries.get(tokenValue);
+      if (entry != null && clock.getAsLong() >= entry.expirationMillis) {
+        entries.remove(tokenValue);
+        return null;
+      }
+      return entry;
+    }
+  }
+
+  private void put(String tokenValue, Entry entry) {
+    synchronized (entries) {
+      entries.put(tokenValue, entry);
+      Iterator<Entry> eldest = entries.values().iterator();
+      while (entries.size() > maxEntries) {
+        eldest.next();
+        eldest.remove();
+        evictions.increment();
+      }
+    }
+  }
+
+  long getHitCount() {
+    return hits.sum();
+  }
+
+  long getMissCount() {
+    return misses.sum();
+  }
+
+  long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  int getSize() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+}
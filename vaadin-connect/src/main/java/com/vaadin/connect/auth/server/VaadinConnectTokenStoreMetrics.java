@@ -0,0 +1,85 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect.auth.server;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Binds the metrics of the {@link VaadinConnectTokenStore} cache to a
+ * Micrometer {@link MeterRegistry}. Registered automatically when Micrometer is
+ * present on the classpath.
+ */
+public class VaadinConnectTokenStoreMetrics implements MeterBinder {
+  /**
+   * The name of the counter of the access token reads, tagged with
+   * {@code result} being either {@code hit} when the token was already verified
+   * and cached, or {@code miss} when it was decoded and verified.
+   */
+  public static final String TOKEN_CACHE_REQUESTS_METRIC = "vaadin.connect.auth.token.cache.requests";
+
+  /**
+   * The name of the counter of the cached tokens evicted because the cache
+   * bound was exceeded.
+   */
+  public static final String TOKEN_CACHE_EVICTIONS_METRIC = "vaadin.connect.auth.token.cache.evictions";
+
+  /**
+   * The name of the gauge that reports the number of the cached tokens.
+   */
+  public static final String TOKEN_CACHE_SIZE_METRIC = "vaadin.connect.auth.token.cache.size";
+
+  private final VaadinConnectTokenStore tokenStore;
+
+  /**
+   * Creates the metrics binder for the token store given.
+   *
+   * @param tokenStore
+   *          the token store to report the metrics of
+   */
+  public VaadinConnectTokenStoreMetrics(VaadinConnectTokenStore tokenStore) {
+    this.tokenStore = tokenStore;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter
+        .builder(TOKEN_CACHE_REQUESTS_METRIC, tokenStore,
+            VaadinConnectTokenStore::getHitCount)
+        .tag("result", "hit")
+        .description("The number of the access token reads from the cache")
+        .register(registry);
+    FunctionCounter
+        .builder(TOKEN_CACHE_REQUESTS_METRIC, tokenStore,
+            VaadinConnectTokenStore::getMissCount)
+        .tag("result", "miss")
+        .description(
+            "The number of the access token reads that verified the token")
+        .register(registry);
+    FunctionCounter
+        .builder(TOKEN_CACHE_EVICTIONS_METRIC, tokenStore,
+            VaadinConnectTokenStore::getEvictionCount)
+        .description("The number of the evicted cached access tokens")
+        .register(registry);
+    Gauge
+        .builder(TOKEN_CACHE_SIZE_METRIC, tokenStore,
+            VaadinConnectTokenStore::getSize)
+        .description("The number of the cached access tokens")
+        .register(registry);
+  }
+}
@@ -0,0 +1,48 @@
+package com.vaadin.connect;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ReleasingPublisherTest {
+  private final AtomicInteger releases = new AtomicInteger();
+
+  @Test
+  public void should_Release_When_StreamCompletes() {
+    assertEquals(3, Flux.from(
+        new ReleasingPublisher(Flux.just(1, 2, 3), releases::incrementAndGet))
+        .count().block().intValue());
+    assertEquals(1, releases.get());
+  }
+
+  @Test
+  public void should_Release_When_StreamFails() {
+    Flux.from(new ReleasingPublisher(Flux.error(new IllegalStateException()),
+        releases::incrementAndGet)).onErrorResume(error -> Flux.empty())
+        .blockLast();
+    assertEquals(1, releases.get());
+  }
+
+  @Test
+  public void should_Release_When_SubscriptionIsCancelled() {
+    AtomicBoolean cancelled = new AtomicBoolean();
+    Flux.from(new ReleasingPublisher(
+        Flux.never().doOnCancel(() -> cancelled.set(true)),
+        releases::incrementAndGet)).subscribe().dispose();
+    assertTrue(cancelled.get());
+    assertEquals(1, releases.get());
+  }
+
+  @Test
+  public void should_CancelStream_When_PublisherIsDiscarded() {
+    AtomicBoolean cancelled = new AtomicBoolean();
+    ReleasingPublisher
+        .discard(Flux.never().doOnCancel(() -> cancelled.set(true)));
+    assertTrue(cancelled.get());
+  }
+}
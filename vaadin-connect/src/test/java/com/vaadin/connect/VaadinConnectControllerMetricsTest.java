@@ -0,0 +1,169 @@
+package com.vaadin.connect;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class VaadinConnectControllerMetricsTest {
+
+  @Test
+  public void should_ReportCachedReaderAndWriterCounts() {
+    VaadinConnectController controller = mock(VaadinConnectController.class);
+    when(controller.getCachedReaderCount()).thenReturn(3);
+    when(controller.getCachedWriterCount()).thenReturn(2);
+
+    MeterRegistry registry = new SimpleMeterRegistry();
+    new VaadinConnectControllerMetrics(controller).bindTo(registry);
+
+    assertEquals(3,
+        registry.get(VaadinConnectControllerMetrics.MAPPER_CACHE_SIZE_METRIC)
+            .tag("type", "reader").gauge().value(),
+        0);
+    assertEquals(2,
+        registry.get(VaadinConnectControllerMetrics.MAPPER_CACHE_SIZE_METRIC)
+            .tag("type", "writer").gauge().value(),
+        0);
+  }
+
+  @Test
+  public void should_ReportResultCacheStatistics() {
+    VaadinConnectController controller = mock(VaadinConnectController.class);
+    when(controller.getCachedResultHitCount()).thenReturn(5L);
+    when(controller.getCachedResultMissCount()).thenReturn(2L);
+    when(controller.getCachedResultEvictionCount()).thenReturn(1L);
+    when(controller.getCachedResultCount()).thenReturn(4);
+    when(controller.getCachedResultBytes()).thenReturn(128L);
+
+    MeterRegistry registry = new SimpleMeterRegistry();
+    new VaadinConnectControllerMetrics(controller).bindTo(registry);
+
+    assertEquals(5,
+        registry
+            .get(VaadinConnectControllerMetrics.RESULT_CACHE_REQUESTS_METRIC)
+            .tag("result", "hit").functionCounter().count(),
+        0);
+    assertEquals(2,
+        registry
+            .get(VaadinConnectControllerMetrics.RESULT_CACHE_REQUESTS_METRIC)
+            .tag("result", "miss").functionCounter().count(),
+        0);
+    assertEquals(1,
+        registry
+            .get(VaadinConnectControllerMetrics.RESULT_CACHE_EVICTIONS_METRIC)
+            .functionCounter().count(),
+        0);
+    assertEquals(4,
+        registry.get(VaadinConnectControllerMetrics.RESULT_CACHE_SIZE_METRIC)
+            .gauge().value(),
+        0);
+    assertEquals(128,
+        registry.get(VaadinConnectControllerMetrics.RESULT_CACHE_BYTES_METRIC)
+            .gauge().value(),
+        0);
+  }
+
+  @Test
+  public void should_ReportBulkheadStatistics() {
+    VaadinServiceBulkhead bulkhead = new VaadinServiceBulkhead(
+        "ReportService.export", 2, 0, 0, 1);
+    assertTrue(bulkhead.tryAcquire());
+    assertTrue(bulkhead.tryAcquire());
+    assertFalse(bulkhead.tryAcquire());
+    VaadinConnectController controller = mock(VaadinConnectController.class);
+    when(controller.getBulkheads())
+        .thenReturn(Collections.singletonList(bulkhead));
+
+    MeterRegistry registry = new SimpleMeterRegistry();
+    new VaadinConnectControllerMetrics(controller).bindTo(registry);
+
+    assertEquals(2,
+        registry
+            .get(VaadinConnectControllerMetrics.BULKHEAD_ACTIVE_CALLS_METRIC)
+            .tag("bulkhead", "ReportService.export").gauge().value(),
+        0);
+    assertEquals(0,
+        registry
+            .get(VaadinConnectControllerMetrics.BULKHEAD_QUEUED_CALLS_METRIC)
+            .tag("bulkhead", "ReportService.export").gauge().value(),
+        0);
+    assertEquals(1,
+        registry
+            .get(VaadinConnectControllerMetrics.BULKHEAD_REJECTED_CALLS_METRIC)
+            .tag("bulkhead", "ReportService.export").functionCounter().count(),
+        0);
+  }
+
+  @Test
+  public void should_NotMeasureCalls_When_CallMetricsAreDisabled() {
+    VaadinConnectController controller = mock(VaadinConnectController.class);
+
+    MeterRegistry registry = new SimpleMeterRegistry();
+    new VaadinConnectControllerMetrics(controller).bindTo(registry);
+
+    verify(controller, never()).setCallRecorder(any());
+    assertTrue(registry.find(VaadinConnectControllerMetrics.CALL_PHASE_METRIC)
+        .meters().isEmpty());
+  }
+
+  @Test
+  public void should_ReportCallPhasesAndSizes_When_CallMetricsAreEnabled()
+      throws IOException {
+    VaadinConnectController controller = mock(VaadinConnectController.class);
+    MeterRegistry registry = new SimpleMeterRegistry();
+    new VaadinConnectControllerMetrics(controller, true).bindTo(registry);
+    ArgumentCaptor<VaadinServiceCallTimer.Recorder> recorder = ArgumentCaptor
+        .forClass(VaadinServiceCallTimer.Recorder.class);
+    verify(controller).setCallRecorder(recorder.capture());
+
+    VaadinServiceCallTimer timer = new VaadinServiceCallTimer("UserService",
+        "getUser");
+    VaadinServiceCallTimer.stop(timer, VaadinServiceCallTimer.INVOCATION,
+        System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(1));
+    try (InputStream body = VaadinServiceCallTimer.countRequestBytes(timer,
+        new ByteArrayInputStream(new byte[42]))) {
+      assertEquals(42, body.read(new byte[64]));
+    }
+    recorder.getValue().record(timer, 404);
+
+    assertEquals(1,
+        registry.get(VaadinConnectControllerMetrics.CALL_PHASE_METRIC)
+            .tag("service", "UserService").tag("method", "getUser")
+            .tag("phase", "invocation").tag("outcome", "4xx").timer().count());
+    assertTrue(registry.get(VaadinConnectControllerMetrics.CALL_PHASE_METRIC)
+        .tag("phase", "invocation").timer()
+        .totalTime(TimeUnit.MILLISECONDS) >= 1);
+    assertTrue(registry.find(VaadinConnectControllerMetrics.CALL_PHASE_METRIC)
+        .tag("phase", "serialization").meters().isEmpty());
+    assertEquals(42,
+        registry.get(VaadinConnectControllerMetrics.CALL_REQUEST_SIZE_METRIC)
+            .tag("outcome", "4xx").summary().totalAmount(),
+        0);
+    assertTrue(
+        registry.find(VaadinConnectControllerMetrics.CALL_RESPONSE_SIZE_METRIC)
+            .meters().isEmpty());
+  }
+
+  @Test
+  public void should_GroupStatusesIntoOutcomes() {
+    assertEquals("ok", VaadinConnectControllerMetrics.getOutcome(200));
+    assertEquals("ok", VaadinConnectControllerMetrics.getOutcome(304));
+    assertEquals("4xx", VaadinConnectControllerMetrics.getOutcome(401));
+    assertEquals("5xx", VaadinConnectControllerMetrics.getOutcome(503));
+  }
+}
@@ -1,34 +1,73 @@
 package com.vaadin.connect;
 
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.type.SimpleType;
 import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.mockito.ArgumentCaptor;
+import org.slf4j.MDC;
 import org.springframework.beans.factory.NoSuchBeanDefinitionException;
 import org.springframework.boot.autoconfigure.jackson.JacksonProperties;
 import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.async.StandardServletAsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import reactor.core.publisher.Flux;
 
 import com.vaadin.connect.auth.VaadinConnectAccessChecker;
 import com.vaadin.connect.exception.VaadinConnectException;
@@ -36,14 +75,18 @@ import com.vaadin.connect.exception.VaadinConnectValidationException;
 import com.vaadin.connect.testservice.BridgeMethodTestService;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.notNull;
-import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.only;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -91,6 +134,269 @@ public class VaadinConnectControllerTest {
         Date date) {
       // no op
     }
+
+    public Number testNumberMethod(int value) {
+      return value;
+    }
+
+    public LargeOutputFailingBean testFailingAfterLargeOutputMethod() {
+      return new LargeOutputFailingBean();
+    }
+  }
+
+  @JsonPropertyOrder({ "large", "failing" })
+  public static class LargeOutputFailingBean {
+    public String getLarge() {
+      return String.join("",Collections.nCopies(10_000,"large"));
+    }
+
+    public String getFailing() {
+      throw new IllegalStateException("OOPS");
+    }
+  }
+
+  @VaadinService
+  public static class AsyncTestClass {
+    private final CompletableFuture<String> pendingResult = new CompletableFuture<>();
+    private final CompletableFuture<PrincipalNameBean> pendingPrincipalName = new CompletableFuture<>();
+    private final CompletableFuture<BlockingBean> pendingBlockingResult = new CompletableFuture<>();
+    private final BlockingBean blockingBean = new BlockingBean();
+
+    public CompletableFuture<String> pendingMethod() {
+      return pendingResult;
+    }
+
+    public CompletionStage<Integer> completedMethod(int value) {
+      return CompletableFuture.completedFuture(value);
+    }
+
+    public CompletableFuture<String> completedExceptionallyMethod() {
+      CompletableFuture<String> result = new CompletableFuture<>();
+      result.completeExceptionally(new IllegalStateException("OOPS"));
+      return result;
+    }
+
+    public CompletableFuture<PrincipalNameBean> principalNameMethod() {
+      return pendingPrincipalName;
+    }
+
+    public CompletableFuture<BlockingBean> blockingMethod() {
+      return pendingBlockingResult;
+    }
+  }
+
+  @VaadinService
+  public static class StreamingTestClass {
+    private final List<Long> requests = new ArrayList<>();
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private final BlockingBean blockingBean = new BlockingBean();
+
+    public Flux<String> lettersMethod() {
+      return Flux.just("a", "b", "c");
+    }
+
+    public Flux<Integer> numbersMethod(int count) {
+      return Flux.range(1, count).doOnRequest(requests::add);
+    }
+
+    public Flux<String> failingMethod() {
+      return Flux.error(new VaadinConnectException("Stream failure"));
+    }
+
+    public Flux<String> failingAfterFirstElementMethod() {
+      return Flux.concat(Flux.just("a"),
+          Flux.error(new IllegalStateException("OOPS")));
+    }
+
+    public Flux<String> endlessMethod() {
+      return Flux.<String> never().doOnCancel(() -> cancelled.set(true));
+    }
+
+    public Flux<BlockingBean> blockingMethod() {
+      return Flux.<BlockingBean> create(sink -> {
+        sink.onCancel(() -> cancelled.set(true));
+        new Thread(() -> sink.next(blockingBean), "publisher").start();
+      });
+    }
+
+    public Flux<BlockingBean> blockingInRequestThreadMethod() {
+      return Flux.just(blockingBean);
+    }
+  }
+
+  public static class BlockingBean {
+    private final CountDownLatch writeStarted = new CountDownLatch(1);
+    private final CountDownLatch writeReleased = new CountDownLatch(1);
+
+    public String getValue() {
+      writeStarted.countDown();
+      try {
+        writeReleased.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(e);
+      }
+      return "a";
+    }
+  }
+
+  @VaadinService
+  public static class ContextTestClass {
+    public String contextMethod() {
+      return SecurityContextHolder.getContext().getAuthentication().getName()
+          + "-" + MDC.get("requestId") + "-" + Thread.currentThread().getName();
+    }
+  }
+
+  @VaadinService
+  public static class BatchTestClass {
+    private final CompletableFuture<String> pendingResult = new CompletableFuture<>();
+
+    public String echoMethod(String text) {
+      return text;
+    }
+
+    public CompletableFuture<String> asyncEchoMethod(String text) {
+      return CompletableFuture.supplyAsync(() -> text);
+    }
+
+    public CompletableFuture<String> pendingMethod() {
+      return pendingResult;
+    }
+
+    public void completePendingMethod(String text) {
+      pendingResult.complete(text);
+    }
+
+    public CompletableFuture<String> asyncFailingMethod() {
+      CompletableFuture<String> result = new CompletableFuture<>();
+      result.completeExceptionally(new VaadinConnectException("Async failure"));
+      return result;
+    }
+
+    public Object unserializableMethod() {
+      return new Object();
+    }
+
+    public Flux<String> streamingMethod() {
+      return Flux.just("a");
+    }
+
+    public String securedMethod() {
+      return "secret";
+    }
+
+    public String contextMethod() {
+      return SecurityContextHolder.getContext().getAuthentication().getName()
+          + "-" + MDC.get("requestId");
+    }
+  }
+
+  @VaadinService
+  public static class CachedTestClass {
+    private final AtomicInteger invocations = new AtomicInteger();
+
+    @CacheResult
+    public String cachedMethod(String text) {
+      invocations.incrementAndGet();
+      if ("fail".equals(text)) {
+        throw new VaadinConnectException("Failure");
+      }
+      return text + "-" + invocations.get();
+    }
+
+    @CacheResult(maxEntries = 1)
+    public int otherCachedMethod(int value) {
+      return value + invocations.incrementAndGet();
+    }
+
+    public String notCachedMethod() {
+      return "not cached";
+    }
+
+    @Idempotent
+    public String idempotentMethod(String text) {
+      return text;
+    }
+  }
+
+  @VaadinService
+  public static class InvalidCachedTestClass {
+    @CacheResult
+    public CompletableFuture<String> cachedAsyncMethod() {
+      return CompletableFuture.completedFuture("async");
+    }
+  }
+
+  @VaadinService
+  public static class BulkheadTestClass {
+    private final CompletableFuture<String> pendingResult = new CompletableFuture<>();
+
+    @Bulkhead(maxConcurrentCalls = 1, retryAfter = 5)
+    public String limitedMethod() {
+      return "limited";
+    }
+
+    @Bulkhead(maxConcurrentCalls = 1)
+    public CompletableFuture<String> limitedAsyncMethod() {
+      return pendingResult;
+    }
+
+    @Bulkhead(maxConcurrentCalls = 1)
+    public Flux<String> limitedStreamingMethod() {
+      return Flux.never();
+    }
+
+    @Bulkhead(maxConcurrentCalls = 1)
+    public Stream<String> limitedIteratedMethod() {
+      return Stream.of("a", "b");
+    }
+  }
+
+  @VaadinService
+  public static class StreamParameterTestClass {
+    public String firstNameMethod(String prefix, Iterator<String> names) {
+      return prefix + names.next();
+    }
+
+    public int countSumMethod(Stream<TestValidationParameter> parameters) {
+      return parameters.mapToInt(parameter -> parameter.count).sum();
+    }
+  }
+
+  @VaadinService
+  public static class InvalidStreamParameterTestClass {
+    public void notLastStreamMethod(Stream<String> names, int count) {
+      // no op
+    }
+  }
+
+  @VaadinService
+  public static class IteratedTestClass {
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    public Stream<Integer> numbersMethod(int count) {
+      return IntStream.rangeClosed(1, count).boxed()
+          .onClose(() -> closed.set(true));
+    }
+
+    public Iterable<String> lettersMethod() {
+      return () -> Stream.of("a", "b").iterator();
+    }
+
+    public Stream<Integer> failingMethod(int failingElement) {
+      return numbersMethod(failingElement).peek(number -> {
+        if (number == failingElement) {
+          throw new VaadinConnectException("Iteration failure");
+        }
+      });
+    }
+  }
+
+  public static class PrincipalNameBean {
+    public String getName() {
+      return SecurityContextHolder.getContext().getAuthentication().getName();
+    }
   }
 
   @VaadinService("CustomService")
@@ -160,8 +466,9 @@ public class VaadinConnectControllerTest {
     String missingServiceName = "whatever";
     assertNotEquals(missingServiceName, TEST_SERVICE_NAME);
 
-    ResponseEntity<?> response = createVaadinController(TEST_SERVICE)
-        .serveVaadinService(missingServiceName, null, null);
+    ResponseEntity<?> response = callServiceMethod(
+        createVaadinController(TEST_SERVICE), missingServiceName, null,
+        new MockHttpServletRequest());
 
     assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
   }
@@ -171,8 +478,9 @@ public class VaadinConnectControllerTest {
     String missingServiceMethod = "whatever";
     assertNotEquals(TEST_METHOD.getName(), missingServiceMethod);
 
-    ResponseEntity<?> response = createVaadinController(TEST_SERVICE)
-        .serveVaadinService(TEST_SERVICE_NAME, missingServiceMethod, null);
+    ResponseEntity<?> response = callServiceMethod(
+        createVaadinController(TEST_SERVICE), TEST_SERVICE_NAME,
+        missingServiceMethod, new MockHttpServletRequest());
 
     assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
     assertNull(response.getBody());
@@ -191,9 +499,10 @@ public class VaadinConnectControllerTest {
         VaadinServiceNameChecker.class);
     when(nameCheckerMock.check(TEST_SERVICE_NAME)).thenReturn(null);
 
-    ResponseEntity<String> response = createVaadinController(TEST_SERVICE,
-        new ObjectMapper(), restrictingCheckerMock, nameCheckerMock)
-            .serveVaadinService(TEST_SERVICE_NAME, TEST_METHOD.getName(), null);
+    ResponseEntity<String> response = callServiceMethod(
+        createVaadinController(TEST_SERVICE, new ObjectMapper(),
+            restrictingCheckerMock, nameCheckerMock),
+        TEST_SERVICE_NAME, TEST_METHOD.getName(), new MockHttpServletRequest());
 
     assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
     String responseBody = response.getBody();
@@ -207,8 +516,9 @@ public class VaadinConnectControllerTest {
 
   @Test
   public void should_Return400_When_LessParametersSpecified1() {
-    ResponseEntity<String> response = createVaadinController(TEST_SERVICE)
-        .serveVaadinService(TEST_SERVICE_NAME, TEST_METHOD.getName(), null);
+    ResponseEntity<String> response = callServiceMethod(
+        createVaadinController(TEST_SERVICE), TEST_SERVICE_NAME,
+        TEST_METHOD.getName(), new MockHttpServletRequest());
 
     assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
     String responseBody = response.getBody();
@@ -222,9 +532,10 @@ public class VaadinConnectControllerTest {
 
   @Test
   public void should_Return400_When_MoreParametersSpecified() {
-    ResponseEntity<String> response = createVaadinController(TEST_SERVICE)
-        .serveVaadinService(TEST_SERVICE_NAME, TEST_METHOD.getName(),
-            createRequestParameters("{\"value1\": 222, \"value2\": 333}"));
+    ResponseEntity<String> response = callServiceMethod(
+        createVaadinController(TEST_SERVICE), TEST_SERVICE_NAME,
+        TEST_METHOD.getName(),
+        createRequestParameters("{\"value1\": 222, \"value2\": 333}"));
 
     assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
     String responseBody = response.getBody();
@@ -238,9 +549,9 @@ public class VaadinConnectControllerTest {
 
   @Test
   public void should_Return400_When_IncorrectParameterTypesAreProvided() {
-    ResponseEntity<String> response = createVaadinController(TEST_SERVICE)
-        .serveVaadinService(TEST_SERVICE_NAME, TEST_METHOD.getName(),
-            createRequestParameters("{\"value\": [222]}"));
+    ResponseEntity<String> response = callServiceMethod(
+        createVaadinController(TEST_SERVICE), TEST_SERVICE_NAME,
+        TEST_METHOD.getName(), createRequestParameters("{\"value\": [222]}"));
 
     assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
     String responseBody = response.getBody();
@@ -255,14 +566,15 @@ public class VaadinConnectControllerTest {
       throws Exception {
     int inputValue = 222;
 
-    Method serviceMethodMock = createServiceMethodMockThatThrows(inputValue,
-        new IllegalArgumentException("OOPS"));
+    VaadinServiceMethod serviceMethodMock = createServiceMethodMockThatThrows(
+        inputValue, new IllegalArgumentException("OOPS"));
 
     VaadinConnectController controller = createVaadinController(TEST_SERVICE);
     controller.vaadinServices.get(TEST_SERVICE_NAME.toLowerCase()).methods
         .put(TEST_METHOD.getName().toLowerCase(), serviceMethodMock);
+    controller.updateRoutes();
 
-    ResponseEntity<String> response = controller.serveVaadinService(
+    ResponseEntity<String> response = callServiceMethod(controller,
         TEST_SERVICE_NAME, TEST_METHOD.getName(),
         createRequestParameters(String.format("{\"value\": %s}", inputValue)));
 
@@ -273,7 +585,8 @@ public class VaadinConnectControllerTest {
         responseBody
             .contains(TEST_METHOD.getParameterTypes()[0].getSimpleName()));
 
-    verify(serviceMethodMock, times(1)).invoke(TEST_SERVICE, inputValue);
+    verify(serviceMethodMock, times(1)).invoke(TEST_SERVICE,
+        new Object[] { inputValue });
     verify(serviceMethodMock, times(1)).getParameters();
   }
 
@@ -282,14 +595,15 @@ public class VaadinConnectControllerTest {
       throws Exception {
     int inputValue = 222;
 
-    Method serviceMethodMock = createServiceMethodMockThatThrows(inputValue,
-        new IllegalAccessException("OOPS"));
+    VaadinServiceMethod serviceMethodMock = createServiceMethodMockThatThrows(
+        inputValue, new IllegalAccessException("OOPS"));
 
     VaadinConnectController controller = createVaadinController(TEST_SERVICE);
     controller.vaadinServices.get(TEST_SERVICE_NAME.toLowerCase()).methods
         .put(TEST_METHOD.getName().toLowerCase(), serviceMethodMock);
+    controller.updateRoutes();
 
-    ResponseEntity<String> response = controller.serveVaadinService(
+    ResponseEntity<String> response = callServiceMethod(controller,
         TEST_SERVICE_NAME, TEST_METHOD.getName(),
         createRequestParameters(String.format("{\"value\": %s}", inputValue)));
 
@@ -299,7 +613,8 @@ public class VaadinConnectControllerTest {
     assertTrue(String.format("Invalid response body: '%s'", responseBody),
         responseBody.contains("access failure"));
 
-    verify(serviceMethodMock, times(1)).invoke(TEST_SERVICE, inputValue);
+    verify(serviceMethodMock, times(1)).invoke(TEST_SERVICE,
+        new Object[] { inputValue });
     verify(serviceMethodMock, times(1)).getParameters();
   }
 
@@ -308,14 +623,16 @@ public class VaadinConnectControllerTest {
       throws Exception {
     int inputValue = 222;
 
-    Method serviceMethodMock = createServiceMethodMockThatThrows(inputValue,
+    VaadinServiceMethod serviceMethodMock = createServiceMethodMockThatThrows(
+        inputValue,
         new InvocationTargetException(new IllegalStateException("OOPS")));
 
     VaadinConnectController controller = createVaadinController(TEST_SERVICE);
     controller.vaadinServices.get(TEST_SERVICE_NAME.toLowerCase()).methods
         .put(TEST_METHOD.getName().toLowerCase(), serviceMethodMock);
+    controller.updateRoutes();
 
-    ResponseEntity<String> response = controller.serveVaadinService(
+    ResponseEntity<String> response = callServiceMethod(controller,
         TEST_SERVICE_NAME, TEST_METHOD.getName(),
         createRequestParameters(String.format("{\"value\": %s}", inputValue)));
 
@@ -325,7 +642,8 @@ public class VaadinConnectControllerTest {
     assertTrue(String.format("Invalid response body: '%s'", responseBody),
         responseBody.contains("execution failure"));
 
-    verify(serviceMethodMock, times(1)).invoke(TEST_SERVICE, inputValue);
+    verify(serviceMethodMock, times(1)).invoke(TEST_SERVICE,
+        new Object[] { inputValue });
     verify(serviceMethodMock, times(1)).getParameters();
   }
 
@@ -335,15 +653,16 @@ public class VaadinConnectControllerTest {
     int inputValue = 222;
     String expectedMessage = "OOPS";
 
-    Method serviceMethodMock = createServiceMethodMockThatThrows(inputValue,
-        new InvocationTargetException(
+    VaadinServiceMethod serviceMethodMock = createServiceMethodMockThatThrows(
+        inputValue, new InvocationTargetException(
             new VaadinConnectException(expectedMessage)));
 
     VaadinConnectController controller = createVaadinController(TEST_SERVICE);
     controller.vaadinServices.get(TEST_SERVICE_NAME.toLowerCase()).methods
         .put(TEST_METHOD.getName().toLowerCase(), serviceMethodMock);
+    controller.updateRoutes();
 
-    ResponseEntity<String> response = controller.serveVaadinService(
+    ResponseEntity<String> response = callServiceMethod(controller,
         TEST_SERVICE_NAME, TEST_METHOD.getName(),
         createRequestParameters(String.format("{\"value\": %s}", inputValue)));
 
@@ -354,7 +673,8 @@ public class VaadinConnectControllerTest {
     assertTrue(String.format("Invalid response body: '%s'", responseBody),
         responseBody.contains(expectedMessage));
 
-    verify(serviceMethodMock, times(1)).invoke(TEST_SERVICE, inputValue);
+    verify(serviceMethodMock, times(1)).invoke(TEST_SERVICE,
+        new Object[] { inputValue });
     verify(serviceMethodMock, times(1)).getParameters();
   }
 
@@ -370,14 +690,15 @@ public class VaadinConnectControllerTest {
       }
     }
 
-    Method serviceMethodMock = createServiceMethodMockThatThrows(inputValue,
-        new InvocationTargetException(new MyCustomException()));
+    VaadinServiceMethod serviceMethodMock = createServiceMethodMockThatThrows(
+        inputValue, new InvocationTargetException(new MyCustomException()));
 
     VaadinConnectController controller = createVaadinController(TEST_SERVICE);
     controller.vaadinServices.get(TEST_SERVICE_NAME.toLowerCase()).methods
         .put(TEST_METHOD.getName().toLowerCase(), serviceMethodMock);
+    controller.updateRoutes();
 
-    ResponseEntity<String> response = controller.serveVaadinService(
+    ResponseEntity<String> response = callServiceMethod(controller,
         TEST_SERVICE_NAME, TEST_METHOD.getName(),
         createRequestParameters(String.format("{\"value\": %s}", inputValue)));
 
@@ -388,7 +709,8 @@ public class VaadinConnectControllerTest {
     assertTrue(String.format("Invalid response body: '%s'", responseBody),
         responseBody.contains(expectedMessage));
 
-    verify(serviceMethodMock, times(1)).invoke(TEST_SERVICE, inputValue);
+    verify(serviceMethodMock, times(1)).invoke(TEST_SERVICE,
+        new Object[] { inputValue });
     verify(serviceMethodMock, times(1)).getParameters();
   }
 
@@ -396,6 +718,7 @@ public class VaadinConnectControllerTest {
   public void should_Return500_When_MapperFailsToSerializeResponse()
       throws Exception {
     ObjectMapper mapperMock = mock(ObjectMapper.class);
+    when(mapperMock.getFactory()).thenReturn(new JsonFactory());
     TypeFactory typeFactory = mock(TypeFactory.class);
     when(mapperMock.getTypeFactory()).thenReturn(typeFactory);
     when(typeFactory.constructType(int.class))
@@ -404,38 +727,61 @@ public class VaadinConnectControllerTest {
         .thenReturn(new ObjectMapper()
             .readerFor(SimpleType.constructUnsafe(int.class)));
 
+    ObjectWriter writerMock = mockFailingWriter(mapperMock, typeFactory);
+
+    ObjectWriter errorWriter = spy(new ObjectMapper().writer());
+    when(mapperMock.writer()).thenReturn(errorWriter);
     ArgumentCaptor<Object> serializingErrorsCapture = ArgumentCaptor
         .forClass(Object.class);
-    String expectedError = "expected_error";
-    when(mapperMock.writeValueAsString(serializingErrorsCapture.capture()))
-        .thenThrow(new JsonMappingException(null, "sss"))
-        .thenReturn(expectedError);
 
-    ResponseEntity<String> response = createVaadinController(TEST_SERVICE,
-        mapperMock).serveVaadinService(TEST_SERVICE_NAME, TEST_METHOD.getName(),
-            createRequestParameters("{\"value\": 222}"));
+    ResponseEntity<String> response = callServiceMethod(
+        createVaadinController(TEST_SERVICE, mapperMock), TEST_SERVICE_NAME,
+        TEST_METHOD.getName(), createRequestParameters("{\"value\": 222}"));
 
     assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
     String responseBody = response.getBody();
-    assertEquals(expectedError, responseBody);
+    assertServiceInfoPresent(responseBody);
+    assertTrue(String.format("Invalid response body: '%s'", responseBody),
+        responseBody.contains(
+            VaadinConnectController.VAADIN_SERVICE_MAPPER_BEAN_QUALIFIER));
 
+    verify(errorWriter, times(1)).writeValue(any(JsonGenerator.class),
+        serializingErrorsCapture.capture());
     List<Object> passedErrors = serializingErrorsCapture.getAllValues();
-    assertEquals(2, passedErrors.size());
-    String lastError = passedErrors.get(1).toString();
-    assertServiceInfoPresent(lastError);
-    assertTrue(String.format("Invalid response body: '%s'", lastError),
-        lastError.contains(
-            VaadinConnectController.VAADIN_SERVICE_MAPPER_BEAN_QUALIFIER));
+    assertEquals(1, passedErrors.size());
+    assertEquals(responseBody,
+        new ObjectMapper().writeValueAsString(passedErrors.get(0)));
 
     verify(mapperMock, times(1))
         .readerFor(SimpleType.constructUnsafe(int.class));
-    verify(mapperMock, times(2)).writeValueAsString(notNull());
+    verify(writerMock, times(1)).writeValue(any(JsonGenerator.class),
+        notNull());
+  }
+
+  @Test
+  public void should_ThrowException_When_MapperFailsAfterResponseIsCommitted()
+      throws Exception {
+    VaadinConnectController controller = createVaadinController(TEST_SERVICE);
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    response.setBufferSize(1);
+
+    exception.expect(IllegalStateException.class);
+    exception.expectMessage("committed");
+    try {
+      controller.serveVaadinService(TEST_SERVICE_NAME,
+          "testFailingAfterLargeOutputMethod", new MockHttpServletRequest(),
+          response);
+    } finally {
+      assertEquals(HttpStatus.OK.value(), response.getStatus());
+      assertTrue(response.isCommitted());
+    }
   }
 
   @Test
   public void should_ThrowException_When_MapperFailsToSerializeEverything()
       throws Exception {
     ObjectMapper mapperMock = mock(ObjectMapper.class);
+    when(mapperMock.getFactory()).thenReturn(new JsonFactory());
     TypeFactory typeFactory = mock(TypeFactory.class);
     when(mapperMock.getTypeFactory()).thenReturn(typeFactory);
     when(typeFactory.constructType(int.class))
@@ -443,12 +789,15 @@ public class VaadinConnectControllerTest {
     when(mapperMock.readerFor(SimpleType.constructUnsafe(int.class)))
         .thenReturn(new ObjectMapper()
             .readerFor(SimpleType.constructUnsafe(int.class)));
-    when(mapperMock.writeValueAsString(notNull()))
-        .thenThrow(new JsonMappingException(null, "sss"));
+    mockFailingWriter(mapperMock, typeFactory);
+    ObjectWriter errorWriterMock = mock(ObjectWriter.class);
+    when(mapperMock.writer()).thenReturn(errorWriterMock);
+    doThrow(new JsonMappingException(null, "sss")).when(errorWriterMock)
+        .writeValue(any(JsonGenerator.class), notNull());
 
     exception.expect(IllegalStateException.class);
     exception.expectMessage("Unexpected");
-    createVaadinController(TEST_SERVICE, mapperMock).serveVaadinService(
+    callServiceMethod(createVaadinController(TEST_SERVICE, mapperMock),
         TEST_SERVICE_NAME, TEST_METHOD.getName(),
         createRequestParameters("{\"value\": 222}"));
   }
@@ -458,171 +807,1307 @@ public class VaadinConnectControllerTest {
     int inputValue = 222;
     String expectedOutput = TEST_SERVICE.testMethod(inputValue);
 
-    ResponseEntity<String> response = createVaadinController(TEST_SERVICE)
-        .serveVaadinService(TEST_SERVICE_NAME, TEST_METHOD.getName(),
-            createRequestParameters(
-                String.format("{\"value\": %s}", inputValue)));
+    ResponseEntity<String> response = callServiceMethod(
+        createVaadinController(TEST_SERVICE), TEST_SERVICE_NAME,
+        TEST_METHOD.getName(),
+        createRequestParameters(String.format("{\"value\": %s}", inputValue)));
 
     assertEquals(HttpStatus.OK, response.getStatusCode());
     assertEquals(String.format("\"%s\"", expectedOutput), response.getBody());
   }
 
   @Test
-  public void should_NotUseBridgeMethod_When_ServiceHasBridgeMethodFromInterface() {
-    String inputId = "2222";
-    String expectedResult = String.format("{\"id\":\"%s\"}", inputId);
-    BridgeMethodTestService.InheritedClass testService = new BridgeMethodTestService.InheritedClass();
-    String testMethodName = "testMethodFromInterface";
-    ResponseEntity<String> response = createVaadinController(testService)
-        .serveVaadinService(testService.getClass().getSimpleName(),
-            testMethodName, createRequestParameters(
-                String.format("{\"value\": {\"id\": \"%s\"}}", inputId)));
-    assertEquals(expectedResult, response.getBody());
+  public void should_ReuseReadersAndWriters_When_MethodIsCalledAgain() {
+    VaadinConnectController controller = createVaadinController(TEST_SERVICE);
+    assertEquals(0, controller.getCachedReaderCount());
+    assertEquals(0, controller.getCachedWriterCount());
+
+    for (int i = 0; i < 3; i++) {
+      ResponseEntity<String> response = callServiceMethod(controller,
+          TEST_SERVICE_NAME, TEST_METHOD.getName(),
+          createRequestParameters(String.format("{\"value\": %s}", i)));
+      assertEquals(HttpStatus.OK, response.getStatusCode());
+    }
+
+    assertEquals(1, controller.getCachedReaderCount());
+    assertEquals(1, controller.getCachedWriterCount());
   }
 
   @Test
-  public void should_NotUseBridgeMethod_When_ServiceHasBridgeMethodFromParentClass() {
-    String inputId = "2222";
-    BridgeMethodTestService.InheritedClass testService = new BridgeMethodTestService.InheritedClass();
-    String testMethodName = "testMethodFromClass";
+  public void should_ReturnNull_When_MethodHasNoReturnValue() {
+    ResponseEntity<String> response = callServiceMethod(
+        createVaadinController(TEST_SERVICE), TEST_SERVICE_NAME,
+        TEST_VALIDATION_METHOD.getName(),
+        createRequestParameters("{\"parameter\": {\"count\": 20}}"));
 
-    ResponseEntity<String> response = createVaadinController(testService)
-        .serveVaadinService(testService.getClass().getSimpleName(),
-            testMethodName,
-            createRequestParameters(String.format("{\"value\": %s}", inputId)));
-    assertEquals(inputId, response.getBody());
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertEquals("null", response.getBody());
   }
 
   @Test
-  public void should_ReturnCorrectResponse_When_CallingNormalOverriddenMethod() {
-    String inputId = "2222";
-    BridgeMethodTestService.InheritedClass testService = new BridgeMethodTestService.InheritedClass();
-    String testMethodName = "testNormalMethod";
+  public void should_SerializeRuntimeType_When_ReturnTypeCanBeSubclassed() {
+    VaadinConnectController controller = createVaadinController(TEST_SERVICE);
 
-    ResponseEntity<String> response = createVaadinController(testService)
-        .serveVaadinService(testService.getClass().getSimpleName(),
-            testMethodName,
-            createRequestParameters(String.format("{\"value\": %s}", inputId)));
-    assertEquals(inputId, response.getBody());
+    ResponseEntity<String> response = callServiceMethod(controller,
+        TEST_SERVICE_NAME, "testNumberMethod",
+        createRequestParameters("{\"value\": 42}"));
+
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertEquals("42", response.getBody());
+    assertTrue(
+        controller.vaadinServices.get(TEST_SERVICE_NAME.toLowerCase()).writers
+            .containsKey(Integer.class));
   }
 
   @Test
-  public void should_UseCustomServiceName_When_ItIsDefined() {
-    int input = 111;
-    String expectedOutput = new TestClassWithCustomServiceName()
-        .testMethod(input);
-    String beanName = TestClassWithCustomServiceName.class.getSimpleName();
+  public void should_ReleaseRequestThread_When_MethodReturnsPendingFuture() {
+    AsyncTestClass service = new AsyncTestClass();
+    MockHttpServletRequest request = createAsyncRequest();
+    MockHttpServletResponse response = callAsyncServiceMethod(
+        createVaadinController(service), "pendingMethod", request);
+
+    assertTrue(request.isAsyncStarted());
+    assertEquals("", getContent(response));
+
+    service.pendingResult.complete("async-result");
+
+    assertEquals(HttpStatus.OK.value(), response.getStatus());
+    assertEquals("\"async-result\"", getContent(response));
+    assertNotNull(
+        ((MockAsyncContext) request.getAsyncContext()).getDispatchedPath());
+    Object[] dispatchContext = WebAsyncUtils.getAsyncManager(request)
+        .getConcurrentResultContext();
+    assertTrue(((ModelAndViewContainer) dispatchContext[0]).isRequestHandled());
+  }
 
-    ApplicationContext contextMock = mock(ApplicationContext.class);
-    when(contextMock.getType(beanName))
-        .thenReturn((Class) TestClassWithCustomServiceName.class);
-    when(contextMock.getBeansWithAnnotation(VaadinService.class))
-        .thenReturn(Collections.singletonMap(beanName,
-            new TestClassWithCustomServiceName()));
+  @Test
+  public void should_WriteResultImmediately_When_MethodReturnsCompletedStage() {
+    MockHttpServletRequest request = createAsyncRequest();
+    request.setContent("{\"value\": 42}".getBytes(StandardCharsets.UTF_8));
+    MockHttpServletResponse response = callAsyncServiceMethod(
+        createVaadinController(new AsyncTestClass()), "completedMethod",
+        request);
+
+    assertFalse(request.isAsyncStarted());
+    assertEquals(HttpStatus.OK.value(), response.getStatus());
+    assertEquals("42", getContent(response));
+  }
 
-    VaadinConnectController vaadinConnectController = new VaadinConnectController(
-        new ObjectMapper(), mock(VaadinConnectAccessChecker.class),
-        mock(VaadinServiceNameChecker.class), contextMock);
-    ResponseEntity<String> response = vaadinConnectController
-        .serveVaadinService("CustomService", "testMethod",
-            createRequestParameters(String.format("{\"value\": %s}", input)));
-    assertEquals(HttpStatus.OK, response.getStatusCode());
-    assertEquals(String.format("\"%s\"", expectedOutput), response.getBody());
+  @Test
+  public void should_Return500_When_MethodReturnsExceptionallyCompletedFuture() {
+    MockHttpServletRequest request = createAsyncRequest();
+    MockHttpServletResponse response = callAsyncServiceMethod(
+        createVaadinController(new AsyncTestClass()),
+        "completedExceptionallyMethod", request);
+
+    assertEquals(HttpStatus.INTERNAL_SERVER_ERROR.value(),
+        response.getStatus());
+    assertTrue(getContent(response).contains("execution failure"));
   }
 
   @Test
-  public void should_UseDefaultObjectMapper_When_NoneIsProvided() {
-    ApplicationContext contextMock = mock(ApplicationContext.class);
-    ObjectMapper mockDefaultObjectMapper = mock(ObjectMapper.class);
-    JacksonProperties mockJacksonProperties = mock(JacksonProperties.class);
-    when(contextMock.getBean(ObjectMapper.class))
-        .thenReturn(mockDefaultObjectMapper);
-    when(contextMock.getBean(JacksonProperties.class))
-        .thenReturn(mockJacksonProperties);
-    when(mockJacksonProperties.getVisibility())
-        .thenReturn(Collections.emptyMap());
-    new VaadinConnectController(null, mock(VaadinConnectAccessChecker.class),
-        mock(VaadinServiceNameChecker.class), contextMock);
+  public void should_Return400_When_PendingFutureFailsWithVaadinConnectException() {
+    AsyncTestClass service = new AsyncTestClass();
+    MockHttpServletRequest request = createAsyncRequest();
+    MockHttpServletResponse response = callAsyncServiceMethod(
+        createVaadinController(service), "pendingMethod", request);
 
-    verify(contextMock, times(1)).getBean(ObjectMapper.class);
-    verify(mockDefaultObjectMapper, times(1))
-        .setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
-    verify(contextMock, times(1)).getBean(JacksonProperties.class);
+    service.pendingResult
+        .completeExceptionally(new VaadinConnectException("Async failure"));
+
+    assertEquals(HttpStatus.BAD_REQUEST.value(), response.getStatus());
+    assertTrue(getContent(response).contains("Async failure"));
   }
 
   @Test
-  public void should_NotOverrideVisibility_When_JacksonPropertiesProvideVisibility() {
-    ApplicationContext contextMock = mock(ApplicationContext.class);
-    ObjectMapper mockDefaultObjectMapper = mock(ObjectMapper.class);
-    JacksonProperties mockJacksonProperties = mock(JacksonProperties.class);
-    when(contextMock.getBean(ObjectMapper.class))
-        .thenReturn(mockDefaultObjectMapper);
-    when(contextMock.getBean(JacksonProperties.class))
-        .thenReturn(mockJacksonProperties);
-    when(mockJacksonProperties.getVisibility())
-        .thenReturn(Collections.singletonMap(PropertyAccessor.ALL,
-            JsonAutoDetect.Visibility.PUBLIC_ONLY));
-    new VaadinConnectController(null, mock(VaadinConnectAccessChecker.class),
-        mock(VaadinServiceNameChecker.class), contextMock);
+  public void should_UseRequestSecurityContext_When_FutureCompletesOnAnotherThread()
+      throws Exception {
+    AsyncTestClass service = new AsyncTestClass();
+    MockHttpServletRequest request = createAsyncRequest();
+    MockHttpServletResponse response;
+    SecurityContextHolder.getContext()
+        .setAuthentication(new TestingAuthenticationToken("user", null));
+    try {
+      response = callAsyncServiceMethod(createVaadinController(service),
+          "principalNameMethod", request);
+    } finally {
+      SecurityContextHolder.clearContext();
+    }
 
-    verify(contextMock, times(1)).getBean(ObjectMapper.class);
-    verify(mockDefaultObjectMapper, times(0))
-        .setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
-    verify(contextMock, times(1)).getBean(JacksonProperties.class);
+    Thread completingThread = new Thread(
+        () -> service.pendingPrincipalName.complete(new PrincipalNameBean()));
+    completingThread.start();
+    completingThread.join();
+
+    assertEquals(HttpStatus.OK.value(), response.getStatus());
+    assertEquals("{\"name\":\"user\"}", getContent(response));
   }
 
   @Test
-  public void should_ThrowError_When_DefaultObjectMapperIsNotFound() {
-    ApplicationContext contextMock = mock(ApplicationContext.class);
-    when(contextMock.getBean(ObjectMapper.class))
-        .thenThrow(new NoSuchBeanDefinitionException("Bean not found"));
+  public void should_WriteNewlineDelimitedJson_When_MethodReturnsPublisher()
+      throws Exception {
+    MockHttpServletRequest request = createAsyncRequest();
+    MockHttpServletResponse response = callAsyncServiceMethod(
+        createVaadinController(new StreamingTestClass()), "lettersMethod",
+        request);
+
+    assertTrue(request.isAsyncStarted());
+    awaitAsyncDispatch(request);
+    assertEquals(HttpStatus.OK.value(), response.getStatus());
+    assertTrue(response.getContentType()
+        .startsWith(VaadinConnectController.APPLICATION_NDJSON));
+    assertEquals("\"a\"\n\"b\"\n\"c\"\n", getContent(response));
+  }
 
-    exception.expect(IllegalStateException.class);
-    exception.expectMessage("object mapper");
+  @Test
+  public void should_WriteServerSentEvents_When_EventStreamIsAccepted()
+      throws Exception {
+    MockHttpServletRequest request = createAsyncRequest();
+    request.addHeader(HttpHeaders.ACCEPT, MediaType.TEXT_EVENT_STREAM_VALUE);
+    MockHttpServletResponse response = callAsyncServiceMethod(
+        createVaadinController(new StreamingTestClass()), "lettersMethod",
+        request);
+    awaitAsyncDispatch(request);
+
+    assertEquals(HttpStatus.OK.value(), response.getStatus());
+    assertTrue(response.getContentType()
+        .startsWith(MediaType.TEXT_EVENT_STREAM_VALUE));
+    assertEquals("data: \"a\"\n\ndata: \"b\"\n\ndata: \"c\"\n\n"
+        + "event: complete\ndata:\n\n", getContent(response));
+  }
 
-    new VaadinConnectController(null, mock(VaadinConnectAccessChecker.class),
-        mock(VaadinServiceNameChecker.class), contextMock);
+  @Test
+  public void should_RequestElementsOneByOne_When_StreamIsWritten()
+      throws Exception {
+    StreamingTestClass service = new StreamingTestClass();
+    MockHttpServletRequest request = createAsyncRequest();
+    request.setContent("{\"count\": 3}".getBytes(StandardCharsets.UTF_8));
+    MockHttpServletResponse response = callAsyncServiceMethod(
+        createVaadinController(service), "numbersMethod", request);
+    awaitAsyncDispatch(request);
+
+    assertEquals("1\n2\n3\n", getContent(response));
+    assertTrue(String.format("Unexpected requests: %s", service.requests),
+        service.requests.stream().allMatch(requested -> requested == 1));
   }
 
   @Test
-  public void should_ReturnValidationError_When_DeserializationFails()
-      throws IOException {
-    String inputValue = "\"string\"";
-    String expectedErrorMessage = String.format(
-        "Validation error in service '%s' method '%s'", TEST_SERVICE_NAME,
-        TEST_METHOD.getName());
-    ResponseEntity<String> response = createVaadinController(TEST_SERVICE)
-        .serveVaadinService(TEST_SERVICE_NAME, TEST_METHOD.getName(),
-            createRequestParameters(
-                String.format("{\"value\": %s}", inputValue)));
+  public void should_Return400_When_PublisherFailsWithVaadinConnectExceptionBeforeFirstElement()
+      throws Exception {
+    MockHttpServletRequest request = createAsyncRequest();
+    MockHttpServletResponse response = callAsyncServiceMethod(
+        createVaadinController(new StreamingTestClass()), "failingMethod",
+        request);
+    awaitAsyncDispatch(request);
+
+    assertEquals(HttpStatus.BAD_REQUEST.value(), response.getStatus());
+    assertTrue(getContent(response).contains("Stream failure"));
+  }
 
-    assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
-    ObjectNode jsonNodes = new ObjectMapper().readValue(response.getBody(),
-        ObjectNode.class);
+  @Test
+  public void should_WriteErrorEvent_When_PublisherFailsAfterFirstElement()
+      throws Exception {
+    MockHttpServletRequest request = createAsyncRequest();
+    request.addHeader(HttpHeaders.ACCEPT, MediaType.TEXT_EVENT_STREAM_VALUE);
+    MockHttpServletResponse response = callAsyncServiceMethod(
+        createVaadinController(new StreamingTestClass()),
+        "failingAfterFirstElementMethod", request);
+    awaitAsyncDispatch(request);
+
+    assertEquals(HttpStatus.OK.value(), response.getStatus());
+    String content = getContent(response);
+    assertTrue(content, content.startsWith("data: \"a\"\n\nevent: error\n"));
+    assertTrue(content, content.contains("execution failure"));
+  }
 
-    assertEquals(VaadinConnectValidationException.class.getName(),
-        jsonNodes.get("type").asText());
-    assertEquals(expectedErrorMessage, jsonNodes.get("message").asText());
-    assertEquals(1, jsonNodes.get("validationErrorData").size());
+  @Test
+  public void should_CancelSubscription_When_RequestCompletesBeforeStream() {
+    StreamingTestClass service = new StreamingTestClass();
+    MockHttpServletRequest request = createAsyncRequest();
+    callAsyncServiceMethod(createVaadinController(service), "endlessMethod",
+        request);
+    assertFalse(service.cancelled.get());
 
-    JsonNode validationErrorData = jsonNodes.get("validationErrorData").get(0);
-    assertEquals("value", validationErrorData.get("parameterName").asText());
-    assertTrue(validationErrorData.get("message").asText().contains("'int'"));
+    ((MockAsyncContext) request.getAsyncContext()).complete();
+
+    assertTrue(service.cancelled.get());
   }
 
   @Test
-  public void should_ReturnAllValidationErrors_When_DeserializationFailsForMultipleParameters()
-      throws IOException {
-    String inputValue = String.format(
-        "{\"number\": %s, \"text\": %s, \"date\": %s}", "\"NotANumber\"",
-        "\"ValidText\"", "\"NotADate\"");
+  public void should_CompleteRequestAfterElementIsWritten_When_StreamTimesOutDuringWrite()
+      throws Exception {
+    StreamingTestClass service = new StreamingTestClass();
+    MockHttpServletRequest request = createAsyncRequest();
+    MockHttpServletResponse response = callAsyncServiceMethod(
+        createVaadinController(service), "blockingMethod", request);
+    assertTrue(service.blockingBean.writeStarted.await(5, TimeUnit.SECONDS));
+
+    MockAsyncContext asyncContext = (MockAsyncContext) request
+        .getAsyncContext();
+    Thread timeoutThread = new Thread(() -> {
+      for (AsyncListener listener : asyncContext.getListeners()) {
+        try {
+          listener.onTimeout(new AsyncEvent(asyncContext));
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    }, "timeout");
+    timeoutThread.start();
+    while (timeoutThread.isAlive()
+        && timeoutThread.getState() != Thread.State.BLOCKED) {
+      Thread.sleep(10);
+    }
+    assertEquals(Thread.State.BLOCKED, timeoutThread.getState());
+    assertNull(asyncContext.getDispatchedPath());
+
+    service.blockingBean.writeReleased.countDown();
+    timeoutThread.join();
+
+    assertEquals("{\"value\":\"a\"}\n", getContent(response));
+    assertNotNull(asyncContext.getDispatchedPath());
+    assertTrue(service.cancelled.get());
+  }
+
+  @Test
+  public void should_NotBlockPublisherThread_When_ElementIsWritten()
+      throws Exception {
+    StreamingTestClass service = new StreamingTestClass();
+    MockHttpServletRequest request = createAsyncRequest();
+    // The element is published in the request thread, which returns while the
+    // element is still being written
+    MockHttpServletResponse response = callAsyncServiceMethod(
+        createVaadinController(service), "blockingInRequestThreadMethod",
+        request);
+    assertTrue(service.blockingBean.writeStarted.await(5, TimeUnit.SECONDS));
+    assertEquals("", getContent(response));
+
+    service.blockingBean.writeReleased.countDown();
+    awaitAsyncDispatch(request);
+
+    assertEquals("{\"value\":\"a\"}\n", getContent(response));
+  }
+
+  @Test
+  public void should_NotLimitStreamTimeout_When_StreamTimeoutIsNotConfigured() {
+    MockHttpServletRequest request = createAsyncRequest();
+    callAsyncServiceMethod(createVaadinController(new StreamingTestClass()),
+        "endlessMethod", request);
+
+    assertEquals(-1, request.getAsyncContext().getTimeout());
+  }
+
+  @Test
+  public void should_UseStreamTimeout_When_StreamTimeoutIsConfigured() {
+    MockHttpServletRequest request = createAsyncRequest();
+    callAsyncServiceMethod(
+        createVaadinController(new StreamingTestClass(),
+            new VaadinConnectController.Settings().streamTimeout(5000)),
+        "endlessMethod", request);
+
+    assertEquals(5000, request.getAsyncContext().getTimeout());
+  }
+
+  @Test
+  public void should_CompleteRequestAfterResultIsWritten_When_AsyncResultTimesOutDuringWrite()
+      throws Exception {
+    AsyncTestClass service = new AsyncTestClass();
+    MockHttpServletRequest request = createAsyncRequest();
+    MockHttpServletResponse response = callAsyncServiceMethod(
+        createVaadinController(service), "blockingMethod", request);
+    Thread completionThread = new Thread(
+        () -> service.pendingBlockingResult.complete(service.blockingBean),
+        "completion");
+    completionThread.start();
+    assertTrue(service.blockingBean.writeStarted.await(5, TimeUnit.SECONDS));
+
+    MockAsyncContext asyncContext = (MockAsyncContext) request
+        .getAsyncContext();
+    Thread timeoutThread = new Thread(() -> {
+      for (AsyncListener listener : asyncContext.getListeners()) {
+        try {
+          listener.onTimeout(new AsyncEvent(asyncContext));
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    }, "timeout");
+    timeoutThread.start();
+    while (timeoutThread.isAlive()
+        && timeoutThread.getState() != Thread.State.BLOCKED) {
+      Thread.sleep(10);
+    }
+    assertEquals(Thread.State.BLOCKED, timeoutThread.getState());
+    assertNull(asyncContext.getDispatchedPath());
+
+    service.blockingBean.writeReleased.countDown();
+    completionThread.join();
+    timeoutThread.join();
+
+    assertEquals(HttpStatus.OK.value(), response.getStatus());
+    assertEquals("{\"value\":\"a\"}", getContent(response));
+    assertNotNull(asyncContext.getDispatchedPath());
+    assertNull(WebAsyncUtils.getAsyncManager(request).getConcurrentResult());
+  }
+
+  @Test
+  public void should_InvokeMethodInServiceExecutor_When_ExecutorIsConfigured()
+      throws Exception {
+    List<Runnable> tasks = new ArrayList<>();
+    MockHttpServletRequest request = createAsyncRequest();
+    MockHttpServletResponse response;
+    SecurityContextHolder.getContext()
+        .setAuthentication(new TestingAuthenticationToken("user", null));
+    MDC.put("requestId", "42");
+    try {
+      response = callAsyncServiceMethod(
+          createVaadinController(new ContextTestClass(), tasks::add),
+          "contextMethod", request);
+    } finally {
+      SecurityContextHolder.clearContext();
+      MDC.clear();
+    }
+
+    assertTrue(request.isAsyncStarted());
+    assertEquals(1, tasks.size());
+    assertEquals("", getContent(response));
+
+    Thread executorThread = new Thread(tasks.get(0), "executor");
+    executorThread.start();
+    executorThread.join();
+
+    assertEquals(HttpStatus.OK.value(), response.getStatus());
+    assertEquals("\"user-42-executor\"", getContent(response));
+    assertNotNull(
+        ((MockAsyncContext) request.getAsyncContext()).getDispatchedPath());
+  }
+
+  @Test
+  public void should_RestoreExecutorThreadContext_When_MethodIsInvoked() {
+    MockHttpServletRequest request = createAsyncRequest();
+    SecurityContextHolder.getContext()
+        .setAuthentication(new TestingAuthenticationToken("user", null));
+    try {
+      callAsyncServiceMethod(
+          createVaadinController(new ContextTestClass(), Runnable::run),
+          "contextMethod", request);
+      assertEquals("user",
+          SecurityContextHolder.getContext().getAuthentication().getName());
+      assertNull(MDC.get("requestId"));
+    } finally {
+      SecurityContextHolder.clearContext();
+    }
+  }
+
+  @Test
+  public void should_ReuseAsyncRequest_When_AsyncMethodIsInvokedInServiceExecutor() {
+    AsyncTestClass service = new AsyncTestClass();
+    MockHttpServletRequest request = createAsyncRequest();
+    MockHttpServletResponse response = callAsyncServiceMethod(
+        createVaadinController(service, Runnable::run), "pendingMethod",
+        request);
+
+    assertTrue(request.isAsyncStarted());
+    assertEquals("", getContent(response));
+
+    service.pendingResult.complete("async-result");
+
+    assertEquals("\"async-result\"", getContent(response));
+  }
+
+  @Test
+  public void should_WriteStream_When_StreamingMethodIsInvokedInServiceExecutor()
+      throws Exception {
+    MockHttpServletRequest request = createAsyncRequest();
+    MockHttpServletResponse response = callAsyncServiceMethod(
+        createVaadinController(new StreamingTestClass(), Runnable::run),
+        "lettersMethod", request);
+    awaitAsyncDispatch(request);
+
+    assertEquals("\"a\"\n\"b\"\n\"c\"\n", getContent(response));
+  }
+
+  @Test
+  public void should_WriteErrorResponse_When_MethodFailsInServiceExecutor() {
+    MockHttpServletRequest request = createAsyncRequest();
+    MockHttpServletResponse response = callAsyncServiceMethod(
+        createVaadinController(new AsyncTestClass(), Runnable::run),
+        "completedExceptionallyMethod", request);
+
+    assertEquals(HttpStatus.INTERNAL_SERVER_ERROR.value(),
+        response.getStatus());
+    assertTrue(getContent(response).contains("execution failure"));
+  }
+
+  @Test
+  public void should_DiscardResult_When_RequestExpiresBeforeServiceExecutorRuns() {
+    List<Runnable> tasks = new ArrayList<>();
+    MockHttpServletRequest request = createAsyncRequest();
+    MockHttpServletResponse response = callAsyncServiceMethod(
+        createVaadinController(new AsyncTestClass(), tasks::add),
+        "completedMethod", request);
+
+    ((MockAsyncContext) request.getAsyncContext()).complete();
+    tasks.get(0).run();
+
+    assertEquals("", getContent(response));
+  }
+
+  @Test
+  public void should_SetErrorResult_When_ServiceExecutorRejectsInvocation() {
+    MockHttpServletRequest request = createAsyncRequest();
+    callAsyncServiceMethod(
+        createVaadinController(new AsyncTestClass(), task -> {
+          throw new RejectedExecutionException("Executor is shut down");
+        }), "completedMethod", request);
+
+    assertTrue(WebAsyncUtils.getAsyncManager(request)
+        .getConcurrentResult() instanceof RejectedExecutionException);
+  }
+
+  @Test
+  public void should_SetErrorResult_When_WritingFailsInServiceExecutor()
+      throws Exception {
+    MockHttpServletRequest request = createAsyncRequest();
+    MockHttpServletResponse response = new MockHttpServletResponse() {
+      @Override
+      public ServletOutputStream getOutputStream() {
+        throw new IllegalStateException("Output stream is closed");
+      }
+    };
+    WebAsyncUtils.getAsyncManager(request).setAsyncWebRequest(
+        new StandardServletAsyncWebRequest(request, response));
+
+    createVaadinController(new AsyncTestClass(), Runnable::run)
+        .serveVaadinService(AsyncTestClass.class.getSimpleName(),
+            "completedExceptionallyMethod", request, response);
+
+    assertTrue(WebAsyncUtils.getAsyncManager(request)
+        .getConcurrentResult() instanceof IllegalStateException);
+  }
+
+  @Test
+  public void should_ReturnResultsInCallOrder_When_BatchIsCalled()
+      throws Exception {
+    JsonNode results = callBatch(createBatchController(null, 10),
+        "[{\"service\": \"BatchTestClass\", \"method\": \"echoMethod\", \"params\": {\"text\": \"first\"}},"
+            + "{\"service\": \"batchtestclass\", \"method\": \"ECHOMETHOD\", \"params\": {\"text\": \"second\"}},"
+            + "{\"service\": \"BatchTestClass\", \"method\": \"echoMethod\", \"params\": {\"text\": [1]}},"
+            + "{\"service\": \"BatchTestClass\", \"method\": \"echoMethod\"}]");
+
+    assertEquals(4, results.size());
+    assertEquals(200, results.get(0).get("status").asInt());
+    assertEquals("first", results.get(0).get("result").asText());
+    assertEquals(200, results.get(1).get("status").asInt());
+    assertEquals("second", results.get(1).get("result").asText());
+    assertEquals(400, results.get(2).get("status").asInt());
+    assertTrue(results.get(2).get("error").get("message").asText()
+        .contains("Validation error"));
+    assertEquals(400, results.get(3).get("status").asInt());
+    assertTrue(results.get(3).get("error").get("message").asText()
+        .contains("Incorrect number of parameters"));
+  }
+
+  @Test
+  public void should_ReturnErrorResults_When_BatchCallsAreInvalid()
+      throws Exception {
+    JsonNode results = callBatch(createBatchController(null, 10),
+        "[{\"service\": \"MissingService\", \"method\": \"echoMethod\"},"
+            + "{\"service\": \"BatchTestClass\", \"method\": \"missingMethod\"},"
+            + "{\"service\": \"BatchTestClass\"}, 42,"
+            + "{\"service\": \"BatchTestClass\", \"method\": \"streamingMethod\"},"
+            + "{\"service\": \"BatchTestClass\", \"method\": \"unserializableMethod\"}]");
+
+    assertEquals(6, results.size());
+    assertEquals(404, results.get(0).get("status").asInt());
+    assertEquals(404, results.get(1).get("status").asInt());
+    assertEquals(400, results.get(2).get("status").asInt());
+    assertEquals(400, results.get(3).get("status").asInt());
+    assertEquals(400, results.get(4).get("status").asInt());
+    assertTrue(results.get(4).get("error").get("message").asText()
+        .contains("streaming"));
+    assertEquals(500, results.get(5).get("status").asInt());
+    assertTrue(results.get(5).get("error").get("message").asText()
+        .contains("Failed to serialize"));
+  }
+
+  @Test
+  public void should_CheckAccessOfEachCall_When_BatchIsCalled()
+      throws Exception {
+    VaadinConnectAccessChecker accessChecker = mock(
+        VaadinConnectAccessChecker.class);
+    when(accessChecker.check(BatchTestClass.class.getMethod("securedMethod")))
+        .thenReturn("denied");
+
+    JsonNode results = callBatch(createBatchController(null, 10, accessChecker),
+        "[{\"service\": \"BatchTestClass\", \"method\": \"securedMethod\"},"
+            + "{\"service\": \"BatchTestClass\", \"method\": \"echoMethod\", \"params\": {\"text\": \"open\"}}]");
+
+    assertEquals(401, results.get(0).get("status").asInt());
+    assertTrue(
+        results.get(0).get("error").get("message").asText().contains("denied"));
+    assertFalse(results.get(0).has("result"));
+    assertEquals(200, results.get(1).get("status").asInt());
+    assertEquals("open", results.get(1).get("result").asText());
+  }
+
+  @Test
+  public void should_AwaitAsyncResults_When_BatchIsCalled() throws Exception {
+    JsonNode results = callBatch(createBatchController(null, 10),
+        "[{\"service\": \"BatchTestClass\", \"method\": \"asyncEchoMethod\", \"params\": {\"text\": \"async\"}},"
+            + "{\"service\": \"BatchTestClass\", \"method\": \"asyncFailingMethod\"}]");
+
+    assertEquals(200, results.get(0).get("status").asInt());
+    assertEquals("async", results.get(0).get("result").asText());
+    assertEquals(400, results.get(1).get("status").asInt());
+    assertEquals("Async failure",
+        results.get(1).get("error").get("message").asText());
+  }
+
+  @Test(timeout = 10000)
+  public void should_NotBlockBatchThreads_When_AsyncResultIsAwaited()
+      throws Exception {
+    ExecutorService batchExecutor = Executors.newSingleThreadExecutor();
+    try {
+      JsonNode results = callBatch(createBatchController(batchExecutor, 10),
+          "[{\"service\": \"BatchTestClass\", \"method\": \"pendingMethod\"},"
+              + "{\"service\": \"BatchTestClass\", \"method\": \"completePendingMethod\", \"params\": {\"text\": \"completed\"}}]");
+
+      assertEquals(200, results.get(0).get("status").asInt());
+      assertEquals("completed", results.get(0).get("result").asText());
+      assertEquals(200, results.get(1).get("status").asInt());
+    } finally {
+      batchExecutor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void should_ExecuteCallsInBatchExecutor_When_BatchThreadsAreConfigured()
+      throws Exception {
+    List<Runnable> tasks = new ArrayList<>();
+    VaadinConnectController controller = createBatchController(task -> {
+      tasks.add(task);
+      task.run();
+    }, 10);
+    SecurityContextHolder.getContext()
+        .setAuthentication(new TestingAuthenticationToken("user", null));
+    MDC.put("requestId", "batch-request");
+    JsonNode results;
+    try {
+      results = callBatch(controller,
+          "[{\"service\": \"BatchTestClass\", \"method\": \"contextMethod\"},"
+              + "{\"service\": \"BatchTestClass\", \"method\": \"echoMethod\", \"params\": {\"text\": \"second\"}}]");
+    } finally {
+      SecurityContextHolder.clearContext();
+      MDC.clear();
+    }
+
+    assertEquals(2, tasks.size());
+    assertEquals("user-batch-request", results.get(0).get("result").asText());
+    assertEquals("second", results.get(1).get("result").asText());
+  }
+
+  @Test
+  public void should_ExecuteCallsInParallel_When_BatchExecutorIsCreated()
+      throws Exception {
+    VaadinConnectController controller = createBatchController(
+        VaadinServiceExecutors.createBatchExecutor(2), 10);
+    SecurityContextHolder.getContext()
+        .setAuthentication(new TestingAuthenticationToken("user", null));
+    JsonNode results;
+    try {
+      results = callBatch(controller, Stream.generate(
+          () -> "{\"service\": \"BatchTestClass\", \"method\": \"contextMethod\"}")
+          .limit(5).collect(Collectors.joining(",", "[", "]")));
+    } finally {
+      SecurityContextHolder.clearContext();
+    }
+
+    assertEquals(5, results.size());
+    for (JsonNode result : results) {
+      assertEquals("user-null", result.get("result").asText());
+    }
+    assertNull(SecurityContextHolder.getContext().getAuthentication());
+  }
+
+  @Test
+  public void should_ReturnBadRequest_When_BatchBodyIsNotArray()
+      throws Exception {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setContent("{\"service\": \"BatchTestClass\"}".getBytes());
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    createBatchController(null, 10).serveVaadinServiceBatch(request, response);
+
+    assertEquals(HttpStatus.BAD_REQUEST.value(), response.getStatus());
+    assertTrue(response.getContentAsString().contains("JSON array"));
+  }
+
+  @Test
+  public void should_ReturnBadRequest_When_BatchHasTooManyCalls()
+      throws Exception {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setContent("[{}, {}, {}]".getBytes());
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    createBatchController(null, 2).serveVaadinServiceBatch(request, response);
+
+    assertEquals(HttpStatus.BAD_REQUEST.value(), response.getStatus());
+    assertTrue(response.getContentAsString()
+        .contains("The batch request has 3 calls, the maximum is 2"));
+  }
+
+  @Test
+  public void should_ReturnCachedResponse_When_CachedMethodIsCalledAgain() {
+    CachedTestClass service = new CachedTestClass();
+    VaadinConnectController controller = createVaadinController(service);
+
+    ResponseEntity<String> first = callServiceMethod(controller,
+        "CachedTestClass", "cachedMethod",
+        createRequestParameters("{\"text\": \"a\"}"));
+    ResponseEntity<String> second = callServiceMethod(controller,
+        "CachedTestClass", "cachedMethod",
+        createRequestParameters("{\"text\": \"a\"}"));
+
+    assertEquals(HttpStatus.OK, second.getStatusCode());
+    assertEquals("\"a-1\"", first.getBody());
+    assertEquals(first.getBody(), second.getBody());
+    assertEquals(1, service.invocations.get());
+    assertEquals(1, controller.getCachedResultHitCount());
+    assertEquals(1, controller.getCachedResultMissCount());
+    assertEquals(1, controller.getCachedResultCount());
+    assertEquals(first.getBody().length(), controller.getCachedResultBytes());
+  }
+
+  @Test
+  public void should_InvokeCachedMethod_When_ParametersDiffer() {
+    CachedTestClass service = new CachedTestClass();
+    VaadinConnectController controller = createVaadinController(service);
+
+    callServiceMethod(controller, "CachedTestClass", "cachedMethod",
+        createRequestParameters("{\"text\": \"a\"}"));
+    ResponseEntity<String> response = callServiceMethod(controller,
+        "CachedTestClass", "cachedMethod",
+        createRequestParameters("{\"text\": \"b\"}"));
+
+    assertEquals("\"b-2\"", response.getBody());
+    assertEquals(2, controller.getCachedResultMissCount());
+    assertEquals(2, controller.getCachedResultCount());
+  }
+
+  @Test
+  public void should_NotCacheErrors_When_CachedMethodFails() {
+    CachedTestClass service = new CachedTestClass();
+    VaadinConnectController controller = createVaadinController(service);
+
+    for (int i = 0; i < 2; i++) {
+      ResponseEntity<String> response = callServiceMethod(controller,
+          "CachedTestClass", "cachedMethod",
+          createRequestParameters("{\"text\": \"fail\"}"));
+      assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    assertEquals(2, service.invocations.get());
+    assertEquals(0, controller.getCachedResultCount());
+  }
+
+  @Test
+  public void should_CheckAccess_When_ResponseIsCached() throws Exception {
+    VaadinConnectAccessChecker accessChecker = mock(
+        VaadinConnectAccessChecker.class);
+    Method cachedMethod = CachedTestClass.class.getMethod("cachedMethod",
+        String.class);
+    VaadinConnectController controller = createVaadinController(
+        new CachedTestClass(), new ObjectMapper(), accessChecker,
+        mock(VaadinServiceNameChecker.class));
+    callServiceMethod(controller, "CachedTestClass", "cachedMethod",
+        createRequestParameters("{\"text\": \"a\"}"));
+
+    when(accessChecker.check(cachedMethod)).thenReturn("denied");
+    ResponseEntity<String> response = callServiceMethod(controller,
+        "CachedTestClass", "cachedMethod",
+        createRequestParameters("{\"text\": \"a\"}"));
+
+    assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
+    assertTrue(response.getBody().contains("denied"));
+    assertEquals(0, controller.getCachedResultHitCount());
+  }
+
+  @Test
+  public void should_EvictCachedResponses_When_EvictionIsRequested() {
+    CachedTestClass service = new CachedTestClass();
+    VaadinConnectController controller = createVaadinController(service);
+    callServiceMethod(controller, "CachedTestClass", "cachedMethod",
+        createRequestParameters("{\"text\": \"a\"}"));
+    callServiceMethod(controller, "CachedTestClass", "otherCachedMethod",
+        createRequestParameters("{\"value\": 1}"));
+    assertEquals(2, controller.getCachedResultCount());
+
+    controller.evictCachedResults("cachedtestclass", "CACHEDMETHOD");
+    assertEquals(1, controller.getCachedResultCount());
+    callServiceMethod(controller, "CachedTestClass", "cachedMethod",
+        createRequestParameters("{\"text\": \"a\"}"));
+    assertEquals(2, controller.getCachedResultCount());
+
+    controller.evictCachedResults("CachedTestClass");
+    assertEquals(0, controller.getCachedResultCount());
+    callServiceMethod(controller, "CachedTestClass", "otherCachedMethod",
+        createRequestParameters("{\"value\": 1}"));
+
+    controller.evictAllCachedResults();
+    assertEquals(0, controller.getCachedResultCount());
+    assertEquals(0, controller.getCachedResultBytes());
+    assertEquals(4, service.invocations.get());
+  }
+
+  @Test
+  public void should_CountEvictions_When_CacheBoundIsExceeded() {
+    CachedTestClass service = new CachedTestClass();
+    VaadinConnectController controller = createVaadinController(service);
+
+    callServiceMethod(controller, "CachedTestClass", "otherCachedMethod",
+        createRequestParameters("{\"value\": 1}"));
+    callServiceMethod(controller, "CachedTestClass", "otherCachedMethod",
+        createRequestParameters("{\"value\": 2}"));
+
+    assertEquals(1, controller.getCachedResultEvictionCount());
+  }
+
+  @Test
+  public void should_Throw_When_EvictedMethodIsNotCached() {
+    VaadinConnectController controller = createVaadinController(
+        new CachedTestClass());
+
+    exception.expect(IllegalArgumentException.class);
+    exception.expectMessage("notCachedMethod");
+    controller.evictCachedResults("CachedTestClass", "notCachedMethod");
+  }
+
+  @Test
+  public void should_Throw_When_EvictedServiceIsUnknown() {
+    VaadinConnectController controller = createVaadinController(
+        new CachedTestClass());
+
+    exception.expect(IllegalArgumentException.class);
+    exception.expectMessage("MissingService");
+    controller.evictCachedResults("MissingService");
+  }
+
+  @Test
+  public void should_ReturnCachedResponse_When_CachedMethodIsCalledInBatch()
+      throws Exception {
+    CachedTestClass service = new CachedTestClass();
+    VaadinConnectController controller = createVaadinController(service);
+
+    JsonNode results = callBatch(controller,
+        "[{\"service\": \"CachedTestClass\", \"method\": \"cachedMethod\", \"params\": {\"text\": \"a\"}},"
+            + "{\"service\": \"CachedTestClass\", \"method\": \"cachedMethod\", \"params\": {\"text\": \"a\"}}]");
+
+    assertEquals(200, results.get(0).get("status").asInt());
+    assertEquals("a-1", results.get(0).get("result").asText());
+    assertEquals(200, results.get(1).get("status").asInt());
+    assertEquals("a-1", results.get(1).get("result").asText());
+    assertEquals(1, service.invocations.get());
+  }
+
+  @Test
+  public void should_FailToStart_When_CachedMethodIsAsync() {
+    exception.expect(IllegalStateException.class);
+    exception.expectMessage("cachedAsyncMethod");
+    createVaadinController(new InvalidCachedTestClass());
+  }
+
+  @Test
+  public void should_ReadStreamParameterLazily_When_MethodConsumesElements() {
+    ResponseEntity<String> response = callServiceMethod(
+        createVaadinController(new StreamParameterTestClass()),
+        "StreamParameterTestClass", "firstNameMethod", createRequestParameters(
+            "{\"prefix\": \"first-\", \"names\": [\"a\", {\"unread"));
+
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertEquals("\"first-a\"", response.getBody());
+  }
+
+  @Test
+  public void should_ReadStreamParameter_When_ElementsAreValid() {
+    ResponseEntity<String> response = callServiceMethod(
+        createVaadinController(new StreamParameterTestClass()),
+        "StreamParameterTestClass", "countSumMethod", createRequestParameters(
+            "{\"parameters\": [{\"count\": 10}, {\"count\": 20}]}"));
+
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertEquals("30", response.getBody());
+  }
+
+  @Test
+  public void should_Return400_When_StreamElementIsInvalid() {
+    ResponseEntity<String> response = callServiceMethod(
+        createVaadinController(new StreamParameterTestClass()),
+        "StreamParameterTestClass", "countSumMethod", createRequestParameters(
+            "{\"parameters\": [{\"count\": 10}, {\"count\": 5}]}"));
+
+    assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    assertTrue(response.getBody()
+        .contains(VaadinConnectValidationException.class.getName()));
+    assertTrue(response.getBody().contains("count"));
+  }
+
+  @Test
+  public void should_Return400_When_StreamElementCannotBeDeserialized() {
+    ResponseEntity<String> response = callServiceMethod(
+        createVaadinController(new StreamParameterTestClass()),
+        "StreamParameterTestClass", "countSumMethod",
+        createRequestParameters("{\"parameters\": [{\"count\": 10}, 42]}"));
+
+    assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    assertTrue(response.getBody().contains("parameters"));
+    assertTrue(
+        response.getBody().contains(TestValidationParameter.class.getName()));
+  }
+
+  @Test
+  public void should_Return400_When_StreamParameterIsNotArray() {
+    ResponseEntity<String> response = callServiceMethod(
+        createVaadinController(new StreamParameterTestClass()),
+        "StreamParameterTestClass", "countSumMethod",
+        createRequestParameters("{\"parameters\": {\"count\": 10}}"));
+
+    assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    assertTrue(response.getBody().contains("parameters"));
+  }
+
+  @Test
+  public void should_FailToStart_When_StreamParameterIsNotLast() {
+    exception.expect(IllegalStateException.class);
+    exception.expectMessage("notLastStreamMethod");
+    createVaadinController(new InvalidStreamParameterTestClass());
+  }
+
+  @Test
+  public void should_WriteArray_When_MethodReturnsStream() throws Exception {
+    IteratedTestClass service = new IteratedTestClass();
+    ResponseEntity<String> response = callServiceMethod(
+        createVaadinController(service), "IteratedTestClass", "numbersMethod",
+        createRequestParameters("{\"count\": 250}"));
+
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    JsonNode numbers = new ObjectMapper().readTree(response.getBody());
+    assertEquals(250, numbers.size());
+    assertEquals(250, numbers.get(249).asInt());
+    assertTrue(service.closed.get());
+  }
+
+  @Test
+  public void should_WriteArray_When_MethodReturnsIterable() {
+    ResponseEntity<String> response = callServiceMethod(
+        createVaadinController(new IteratedTestClass()), "IteratedTestClass",
+        "lettersMethod", createRequestParameters("{}"));
+
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertEquals("[\"a\",\"b\"]", response.getBody());
+  }
+
+  @Test
+  public void should_Return400_When_IterationFailsBeforeResponseIsCommitted() {
+    IteratedTestClass service = new IteratedTestClass();
+    ResponseEntity<String> response = callServiceMethod(
+        createVaadinController(service), "IteratedTestClass", "failingMethod",
+        createRequestParameters("{\"failingElement\": 3}"));
+
+    assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    assertTrue(response.getBody().contains("Iteration failure"));
+    assertTrue(service.closed.get());
+  }
+
+  @Test
+  public void should_CloseStream_When_IterationFailsAfterResponseIsCommitted()
+      throws Exception {
+    IteratedTestClass service = new IteratedTestClass();
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    try {
+      createVaadinController(service).serveVaadinService("IteratedTestClass",
+          "failingMethod", createRequestParameters("{\"failingElement\": 150}"),
+          response);
+      throw new AssertionError("The iteration failure should be thrown");
+    } catch (IllegalStateException e) {
+      assertTrue(e.getMessage().contains("already committed"));
+    }
+
+    assertTrue(response.isCommitted());
+    assertTrue(service.closed.get());
+  }
+
+  @Test
+  public void should_CloseStream_When_ClientDisconnects() throws Exception {
+    IteratedTestClass service = new IteratedTestClass();
+    MockHttpServletResponse response = new MockHttpServletResponse() {
+      @Override
+      public ServletOutputStream getOutputStream() {
+        return new ServletOutputStream() {
+          @Override
+          public void write(int b) throws IOException {
+            throw new IOException("Connection reset");
+          }
+
+          @Override
+          public boolean isReady() {
+            return true;
+          }
+
+          @Override
+          public void setWriteListener(WriteListener writeListener) {
+            // no op
+          }
+        };
+      }
+    };
+    try {
+      createVaadinController(service).serveVaadinService("IteratedTestClass",
+          "numbersMethod", createRequestParameters("{\"count\": 250}"),
+          response);
+      throw new AssertionError("The write failure should be thrown");
+    } catch (IOException e) {
+      assertEquals("Connection reset", e.getMessage());
+    }
+
+    assertTrue(service.closed.get());
+  }
+
+  @Test
+  public void should_SendETag_When_MethodIsIdempotent() throws Exception {
+    VaadinConnectController controller = createVaadinController(
+        new CachedTestClass());
+
+    MockHttpServletResponse response = callWithETag(controller,
+        "idempotentMethod", "{\"text\": \"a\"}", null);
+    MockHttpServletResponse otherResponse = callWithETag(controller,
+        "idempotentMethod", "{\"text\": \"b\"}", null);
+
+    assertEquals(HttpStatus.OK.value(), response.getStatus());
+    assertEquals("\"a\"", response.getContentAsString());
+    String eTag = response.getHeader(HttpHeaders.ETAG);
+    assertTrue(eTag, eTag.matches("\"[0-9a-f]{32}\""));
+    assertNotEquals(eTag, otherResponse.getHeader(HttpHeaders.ETAG));
+  }
+
+  @Test
+  public void should_ReturnNotModified_When_IfNoneMatchHasETag()
+      throws Exception {
+    VaadinConnectController controller = createVaadinController(
+        new CachedTestClass());
+    String eTag = callWithETag(controller, "idempotentMethod",
+        "{\"text\": \"a\"}", null).getHeader(HttpHeaders.ETAG);
+
+    for (String ifNoneMatch : new String[] { eTag, "W/" + eTag,
+        "\"other\", " + eTag, "*" }) {
+      MockHttpServletResponse response = callWithETag(controller,
+          "idempotentMethod", "{\"text\": \"a\"}", ifNoneMatch);
+
+      assertEquals(ifNoneMatch, HttpStatus.NOT_MODIFIED.value(),
+          response.getStatus());
+      assertEquals(eTag, response.getHeader(HttpHeaders.ETAG));
+      assertEquals(0, response.getContentAsByteArray().length);
+    }
+  }
+
+  @Test
+  public void should_ReturnResponse_When_IfNoneMatchHasOtherETag()
+      throws Exception {
+    VaadinConnectController controller = createVaadinController(
+        new CachedTestClass());
+
+    MockHttpServletResponse response = callWithETag(controller,
+        "idempotentMethod", "{\"text\": \"b\"}", "\"other\"");
+
+    assertEquals(HttpStatus.OK.value(), response.getStatus());
+    assertEquals("\"b\"", response.getContentAsString());
+  }
+
+  @Test
+  public void should_ReturnNotModified_When_CachedResponseHasSameETag()
+      throws Exception {
+    CachedTestClass service = new CachedTestClass();
+    VaadinConnectController controller = createVaadinController(service);
+    String eTag = callWithETag(controller, "cachedMethod", "{\"text\": \"a\"}",
+        null).getHeader(HttpHeaders.ETAG);
+
+    MockHttpServletResponse response = callWithETag(controller, "cachedMethod",
+        "{\"text\": \"a\"}", eTag);
+
+    assertEquals(HttpStatus.NOT_MODIFIED.value(), response.getStatus());
+    assertEquals(1, service.invocations.get());
+  }
+
+  @Test
+  public void should_NotSendETag_When_MethodIsNotIdempotent() throws Exception {
+    MockHttpServletResponse response = callWithETag(
+        createVaadinController(new CachedTestClass()), "notCachedMethod", "{}",
+        "*");
+
+    assertEquals(HttpStatus.OK.value(), response.getStatus());
+    assertNull(response.getHeader(HttpHeaders.ETAG));
+    assertEquals("\"not cached\"", response.getContentAsString());
+  }
+
+  @Test
+  public void should_NotSendETag_When_IdempotentMethodFails() throws Exception {
+    MockHttpServletResponse response = callWithETag(
+        createVaadinController(new CachedTestClass()), "idempotentMethod",
+        "{\"text\": [1]}", "*");
+
+    assertEquals(HttpStatus.BAD_REQUEST.value(), response.getStatus());
+    assertNull(response.getHeader(HttpHeaders.ETAG));
+  }
+
+  @Test
+  public void should_ReadAndWriteCbor_When_CborIsNegotiated() throws Exception {
+    ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setContentType(VaadinConnectController.APPLICATION_CBOR);
+    request.addHeader(HttpHeaders.ACCEPT,
+        VaadinConnectController.APPLICATION_CBOR);
+    request.setContent(cborMapper
+        .writeValueAsBytes(Collections.singletonMap("text", "binary")));
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    createVaadinController(new BatchTestClass())
+        .serveVaadinService("BatchTestClass", "echoMethod", request, response);
+
+    assertEquals(HttpStatus.OK.value(), response.getStatus());
+    assertEquals(VaadinConnectController.APPLICATION_CBOR,
+        response.getContentType());
+    assertEquals("binary",
+        cborMapper.readValue(response.getContentAsByteArray(), String.class));
+  }
+
+  @Test
+  public void should_WriteSmile_When_SmileIsAccepted() throws Exception {
+    MockHttpServletRequest request = createRequestParameters(
+        "{\"text\": \"a\"}");
+    request.addHeader(HttpHeaders.ACCEPT,
+        VaadinConnectController.APPLICATION_SMILE);
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    createVaadinController(new CachedTestClass()).serveVaadinService(
+        "CachedTestClass", "idempotentMethod", request, response);
+
+    assertEquals(VaadinConnectController.APPLICATION_SMILE,
+        response.getContentType());
+    assertNotNull(response.getHeader(HttpHeaders.ETAG));
+    assertEquals("a", new ObjectMapper(new SmileFactory())
+        .readValue(response.getContentAsByteArray(), String.class));
+  }
+
+  @Test
+  public void should_CacheResponsesPerFormat_When_CachedMethodIsCalled()
+      throws Exception {
+    CachedTestClass service = new CachedTestClass();
+    VaadinConnectController controller = createVaadinController(service);
+    MockHttpServletRequest cborRequest = createRequestParameters(
+        "{\"text\": \"a\"}");
+    cborRequest.addHeader(HttpHeaders.ACCEPT,
+        VaadinConnectController.APPLICATION_CBOR);
+    MockHttpServletResponse cborResponse = new MockHttpServletResponse();
+
+    controller.serveVaadinService("CachedTestClass", "cachedMethod",
+        cborRequest, cborResponse);
+    ResponseEntity<String> jsonResponse = callServiceMethod(controller,
+        "CachedTestClass", "cachedMethod",
+        createRequestParameters("{\"text\": \"a\"}"));
+
+    assertEquals("a-1", new ObjectMapper(new CBORFactory())
+        .readValue(cborResponse.getContentAsByteArray(), String.class));
+    assertEquals("\"a-2\"", jsonResponse.getBody());
+    assertEquals(2, controller.getCachedResultCount());
+  }
+
+  @Test
+  public void should_WriteJsonError_When_BinaryFormatIsAccepted()
+      throws Exception {
+    MockHttpServletRequest request = createRequestParameters("{\"text\": [1]}");
+    request.addHeader(HttpHeaders.ACCEPT,
+        VaadinConnectController.APPLICATION_CBOR);
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    createVaadinController(new BatchTestClass())
+        .serveVaadinService("BatchTestClass", "echoMethod", request, response);
+
+    assertEquals(HttpStatus.BAD_REQUEST.value(), response.getStatus());
+    assertEquals(MediaType.APPLICATION_JSON_UTF8_VALUE,
+        response.getContentType());
+    assertTrue(response.getContentAsString().contains("Validation error"));
+  }
+
+  @Test
+  public void should_FailToStart_When_ExecutorIsNotSupported() {
+    VaadinConnectProperties properties = mock(VaadinConnectProperties.class);
+    when(properties.getVaadinConnectExecutor()).thenReturn("unknown");
+
+    exception.expect(IllegalStateException.class);
+    exception.expectMessage("vaadin.connect.executor");
+    new VaadinConnectController(new ObjectMapper(),
+        mock(VaadinConnectAccessChecker.class),
+        mock(VaadinServiceNameChecker.class), mock(ApplicationContext.class),
+        properties);
+  }
+
+  @Test
+  public void should_NotUseBridgeMethod_When_ServiceHasBridgeMethodFromInterface() {
+    String inputId = "2222";
+    String expectedResult = String.format("{\"id\":\"%s\"}", inputId);
+    BridgeMethodTestService.InheritedClass testService = new BridgeMethodTestService.InheritedClass();
+    String testMethodName = "testMethodFromInterface";
+    ResponseEntity<String> response = callServiceMethod(
+        createVaadinController(testService),
+        testService.getClass().getSimpleName(), testMethodName,
+        createRequestParameters(
+            String.format("{\"value\": {\"id\": \"%s\"}}", inputId)));
+    assertEquals(expectedResult, response.getBody());
+  }
+
+  @Test
+  public void should_NotUseBridgeMethod_When_ServiceHasBridgeMethodFromParentClass() {
+    String inputId = "2222";
+    BridgeMethodTestService.InheritedClass testService = new BridgeMethodTestService.InheritedClass();
+    String testMethodName = "testMethodFromClass";
+
+    ResponseEntity<String> response = callServiceMethod(
+        createVaadinController(testService),
+        testService.getClass().getSimpleName(), testMethodName,
+        createRequestParameters(String.format("{\"value\": %s}", inputId)));
+    assertEquals(inputId, response.getBody());
+  }
+
+  @Test
+  public void should_ReturnCorrectResponse_When_CallingNormalOverriddenMethod() {
+    String inputId = "2222";
+    BridgeMethodTestService.InheritedClass testService = new BridgeMethodTestService.InheritedClass();
+    String testMethodName = "testNormalMethod";
+
+    ResponseEntity<String> response = callServiceMethod(
+        createVaadinController(testService),
+        testService.getClass().getSimpleName(), testMethodName,
+        createRequestParameters(String.format("{\"value\": %s}", inputId)));
+    assertEquals(inputId, response.getBody());
+  }
+
+  @Test
+  public void should_UseCustomServiceName_When_ItIsDefined() {
+    int input = 111;
+    String expectedOutput = new TestClassWithCustomServiceName()
+        .testMethod(input);
+    String beanName = TestClassWithCustomServiceName.class.getSimpleName();
+
+    ApplicationContext contextMock = mock(ApplicationContext.class);
+    when(contextMock.getType(beanName))
+        .thenReturn((Class) TestClassWithCustomServiceName.class);
+    when(contextMock.getBeansWithAnnotation(VaadinService.class))
+        .thenReturn(Collections.singletonMap(beanName,
+            new TestClassWithCustomServiceName()));
+
+    VaadinConnectController vaadinConnectController = new VaadinConnectController(
+        new ObjectMapper(), mock(VaadinConnectAccessChecker.class),
+        mock(VaadinServiceNameChecker.class), contextMock);
+    ResponseEntity<String> response = callServiceMethod(vaadinConnectController,
+        "CustomService", "testMethod",
+        createRequestParameters(String.format("{\"value\": %s}", input)));
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertEquals(String.format("\"%s\"", expectedOutput), response.getBody());
+  }
+
+  @Test
+  public void should_UseDefaultObjectMapper_When_NoneIsProvided() {
+    ApplicationContext contextMock = mock(ApplicationContext.class);
+    ObjectMapper mockDefaultObjectMapper = mock(ObjectMapper.class);
+    JacksonProperties mockJacksonProperties = mock(JacksonProperties.class);
+    when(contextMock.getBean(ObjectMapper.class))
+        .thenReturn(mockDefaultObjectMapper);
+    when(contextMock.getBean(JacksonProperties.class))
+        .thenReturn(mockJacksonProperties);
+    when(mockJacksonProperties.getVisibility())
+        .thenReturn(Collections.emptyMap());
+    new VaadinConnectController(null, mock(VaadinConnectAccessChecker.class),
+        mock(VaadinServiceNameChecker.class), contextMock);
+
+    verify(contextMock, times(1)).getBean(ObjectMapper.class);
+    verify(mockDefaultObjectMapper, times(1))
+        .setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
+    verify(contextMock, times(1)).getBean(JacksonProperties.class);
+  }
+
+  @Test
+  public void should_NotOverrideVisibility_When_JacksonPropertiesProvideVisibility() {
+    ApplicationContext contextMock = mock(ApplicationContext.class);
+    ObjectMapper mockDefaultObjectMapper = mock(ObjectMapper.class);
+    JacksonProperties mockJacksonProperties = mock(JacksonProperties.class);
+    when(contextMock.getBean(ObjectMapper.class))
+        .thenReturn(mockDefaultObjectMapper);
+    when(contextMock.getBean(JacksonProperties.class))
+        .thenReturn(mockJacksonProperties);
+    when(mockJacksonProperties.getVisibility())
+        .thenReturn(Collections.singletonMap(PropertyAccessor.ALL,
+            JsonAutoDetect.Visibility.PUBLIC_ONLY));
+    new VaadinConnectController(null, mock(VaadinConnectAccessChecker.class),
+        mock(VaadinServiceNameChecker.class), contextMock);
+
+    verify(contextMock, times(1)).getBean(ObjectMapper.class);
+    verify(mockDefaultObjectMapper, times(0))
+        .setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
+    verify(contextMock, times(1)).getBean(JacksonProperties.class);
+  }
+
+  @Test
+  public void should_ThrowError_When_DefaultObjectMapperIsNotFound() {
+    ApplicationContext contextMock = mock(ApplicationContext.class);
+    when(contextMock.getBean(ObjectMapper.class))
+        .thenThrow(new NoSuchBeanDefinitionException("Bean not found"));
+
+    exception.expect(IllegalStateException.class);
+    exception.expectMessage("object mapper");
+
+    new VaadinConnectController(null, mock(VaadinConnectAccessChecker.class),
+        mock(VaadinServiceNameChecker.class), contextMock);
+  }
+
+  @Test
+  public void should_ReturnValidationError_When_DeserializationFails()
+      throws IOException {
+    String inputValue = "\"string\"";
+    String expectedErrorMessage = String.format(
+        "Validation error in service '%s' method '%s'", TEST_SERVICE_NAME,
+        TEST_METHOD.getName());
+    ResponseEntity<String> response = callServiceMethod(
+        createVaadinController(TEST_SERVICE), TEST_SERVICE_NAME,
+        TEST_METHOD.getName(),
+        createRequestParameters(String.format("{\"value\": %s}", inputValue)));
+
+    assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    ObjectNode jsonNodes = new ObjectMapper().readValue(response.getBody(),
+        ObjectNode.class);
+
+    assertEquals(VaadinConnectValidationException.class.getName(),
+        jsonNodes.get("type").asText());
+    assertEquals(expectedErrorMessage, jsonNodes.get("message").asText());
+    assertEquals(1, jsonNodes.get("validationErrorData").size());
+
+    JsonNode validationErrorData = jsonNodes.get("validationErrorData").get(0);
+    assertEquals("value", validationErrorData.get("parameterName").asText());
+    assertTrue(validationErrorData.get("message").asText().contains("'int'"));
+  }
+
+  @Test
+  public void should_ReturnAllValidationErrors_When_DeserializationFailsForMultipleParameters()
+      throws IOException {
+    String inputValue = String.format(
+        "{\"number\": %s, \"text\": %s, \"date\": %s}", "\"NotANumber\"",
+        "\"ValidText\"", "\"NotADate\"");
     String testMethodName = "testMethodWithMultipleParameter";
     String expectedErrorMessage = String.format(
         "Validation error in service '%s' method '%s'", TEST_SERVICE_NAME,
         testMethodName);
-    ResponseEntity<String> response = createVaadinController(TEST_SERVICE)
-        .serveVaadinService(TEST_SERVICE_NAME, testMethodName,
-            createRequestParameters(inputValue));
+    ResponseEntity<String> response = callServiceMethod(
+        createVaadinController(TEST_SERVICE), TEST_SERVICE_NAME, testMethodName,
+        createRequestParameters(inputValue));
 
     assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
     ObjectNode jsonNodes = new ObjectMapper().readValue(response.getBody(),
@@ -641,6 +2126,69 @@ public class VaadinConnectControllerTest {
     assertTrue(parameterNames.contains("number"));
   }
 
+  @Test
+  public void should_ReturnAllValidationErrors_When_InvalidParametersHaveNestedValues()
+      throws IOException {
+    String inputValue = String.format(
+        "{\"number\": %s, \"text\": %s, \"date\": %s}", "[1, {\"a\": 2}]",
+        "\"ValidText\"", "{\"nested\": [3]}");
+    ResponseEntity<String> response = callServiceMethod(
+        createVaadinController(TEST_SERVICE), TEST_SERVICE_NAME,
+        "testMethodWithMultipleParameter", createRequestParameters(inputValue));
+
+    assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    ObjectNode jsonNodes = new ObjectMapper().readValue(response.getBody(),
+        ObjectNode.class);
+
+    assertEquals(VaadinConnectValidationException.class.getName(),
+        jsonNodes.get("type").asText());
+    List<String> parameterNames = jsonNodes.get("validationErrorData")
+        .findValuesAsText("parameterName");
+    assertEquals(2, parameterNames.size());
+    assertTrue(parameterNames.contains("date"));
+    assertTrue(parameterNames.contains("number"));
+  }
+
+  @Test
+  public void should_Return400_When_MoreParametersWithNestedValuesSpecified() {
+    ResponseEntity<String> response = callServiceMethod(
+        createVaadinController(TEST_SERVICE), TEST_SERVICE_NAME,
+        TEST_METHOD.getName(), createRequestParameters(
+            "{\"value\": 222, \"extra\": {\"nested\": [1, {}]}}"));
+
+    assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    String responseBody = response.getBody();
+    assertServiceInfoPresent(responseBody);
+    assertTrue(String.format("Invalid response body: '%s'", responseBody),
+        responseBody.contains("expected: 1, got: 2"));
+  }
+
+  @Test
+  public void should_Return400_When_RequestBodyIsMalformed() {
+    ResponseEntity<String> response = callServiceMethod(
+        createVaadinController(TEST_SERVICE), TEST_SERVICE_NAME,
+        TEST_METHOD.getName(), createRequestParameters("{\"value\": 222"));
+
+    assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    String responseBody = response.getBody();
+    assertServiceInfoPresent(responseBody);
+    assertTrue(String.format("Invalid response body: '%s'", responseBody),
+        responseBody.contains("JSON object"));
+  }
+
+  @Test
+  public void should_Return400_When_RequestBodyIsNotJsonObject() {
+    ResponseEntity<String> response = callServiceMethod(
+        createVaadinController(TEST_SERVICE), TEST_SERVICE_NAME,
+        TEST_METHOD.getName(), createRequestParameters("[222]"));
+
+    assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    String responseBody = response.getBody();
+    assertServiceInfoPresent(responseBody);
+    assertTrue(String.format("Invalid response body: '%s'", responseBody),
+        responseBody.contains("JSON object"));
+  }
+
   @Test
   public void should_ReturnValidationError_When_ServiceMethodParameterIsInvalid()
       throws IOException {
@@ -648,9 +2196,10 @@ public class VaadinConnectControllerTest {
         "Validation error in service '%s' method '%s'", TEST_SERVICE_NAME,
         TEST_VALIDATION_METHOD.getName());
 
-    ResponseEntity<String> response = createVaadinController(TEST_SERVICE)
-        .serveVaadinService(TEST_SERVICE_NAME, TEST_VALIDATION_METHOD.getName(),
-            createRequestParameters("{\"parameter\": null}"));
+    ResponseEntity<String> response = callServiceMethod(
+        createVaadinController(TEST_SERVICE), TEST_SERVICE_NAME,
+        TEST_VALIDATION_METHOD.getName(),
+        createRequestParameters("{\"parameter\": null}"));
 
     assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
     ObjectNode jsonNodes = new ObjectMapper().readValue(response.getBody(),
@@ -681,10 +2230,10 @@ public class VaadinConnectControllerTest {
         "Validation error in service '%s' method '%s'", TEST_SERVICE_NAME,
         TEST_VALIDATION_METHOD.getName());
 
-    ResponseEntity<String> response = createVaadinController(TEST_SERVICE)
-        .serveVaadinService(TEST_SERVICE_NAME, TEST_VALIDATION_METHOD.getName(),
-            createRequestParameters(String.format(
-                "{\"parameter\": {\"count\": %d}}", invalidPropertyValue)));
+    ResponseEntity<String> response = callServiceMethod(
+        createVaadinController(TEST_SERVICE), TEST_SERVICE_NAME,
+        TEST_VALIDATION_METHOD.getName(), createRequestParameters(String
+            .format("{\"parameter\": {\"count\": %d}}", invalidPropertyValue)));
 
     assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
     ObjectNode jsonNodes = new ObjectMapper().readValue(response.getBody(),
@@ -706,6 +2255,288 @@ public class VaadinConnectControllerTest {
         .contains(TEST_VALIDATION_METHOD.getParameterTypes()[0].toString()));
   }
 
+  @Test
+  public void should_Return503WithRetryAfter_When_BulkheadIsFull()
+      throws Exception {
+    VaadinConnectController controller = createVaadinController(
+        new BulkheadTestClass());
+    VaadinServiceBulkhead bulkhead = getBulkhead(controller,
+        "BulkheadTestClass.limitedMethod");
+    assertTrue(bulkhead.tryAcquire());
+
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    controller.serveVaadinService("BulkheadTestClass", "limitedMethod",
+        createRequestParameters("{}"), response);
+
+    assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), response.getStatus());
+    assertEquals("5", response.getHeader(HttpHeaders.RETRY_AFTER));
+    assertTrue(response.getContentAsString(),
+        response.getContentAsString().contains("too many concurrent calls"));
+    assertEquals(1, bulkhead.getRejectedCallCount());
+
+    bulkhead.release();
+    MockHttpServletResponse nextResponse = new MockHttpServletResponse();
+    controller.serveVaadinService("BulkheadTestClass", "limitedMethod",
+        createRequestParameters("{}"), nextResponse);
+
+    assertEquals(HttpStatus.OK.value(), nextResponse.getStatus());
+    assertEquals("\"limited\"", nextResponse.getContentAsString());
+    assertEquals(0, bulkhead.getActiveCallCount());
+  }
+
+  @Test
+  public void should_HoldBulkheadPermit_When_AsyncResultIsNotCompleted() {
+    BulkheadTestClass service = new BulkheadTestClass();
+    VaadinConnectController controller = createVaadinController(service);
+    VaadinServiceBulkhead bulkhead = getBulkhead(controller,
+        "BulkheadTestClass.limitedAsyncMethod");
+
+    callAsyncServiceMethod(controller, "limitedAsyncMethod",
+        createAsyncRequest());
+    assertEquals(1, bulkhead.getActiveCallCount());
+    MockHttpServletResponse rejectedResponse = callAsyncServiceMethod(
+        controller, "limitedAsyncMethod", createAsyncRequest());
+    assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(),
+        rejectedResponse.getStatus());
+
+    service.pendingResult.complete("async-result");
+    assertEquals(0, bulkhead.getActiveCallCount());
+  }
+
+  @Test
+  public void should_HoldBulkheadPermit_When_StreamIsNotTerminated() {
+    VaadinConnectController controller = createVaadinController(
+        new BulkheadTestClass());
+    VaadinServiceBulkhead bulkhead = getBulkhead(controller,
+        "BulkheadTestClass.limitedStreamingMethod");
+
+    MockHttpServletRequest request = createAsyncRequest();
+    callAsyncServiceMethod(controller, "limitedStreamingMethod", request);
+    assertEquals(1, bulkhead.getActiveCallCount());
+    MockHttpServletResponse rejectedResponse = callAsyncServiceMethod(
+        controller, "limitedStreamingMethod", createAsyncRequest());
+    assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(),
+        rejectedResponse.getStatus());
+
+    ((MockAsyncContext) request.getAsyncContext()).complete();
+    assertEquals(0, bulkhead.getActiveCallCount());
+  }
+
+  @Test
+  public void should_ReleaseBulkheadPermit_When_IteratedResultIsWritten()
+      throws Exception {
+    VaadinConnectController controller = createVaadinController(
+        new BulkheadTestClass());
+    VaadinServiceBulkhead bulkhead = getBulkhead(controller,
+        "BulkheadTestClass.limitedIteratedMethod");
+
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    controller.serveVaadinService("BulkheadTestClass", "limitedIteratedMethod",
+        createRequestParameters("{}"), response);
+
+    assertEquals("[\"a\",\"b\"]", response.getContentAsString());
+    assertEquals(0, bulkhead.getActiveCallCount());
+  }
+
+  @Test
+  public void should_LimitConcurrentCalls_When_BulkheadLimitIsSet() {
+    Class<?> serviceClass = TEST_SERVICE.getClass();
+    ApplicationContext contextMock = mock(ApplicationContext.class);
+    when(contextMock.getBeansWithAnnotation(VaadinService.class)).thenReturn(
+        Collections.singletonMap(serviceClass.getName(), TEST_SERVICE));
+    when(contextMock.getType(serviceClass.getName()))
+        .thenReturn((Class) serviceClass);
+    VaadinConnectController controller = new VaadinConnectController(
+        new ObjectMapper(), mock(VaadinConnectAccessChecker.class),
+        mock(VaadinServiceNameChecker.class), contextMock,
+        new VaadinConnectController.Settings().bulkheadLimits(
+            VaadinServiceBulkhead.parseLimits(TEST_SERVICE_NAME + "=3")));
+
+    List<VaadinServiceBulkhead> bulkheads = controller.getBulkheads();
+    assertEquals(1, bulkheads.size());
+    assertEquals(TEST_SERVICE_NAME, bulkheads.get(0).getName());
+    assertSame(bulkheads.get(0),
+        controller.vaadinServices.get(TEST_SERVICE_NAME.toLowerCase()).methods
+            .get(TEST_METHOD.getName().toLowerCase()).getBulkhead());
+  }
+
+  @Test
+  public void should_RecordCallPhasesAndBodySizes_When_CallRecorderIsSet() {
+    List<VaadinServiceCallTimer> timers = new ArrayList<>();
+    List<Integer> statuses = new ArrayList<>();
+    VaadinConnectController controller = createVaadinController(TEST_SERVICE);
+    controller.setCallRecorder((timer, status) -> {
+      timers.add(timer);
+      statuses.add(status);
+    });
+    String requestBody = "{\"value\": 222}";
+
+    ResponseEntity<String> response = callServiceMethod(controller,
+        TEST_SERVICE_NAME, TEST_METHOD.getName(),
+        createRequestParameters(requestBody));
+
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertEquals(Collections.singletonList(HttpStatus.OK.value()), statuses);
+    VaadinServiceCallTimer timer = timers.get(0);
+    assertEquals(TEST_SERVICE_NAME, timer.getServiceName());
+    assertEquals(TEST_METHOD.getName(), timer.getMethodName());
+    assertTrue(timer.isMeasured(VaadinServiceCallTimer.ACCESS_CHECK));
+    assertTrue(timer.isMeasured(VaadinServiceCallTimer.DESERIALIZATION));
+    assertFalse(timer.isMeasured(VaadinServiceCallTimer.VALIDATION));
+    assertTrue(timer.isMeasured(VaadinServiceCallTimer.INVOCATION));
+    assertTrue(timer.isMeasured(VaadinServiceCallTimer.SERIALIZATION));
+    assertEquals(requestBody.length(), timer.getRequestBytes());
+    assertEquals(response.getBody().length(), timer.getResponseBytes());
+  }
+
+  @Test
+  public void should_RecordErrorStatus_When_CallFails() {
+    List<VaadinServiceCallTimer> timers = new ArrayList<>();
+    List<Integer> statuses = new ArrayList<>();
+    VaadinConnectController controller = createVaadinController(TEST_SERVICE);
+    controller.setCallRecorder((timer, status) -> {
+      timers.add(timer);
+      statuses.add(status);
+    });
+
+    callServiceMethod(controller, TEST_SERVICE_NAME, TEST_METHOD.getName(),
+        createRequestParameters("{\"value\": [222]}"));
+
+    assertEquals(Collections.singletonList(HttpStatus.BAD_REQUEST.value()),
+        statuses);
+    VaadinServiceCallTimer timer = timers.get(0);
+    assertTrue(timer.isMeasured(VaadinServiceCallTimer.DESERIALIZATION));
+    assertFalse(timer.isMeasured(VaadinServiceCallTimer.INVOCATION));
+    assertTrue(timer.isMeasured(VaadinServiceCallTimer.SERIALIZATION));
+    assertTrue(timer.getResponseBytes() > 0);
+  }
+
+  @Test
+  public void should_RecordErrorStatus_When_AsyncResultFails()
+      throws Exception {
+    List<VaadinServiceCallTimer> timers = new ArrayList<>();
+    List<Integer> statuses = new ArrayList<>();
+    AsyncTestClass service = new AsyncTestClass();
+    VaadinConnectController controller = createVaadinController(service);
+    controller.setCallRecorder((timer, status) -> {
+      timers.add(timer);
+      statuses.add(status);
+    });
+
+    MockHttpServletRequest request = createAsyncRequest();
+    MockHttpServletResponse response = callAsyncServiceMethod(controller,
+        "pendingMethod", request);
+    assertTrue(statuses.isEmpty());
+
+    service.pendingResult.completeExceptionally(new IllegalStateException());
+    ((MockAsyncContext) request.getAsyncContext()).complete();
+
+    assertEquals(
+        Collections.singletonList(HttpStatus.INTERNAL_SERVER_ERROR.value()),
+        statuses);
+    assertEquals(response.getContentAsByteArray().length,
+        timers.get(0).getResponseBytes());
+  }
+
+  @Test
+  public void should_RecordErrorStatus_When_AsyncResultFailsInServiceExecutor() {
+    List<Integer> statuses = new ArrayList<>();
+    VaadinConnectController controller = createVaadinController(
+        new AsyncTestClass(), Runnable::run);
+    controller.setCallRecorder((timer, status) -> statuses.add(status));
+
+    MockHttpServletRequest request = createAsyncRequest();
+    callAsyncServiceMethod(controller, "completedExceptionallyMethod", request);
+    ((MockAsyncContext) request.getAsyncContext()).complete();
+
+    assertEquals(
+        Collections.singletonList(HttpStatus.INTERNAL_SERVER_ERROR.value()),
+        statuses);
+  }
+
+  @Test
+  public void should_RecordEachCall_When_BatchIsCalledWithCallRecorder()
+      throws Exception {
+    List<VaadinServiceCallTimer> timers = new ArrayList<>();
+    List<Integer> statuses = new ArrayList<>();
+    VaadinConnectController controller = createBatchController(null, 10);
+    controller.setCallRecorder((timer, status) -> {
+      timers.add(timer);
+      statuses.add(status);
+    });
+
+    callBatch(controller,
+        "[{\"service\": \"BatchTestClass\", \"method\": \"echoMethod\", \"params\": {\"text\": \"first\"}},"
+            + "{\"service\": \"BatchTestClass\", \"method\": \"echoMethod\", \"params\": {\"text\": [1]}}]");
+
+    assertEquals(
+        Arrays.asList(HttpStatus.OK.value(), HttpStatus.BAD_REQUEST.value()),
+        statuses);
+    VaadinServiceCallTimer timer = timers.get(0);
+    assertEquals("BatchTestClass", timer.getServiceName());
+    assertEquals("echoMethod", timer.getMethodName());
+    assertTrue(timer.isMeasured(VaadinServiceCallTimer.SERIALIZATION));
+    assertEquals(-1, timer.getRequestBytes());
+    assertEquals(-1, timer.getResponseBytes());
+  }
+
+  @Test
+  public void should_InvokeInterceptors_When_InterceptorsAreRegistered() {
+    List<Object> intercepted = new ArrayList<>();
+    VaadinServiceInterceptor interceptor = invocation -> {
+      intercepted.add(invocation.getServiceName());
+      intercepted.add(invocation.getMethod());
+      intercepted.add(invocation.getArguments()[0]);
+      return "intercepted-" + invocation.proceed();
+    };
+
+    ResponseEntity<String> response = callServiceMethod(
+        createInterceptedController(interceptor), TEST_SERVICE_NAME,
+        TEST_METHOD.getName(), createRequestParameters("{\"value\": 222}"));
+
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertEquals("\"intercepted-222-test\"", response.getBody());
+    assertEquals(Arrays.asList(TEST_SERVICE_NAME, TEST_METHOD, 222),
+        intercepted);
+  }
+
+  @Test
+  public void should_Return400_When_InterceptorThrowsVaadinConnectException() {
+    ResponseEntity<String> response = callServiceMethod(
+        createInterceptedController(invocation -> {
+          throw new VaadinConnectException("Rate limit exceeded");
+        }), TEST_SERVICE_NAME, TEST_METHOD.getName(),
+        createRequestParameters("{\"value\": 222}"));
+
+    assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    assertTrue(response.getBody().contains("Rate limit exceeded"));
+  }
+
+  @Test
+  public void should_Return500_When_InterceptorReturnsIncompatibleResult() {
+    ResponseEntity<String> response = callServiceMethod(
+        createInterceptedController(invocation -> 42), TEST_SERVICE_NAME,
+        TEST_METHOD.getName(), createRequestParameters("{\"value\": 222}"));
+
+    assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
+    assertServiceInfoPresent(response.getBody());
+  }
+
+  private VaadinConnectController createInterceptedController(
+      VaadinServiceInterceptor interceptor) {
+    Class<?> serviceClass = TEST_SERVICE.getClass();
+    ApplicationContext contextMock = mock(ApplicationContext.class);
+    when(contextMock.getBeansWithAnnotation(VaadinService.class)).thenReturn(
+        Collections.singletonMap(serviceClass.getName(), TEST_SERVICE));
+    when(contextMock.getType(serviceClass.getName()))
+        .thenReturn((Class) serviceClass);
+    when(contextMock.getBeansOfType(VaadinServiceInterceptor.class))
+        .thenReturn(Collections.singletonMap("interceptor", interceptor));
+    return new VaadinConnectController(new ObjectMapper(),
+        mock(VaadinConnectAccessChecker.class),
+        mock(VaadinServiceNameChecker.class), contextMock);
+  }
+
   private void assertServiceInfoPresent(String responseBody) {
     assertTrue(String.format(
         "Response body '%s' should have service information in it",
@@ -715,13 +2546,10 @@ public class VaadinConnectControllerTest {
         responseBody), responseBody.contains(TEST_METHOD.getName()));
   }
 
-  private ObjectNode createRequestParameters(String jsonBody) {
-    try {
-      return new ObjectMapper().readValue(jsonBody, ObjectNode.class);
-    } catch (IOException e) {
-      throw new AssertionError(
-          String.format("Failed to deserialize the json: %s", jsonBody), e);
-    }
+  private MockHttpServletRequest createRequestParameters(String jsonBody) {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setContent(jsonBody.getBytes(StandardCharsets.UTF_8));
+    return request;
   }
 
   private <T> VaadinConnectController createVaadinController(T service) {
@@ -737,6 +2565,68 @@ public class VaadinConnectControllerTest {
         accessCheckerMock, nameCheckerMock);
   }
 
+  private <T> VaadinConnectController createVaadinController(T service,
+      Executor serviceExecutor) {
+    return createVaadinController(service,
+        new VaadinConnectController.Settings()
+            .serviceExecutor(serviceExecutor));
+  }
+
+  private <T> VaadinConnectController createVaadinController(T service,
+      VaadinConnectController.Settings settings) {
+    Class<?> serviceClass = service.getClass();
+    ApplicationContext contextMock = mock(ApplicationContext.class);
+    when(contextMock.getBeansWithAnnotation(VaadinService.class))
+        .thenReturn(Collections.singletonMap(serviceClass.getName(), service));
+    when(contextMock.getType(serviceClass.getName()))
+        .thenReturn((Class) serviceClass);
+    return new VaadinConnectController(new ObjectMapper(),
+        mock(VaadinConnectAccessChecker.class),
+        mock(VaadinServiceNameChecker.class), contextMock, settings);
+  }
+
+  private VaadinConnectController createBatchController(Executor batchExecutor,
+      int maxBatchCalls) {
+    return createBatchController(batchExecutor, maxBatchCalls,
+        mock(VaadinConnectAccessChecker.class));
+  }
+
+  private VaadinConnectController createBatchController(Executor batchExecutor,
+      int maxBatchCalls, VaadinConnectAccessChecker accessChecker) {
+    ApplicationContext contextMock = mock(ApplicationContext.class);
+    when(contextMock.getBeansWithAnnotation(VaadinService.class)).thenReturn(
+        Collections.singletonMap("batchTestClass", new BatchTestClass()));
+    when(contextMock.getType("batchTestClass"))
+        .thenReturn((Class) BatchTestClass.class);
+    return new VaadinConnectController(new ObjectMapper(), accessChecker,
+        mock(VaadinServiceNameChecker.class), contextMock,
+        new VaadinConnectController.Settings().batchExecutor(batchExecutor)
+            .maxBatchCalls(maxBatchCalls));
+  }
+
+  private MockHttpServletResponse callWithETag(
+      VaadinConnectController controller, String methodName, String body,
+      String ifNoneMatch) throws IOException {
+    MockHttpServletRequest request = createRequestParameters(body);
+    if (ifNoneMatch != null) {
+      request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+    }
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    controller.serveVaadinService("CachedTestClass", methodName, request,
+        response);
+    return response;
+  }
+
+  private JsonNode callBatch(VaadinConnectController controller, String body)
+      throws IOException {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setContent(body.getBytes(StandardCharsets.UTF_8));
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    controller.serveVaadinServiceBatch(request, response);
+    assertEquals(HttpStatus.OK.value(), response.getStatus());
+    return new ObjectMapper().readTree(response.getContentAsString());
+  }
+
   private <T> VaadinConnectController createVaadinController(T service,
       ObjectMapper vaadinServiceMapper) {
     VaadinConnectAccessChecker accessCheckerMock = mock(
@@ -765,18 +2655,89 @@ public class VaadinConnectControllerTest {
         serviceNameChecker, contextMock);
   }
 
-  private Method createServiceMethodMockThatThrows(Object argument,
+  private ResponseEntity<String> callServiceMethod(
+      VaadinConnectController controller, String serviceName, String methodName,
+      MockHttpServletRequest request) {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    try {
+      controller.serveVaadinService(serviceName, methodName, request, response);
+      String body = response.getContentAsString();
+      return ResponseEntity.status(response.getStatus())
+          .body(body.isEmpty() ? null : body);
+    } catch (IOException e) {
+      throw new AssertionError("Failed to call the service method", e);
+    }
+  }
+
+  private VaadinServiceBulkhead getBulkhead(VaadinConnectController controller,
+      String name) {
+    return controller.getBulkheads().stream()
+        .filter(bulkhead -> bulkhead.getName().equals(name)).findFirst()
+        .orElseThrow(() -> new AssertionError(
+            String.format("Bulkhead '%s' is not found", name)));
+  }
+
+  /**
+   * Waits until the asynchronous request is dispatched, that is, until the
+   * response of a stream, which is written in the stream executor, is complete.
+   */
+  private static void awaitAsyncDispatch(MockHttpServletRequest request)
+      throws InterruptedException {
+    CountDownLatch dispatched = new CountDownLatch(1);
+    ((MockAsyncContext) request.getAsyncContext())
+        .addDispatchHandler(dispatched::countDown);
+    assertTrue("The request is not dispatched",
+        dispatched.await(5, TimeUnit.SECONDS));
+  }
+
+  private MockHttpServletRequest createAsyncRequest() {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setAsyncSupported(true);
+    return request;
+  }
+
+  private MockHttpServletResponse callAsyncServiceMethod(
+      VaadinConnectController controller, String methodName,
+      MockHttpServletRequest request) {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    WebAsyncUtils.getAsyncManager(request).setAsyncWebRequest(
+        new StandardServletAsyncWebRequest(request, response));
+    try {
+      controller.serveVaadinService(
+          controller.vaadinServices.keySet().iterator().next(), methodName,
+          request, response);
+    } catch (IOException e) {
+      throw new AssertionError("Failed to call the service method", e);
+    }
+    return response;
+  }
+
+  private String getContent(MockHttpServletResponse response) {
+    try {
+      return response.getContentAsString();
+    } catch (IOException e) {
+      throw new AssertionError("Failed to read the response content", e);
+    }
+  }
+
+  private ObjectWriter mockFailingWriter(ObjectMapper mapperMock,
+      TypeFactory typeFactoryMock) throws Exception {
+    ObjectWriter writerMock = mock(ObjectWriter.class);
+    when(typeFactoryMock.constructType(String.class))
+        .thenReturn(SimpleType.constructUnsafe(String.class));
+    when(mapperMock.writerFor(SimpleType.constructUnsafe(String.class)))
+        .thenReturn(writerMock);
+    doThrow(new JsonMappingException(null, "sss")).when(writerMock)
+        .writeValue(any(JsonGenerator.class), notNull());
+    return writerMock;
+  }
+
+  private VaadinServiceMethod createServiceMethodMockThatThrows(Object argument,
       Exception exceptionToThrow) throws Exception {
-    Method serviceMethodMock = mock(Method.class);
-    when(serviceMethodMock.invoke(TEST_SERVICE, argument))
-        .thenThrow(exceptionToThrow);
-    when(serviceMethodMock.getParameters())
-        .thenReturn(TEST_METHOD.getParameters());
-    doReturn(TEST_METHOD.getDeclaringClass()).when(serviceMethodMock)
-        .getDeclaringClass();
-    when(serviceMethodMock.getParameterTypes())
-        .thenReturn(TEST_METHOD.getParameterTypes());
-    when(serviceMethodMock.getName()).thenReturn(TEST_METHOD.getName());
+    VaadinServiceMethod serviceMethodMock = spy(
+        new VaadinServiceMethod(TEST_METHOD));
+    doThrow(exceptionToThrow).when(serviceMethodMock).invoke(TEST_SERVICE,
+        new Object[] { argument });
     return serviceMethodMock;
   }
 }
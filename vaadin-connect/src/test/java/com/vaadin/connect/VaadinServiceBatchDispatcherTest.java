@@ -0,0 +1,111 @@
+package com.vaadin.connect;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class VaadinServiceBatchDispatcherTest {
+  private static final String BODY = "[{\"service\": \"s\", \"method\": \"ok\"},"
+      + "{\"service\": \"s\", \"method\": \"throwing\"},"
+      + "{\"service\": \"s\", \"method\": \"failing\"},"
+      + "{\"service\": \"s\", \"method\": \"ok\"}]";
+
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  private CompletableFuture<VaadinServiceBatchDispatcher.Result> execute(
+      VaadinServiceBatchDispatcher dispatcher, String methodName) {
+    switch (methodName) {
+    case "throwing":
+      throw new IllegalStateException("Unexpected failure");
+    case "failing":
+      CompletableFuture<VaadinServiceBatchDispatcher.Result> result = new CompletableFuture<>();
+      result.completeExceptionally(
+          new IllegalStateException("Unexpected async failure"));
+      return result;
+    default:
+      try {
+        return CompletableFuture.completedFuture(dispatcher
+            .createValueResult(generator -> generator.writeString("ok")));
+      } catch (IOException e) {
+        throw new AssertionError(e);
+      }
+    }
+  }
+
+  private VaadinServiceBatchDispatcher createDispatcher(Executor executor) {
+    VaadinServiceBatchDispatcher[] dispatcher = new VaadinServiceBatchDispatcher[1];
+    dispatcher[0] = new VaadinServiceBatchDispatcher(mapper, executor, 10,
+        (serviceName, methodName, params) -> execute(dispatcher[0],
+            methodName));
+    return dispatcher[0];
+  }
+
+  private JsonNode dispatch(VaadinServiceBatchDispatcher dispatcher)
+      throws IOException {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setContent(BODY.getBytes(StandardCharsets.UTF_8));
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    dispatcher.dispatch(request, response);
+    assertEquals(HttpStatus.OK.value(), response.getStatus());
+    return mapper.readTree(response.getContentAsString());
+  }
+
+  private static void assertResults(JsonNode results) {
+    assertEquals(4, results.size());
+    assertEquals(200, results.get(0).get("status").asInt());
+    assertEquals("ok", results.get(0).get("result").asText());
+    assertEquals(500, results.get(1).get("status").asInt());
+    assertTrue(results.get(1).get("error").get("message").asText()
+        .contains("Service 's' method 'throwing' execution failure"));
+    assertEquals(500, results.get(2).get("status").asInt());
+    assertTrue(results.get(2).get("error").get("message").asText()
+        .contains("Service 's' method 'failing' execution failure"));
+    assertEquals(200, results.get(3).get("status").asInt());
+    assertEquals("ok", results.get(3).get("result").asText());
+  }
+
+  @Test
+  public void should_ReturnErrorInCallEntry_When_CallFailsUnexpectedly()
+      throws IOException {
+    assertResults(dispatch(createDispatcher(null)));
+  }
+
+  @Test
+  public void should_ReturnErrorInCallEntry_When_CallFailsUnexpectedlyInBatchExecutor()
+      throws IOException {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      assertResults(dispatch(createDispatcher(executor)));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void should_ReturnServiceUnavailableInCallEntry_When_BatchExecutorRejectsCall()
+      throws IOException {
+    JsonNode results = dispatch(createDispatcher(task -> {
+      throw new RejectedExecutionException("Rejected");
+    }));
+
+    assertEquals(4, results.size());
+    for (JsonNode result : results) {
+      assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(),
+          result.get("status").asInt());
+    }
+  }
+}
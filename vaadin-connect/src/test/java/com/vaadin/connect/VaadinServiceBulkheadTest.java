@@ -0,0 +1,169 @@
+package com.vaadin.connect;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class VaadinServiceBulkheadTest {
+
+  @Bulkhead(maxConcurrentCalls = 4, maxQueuedCalls = 2, maxWaitTime = 100, retryAfter = 3)
+  public static class LimitedService {
+    public void serviceLimitedMethod() {
+    }
+
+    @Bulkhead(maxConcurrentCalls = 1)
+    public void methodLimitedMethod() {
+    }
+  }
+
+  public static class UnlimitedService {
+    public void unlimitedMethod() {
+    }
+
+    @Bulkhead(maxConcurrentCalls = 0)
+    public void invalidMethod() {
+    }
+  }
+
+  @Test
+  public void should_RejectCall_When_LimitIsReached() {
+    VaadinServiceBulkhead bulkhead = new VaadinServiceBulkhead("test", 2, 0, 0,
+        1);
+
+    assertTrue(bulkhead.tryAcquire());
+    assertTrue(bulkhead.tryAcquire());
+    assertFalse(bulkhead.tryAcquire());
+    assertEquals(2, bulkhead.getActiveCallCount());
+    assertEquals(1, bulkhead.getRejectedCallCount());
+
+    bulkhead.release();
+    assertTrue(bulkhead.tryAcquire());
+    assertEquals(1, bulkhead.getRejectedCallCount());
+  }
+
+  @Test
+  public void should_WaitForPermit_When_QueueIsNotFull() throws Exception {
+    VaadinServiceBulkhead bulkhead = new VaadinServiceBulkhead("test", 1, 1,
+        TimeUnit.SECONDS.toNanos(10), 1);
+    assertTrue(bulkhead.tryAcquire());
+
+    CompletableFuture<Boolean> queuedCall = CompletableFuture
+        .supplyAsync(bulkhead::tryAcquire);
+    while (bulkhead.getQueuedCallCount() == 0) {
+      Thread.sleep(1);
+    }
+    assertFalse(bulkhead.tryAcquire());
+    bulkhead.release();
+
+    assertTrue(queuedCall.get(10, TimeUnit.SECONDS));
+    assertEquals(0, bulkhead.getQueuedCallCount());
+    assertEquals(1, bulkhead.getActiveCallCount());
+    assertEquals(1, bulkhead.getRejectedCallCount());
+  }
+
+  @Test
+  public void should_RejectCall_When_WaitTimesOut() {
+    VaadinServiceBulkhead bulkhead = new VaadinServiceBulkhead("test", 1, 1,
+        TimeUnit.MILLISECONDS.toNanos(10), 1);
+    assertTrue(bulkhead.tryAcquire());
+
+    assertFalse(bulkhead.tryAcquire());
+    assertEquals(0, bulkhead.getQueuedCallCount());
+    assertEquals(1, bulkhead.getRejectedCallCount());
+  }
+
+  @Test
+  public void should_ParseLimits_When_PropertyIsValid() {
+    Map<String, Integer> limits = VaadinServiceBulkhead
+        .parseLimits(" ReportService = 4, ReportService.export=1 ");
+
+    assertEquals(2, limits.size());
+    assertEquals(Integer.valueOf(4), limits.get("reportservice"));
+    assertEquals(Integer.valueOf(1), limits.get("reportservice.export"));
+    assertTrue(VaadinServiceBulkhead.parseLimits(null).isEmpty());
+    assertTrue(VaadinServiceBulkhead.parseLimits(" ").isEmpty());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void should_Throw_When_LimitIsNotNumber() {
+    VaadinServiceBulkhead.parseLimits("ReportService=many");
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void should_Throw_When_LimitHasNoValue() {
+    VaadinServiceBulkhead.parseLimits("ReportService");
+  }
+
+  @Test
+  public void should_ShareServiceBulkhead_When_ServiceIsAnnotated()
+      throws Exception {
+    VaadinServiceBulkhead serviceBulkhead = VaadinServiceBulkhead.forService(
+        "LimitedService", LimitedService.class, Collections.emptyMap());
+
+    assertEquals("LimitedService", serviceBulkhead.getName());
+    assertEquals(3, serviceBulkhead.getRetryAfterSeconds());
+    assertSame(serviceBulkhead, forMethod(LimitedService.class,
+        "serviceLimitedMethod", Collections.emptyMap(), serviceBulkhead));
+  }
+
+  @Test
+  public void should_CreateMethodBulkhead_When_MethodIsAnnotated()
+      throws Exception {
+    VaadinServiceBulkhead serviceBulkhead = VaadinServiceBulkhead.forService(
+        "LimitedService", LimitedService.class, Collections.emptyMap());
+    VaadinServiceBulkhead methodBulkhead = forMethod(LimitedService.class,
+        "methodLimitedMethod", Collections.emptyMap(), serviceBulkhead);
+
+    assertEquals("LimitedService.methodLimitedMethod",
+        methodBulkhead.getName());
+    assertTrue(methodBulkhead.tryAcquire());
+    assertFalse(methodBulkhead.tryAcquire());
+  }
+
+  @Test
+  public void should_OverrideAnnotations_When_LimitsAreSet() throws Exception {
+    Map<String, Integer> limits = VaadinServiceBulkhead
+        .parseLimits("LimitedService=0,LimitedService.methodLimitedMethod=2,"
+            + "UnlimitedService.unlimitedMethod=1");
+
+    assertNull(VaadinServiceBulkhead.forService("LimitedService",
+        LimitedService.class, limits));
+    VaadinServiceBulkhead methodBulkhead = forMethod(LimitedService.class,
+        "methodLimitedMethod", limits, null);
+    assertTrue(methodBulkhead.tryAcquire());
+    assertTrue(methodBulkhead.tryAcquire());
+    assertFalse(methodBulkhead.tryAcquire());
+
+    assertNull(VaadinServiceBulkhead.forService("UnlimitedService",
+        UnlimitedService.class, limits));
+    VaadinServiceBulkhead propertyBulkhead = forMethod(UnlimitedService.class,
+        "unlimitedMethod", limits, null);
+    assertTrue(propertyBulkhead.tryAcquire());
+    assertFalse(propertyBulkhead.tryAcquire());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void should_Throw_When_AnnotationLimitIsNotPositive()
+      throws Exception {
+    forMethod(UnlimitedService.class, "invalidMethod", Collections.emptyMap(),
+        null);
+  }
+
+  private VaadinServiceBulkhead forMethod(Class<?> serviceType,
+      String methodName, Map<String, Integer> limits,
+      VaadinServiceBulkhead serviceBulkhead) throws NoSuchMethodException {
+    Method method = serviceType.getMethod(methodName);
+    return VaadinServiceBulkhead.forMethod(serviceType.getSimpleName(),
+        serviceType, method, limits, serviceBulkhead);
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.connect;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class VaadinServiceExecutorsTest {
+  @Rule
+  public final ExpectedException exception = ExpectedException.none();
+
+  @Test
+  public void should_UseRequestThreads_When_ExecutorIsPlatformOrNotSet() {
+    assertNull(VaadinServiceExecutors.create(null));
+    assertNull(VaadinServiceExecutors.create("platform"));
+  }
+
+  @Test
+  public void should_CreateVirtualThreadExecutor_When_JavaVersionSupportsIt() {
+    boolean virtualThreadsSupported = Stream.of(Executors.class.getMethods())
+        .anyMatch(method -> method.getName()
+            .equals("newVirtualThreadPerTaskExecutor"));
+
+    assertEquals(virtualThreadsSupported,
+        VaadinServiceExecutors.create("virtual") != null);
+  }
+
+  @Test
+  public void should_Throw_When_ExecutorIsNotSupported() {
+    exception.expect(IllegalStateException.class);
+    exception.expectMessage("'carrier'");
+    VaadinServiceExecutors.create("carrier");
+  }
+
+  @Test
+  public void should_ExecuteBatchCallsInRequestThreads_When_NoBatchThreads() {
+    assertNull(VaadinServiceExecutors.createBatchExecutor(0));
+  }
+
+  @Test
+  public void should_RunBatchCallInCallerThread_When_AllBatchThreadsAreBusy()
+      throws Exception {
+    Executor executor = VaadinServiceExecutors.createBatchExecutor(1);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch started = new CountDownLatch(1);
+    AtomicReference<String> busyThread = new AtomicReference<>();
+    executor.execute(() -> {
+      busyThread.set(Thread.currentThread().getName());
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    AtomicReference<Thread> callerThread = new AtomicReference<>();
+    executor.execute(() -> callerThread.set(Thread.currentThread()));
+    release.countDown();
+
+    assertTrue(busyThread.get().startsWith("vaadin-connect-batch-"));
+    assertEquals(Thread.currentThread(), callerThread.get());
+  }
+
+  @Test
+  public void should_WriteStreamsInSeparateDaemonThreads_When_StreamsAreWrittenAtSameTime()
+      throws Exception {
+    Executor executor = VaadinServiceExecutors.createStreamExecutor();
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch started = new CountDownLatch(2);
+    Thread[] threads = new Thread[2];
+    for (int i = 0; i < threads.length; i++) {
+      int index = i;
+      executor.execute(() -> {
+        threads[index] = Thread.currentThread();
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+    }
+
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    release.countDown();
+    for (Thread thread : threads) {
+      assertTrue(thread.getName().startsWith("vaadin-connect-stream-"));
+      assertTrue(thread.isDaemon());
+    }
+    assertTrue(threads[0] != threads[1]);
+  }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2000-2019 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.vaadin.connect;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.context.ApplicationContext;
+
+import com.vaadin.connect.auth.VaadinConnectAccessChecker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class VaadinServiceIndexTest {
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private URLClassLoader indexClassLoader;
+
+  @VaadinService
+  public static class IndexedService {
+    public String greet(String name) {
+      return "Hello, " + name;
+    }
+
+    public int sum(int first, int second) {
+      return first + second;
+    }
+
+    public int sum(int[] numbers) {
+      return Arrays.stream(numbers).sum();
+    }
+  }
+
+  @VaadinService
+  public static class AnotherIndexedService {
+    public void reset() {
+    }
+  }
+
+  public static class IndexedServiceSubclass extends IndexedService {
+  }
+
+  @After
+  public void closeClassLoader() throws IOException {
+    if (indexClassLoader != null) {
+      indexClassLoader.close();
+    }
+  }
+
+  @Test
+  public void should_ListServicesAndMethodsSorted_When_IndexIsCreated()
+      throws IOException {
+    String index = VaadinServiceIndex.create(
+        Arrays.asList(IndexedService.class, AnotherIndexedService.class));
+
+    Map<?, ?> json = new ObjectMapper().readValue(index, Map.class);
+    assertEquals(Collections.singletonMap("services",
+        Arrays.asList(service(AnotherIndexedService.class, method("reset")),
+            service(IndexedService.class,
+                method("greet", String.class.getName()), method("sum", "[I"),
+                method("sum", "int", "int")))),
+        json);
+  }
+
+  @Test
+  public void should_ReturnNull_When_NoIndexResourceExists() {
+    assertNull(VaadinServiceIndex.load(new URLClassLoader(new URL[0], null)));
+  }
+
+  @Test
+  public void should_ResolveIndexedMethods_When_IndexIsLoaded()
+      throws Exception {
+    VaadinServiceIndex index = VaadinServiceIndex
+        .load(createIndexClassLoader(VaadinServiceIndex
+            .create(Collections.singletonList(IndexedService.class))));
+
+    assertNotNull(index);
+    assertEquals(Collections.singleton(IndexedService.class.getName()),
+        index.getServiceClassNames());
+    assertEquals(
+        Arrays.asList(IndexedService.class.getMethod("greet", String.class),
+            IndexedService.class.getMethod("sum", int[].class),
+            IndexedService.class.getMethod("sum", int.class, int.class)),
+        Arrays.asList(index.getMethods(IndexedService.class.getName(),
+            IndexedService.class)));
+  }
+
+  @Test(expected = NoSuchMethodException.class)
+  public void should_Throw_When_IndexedMethodDoesNotExist() throws Exception {
+    VaadinServiceIndex index = VaadinServiceIndex
+        .load(createIndexClassLoader(String.format(
+            "{\"services\":[{\"class\":\"%s\",\"methods\":"
+                + "[{\"name\":\"removed\",\"parameterTypes\":[]}]}]}",
+            IndexedService.class.getName())));
+
+    index.getMethods(IndexedService.class.getName(), IndexedService.class);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void should_Throw_When_IndexIsMalformed() throws IOException {
+    VaadinServiceIndex.load(createIndexClassLoader("{\"services\":[{}]}"));
+  }
+
+  @Test
+  public void should_RegisterIndexedServicesOnly_When_IndexIsPresent()
+      throws IOException {
+    ApplicationContext contextMock = mock(ApplicationContext.class);
+    when(contextMock.getClassLoader())
+        .thenReturn(createIndexClassLoader(VaadinServiceIndex
+            .create(Collections.singletonList(IndexedService.class))));
+    when(contextMock.getBeanNamesForAnnotation(VaadinService.class))
+        .thenReturn(new String[] { "indexedService" });
+    when(contextMock.getBeanNamesForType(IndexedService.class))
+        .thenReturn(new String[] { "indexedService" });
+    when(contextMock.getType("indexedService"))
+        .thenReturn((Class) IndexedService.class);
+    when(contextMock.getBean("indexedService"))
+        .thenReturn(new IndexedService());
+
+    VaadinConnectController controller = createController(contextMock);
+
+    verify(contextMock, never()).getBeansWithAnnotation(VaadinService.class);
+    assertEquals(Collections.singleton("indexedservice"),
+        controller.vaadinServices.keySet());
+    assertEquals(2,
+        controller.vaadinServices.get("indexedservice").methods.size());
+  }
+
+  @Test
+  public void should_RegisterServicesNotIndexed_When_IndexIsPresent()
+      throws IOException {
+    ApplicationContext contextMock = mock(ApplicationContext.class);
+    when(contextMock.getClassLoader())
+        .thenReturn(createIndexClassLoader(VaadinServiceIndex
+            .create(Collections.singletonList(IndexedService.class))));
+    when(contextMock.getBeanNamesForAnnotation(VaadinService.class))
+        .thenReturn(new String[] { "indexedService", "anotherIndexedService" });
+    when(contextMock.getBeanNamesForType(IndexedService.class)).thenReturn(
+        new String[] { "indexedService", "indexedServiceSubclass" });
+    when(contextMock.getType("indexedService"))
+        .thenReturn((Class) IndexedService.class);
+    when(contextMock.getBean("indexedService"))
+        .thenReturn(new IndexedService());
+    when(contextMock.getType("anotherIndexedService"))
+        .thenReturn((Class) AnotherIndexedService.class);
+    when(contextMock.getBean("anotherIndexedService"))
+        .thenReturn(new AnotherIndexedService());
+
+    VaadinConnectController controller = createController(contextMock);
+
+    verify(contextMock, never()).getBean("indexedServiceSubclass");
+    assertEquals(
+        new HashSet<>(Arrays.asList("indexedservice", "anotherindexedservice")),
+        controller.vaadinServices.keySet());
+    assertEquals(2,
+        controller.vaadinServices.get("indexedservice").methods.size());
+    assertTrue(controller.vaadinServices.get("anotherindexedservice").methods
+        .containsKey("reset"));
+  }
+
+  @Test
+  public void should_FallBackToPublicMethods_When_IndexIsOutOfDate()
+      throws IOException {
+    ApplicationContext contextMock = mock(ApplicationContext.class);
+    when(contextMock.getClassLoader())
+        .thenReturn(createIndexClassLoader(String.format(
+            "{\"services\":[{\"class\":\"%s\",\"methods\":"
+                + "[{\"name\":\"removed\",\"parameterTypes\":[]}]},"
+                + "{\"class\":\"com.example.RemovedService\",\"methods\":[]}]}",
+            AnotherIndexedService.class.getName())));
+    when(contextMock.getBeanNamesForAnnotation(VaadinService.class))
+        .thenReturn(new String[] { "anotherIndexedService" });
+    when(contextMock.getBeanNamesForType(AnotherIndexedService.class))
+        .thenReturn(new String[] { "anotherIndexedService" });
+    when(contextMock.getType("anotherIndexedService"))
+        .thenReturn((Class) AnotherIndexedService.class);
+    when(contextMock.getBean("anotherIndexedService"))
+        .thenReturn(new AnotherIndexedService());
+
+    VaadinConnectController controller = createController(contextMock);
+
+    assertTrue(controller.vaadinServices.get("anotherindexedservice").methods
+        .containsKey("reset"));
+  }
+
+  private VaadinConnectController createController(ApplicationContext context) {
+    return new VaadinConnectController(new ObjectMapper(),
+        mock(VaadinConnectAccessChecker.class), new VaadinServiceNameChecker(),
+        context);
+  }
+
+  private ClassLoader createIndexClassLoader(String index) throws IOException {
+    File root = temporaryFolder.newFolder();
+    Path indexFile = root.toPath().resolve(VaadinServiceIndex.RESOURCE_NAME);
+    Files.createDirectories(indexFile.getParent());
+    Files.write(indexFile, index.getBytes(StandardCharsets.UTF_8));
+    indexClassLoader = new URLClassLoader(new URL[] { root.toURI().toURL() },
+        getClass().getClassLoader());
+    return indexClassLoader;
+  }
+
+  private static Map<String, Object> service(Class<?> serviceClass,
+      Map<?, ?>... methods) {
+    Map<String, Object> service = new LinkedHashMap<>();
+    service.put("class", serviceClass.getName());
+    service.put("methods", Arrays.asList(methods));
+    return service;
+  }
+
+  private static Map<String, Object> method(String name,
+      String... parameterTypes) {
+    Map<String, Object> method = new LinkedHashMap<>();
+    method.put("name", name);
+    method.put("parameterTypes", Arrays.asList(parameterTypes));
+    return method;
+  }
+}
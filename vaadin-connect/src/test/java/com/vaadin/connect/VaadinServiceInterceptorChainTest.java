@@ -0,0 +1,228 @@
+package com.vaadin.connect;
+
+import java.lang.reflect.Method;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.vaadin.connect.exception.VaadinConnectException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class VaadinServiceInterceptorChainTest {
+  @Rule
+  public final ExpectedException exception = ExpectedException.none();
+
+  private final List<String> events = new ArrayList<>();
+
+  public class TestService {
+    public String greet(String name) {
+      events.add("method");
+      return "Hello " + name;
+    }
+
+    public String fail() throws VaadinConnectException {
+      throw new VaadinConnectException("Failure");
+    }
+
+    public int count() {
+      return 1;
+    }
+  }
+
+  @Order(2)
+  private class SecondInterceptor implements VaadinServiceInterceptor {
+    @Override
+    public Object intercept(VaadinServiceInvocation invocation)
+        throws Exception {
+      events.add("second");
+      return invocation.proceed();
+    }
+  }
+
+  @Order(1)
+  private class FirstInterceptor implements VaadinServiceInterceptor {
+    @Override
+    public Object intercept(VaadinServiceInvocation invocation)
+        throws Exception {
+      events.add("first");
+      return invocation.proceed();
+    }
+  }
+
+  @After
+  public void clearSecurityContext() {
+    SecurityContextHolder.clearContext();
+  }
+
+  @Test
+  public void should_SortInterceptorsByOrder() {
+    Map<String, VaadinServiceInterceptor> beans = new LinkedHashMap<>();
+    beans.put("second", new SecondInterceptor());
+    beans.put("first", new FirstInterceptor());
+    ApplicationContext context = mock(ApplicationContext.class);
+    when(context.getBeansOfType(VaadinServiceInterceptor.class))
+        .thenReturn(beans);
+
+    VaadinServiceInterceptor[] interceptors = VaadinServiceInterceptorChain
+        .getInterceptors(context);
+
+    assertEquals(2, interceptors.length);
+    assertSame(beans.get("first"), interceptors[0]);
+    assertSame(beans.get("second"), interceptors[1]);
+  }
+
+  @Test
+  public void should_ReturnNoInterceptors_When_ThereAreNoBeans() {
+    assertEquals(0, VaadinServiceInterceptorChain
+        .getInterceptors(mock(ApplicationContext.class)).length);
+  }
+
+  @Test
+  public void should_InvokeInterceptorsAroundMethod() throws Exception {
+    Object result = createChain("greet", new Object[] { "world" },
+        new FirstInterceptor(), new SecondInterceptor()).invoke();
+
+    assertEquals("Hello world", result);
+    assertEquals(Arrays.asList("first", "second", "method"), events);
+  }
+
+  @Test
+  public void should_ExposeInvocationDetails() throws Exception {
+    Object[] arguments = { "world" };
+    createChain("greet", arguments, invocation -> {
+      assertEquals("TestService", invocation.getServiceName());
+      assertEquals("greet", invocation.getMethod().getName());
+      assertSame(arguments, invocation.getArguments());
+      invocation.getArguments()[0] = "interceptor";
+      return invocation.proceed();
+    }).invoke();
+
+    assertEquals("interceptor", arguments[0]);
+  }
+
+  @Test
+  public void should_NotInvokeMethod_When_InterceptorReturnsResult()
+      throws Exception {
+    Object result = createChain("greet", new Object[] { "world" },
+        invocation -> "Cached", new FirstInterceptor()).invoke();
+
+    assertEquals("Cached", result);
+    assertTrue(events.isEmpty());
+  }
+
+  @Test
+  public void should_InvokeMethodAgain_When_InterceptorProceedsTwice()
+      throws Exception {
+    createChain("greet", new Object[] { "world" }, invocation -> {
+      invocation.proceed();
+      return invocation.proceed();
+    }, new FirstInterceptor()).invoke();
+
+    assertEquals(Arrays.asList("first", "method", "first", "method"), events);
+  }
+
+  @Test
+  public void should_AcceptBoxedResult_When_MethodReturnsPrimitive()
+      throws Exception {
+    assertEquals(42,
+        createChain("count", new Object[0], invocation -> 42).invoke());
+  }
+
+  @Test
+  public void should_Throw_When_InterceptorReturnsIncompatibleResult()
+      throws Exception {
+    exception.expect(IllegalStateException.class);
+    exception.expectMessage("java.lang.Integer");
+    createChain("greet", new Object[] { "world" }, invocation -> 42).invoke();
+  }
+
+  @Test
+  public void should_ThrowMethodException_When_MethodFails() throws Exception {
+    exception.expect(VaadinConnectException.class);
+    exception.expectMessage("Failure");
+    createChain("fail", new Object[0], new FirstInterceptor()).invoke();
+  }
+
+  @Test
+  public void should_RejectArguments_When_ArgumentsDoNotMatch()
+      throws Exception {
+    VaadinServiceInterceptorChain chain = createChain("greet",
+        new Object[] { 42 }, new FirstInterceptor());
+    try {
+      chain.invoke();
+    } catch (IllegalArgumentException expected) {
+      assertTrue(chain.isArgumentsRejected());
+      return;
+    }
+    throw new AssertionError("The arguments should be rejected");
+  }
+
+  @Test
+  public void should_NotRejectArguments_When_InterceptorThrowsIllegalArgumentException()
+      throws Exception {
+    VaadinServiceInterceptorChain chain = createChain("greet",
+        new Object[] { "world" }, invocation -> {
+          throw new IllegalArgumentException("Interceptor failure");
+        });
+    try {
+      chain.invoke();
+    } catch (IllegalArgumentException expected) {
+      assertFalse(chain.isArgumentsRejected());
+      return;
+    }
+    throw new AssertionError("The interceptor exception should be thrown");
+  }
+
+  @Test
+  public void should_ReturnAuthenticatedPrincipal() {
+    TestingAuthenticationToken authentication = new TestingAuthenticationToken(
+        "user", null);
+    SecurityContextHolder.getContext().setAuthentication(authentication);
+
+    Principal principal = createChain("count", new Object[0]).getPrincipal();
+
+    assertSame(authentication, principal);
+  }
+
+  @Test
+  public void should_ReturnNullPrincipal_When_CallIsAnonymous() {
+    SecurityContextHolder.getContext().setAuthentication(
+        new AnonymousAuthenticationToken("key", "anonymousUser",
+            AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS")));
+
+    assertNull(createChain("count", new Object[0]).getPrincipal());
+  }
+
+  private VaadinServiceInterceptorChain createChain(String methodName,
+      Object[] arguments, VaadinServiceInterceptor... interceptors) {
+    for (Method method : TestService.class.getMethods()) {
+      if (method.getName().equals(methodName)) {
+        return VaadinServiceInterceptorChain.create(interceptors, "TestService",
+            new VaadinServiceMethod(method), new TestService(), arguments);
+      }
+    }
+    throw new AssertionError(
+        String.format("Failed to find a method '%s'", methodName));
+  }
+}
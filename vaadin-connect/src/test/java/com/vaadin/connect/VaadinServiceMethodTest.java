@@ -0,0 +1,292 @@
+package com.vaadin.connect;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import reactor.core.publisher.Flux;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class VaadinServiceMethodTest {
+  @Rule
+  public final ExpectedException exception = ExpectedException.none();
+
+  public static class TestService {
+    public String concat(int number, long otherNumber, String text) {
+      return number + "-" + otherNumber + "-" + text;
+    }
+
+    public void noReturnValue() {
+      // no op
+    }
+
+    public static String staticMethod(String text) {
+      return text + "-static";
+    }
+
+    public String throwsException() {
+      throw new IllegalStateException("OOPS");
+    }
+
+    public CompletionStage<List<String>> asyncList() {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    public CompletableFuture<Long> asyncNumber() {
+      return CompletableFuture.completedFuture(1L);
+    }
+
+    public Flux<Long> streamingNumbers() {
+      return Flux.empty();
+    }
+
+    public Stream<Number> iteratedNumbers() {
+      return Stream.empty();
+    }
+
+    public Iterator<String> iteratedTexts() {
+      return null;
+    }
+
+    public List<String> texts() {
+      return null;
+    }
+
+    @Idempotent
+    public String idempotent() {
+      return "idempotent";
+    }
+
+    @CacheResult
+    public String cached() {
+      return "cached";
+    }
+
+    @SuppressWarnings("rawtypes")
+    public CompletableFuture rawFuture() {
+      return CompletableFuture.completedFuture(null);
+    }
+  }
+
+  public static class InvalidIdempotentService {
+    @Idempotent
+    public Flux<Long> streamingNumbers() {
+      return Flux.empty();
+    }
+  }
+
+  static class NonPublicService {
+    public String nonPublicClassMethod() {
+      return "reflective";
+    }
+  }
+
+  @Test
+  public void should_InvokeMethod_When_ArgumentsMatch() throws Exception {
+    VaadinServiceMethod serviceMethod = createServiceMethod(TestService.class,
+        "concat");
+
+    assertEquals("1-2-three", serviceMethod.invoke(new TestService(),
+        new Object[] { 1, 2L, "three" }));
+  }
+
+  @Test
+  public void should_WidenPrimitiveArguments_When_ArgumentsAreNarrower()
+      throws Exception {
+    VaadinServiceMethod serviceMethod = createServiceMethod(TestService.class,
+        "concat");
+
+    assertEquals("1-2-three", serviceMethod.invoke(new TestService(),
+        new Object[] { (short) 1, 2, "three" }));
+  }
+
+  @Test
+  public void should_ReturnNull_When_MethodHasNoReturnValue() throws Exception {
+    VaadinServiceMethod serviceMethod = createServiceMethod(TestService.class,
+        "noReturnValue");
+
+    assertNull(serviceMethod.invoke(new TestService(), new Object[0]));
+    assertNull(serviceMethod.invoke(new TestService(), null));
+  }
+
+  @Test
+  public void should_InvokeStaticMethod() throws Exception {
+    VaadinServiceMethod serviceMethod = createServiceMethod(TestService.class,
+        "staticMethod");
+
+    assertEquals("text-static",
+        serviceMethod.invoke(new TestService(), new Object[] { "text" }));
+  }
+
+  @Test
+  public void should_ThrowIllegalArgumentException_When_ArgumentTypeMismatches()
+      throws Exception {
+    VaadinServiceMethod serviceMethod = createServiceMethod(TestService.class,
+        "concat");
+
+    exception.expect(IllegalArgumentException.class);
+    serviceMethod.invoke(new TestService(), new Object[] { "1", 2L, "three" });
+  }
+
+  @Test
+  public void should_ThrowIllegalArgumentException_When_NullIsPassedForPrimitive()
+      throws Exception {
+    VaadinServiceMethod serviceMethod = createServiceMethod(TestService.class,
+        "concat");
+
+    exception.expect(IllegalArgumentException.class);
+    serviceMethod.invoke(new TestService(), new Object[] { null, 2L, "three" });
+  }
+
+  @Test
+  public void should_ThrowIllegalArgumentException_When_ArgumentCountMismatches()
+      throws Exception {
+    VaadinServiceMethod serviceMethod = createServiceMethod(TestService.class,
+        "concat");
+
+    exception.expect(IllegalArgumentException.class);
+    serviceMethod.invoke(new TestService(), new Object[] { 1, 2L });
+  }
+
+  @Test
+  public void should_ThrowIllegalArgumentException_When_ServiceObjectIsOfWrongType()
+      throws Exception {
+    VaadinServiceMethod serviceMethod = createServiceMethod(TestService.class,
+        "noReturnValue");
+
+    exception.expect(IllegalArgumentException.class);
+    serviceMethod.invoke(new Object(), new Object[0]);
+  }
+
+  @Test
+  public void should_WrapMethodException_When_MethodThrows() throws Exception {
+    VaadinServiceMethod serviceMethod = createServiceMethod(TestService.class,
+        "throwsException");
+
+    exception.expect(InvocationTargetException.class);
+    exception.expectCause(instanceOf(IllegalStateException.class));
+    serviceMethod.invoke(new TestService(), new Object[0]);
+  }
+
+  @Test
+  public void should_FallBackToReflection_When_MethodClassIsNotPublic()
+      throws Exception {
+    VaadinServiceMethod serviceMethod = createServiceMethod(
+        NonPublicService.class, "nonPublicClassMethod");
+
+    assertEquals("reflective",
+        serviceMethod.invoke(new NonPublicService(), new Object[0]));
+  }
+
+  @Test
+  public void should_UseStageTypeArgumentAsResponseType_When_MethodIsAsync() {
+    VaadinServiceMethod serviceMethod = createServiceMethod(TestService.class,
+        "asyncList");
+
+    assertTrue(serviceMethod.isAsync());
+    ParameterizedType responseType = (ParameterizedType) serviceMethod
+        .getResponseType(null);
+    assertEquals(List.class, responseType.getRawType());
+    assertEquals(String.class, responseType.getActualTypeArguments()[0]);
+  }
+
+  @Test
+  public void should_UseRuntimeResponseType_When_AsyncResultTypeIsUnknown() {
+    VaadinServiceMethod serviceMethod = createServiceMethod(TestService.class,
+        "rawFuture");
+
+    assertTrue(serviceMethod.isAsync());
+    assertEquals(Object.class, serviceMethod.getResponseType(null));
+    assertEquals(Integer.class, serviceMethod.getResponseType(42));
+  }
+
+  @Test
+  public void should_UsePublisherTypeArgumentAsResponseType_When_MethodIsStreaming() {
+    VaadinServiceMethod serviceMethod = createServiceMethod(TestService.class,
+        "streamingNumbers");
+
+    assertTrue(serviceMethod.isStreaming());
+    assertFalse(serviceMethod.isAsync());
+    assertEquals(Long.class, serviceMethod.getResponseType(null));
+    assertEquals(Long.class, serviceMethod.getResponseType(1L));
+  }
+
+  @Test
+  public void should_UseFutureTypeArgumentAsResponseType_When_MethodReturnsFutureSubtype() {
+    VaadinServiceMethod serviceMethod = createServiceMethod(TestService.class,
+        "asyncNumber");
+
+    assertTrue(serviceMethod.isAsync());
+    assertEquals(Long.class, serviceMethod.getResponseType(null));
+  }
+
+  @Test
+  public void should_NotBeAsync_When_MethodReturnsValue() {
+    VaadinServiceMethod serviceMethod = createServiceMethod(TestService.class,
+        "concat");
+
+    assertFalse(serviceMethod.isAsync());
+    assertFalse(serviceMethod.isStreaming());
+  }
+
+  @Test
+  public void should_UseElementTypeArgumentAsElementResponseType_When_MethodIsIterated() {
+    VaadinServiceMethod streamMethod = createServiceMethod(TestService.class,
+        "iteratedNumbers");
+    VaadinServiceMethod iteratorMethod = createServiceMethod(TestService.class,
+        "iteratedTexts");
+
+    assertTrue(streamMethod.isIterated());
+    assertEquals(Number.class, streamMethod.getElementResponseType(null));
+    assertEquals(Integer.class, streamMethod.getElementResponseType(1));
+    assertTrue(iteratorMethod.isIterated());
+    assertEquals(String.class, iteratorMethod.getElementResponseType("a"));
+  }
+
+  @Test
+  public void should_NotBeIterated_When_MethodReturnsCollection() {
+    assertFalse(createServiceMethod(TestService.class, "texts").isIterated());
+    assertFalse(createServiceMethod(TestService.class, "concat").isIterated());
+  }
+
+  @Test
+  public void should_BeIdempotent_When_MethodIsAnnotated() {
+    assertTrue(
+        createServiceMethod(TestService.class, "idempotent").isIdempotent());
+    assertTrue(createServiceMethod(TestService.class, "cached").isIdempotent());
+    assertFalse(
+        createServiceMethod(TestService.class, "concat").isIdempotent());
+  }
+
+  @Test
+  public void should_Throw_When_StreamingMethodIsIdempotent() {
+    exception.expect(IllegalStateException.class);
+    exception.expectMessage(Idempotent.class.getSimpleName());
+    createServiceMethod(InvalidIdempotentService.class, "streamingNumbers");
+  }
+
+  private VaadinServiceMethod createServiceMethod(Class<?> serviceClass,
+      String methodName) {
+    for (Method method : serviceClass.getMethods()) {
+      if (method.getName().equals(methodName)) {
+        return new VaadinServiceMethod(method);
+      }
+    }
+    throw new AssertionError(
+        String.format("Failed to find a method '%s' in class '%s'", methodName,
+            serviceClass));
+  }
+}
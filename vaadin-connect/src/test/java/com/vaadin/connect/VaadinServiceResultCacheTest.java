@@ -0,0 +1,320 @@
+package com.vaadin.connect;
+
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class VaadinServiceResultCacheTest {
+  private static final long TTL_NANOS = 1000;
+
+  @Rule
+  public final ExpectedException exception = ExpectedException.none();
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final AtomicLong clock = new AtomicLong();
+
+  public static class TestService {
+    @CacheResult
+    public String cached(String text) {
+      return text;
+    }
+
+    public String notCached(String text) {
+      return text;
+    }
+
+    @CacheResult
+    public CompletableFuture<String> cachedAsync() {
+      return CompletableFuture.completedFuture("async");
+    }
+
+    @CacheResult
+    public long cachedStream(Stream<String> texts) {
+      return texts.count();
+    }
+
+    @CacheResult(maxEntries = 0)
+    public String noEntries() {
+      return "none";
+    }
+
+    @CacheResult(timeToLive = 0)
+    public String noTimeToLive() {
+      return "none";
+    }
+  }
+
+  @After
+  public void clearSecurityContext() {
+    SecurityContextHolder.clearContext();
+  }
+
+  @Test
+  public void should_CreateSameKey_When_ObjectPropertiesAreInDifferentOrder()
+      throws Exception {
+    VaadinServiceResultCache cache = createCache(10, 0, false);
+
+    String key = cache.createKey(
+        parse("{\"filter\": {\"name\": \"a\", \"age\": 1}, \"page\": 2}"));
+
+    assertEquals("[{\"age\":1,\"name\":\"a\"},2]", key);
+    assertEquals(key, cache.createKey(
+        parse("{\"filter\": {\"age\": 1, \"name\": \"a\"}, \"page\": 2}")));
+  }
+
+  @Test
+  public void should_CreateDifferentKeys_When_ParametersDiffer()
+      throws Exception {
+    VaadinServiceResultCache cache = createCache(10, 0, false);
+
+    assertNotEquals(cache.createKey(parse("{\"text\": \"1\"}")),
+        cache.createKey(parse("{\"text\": 1}")));
+    assertNotEquals(cache.createKey(parse("{\"list\": [1, 2]}")),
+        cache.createKey(parse("{\"list\": [2, 1]}")));
+    assertNotEquals(cache.createKey(parse("{\"text\": \"a,b\"}")),
+        cache.createKey(parse("{\"first\": \"a\", \"second\": \"b\"}")));
+  }
+
+  @Test
+  public void should_CreateSameKey_When_NumberParametersHaveSameValue()
+      throws Exception {
+    VaadinServiceResultCache cache = createCache(10, 0, false, int.class,
+        Double.class);
+
+    assertEquals(cache.createKey(parse("{\"first\": 1, \"second\": 2.5}")),
+        cache.createKey(parse("{\"first\": 1.0, \"second\": 2.50}")));
+    assertEquals(cache.createKey(parse("{\"first\": 1000, \"second\": 0}")),
+        cache.createKey(parse("{\"first\": 1e3, \"second\": 0.0}")));
+    assertNotEquals(cache.createKey(parse("{\"first\": 1, \"second\": 0}")),
+        cache.createKey(parse("{\"first\": 1, \"second\": 0.5}")));
+  }
+
+  @Test
+  public void should_CreateDifferentKeys_When_NumbersBindDifferently()
+      throws Exception {
+    VaadinServiceResultCache cache = createCache(10, 0, false, Object.class,
+        BigDecimal.class, List.class);
+
+    assertNotEquals(
+        cache.createKey(parse("{\"first\": 1, \"second\": 0, \"third\": []}")),
+        cache.createKey(
+            parse("{\"first\": 1.0, \"second\": 0, \"third\": []}")));
+    assertNotEquals(
+        cache.createKey(parse("{\"first\": 0, \"second\": 1, \"third\": []}")),
+        cache.createKey(
+            parse("{\"first\": 0, \"second\": 1.0, \"third\": []}")));
+    assertNotEquals(
+        cache.createKey(parse("{\"first\": 0, \"second\": 0, \"third\": [1]}")),
+        cache.createKey(
+            parse("{\"first\": 0, \"second\": 0, \"third\": [1.0]}")));
+  }
+
+  @Test
+  public void should_CreateDifferentKeys_When_ParametersAreInDifferentOrder()
+      throws Exception {
+    VaadinServiceResultCache cache = createCache(10, 0, false, int.class,
+        int.class);
+
+    // The parameters are bound by their position, so the values are swapped
+    assertNotEquals(cache.createKey(parse("{\"a\": 1, \"b\": 2}")),
+        cache.createKey(parse("{\"b\": 2, \"a\": 1}")));
+  }
+
+  @Test
+  public void should_IncludePrincipalInKey_When_CacheIsPerUser()
+      throws Exception {
+    VaadinServiceResultCache cache = createCache(10, 0, true);
+    JsonNode parameters = parse("{\"text\": \"a\"}");
+
+    String anonymousKey = cache.createKey(parameters);
+    SecurityContextHolder.getContext()
+        .setAuthentication(new TestingAuthenticationToken("alice", null));
+    String aliceKey = cache.createKey(parameters);
+    SecurityContextHolder.getContext()
+        .setAuthentication(new TestingAuthenticationToken("bob", null));
+    String bobKey = cache.createKey(parameters);
+
+    assertEquals("\"\"[\"a\"]", anonymousKey);
+    assertEquals("\"alice\"[\"a\"]", aliceKey);
+    assertEquals("\"bob\"[\"a\"]", bobKey);
+  }
+
+  @Test
+  public void should_CountHitsAndMisses() {
+    VaadinServiceResultCache cache = createCache(10, 0, false);
+    byte[] json = bytes("\"value\"");
+
+    assertNull(cache.get("key"));
+    cache.put("key", json);
+    assertArrayEquals(json, cache.get("key"));
+    assertArrayEquals(json, cache.get("key"));
+
+    assertEquals(2, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+    assertEquals(1, cache.getSize());
+    assertEquals(json.length, cache.getBytes());
+  }
+
+  @Test
+  public void should_ExpireEntries_When_TimeToLiveElapses() {
+    VaadinServiceResultCache cache = createCache(10, 0, false);
+    cache.put("key", bytes("1"));
+
+    clock.addAndGet(TTL_NANOS - 1);
+    assertNotNull(cache.get("key"));
+    clock.incrementAndGet();
+    assertNull(cache.get("key"));
+
+    assertEquals(0, cache.getSize());
+    assertEquals(0, cache.getBytes());
+    assertEquals(0, cache.getEvictionCount());
+  }
+
+  @Test
+  public void should_EvictLeastRecentlyUsedEntry_When_MaxEntriesExceeded() {
+    VaadinServiceResultCache cache = createCache(2, 0, false);
+    cache.put("first", bytes("1"));
+    cache.put("second", bytes("2"));
+    cache.get("first");
+
+    cache.put("third", bytes("3"));
+
+    assertNotNull(cache.get("first"));
+    assertNull(cache.get("second"));
+    assertNotNull(cache.get("third"));
+    assertEquals(1, cache.getEvictionCount());
+    assertEquals(2, cache.getSize());
+  }
+
+  @Test
+  public void should_EvictEntries_When_MaxBytesExceeded() {
+    VaadinServiceResultCache cache = createCache(10, 6, false);
+    cache.put("first", bytes("111"));
+    cache.put("second", bytes("222"));
+
+    cache.put("third", bytes("3333"));
+
+    assertNull(cache.get("first"));
+    assertNull(cache.get("second"));
+    assertNotNull(cache.get("third"));
+    assertEquals(2, cache.getEvictionCount());
+    assertEquals(4, cache.getBytes());
+  }
+
+  @Test
+  public void should_NotCacheResponse_When_ResponseIsLargerThanMaxBytes() {
+    VaadinServiceResultCache cache = createCache(10, 6, false);
+    cache.put("first", bytes("111"));
+
+    cache.put("large", bytes("1234567"));
+
+    assertNull(cache.get("large"));
+    assertNotNull(cache.get("first"));
+    assertEquals(0, cache.getEvictionCount());
+  }
+
+  @Test
+  public void should_ReplaceEntry_When_KeyIsCachedAgain() {
+    VaadinServiceResultCache cache = createCache(10, 0, false);
+    cache.put("key", bytes("111"));
+
+    cache.put("key", bytes("22"));
+
+    assertArrayEquals(bytes("22"), cache.get("key"));
+    assertEquals(1, cache.getSize());
+    assertEquals(2, cache.getBytes());
+  }
+
+  @Test
+  public void should_RemoveAllEntries_When_Cleared() {
+    VaadinServiceResultCache cache = createCache(10, 0, false);
+    cache.put("first", bytes("1"));
+    cache.put("second", bytes("2"));
+
+    cache.clear();
+
+    assertNull(cache.get("first"));
+    assertEquals(0, cache.getSize());
+    assertEquals(0, cache.getBytes());
+  }
+
+  @Test
+  public void should_CreateCache_When_MethodIsAnnotated() {
+    assertNotNull(
+        VaadinServiceResultCache.forMethod(createServiceMethod("cached")));
+    assertNull(
+        VaadinServiceResultCache.forMethod(createServiceMethod("notCached")));
+  }
+
+  @Test
+  public void should_Throw_When_AnnotatedMethodIsAsync() {
+    exception.expect(IllegalStateException.class);
+    exception.expectMessage("cachedAsync");
+    createServiceMethod("cachedAsync");
+  }
+
+  @Test
+  public void should_Throw_When_AnnotatedMethodHasStreamParameter() {
+    exception.expect(IllegalStateException.class);
+    exception.expectMessage("cachedStream");
+    createServiceMethod("cachedStream");
+  }
+
+  @Test
+  public void should_Throw_When_MaxEntriesIsNotPositive() {
+    exception.expect(IllegalStateException.class);
+    exception.expectMessage("noEntries");
+    createServiceMethod("noEntries");
+  }
+
+  @Test
+  public void should_Throw_When_TimeToLiveIsNotPositive() {
+    exception.expect(IllegalStateException.class);
+    exception.expectMessage("noTimeToLive");
+    createServiceMethod("noTimeToLive");
+  }
+
+  private VaadinServiceResultCache createCache(int maxEntries, long maxBytes,
+      boolean perUser, Class<?>... parameterTypes) {
+    return new VaadinServiceResultCache(TTL_NANOS, maxEntries, maxBytes,
+        perUser, parameterTypes, clock::get);
+  }
+
+  private JsonNode parse(String json) throws Exception {
+    return mapper.readTree(json);
+  }
+
+  private static byte[] bytes(String json) {
+    return json.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static VaadinServiceMethod createServiceMethod(String methodName) {
+    for (Method method : TestService.class.getMethods()) {
+      if (method.getName().equals(methodName)) {
+        return new VaadinServiceMethod(method);
+      }
+    }
+    throw new AssertionError(
+        String.format("Failed to find a method '%s' in class '%s'", methodName,
+            TestService.class));
+  }
+}
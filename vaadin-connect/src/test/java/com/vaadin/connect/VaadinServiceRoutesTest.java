@@ -0,0 +1,79 @@
+package com.vaadin.connect;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class VaadinServiceRoutesTest {
+
+  @Test
+  public void should_FindRoute_When_NamesDifferInCase() {
+    VaadinServiceRoutes<String> routes = new VaadinServiceRoutes<>(
+        Collections.singletonMap("testservice",
+            Collections.singletonMap("testmethod", "target")));
+
+    assertEquals("target", routes.get("testservice", "testmethod"));
+    assertEquals("target", routes.get("TestService", "testMethod"));
+    assertEquals("target", routes.get("TESTSERVICE", "TESTMETHOD"));
+  }
+
+  @Test
+  public void should_ReturnNull_When_RouteIsMissing() {
+    VaadinServiceRoutes<String> routes = new VaadinServiceRoutes<>(
+        Collections.singletonMap("testservice",
+            Collections.singletonMap("testmethod", "target")));
+
+    assertNull(routes.get("testservice", "othermethod"));
+    assertNull(routes.get("otherservice", "testmethod"));
+    assertNull(routes.get("testservicetestmethod", ""));
+    assertNull(routes.get("testservice/", "testmethod"));
+    assertNull(routes.get(null, "testmethod"));
+    assertNull(routes.get("testservice", null));
+  }
+
+  @Test
+  public void should_ReturnNull_When_TableIsEmpty() {
+    VaadinServiceRoutes<String> routes = new VaadinServiceRoutes<>(
+        Collections.emptyMap());
+
+    assertEquals(0, routes.size());
+    assertNull(routes.get("testservice", "testmethod"));
+  }
+
+  @Test
+  public void should_FindAllRoutes_When_TableHasManyRoutes() {
+    Map<String, Map<String, String>> targets = new HashMap<>();
+    for (int service = 0; service < 100; service++) {
+      Map<String, String> methods = new HashMap<>();
+      for (int method = 0; method < 20; method++) {
+        methods.put("method" + method, service + "/" + method);
+      }
+      targets.put("service" + service, methods);
+    }
+    VaadinServiceRoutes<String> routes = new VaadinServiceRoutes<>(targets);
+
+    assertEquals(2000, routes.size());
+    for (int service = 0; service < 100; service++) {
+      for (int method = 0; method < 20; method++) {
+        assertEquals(service + "/" + method,
+            routes.get("Service" + service, "METHOD" + method));
+      }
+    }
+    assertNull(routes.get("service100", "method0"));
+    assertNull(routes.get("service0", "method20"));
+  }
+
+  @Test
+  public void should_FindRoute_When_NamesHaveNonAsciiCharacters() {
+    VaadinServiceRoutes<String> routes = new VaadinServiceRoutes<>(
+        Collections.singletonMap("überservice",
+            Collections.singletonMap("grüße", "target")));
+
+    assertEquals("target", routes.get("ÜberService", "GRÜßE"));
+  }
+}
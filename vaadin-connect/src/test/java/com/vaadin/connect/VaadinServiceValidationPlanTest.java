@@ -0,0 +1,154 @@
+package com.vaadin.connect;
+
+import javax.validation.Valid;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class VaadinServiceValidationPlanTest {
+  private final Validator validator = Validation.buildDefaultValidatorFactory()
+      .getValidator();
+  private final ClassValue<Boolean> constrainedTypes = VaadinServiceValidationPlan
+      .createConstrainedTypes(validator);
+
+  public static class Bean {
+    public String name;
+  }
+
+  public static class ConstrainedBean extends Bean {
+    @Min(10)
+    public int count;
+  }
+
+  public static class TestService {
+    public String unconstrained(String text, int number, int[] numbers,
+        List<String> list) {
+      return text;
+    }
+
+    public void constrainedParameter(@NotNull String text) {
+    }
+
+    public void validParameter(@Valid Bean bean) {
+    }
+
+    @NotNull
+    public String constrainedReturnValue() {
+      return "";
+    }
+
+    public void beans(Bean bean, ConstrainedBean constrainedBean) {
+    }
+  }
+
+  @Test
+  public void should_SkipValidation_When_MethodHasNoConstraints() {
+    VaadinServiceValidationPlan plan = createPlan("unconstrained");
+
+    assertFalse(plan.validatesParameters());
+    assertFalse(plan.validatesBean(0, "text"));
+    assertFalse(plan.validatesBean(1, 1));
+    assertFalse(plan.validatesBean(2, new int[0]));
+    assertFalse(plan.validatesBean(3, new ArrayList<>()));
+    assertFalse(plan.validatesReturnValue(
+        VaadinServiceValidationPlan.VALIDATE_ALL_RETURN_VALUES));
+  }
+
+  @Test
+  public void should_ValidateParameters_When_ParameterIsConstrained() {
+    assertTrue(createPlan("constrainedParameter").validatesParameters());
+    assertTrue(createPlan("validParameter").validatesParameters());
+    assertFalse(createPlan("constrainedReturnValue").validatesParameters());
+  }
+
+  @Test
+  public void should_ValidateBean_When_ValueTypeIsConstrained() {
+    VaadinServiceValidationPlan plan = createPlan("beans");
+
+    assertFalse(plan.validatesBean(0, new Bean()));
+    assertTrue(plan.validatesBean(0, new ConstrainedBean()));
+    assertTrue(plan.validatesBean(1, new ConstrainedBean()));
+  }
+
+  @Test
+  public void should_ValidateEverything_When_PlanValidatesAll() {
+    VaadinServiceValidationPlan plan = VaadinServiceValidationPlan
+        .validateAll(getMethod("unconstrained"));
+
+    assertTrue(plan.validatesParameters());
+    assertTrue(plan.validatesBean(0, "text"));
+    assertTrue(plan.validatesReturnValue(
+        VaadinServiceValidationPlan.VALIDATE_ALL_RETURN_VALUES));
+  }
+
+  @Test
+  public void should_ValidateReturnValues_When_ReturnValueIsConstrained() {
+    VaadinServiceValidationPlan plan = createPlan("constrainedReturnValue");
+
+    for (int i = 0; i < 3; i++) {
+      assertTrue(plan.validatesReturnValue(
+          VaadinServiceValidationPlan.VALIDATE_ALL_RETURN_VALUES));
+      assertFalse(plan.validatesReturnValue(0));
+    }
+  }
+
+  @Test
+  public void should_ValidateOneOfEachSampleRateReturnValues_When_Sampled() {
+    VaadinServiceValidationPlan plan = createPlan("constrainedReturnValue");
+
+    int validated = 0;
+    for (int i = 0; i < 30; i++) {
+      if (plan.validatesReturnValue(10)) {
+        validated++;
+      }
+    }
+    assertEquals(3, validated);
+  }
+
+  @Test
+  public void should_GetSampleRate_When_ValidationModeIsSupported() {
+    assertEquals(VaadinServiceValidationPlan.VALIDATE_ALL_RETURN_VALUES,
+        VaadinServiceValidationPlan.getReturnValueSampleRate(null, 100));
+    assertEquals(VaadinServiceValidationPlan.VALIDATE_ALL_RETURN_VALUES,
+        VaadinServiceValidationPlan.getReturnValueSampleRate("always", 100));
+    assertEquals(100,
+        VaadinServiceValidationPlan.getReturnValueSampleRate("sampled", 100));
+    assertEquals(0,
+        VaadinServiceValidationPlan.getReturnValueSampleRate("off", 100));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void should_Throw_When_ValidationModeIsNotSupported() {
+    VaadinServiceValidationPlan.getReturnValueSampleRate("sometimes", 100);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void should_Throw_When_SampleRateIsNotPositive() {
+    VaadinServiceValidationPlan.getReturnValueSampleRate("sampled", 0);
+  }
+
+  private VaadinServiceValidationPlan createPlan(String methodName) {
+    return VaadinServiceValidationPlan.create(validator, constrainedTypes,
+        TestService.class, getMethod(methodName));
+  }
+
+  private Method getMethod(String methodName) {
+    for (Method method : TestService.class.getMethods()) {
+      if (method.getName().equals(methodName)) {
+        return method;
+      }
+    }
+    throw new AssertionError(methodName);
+  }
+}
@@ -0,0 +1,99 @@
+package com.vaadin.connect;
+
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class VaadinServiceWireFormatTest {
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final List<VaadinServiceWireFormat> formats = VaadinServiceWireFormat
+      .createFormats(mapper);
+
+  @Test
+  public void should_CreateJsonAndBinaryFormats_When_LibrariesArePresent() {
+    assertEquals(3, formats.size());
+    assertSame(mapper.getFactory(), formats.get(0).getFactory());
+    assertEquals(MediaType.APPLICATION_JSON_UTF8_VALUE,
+        formats.get(0).getContentType());
+    assertEquals("", formats.get(0).getCacheKeyPrefix());
+    assertTrue(formats.get(1).getFactory() instanceof CBORFactory);
+    assertSame(mapper, formats.get(1).getFactory().getCodec());
+    assertEquals(VaadinConnectController.APPLICATION_CBOR,
+        formats.get(1).getContentType());
+    assertTrue(formats.get(2).getFactory() instanceof SmileFactory);
+    assertEquals(VaadinConnectController.APPLICATION_SMILE,
+        formats.get(2).getContentType());
+  }
+
+  @Test
+  public void should_ReadJson_When_RequestHasNoBinaryContentType() {
+    assertSame(formats.get(0),
+        VaadinServiceWireFormat.getRequestFormat(formats, request(null, null)));
+    assertSame(formats.get(0), VaadinServiceWireFormat.getRequestFormat(formats,
+        request("text/plain", null)));
+    assertSame(formats.get(0), VaadinServiceWireFormat.getRequestFormat(formats,
+        request("application/json", null)));
+    assertSame(formats.get(0), VaadinServiceWireFormat.getRequestFormat(formats,
+        request("not a media type", null)));
+  }
+
+  @Test
+  public void should_ReadBinaryFormat_When_RequestHasBinaryContentType() {
+    assertSame(formats.get(1), VaadinServiceWireFormat.getRequestFormat(formats,
+        request("application/cbor", null)));
+    assertSame(formats.get(2), VaadinServiceWireFormat.getRequestFormat(formats,
+        request("application/x-jackson-smile", null)));
+  }
+
+  @Test
+  public void should_ReturnNull_When_RequestBinaryFormatIsNotSupported() {
+    assertNull(VaadinServiceWireFormat.getRequestFormat(formats.subList(0, 1),
+        request("application/cbor", null)));
+  }
+
+  @Test
+  public void should_WriteMostPreferredFormat_When_FormatsAreAccepted() {
+    assertSame(formats.get(0), VaadinServiceWireFormat
+        .getResponseFormat(formats, request(null, null)));
+    assertSame(formats.get(0), VaadinServiceWireFormat
+        .getResponseFormat(formats, request(null, "*/*")));
+    assertSame(formats.get(1), VaadinServiceWireFormat
+        .getResponseFormat(formats, request(null, "application/cbor")));
+    assertSame(formats.get(2), VaadinServiceWireFormat.getResponseFormat(
+        formats,
+        request(null, "application/json;q=0.5, application/x-jackson-smile")));
+    assertSame(formats.get(0), VaadinServiceWireFormat.getResponseFormat(
+        formats, request(null, "application/json, application/cbor;q=0.1")));
+  }
+
+  @Test
+  public void should_WriteJson_When_NoSupportedFormatIsAccepted() {
+    assertSame(formats.get(0), VaadinServiceWireFormat
+        .getResponseFormat(formats, request(null, "text/plain")));
+    assertSame(formats.get(0), VaadinServiceWireFormat
+        .getResponseFormat(formats, request(null, "not a media type")));
+    assertSame(formats.get(0), VaadinServiceWireFormat.getResponseFormat(
+        formats.subList(0, 1), request(null, "application/cbor")));
+  }
+
+  private static MockHttpServletRequest request(String contentType,
+      String accept) {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setContentType(contentType);
+    if (accept != null) {
+      request.addHeader(HttpHeaders.ACCEPT, accept);
+    }
+    return request;
+  }
+}
@@ -6,6 +6,7 @@ import javax.annotation.security.RolesAllowed;
 
 import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 
 import org.junit.After;
@@ -429,4 +430,32 @@ public class VaadinConnectAccessCheckerTest {
     Method securityMethod = Test.class.getMethod("test");
     assertEquals(securityMethod, checker.getSecurityTarget(securityMethod));
   }
+
+  @Test
+  public void should_Fail_When_NotAllAuthoritiesAreAllowed() throws Exception {
+    @RolesAllowed(ROLE_USER)
+    class Test {
+      public void test() {
+      }
+    }
+    OAuth2Authentication authentication = mock(OAuth2Authentication.class);
+    when(authentication.getAuthorities())
+        .thenReturn((Collection) Arrays.asList(
+            new SimpleGrantedAuthority(ROLE_USER),
+            new SimpleGrantedAuthority("ROLE_ADMIN")));
+    when(securityContext.getAuthentication()).thenReturn(authentication);
+    shouldFail(Test.class);
+  }
+
+  @Test
+  public void should_CheckCurrentAuthentication_When_MethodIsCheckedAgain()
+      throws Exception {
+    class Test {
+      public void test() {
+      }
+    }
+    shouldPass(Test.class);
+    securityContext = createAnonymousContext();
+    shouldFail(Test.class);
+  }
 }
@@ -0,0 +1,319 @@
+package com.vaadin.connect.auth.server;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.jwt.JwtHelper;
+import org.springframework.security.jwt.crypto.sign.MacSigner;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+import org.springframework.security.oauth2.common.exceptions.InvalidTokenException;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.OAuth2Request;
+
+import com.vaadin.connect.VaadinConnectProperties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class VaadinConnectAccessTokenConverterTest {
+
+  private static KeyPair generateKeyPair(String algorithm) throws Exception {
+    KeyPairGenerator generator;
+    if ("RS256".equals(algorithm)) {
+      generator = KeyPairGenerator.getInstance("RSA");
+      generator.initialize(2048);
+    } else {
+      generator = KeyPairGenerator.getInstance("EC");
+      generator.initialize(new ECGenParameterSpec(
+          "ES512".equals(algorithm) ? "secp521r1" : "secp256r1"));
+    }
+    return generator.generateKeyPair();
+  }
+
+  private static String encode(byte[] key) {
+    return Base64.getEncoder().encodeToString(key);
+  }
+
+  private static VaadinConnectProperties mockProperties(String algorithm,
+      KeyPair keyPair, boolean withPrivateKey) {
+    VaadinConnectProperties properties = mock(VaadinConnectProperties.class);
+    when(properties.getVaadinConnectTokenSigningAlgorithm())
+        .thenReturn(algorithm);
+    if (keyPair != null) {
+      when(properties.getVaadinConnectTokenSigningPublicKey())
+          .thenReturn(encode(keyPair.getPublic().getEncoded()));
+      if (withPrivateKey) {
+        when(properties.getVaadinConnectTokenSigningPrivateKey())
+            .thenReturn(encode(keyPair.getPrivate().getEncoded()));
+      }
+    }
+    return properties;
+  }
+
+  private static VaadinConnectAccessTokenConverter createConverter(
+      VaadinConnectProperties properties) throws Exception {
+    VaadinConnectAccessTokenConverter converter = new VaadinConnectAccessTokenConverter(
+        VaadinConnectTokenKeys.create(properties));
+    converter.afterPropertiesSet();
+    return converter;
+  }
+
+  private static String createToken(
+      VaadinConnectAccessTokenConverter converter) {
+    OAuth2Request request = new OAuth2Request(Collections.emptyMap(),
+        "vaadin-connect-client",
+        Collections.singleton(new SimpleGrantedAuthority("ROLE_USER")), true,
+        Collections.singleton("read"), null, null, null, null);
+    OAuth2Authentication authentication = new OAuth2Authentication(request,
+        new UsernamePasswordAuthenticationToken("user", "N/A",
+            request.getAuthorities()));
+    DefaultOAuth2AccessToken token = new DefaultOAuth2AccessToken("token");
+    token.setExpiration(new Date(System.currentTimeMillis() + 60000));
+    return converter.enhance(token, authentication).getValue();
+  }
+
+  private static void assertTokenUser(
+      VaadinConnectAccessTokenConverter converter, String token) {
+    assertEquals("user",
+        converter.extractAuthentication(converter.decode(token)).getName());
+  }
+
+  @Test
+  public void should_SignAndVerifyToken_When_RsaKeyPairIsUsed()
+      throws Exception {
+    VaadinConnectAccessTokenConverter converter = createConverter(
+        mockProperties("RS256", generateKeyPair("RS256"), true));
+
+    String token = createToken(converter);
+
+    Map<String, String> header = JwtHelper.headers(token);
+    assertEquals("RS256", header.get("alg"));
+    assertTrue(header.containsKey("kid"));
+    assertTokenUser(converter, token);
+  }
+
+  @Test
+  public void should_SignAndVerifyToken_When_EllipticCurveKeyPairIsUsed()
+      throws Exception {
+    for (String algorithm : new String[] { "ES256", "ES512" }) {
+      VaadinConnectAccessTokenConverter converter = createConverter(
+          mockProperties(algorithm, generateKeyPair(algorithm), true));
+
+      String token = createToken(converter);
+
+      assertEquals(algorithm, JwtHelper.headers(token).get("alg"));
+      assertTokenUser(converter, token);
+    }
+  }
+
+  @Test
+  public void should_VerifyTokenOfPreviousKey_When_KeyIsRotated()
+      throws Exception {
+    KeyPair previousKeyPair = generateKeyPair("ES256");
+    VaadinConnectProperties previousProperties = mockProperties("ES256",
+        previousKeyPair, true);
+    when(previousProperties.getVaadinConnectTokenSigningKeyId())
+        .thenReturn("previous");
+    String previousToken = createToken(createConverter(previousProperties));
+
+    VaadinConnectProperties properties = mockProperties("RS256",
+        generateKeyPair("RS256"), true);
+    when(properties.getVaadinConnectTokenVerificationKeys()).thenReturn(
+        "previous:" + encode(previousKeyPair.getPublic().getEncoded()));
+    VaadinConnectAccessTokenConverter converter = createConverter(properties);
+
+    assertTokenUser(converter, previousToken);
+    assertTokenUser(converter, createToken(converter));
+  }
+
+  @Test
+  public void should_VerifyToken_When_NodeHasOnlyPublicKey() throws Exception {
+    KeyPair keyPair = generateKeyPair("RS256");
+    String token = createToken(
+        createConverter(mockProperties("RS256", keyPair, true)));
+
+    assertTokenUser(createConverter(mockProperties("RS256", keyPair, false)),
+        token);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void should_FailToSignToken_When_NodeHasOnlyPublicKey()
+      throws Exception {
+    createToken(createConverter(
+        mockProperties("RS256", generateKeyPair("RS256"), false)));
+  }
+
+  @Test(expected = InvalidTokenException.class)
+  public void should_RejectToken_When_KeyIdIsUnknown() throws Exception {
+    String token = createToken(createConverter(
+        mockProperties("ES256", generateKeyPair("ES256"), true)));
+
+    createConverter(mockProperties("ES256", generateKeyPair("ES256"), true))
+        .decode(token);
+  }
+
+  @Test(expected = InvalidTokenException.class)
+  public void should_RejectToken_When_AlgorithmDoesNotMatchKey()
+      throws Exception {
+    VaadinConnectAccessTokenConverter converter = createConverter(
+        mockProperties("RS256", generateKeyPair("RS256"), true));
+    String token = createToken(converter);
+    String kid = JwtHelper.headers(token).get("kid");
+    String claims = JwtHelper.decode(token).getClaims();
+
+    // A token signed with HMAC using the public key as the secret
+    String forgedToken = JwtHelper.encode(claims, new MacSigner("public-key"),
+        Collections.singletonMap("kid", kid)).getEncoded();
+
+    converter.decode(forgedToken);
+  }
+
+  @Test
+  public void should_VerifyTokenWithoutKeyId_When_SharedSecretIsAccepted()
+      throws Exception {
+    VaadinConnectProperties legacyProperties = mockProperties("HS256", null,
+        false);
+    when(legacyProperties.getVaadinConnectTokenSigningKey())
+        .thenReturn("legacy-key");
+    String legacyToken = createToken(createConverter(legacyProperties));
+    assertTrue(!JwtHelper.headers(legacyToken).containsKey("kid"));
+
+    VaadinConnectProperties properties = mockProperties("ES256",
+        generateKeyPair("ES256"), true);
+    when(properties.getVaadinConnectTokenSigningKey()).thenReturn("legacy-key");
+    when(properties.isVaadinConnectTokenAcceptSharedSecret()).thenReturn(true);
+
+    assertTokenUser(createConverter(properties), legacyToken);
+  }
+
+  @Test
+  public void should_RejectTokenWithoutKeyId_When_SharedSecretIsNotAccepted()
+      throws Exception {
+    VaadinConnectProperties legacyProperties = mockProperties("HS256", null,
+        false);
+    when(legacyProperties.getVaadinConnectTokenSigningKey())
+        .thenReturn("legacy-key");
+    String legacyToken = createToken(createConverter(legacyProperties));
+
+    for (String algorithm : new String[] { "RS256", "ES256" }) {
+      VaadinConnectProperties properties = mockProperties(algorithm,
+          generateKeyPair(algorithm), true);
+      when(properties.getVaadinConnectTokenSigningKey())
+          .thenReturn("legacy-key");
+      try {
+        createConverter(properties).decode(legacyToken);
+        fail("The token signed with the shared secret is accepted with "
+            + algorithm);
+      } catch (InvalidTokenException expected) {
+        // expected
+      }
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void should_Fail_When_SharedSecretIsAcceptedWithoutSigningKey()
+      throws Exception {
+    VaadinConnectProperties properties = mockProperties("ES256",
+        generateKeyPair("ES256"), true);
+    when(properties.isVaadinConnectTokenAcceptSharedSecret()).thenReturn(true);
+
+    VaadinConnectTokenKeys.create(properties);
+  }
+
+  @Test(expected = InvalidTokenException.class)
+  public void should_RejectTokenWithoutKeyId_When_NoSigningKeyIsConfigured()
+      throws Exception {
+    VaadinConnectProperties legacyProperties = mockProperties("HS256", null,
+        false);
+    when(legacyProperties.getVaadinConnectTokenSigningKey())
+        .thenReturn("legacy-key");
+    String legacyToken = createToken(createConverter(legacyProperties));
+
+    createConverter(mockProperties("ES256", generateKeyPair("ES256"), true))
+        .decode(legacyToken);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void should_PublishPublicKeys_When_KeyPairIsUsed() throws Exception {
+    KeyPair previousKeyPair = generateKeyPair("ES256");
+    VaadinConnectProperties properties = mockProperties("RS256",
+        generateKeyPair("RS256"), true);
+    when(properties.getVaadinConnectTokenSigningKeyId()).thenReturn("current");
+    when(properties.getVaadinConnectTokenVerificationKeys()).thenReturn(
+        "previous:" + encode(previousKeyPair.getPublic().getEncoded()));
+
+    List<Map<String, Object>> keys = (List<Map<String, Object>>) createConverter(
+        properties).getJwkSet().get("keys");
+
+    assertEquals(2, keys.size());
+    assertEquals("current", keys.get(0).get("kid"));
+    assertEquals("RSA", keys.get(0).get("kty"));
+    assertEquals("RS256", keys.get(0).get("alg"));
+    assertEquals("AQAB", keys.get(0).get("e"));
+    assertEquals(256,
+        Base64.getUrlDecoder().decode((String) keys.get(0).get("n")).length);
+    assertEquals("previous", keys.get(1).get("kid"));
+    assertEquals("EC", keys.get(1).get("kty"));
+    assertEquals("P-256", keys.get(1).get("crv"));
+    assertEquals(32,
+        Base64.getUrlDecoder().decode((String) keys.get(1).get("x")).length);
+    assertTrue(keys.stream().noneMatch(key -> key.containsKey("d")));
+  }
+
+  @Test
+  public void should_NotPublishSecret_When_SharedSecretIsUsed()
+      throws Exception {
+    VaadinConnectProperties properties = mockProperties("HS256", null, false);
+    when(properties.getVaadinConnectTokenSigningKey()).thenReturn("secret");
+
+    assertEquals(Collections.singletonMap("keys", Collections.emptyList()),
+        createConverter(properties).getJwkSet());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void should_Fail_When_PublicKeyDoesNotMatchAlgorithm()
+      throws Exception {
+    createConverter(mockProperties("ES256", generateKeyPair("RS256"), true));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void should_Fail_When_AlgorithmIsUnsupported() throws Exception {
+    createConverter(mockProperties("PS256", null, false));
+  }
+
+  @Test
+  public void should_AcceptPemKeys() throws Exception {
+    KeyPair keyPair = generateKeyPair("ES256");
+    VaadinConnectProperties properties = mock(VaadinConnectProperties.class);
+    when(properties.getVaadinConnectTokenSigningAlgorithm())
+        .thenReturn("ES256");
+    when(properties.getVaadinConnectTokenSigningPublicKey())
+        .thenReturn(toPem("PUBLIC KEY", keyPair.getPublic().getEncoded()));
+    when(properties.getVaadinConnectTokenSigningPrivateKey())
+        .thenReturn(toPem("PRIVATE KEY", keyPair.getPrivate().getEncoded()));
+    VaadinConnectAccessTokenConverter converter = createConverter(properties);
+
+    assertTokenUser(converter, createToken(converter));
+  }
+
+  private static String toPem(String type, byte[] key) {
+    return "-----BEGIN " + type + "-----\n"
+        + new String(Base64.getMimeEncoder().encode(key),
+            StandardCharsets.US_ASCII)
+        + "\n-----END " + type + "-----";
+  }
+}
@@ -25,6 +25,7 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.oauth2.common.util.JacksonJsonParser;
 import org.springframework.security.oauth2.provider.endpoint.TokenEndpoint;
+import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.util.LinkedMultiValueMap;
@@ -47,6 +48,7 @@ import static org.springframework.security.oauth2.provider.token.AccessTokenConv
 import static org.springframework.security.oauth2.provider.token.AccessTokenConverter.SCOPE;
 import static org.springframework.security.oauth2.provider.token.UserAuthenticationConverter.USERNAME;
 import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
@@ -96,6 +98,12 @@ public class VaadinConnectOAuthConfigurerTest {
         { "Should produce a valid token when providing a custom AuthenticationManage",
           null,
           Arrays.asList(EnableVaadinOauth.class, CustomAuthenticationManagerTest.class) },
+        { "Should publish no keys when tokens are signed with the shared secret",
+          null,
+          Arrays.asList(EnableVaadinOauth.class, ConfigureUserDetailsService.class, JwkSetTest.class) },
+        { "Should reject the access token after it is revoked on logout",
+          null,
+          Arrays.asList(EnableVaadinOauth.class, ConfigureUserDetailsService.class, TokenRevocationTest.class) },
       }); // @formatter:on
   }
 
@@ -355,4 +363,55 @@ public class VaadinConnectOAuthConfigurerTest {
           .andExpect(jsonPath("$.access_token", notNullValue()));
     }
   }
+
+  @Configuration
+  protected static class JwkSetTest implements TestRunner {
+    @Override
+    public void run(AnnotationConfigWebApplicationContext context)
+        throws Exception {
+      MockMvcBuilders.webAppContextSetup(context).apply(springSecurity())
+          .build()
+          .perform(get(VaadinConnectJwkSetEndpoint.JWK_SET_PATH)
+              .header(HttpHeaders.ACCEPT, "application/json"))
+          .andExpect(status().isOk())
+          .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
+          .andExpect(content().json("{\"keys\":[]}"));
+    }
+  }
+
+  @Configuration
+  protected static class TokenRevocationTest implements TestRunner {
+    @Override
+    public void run(AnnotationConfigWebApplicationContext context)
+        throws Exception {
+      String accessToken = jsParser.parseMap(
+          getToken(context, "foo", "bar", "password").andExpect(status().isOk())
+              .andReturn().getResponse().getContentAsString())
+          .get(ACCESS_TOKEN).toString();
+      MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(context)
+          .apply(springSecurity()).build();
+      String authorization = "Bearer " + accessToken;
+
+      mockMvc
+          .perform(get(VaadinConnectJwkSetEndpoint.JWK_SET_PATH)
+              .header(HttpHeaders.AUTHORIZATION, authorization))
+          .andExpect(status().isOk());
+      mockMvc
+          .perform(post(VaadinConnectTokenRevocationEndpoint.REVOCATION_PATH))
+          .andExpect(status().is(401));
+      mockMvc
+          .perform(post(VaadinConnectTokenRevocationEndpoint.REVOCATION_PATH)
+              .header(HttpHeaders.AUTHORIZATION, authorization))
+          .andExpect(status().is(204));
+
+      mockMvc
+          .perform(get(VaadinConnectJwkSetEndpoint.JWK_SET_PATH)
+              .header(HttpHeaders.AUTHORIZATION, authorization))
+          .andExpect(status().is(401));
+      mockMvc
+          .perform(post(VaadinConnectTokenRevocationEndpoint.REVOCATION_PATH)
+              .header(HttpHeaders.AUTHORIZATION, authorization))
+          .andExpect(status().is(401));
+    }
+  }
 }
@@ -0,0 +1,181 @@
+package com.vaadin.connect.auth.server;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class VaadinConnectPasswordEncoderTest {
+  private VaadinConnectPasswordEncoder encoder;
+
+  @After
+  public void tearDown() {
+    if (encoder != null) {
+      encoder.shutdown();
+    }
+  }
+
+  @Test
+  public void should_HashAndMatchPasswords() {
+    encoder = new VaadinConnectPasswordEncoder(4, 1, 1);
+
+    String hash = encoder.encode("password");
+
+    assertTrue(hash.startsWith("$2a$04$"));
+    assertTrue(encoder.matches("password", hash));
+    assertFalse(encoder.matches("another", hash));
+    assertEquals(3, encoder.getHashCount());
+  }
+
+  @Test
+  public void should_NotHash_When_EncodedPasswordIsNotBCryptHash() {
+    encoder = new VaadinConnectPasswordEncoder(4, 1, 1);
+
+    assertFalse(encoder.matches("password", "password"));
+    assertFalse(encoder.matches("password", null));
+    assertEquals(0, encoder.getHashCount());
+  }
+
+  @Test
+  public void should_RequireUpgrade_When_HashHasLowerStrength() {
+    encoder = new VaadinConnectPasswordEncoder(5, 1, 1);
+
+    assertTrue(encoder
+        .upgradeEncoding(new BCryptPasswordEncoder(4).encode("password")));
+    assertFalse(encoder
+        .upgradeEncoding(new BCryptPasswordEncoder(5).encode("password")));
+    assertFalse(encoder
+        .upgradeEncoding(new BCryptPasswordEncoder(6).encode("password")));
+    assertFalse(encoder.upgradeEncoding("password"));
+    assertFalse(encoder.upgradeEncoding(null));
+  }
+
+  @Test
+  public void should_RehashPassword_When_UserLogsInWithLowerStrengthHash() {
+    encoder = new VaadinConnectPasswordEncoder(5, 1, 1);
+    UserDetails user = User.builder().username("user")
+        .password(new BCryptPasswordEncoder(4).encode("password")).roles("USER")
+        .build();
+    AtomicReference<String> updatedPassword = new AtomicReference<>();
+    DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
+    provider.setPasswordEncoder(encoder);
+    provider.setUserDetailsService(userName -> user);
+    provider.setUserDetailsPasswordService((userDetails, newPassword) -> {
+      updatedPassword.set(newPassword);
+      return userDetails;
+    });
+
+    provider.authenticate(
+        new UsernamePasswordAuthenticationToken("user", "password"));
+
+    assertTrue(updatedPassword.get().startsWith("$2a$05$"));
+    assertTrue(encoder.matches("password", updatedPassword.get()));
+  }
+
+  @Test
+  public void should_RejectHashingRightAway_When_ThreadsAndQueueAreBusy()
+      throws Exception {
+    CountDownLatch hashing = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    PasswordEncoder blockingEncoder = new BCryptPasswordEncoder(4) {
+      @Override
+      public String encode(CharSequence rawPassword) {
+        hashing.countDown();
+        try {
+          release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return super.encode(rawPassword);
+      }
+    };
+    encoder = new VaadinConnectPasswordEncoder(blockingEncoder, 4, 1, 1);
+    ExecutorService logins = Executors.newFixedThreadPool(2);
+    try {
+      Future<String> active = logins.submit(() -> encoder.encode("first"));
+      hashing.await(10, TimeUnit.SECONDS);
+      Future<String> queued = logins.submit(() -> encoder.encode("second"));
+      while (encoder.getQueuedCount() == 0) {
+        Thread.sleep(1);
+      }
+
+      try {
+        encoder.encode("third");
+        fail("The hashing should be rejected");
+      } catch (PasswordHashingRejectedException e) {
+        assertEquals(503, e.getHttpErrorCode());
+        assertEquals("temporarily_unavailable", e.getOAuth2ErrorCode());
+      }
+
+      release.countDown();
+      String firstHash = active.get(10, TimeUnit.SECONDS);
+      String secondHash = queued.get(10, TimeUnit.SECONDS);
+      assertTrue(encoder.matches("first", firstHash));
+      assertTrue(encoder.matches("second", secondHash));
+      assertEquals(1, encoder.getRejectedCount());
+    } finally {
+      release.countDown();
+      logins.shutdownNow();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_Throw_When_QueueCapacityIsNegative() {
+    new VaadinConnectPasswordEncoder(4, 1, -1);
+  }
+
+  @Test
+  public void should_ReportHashingMetrics() {
+    encoder = new VaadinConnectPasswordEncoder(4, 1, 0);
+    encoder.encode("password");
+
+    MeterRegistry registry = new SimpleMeterRegistry();
+    new VaadinConnectPasswordEncoderMetrics(encoder).bindTo(registry);
+
+    assertEquals(1,
+        registry
+            .get(VaadinConnectPasswordEncoderMetrics.PASSWORD_HASHING_METRIC)
+            .functionTimer().count(),
+        0);
+    assertTrue(registry
+        .get(VaadinConnectPasswordEncoderMetrics.PASSWORD_HASHING_METRIC)
+        .functionTimer().totalTime(TimeUnit.NANOSECONDS) > 0);
+    assertEquals(0, registry
+        .get(VaadinConnectPasswordEncoderMetrics.PASSWORD_HASHING_QUEUED_METRIC)
+        .gauge().value(), 0);
+    assertEquals(0, registry
+        .get(VaadinConnectPasswordEncoderMetrics.PASSWORD_HASHING_ACTIVE_METRIC)
+        .gauge().value(), 0);
+    assertEquals(0, registry.get(
+        VaadinConnectPasswordEncoderMetrics.PASSWORD_HASHING_REJECTED_METRIC)
+        .functionCounter().count(), 0);
+  }
+
+  @Test
+  public void should_ReportNoMetrics_When_CustomPasswordEncoderIsUsed() {
+    MeterRegistry registry = new SimpleMeterRegistry();
+
+    new VaadinConnectPasswordEncoderMetrics(new BCryptPasswordEncoder())
+        .bindTo(registry);
+
+    assertTrue(registry.getMeters().isEmpty());
+  }
+}
@@ -0,0 +1,156 @@
+package com.vaadin.connect.auth.server;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class VaadinConnectTokenRevocationListTest {
+  private static final long TOKEN_VALIDITY_MILLIS = TimeUnit.MINUTES
+      .toMillis(5);
+
+  private final AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+  private final InProcessTokenRevocationReplicator replicator = new InProcessTokenRevocationReplicator();
+
+  private VaadinConnectTokenRevocationList createList(int expectedEntries) {
+    return new VaadinConnectTokenRevocationList(expectedEntries, replicator,
+        clock::get);
+  }
+
+  private long expiration() {
+    return clock.get() + TOKEN_VALIDITY_MILLIS;
+  }
+
+  @Test
+  public void should_RejectRevokedTokens_Only() {
+    VaadinConnectTokenRevocationList list = createList(100);
+    String revoked = UUID.randomUUID().toString();
+
+    list.revoke(revoked, expiration());
+
+    assertTrue(list.isRevoked(revoked));
+    assertTrue(list.isRevoked(new String(revoked)));
+    assertFalse(list.isRevoked(null));
+    for (int i = 0; i < 10000; i++) {
+      assertFalse(list.isRevoked(UUID.randomUUID().toString()));
+    }
+  }
+
+  @Test
+  public void should_RevokeTokenOnAllNodes_When_ReplicatorIsShared() {
+    VaadinConnectTokenRevocationList list = createList(100);
+    VaadinConnectTokenRevocationList anotherList = createList(100);
+    DefaultOAuth2AccessToken accessToken = new DefaultOAuth2AccessToken(
+        "token");
+    accessToken.setExpiration(new Date(expiration()));
+    accessToken
+        .setAdditionalInformation(Collections.singletonMap("jti", "token-id"));
+
+    anotherList.revoke(accessToken);
+
+    assertTrue(list.isRevoked("token-id"));
+    assertTrue(anotherList.isRevoked("token-id"));
+  }
+
+  @Test
+  public void should_ForgetRevocation_When_TokenHasExpired() {
+    VaadinConnectTokenRevocationList list = createList(100);
+    list.revoke("short", clock.get() + 1000);
+    list.revoke("long", expiration());
+
+    clock.addAndGet(TimeUnit.MINUTES.toMillis(2));
+    list.revoke("another", expiration());
+
+    assertFalse(list.isRevoked("short"));
+    assertTrue(list.isRevoked("long"));
+    assertTrue(list.isRevoked("another"));
+    assertEquals(2, list.getSize());
+  }
+
+  @Test
+  public void should_IgnoreRevocation_When_TokenIsAlreadyExpired() {
+    VaadinConnectTokenRevocationList list = createList(100);
+
+    list.revoke("expired", clock.get());
+
+    assertFalse(list.isRevoked("expired"));
+    assertEquals(0, list.getSize());
+  }
+
+  @Test
+  public void should_KeepAllRevocations_When_ExpectedEntriesAreExceeded() {
+    VaadinConnectTokenRevocationList list = createList(10);
+    String[] revoked = new String[1000];
+    for (int i = 0; i < revoked.length; i++) {
+      revoked[i] = UUID.randomUUID().toString();
+      list.revoke(revoked[i], expiration());
+    }
+
+    for (String tokenId : revoked) {
+      assertTrue(list.isRevoked(tokenId));
+    }
+    for (int i = 0; i < 1000; i++) {
+      assertFalse(list.isRevoked(UUID.randomUUID().toString()));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_Throw_When_TokenHasNoId() {
+    DefaultOAuth2AccessToken accessToken = new DefaultOAuth2AccessToken(
+        "token");
+    accessToken.setExpiration(new Date(expiration()));
+
+    createList(10).revoke(accessToken);
+  }
+
+  @Test
+  public void should_HashTokenIdWithMurmur3_128() {
+    long[] hash = new long[2];
+
+    VaadinConnectTokenRevocationList.BloomFilter.hash("", hash);
+    assertArrayEquals(new long[] { 0, 0 }, hash);
+
+    // The reference value is the 128-bit MurmurHash3 of the UTF-16LE bytes
+    VaadinConnectTokenRevocationList.BloomFilter.hash("vaadin-connect token",
+        hash);
+    assertArrayEquals(new long[] { 0x3AD68DBA2BFB5348L, 0x4D2776A295A1C0FCL },
+        hash);
+  }
+
+  @Test
+  public void should_NotMatchTokenIds_When_OnlyStringHashCodesAreEqual() {
+    int entries = 1000;
+    VaadinConnectTokenRevocationList.BloomFilter filter = new VaadinConnectTokenRevocationList.BloomFilter(
+        entries);
+    String[] suffixes = new String[entries];
+    for (int i = 0; i < entries; i++) {
+      suffixes[i] = UUID.randomUUID().toString();
+      filter.add("Aa" + suffixes[i]);
+    }
+
+    int matches = 0;
+    for (String suffix : suffixes) {
+      String other = "BB" + suffix;
+      assertEquals(("Aa" + suffix).hashCode(), other.hashCode());
+      if (filter.mightContain(other)) {
+        matches++;
+      }
+    }
+    // About 1% is expected
+    assertTrue("Unexpected false positives: " + matches, matches < 50);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_Throw_When_ExpectedEntriesIsNotPositive() {
+    createList(0);
+  }
+}
@@ -0,0 +1,250 @@
+package com.vaadin.connect.auth.server;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.OAuth2Request;
+
+import com.vaadin.connect.VaadinConnectProperties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class VaadinConnectTokenStoreTest {
+  private static final long TOKEN_VALIDITY_MILLIS = TimeUnit.MINUTES
+      .toMillis(5);
+
+  private final AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+  private CountingConverter converter;
+
+  private static class CountingConverter
+      extends VaadinConnectAccessTokenConverter {
+    private int decodeCount;
+
+    private CountingConverter() {
+      super(VaadinConnectTokenKeys.create(createProperties()));
+    }
+
+    private static VaadinConnectProperties createProperties() {
+      VaadinConnectProperties properties = mock(VaadinConnectProperties.class);
+      when(properties.getVaadinConnectTokenSigningAlgorithm())
+          .thenReturn(VaadinConnectTokenKeys.HS256);
+      when(properties.getVaadinConnectTokenSigningKey())
+          .thenReturn("test-signing-key");
+      return properties;
+    }
+
+    @Override
+    protected Map<String, Object> decode(String token) {
+      decodeCount++;
+      return super.decode(token);
+    }
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    converter = new CountingConverter();
+    converter.afterPropertiesSet();
+  }
+
+  private String createToken(String userName) {
+    OAuth2Request request = new OAuth2Request(Collections.emptyMap(),
+        "vaadin-connect-client",
+        Collections.singleton(new SimpleGrantedAuthority("ROLE_USER")), true,
+        Collections.singleton("read"), null, null, null, null);
+    OAuth2Authentication authentication = new OAuth2Authentication(request,
+        new UsernamePasswordAuthenticationToken(userName, "N/A",
+            request.getAuthorities()));
+    DefaultOAuth2AccessToken token = new DefaultOAuth2AccessToken(
+        userName + clock.get());
+    token.setExpiration(new Date(clock.get() + TOKEN_VALIDITY_MILLIS));
+    return converter.enhance(token, authentication).getValue();
+  }
+
+  @Test
+  public void should_DecodeTokenOnce_When_TokenIsReadAgain() {
+    VaadinConnectTokenStore store = new VaadinConnectTokenStore(converter, 10,
+        null, clock::get);
+    String token = createToken("user");
+
+    OAuth2AccessToken first = store.readAccessToken(token);
+    OAuth2Authentication firstAuthentication = store.readAuthentication(first);
+    OAuth2AccessToken second = store.readAccessToken(token);
+    OAuth2Authentication secondAuthentication = store
+        .readAuthentication(second);
+
+    assertSame(first, second);
+    assertNotSame(firstAuthentication, secondAuthentication);
+    assertEquals("user", secondAuthentication.getName());
+    assertEquals(firstAuthentication.getAuthorities(),
+        secondAuthentication.getAuthorities());
+    assertEquals(1, converter.decodeCount);
+    assertEquals(1, store.getHitCount());
+    assertEquals(1, store.getMissCount());
+    assertEquals(1, store.getSize());
+  }
+
+  @Test
+  public void should_VerifyTokenAgain_When_CachingIsDisabled() {
+    VaadinConnectTokenStore store = new VaadinConnectTokenStore(converter, 0,
+        null, clock::get);
+    String token = createToken("user");
+
+    store.readAuthentication(store.readAccessToken(token));
+    store.readAuthentication(store.readAccessToken(token));
+
+    assertEquals(4, converter.decodeCount);
+    assertEquals(0, store.getSize());
+  }
+
+  @Test
+  public void should_DropToken_When_TokenExpires() {
+    VaadinConnectTokenStore store = new VaadinConnectTokenStore(converter, 10,
+        null, clock::get);
+    String token = createToken("user");
+    store.readAccessToken(token);
+
+    clock.addAndGet(TOKEN_VALIDITY_MILLIS);
+    store.readAccessToken(token);
+
+    assertEquals(0, store.getHitCount());
+    assertEquals(2, store.getMissCount());
+    assertEquals(0, store.getSize());
+  }
+
+  @Test
+  public void should_EvictLeastRecentlyUsedToken_When_CacheIsFull() {
+    VaadinConnectTokenStore store = new VaadinConnectTokenStore(converter, 2,
+        null, clock::get);
+    String first = createToken("first");
+    String second = createToken("second");
+    store.readAccessToken(first);
+    store.readAccessToken(second);
+    store.readAccessToken(first);
+
+    store.readAccessToken(createToken("third"));
+    store.readAccessToken(first);
+
+    assertEquals(2, store.getSize());
+    assertEquals(1, store.getEvictionCount());
+    assertEquals(2, store.getHitCount());
+  }
+
+  @Test
+  public void should_PurgeToken_When_TokenIsRemoved() {
+    VaadinConnectTokenStore store = new VaadinConnectTokenStore(converter, 10,
+        null, clock::get);
+    String token = createToken("user");
+
+    store.removeAccessToken(store.readAccessToken(token));
+    store.readAccessToken(token);
+
+    assertEquals(0, store.getHitCount());
+    assertEquals(2, store.getMissCount());
+  }
+
+  @Test
+  public void should_PurgeUserTokens_When_UserIsEvicted() {
+    VaadinConnectTokenStore store = new VaadinConnectTokenStore(converter, 10,
+        null, clock::get);
+    store.readAccessToken(createToken("user"));
+    clock.incrementAndGet();
+    store.readAccessToken(createToken("user"));
+    store.readAccessToken(createToken("another"));
+
+    store.evictUser("user");
+
+    assertEquals(1, store.getSize());
+    store.clear();
+    assertEquals(0, store.getSize());
+  }
+
+  @Test
+  public void should_RejectCachedToken_When_TokenIsRevokedOnAnotherNode() {
+    InProcessTokenRevocationReplicator replicator = new InProcessTokenRevocationReplicator();
+    VaadinConnectTokenStore store = new VaadinConnectTokenStore(converter, 10,
+        new VaadinConnectTokenRevocationList(10, replicator, clock::get),
+        clock::get);
+    VaadinConnectTokenStore anotherStore = new VaadinConnectTokenStore(
+        converter, 10,
+        new VaadinConnectTokenRevocationList(10, replicator, clock::get),
+        clock::get);
+    String token = createToken("user");
+    String anotherToken = createToken("another");
+    store.readAccessToken(anotherToken);
+
+    anotherStore.removeAccessToken(store.readAccessToken(token));
+
+    assertNull(store.readAccessToken(token));
+    assertNull(anotherStore.readAccessToken(token));
+    assertEquals(1, store.getSize());
+    assertNotNull(store.readAccessToken(anotherToken));
+  }
+
+  @Test
+  public void should_RejectToken_When_TokenIsRevokedAndCachingIsDisabled() {
+    VaadinConnectTokenRevocationList revocationList = new VaadinConnectTokenRevocationList(
+        10, new InProcessTokenRevocationReplicator(), clock::get);
+    VaadinConnectTokenStore store = new VaadinConnectTokenStore(converter, 0,
+        revocationList, clock::get);
+    String token = createToken("user");
+
+    revocationList.revoke(store.readAccessToken(token));
+
+    assertNull(store.readAccessToken(token));
+    assertNotNull(store.readAccessToken(createToken("another")));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_Throw_When_MaxEntriesIsNegative() {
+    new VaadinConnectTokenStore(converter, -1);
+  }
+
+  @Test
+  public void should_ReportCacheStatistics() {
+    VaadinConnectTokenStore store = new VaadinConnectTokenStore(converter, 1,
+        null, clock::get);
+    String token = createToken("user");
+    store.readAccessToken(token);
+    store.readAccessToken(token);
+    store.readAccessToken(createToken("another"));
+
+    MeterRegistry registry = new SimpleMeterRegistry();
+    new VaadinConnectTokenStoreMetrics(store).bindTo(registry);
+
+    assertEquals(1,
+        registry.get(VaadinConnectTokenStoreMetrics.TOKEN_CACHE_REQUESTS_METRIC)
+            .tag("result", "hit").functionCounter().count(),
+        0);
+    assertEquals(2,
+        registry.get(VaadinConnectTokenStoreMetrics.TOKEN_CACHE_REQUESTS_METRIC)
+            .tag("result", "miss").functionCounter().count(),
+        0);
+    assertEquals(1,
+        registry
+            .get(VaadinConnectTokenStoreMetrics.TOKEN_CACHE_EVICTIONS_METRIC)
+            .functionCounter().count(),
+        0);
+    assertEquals(1,
+        registry.get(VaadinConnectTokenStoreMetrics.TOKEN_CACHE_SIZE_METRIC)
+            .gauge().value(),
+        0);
+  }
+}